@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.content;
+
+import java.util.Objects;
+
+/**
+ * Benchmark shim matching the framework's equality, ordering and parsing.
+ */
+public final class ComponentName implements Comparable<ComponentName> {
+
+    private final String mPackage;
+    private final String mClass;
+
+    public ComponentName(String pkg, String cls) {
+        mPackage = Objects.requireNonNull(pkg);
+        mClass = Objects.requireNonNull(cls);
+    }
+
+    public String getPackageName() {
+        return mPackage;
+    }
+
+    public String getClassName() {
+        return mClass;
+    }
+
+    public static ComponentName unflattenFromString(String str) {
+        int sep = str.indexOf('/');
+        if (sep < 0 || (sep + 1) >= str.length()) {
+            return null;
+        }
+        String pkg = str.substring(0, sep);
+        String cls = str.substring(sep + 1);
+        if (cls.length() > 0 && cls.charAt(0) == '.') {
+            cls = pkg + cls;
+        }
+        return new ComponentName(pkg, cls);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ComponentName)) {
+            return false;
+        }
+        ComponentName other = (ComponentName) obj;
+        return mPackage.equals(other.mPackage) && mClass.equals(other.mClass);
+    }
+
+    @Override
+    public int hashCode() {
+        return mPackage.hashCode() + mClass.hashCode();
+    }
+
+    @Override
+    public int compareTo(ComponentName that) {
+        int v = mPackage.compareTo(that.mPackage);
+        if (v != 0) {
+            return v;
+        }
+        return mClass.compareTo(that.mClass);
+    }
+}
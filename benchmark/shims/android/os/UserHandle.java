@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+/**
+ * Benchmark shim identifying a user by id.
+ */
+public final class UserHandle {
+
+    private final int mHandle;
+
+    public UserHandle(int handle) {
+        mHandle = handle;
+    }
+
+    public int getIdentifier() {
+        return mHandle;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof UserHandle && ((UserHandle) obj).mHandle == mHandle;
+    }
+
+    @Override
+    public int hashCode() {
+        return mHandle;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.model.data;
+
+import android.content.ComponentName;
+import android.os.UserHandle;
+
+/**
+ * Benchmark shim with the fields used to sort apps.
+ */
+public class AppInfo extends ItemInfo {
+
+    public CharSequence title;
+    public ComponentName componentName;
+    public UserHandle user;
+
+    public AppInfo(CharSequence title, ComponentName componentName, UserHandle user) {
+        this.title = title;
+        this.componentName = componentName;
+        this.user = user;
+    }
+}
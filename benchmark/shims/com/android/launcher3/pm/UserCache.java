@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.pm;
+
+import android.content.Context;
+import android.os.UserHandle;
+
+/**
+ * Benchmark shim using the user id as its serial number.
+ */
+public class UserCache {
+
+    public static final Provider INSTANCE = new Provider();
+
+    public long getSerialNumberForUser(UserHandle user) {
+        return user.getIdentifier();
+    }
+
+    public static class Provider {
+
+        private final UserCache mCache = new UserCache();
+
+        public UserCache get(Context context) {
+            return mCache;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022, Lawnchair
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app.lawnchair.icons;
+
+import android.content.ComponentName;
+
+import org.jetbrains.annotations.NotNull;
+import org.kxml2.io.KXmlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+
+/**
+ * Parses a synthetic appfilter the size of a large icon pack.
+ */
+@State(Scope.Benchmark)
+public class AppFilterParserBenchmark {
+
+    @Param({"1000", "10000"})
+    public int itemCount;
+
+    private String mXml;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<resources>\n");
+        for (int i = 0; i < itemCount; i++) {
+            if (i % 100 == 0) {
+                sb.append("  <calendar component=\"ComponentInfo{com.example.calendar").append(i)
+                        .append("/.Main}\" prefix=\"calendar_").append(i).append("_\"/>\n");
+            } else if (i % 250 == 1) {
+                sb.append("  <dynamic-clock drawable=\"clock_").append(i)
+                        .append("\" hourLayerIndex=\"0\" minuteLayerIndex=\"1\"/>\n");
+            } else {
+                sb.append("  <item component=\"ComponentInfo{com.example.app").append(i)
+                        .append("/com.example.app").append(i).append(".MainActivity}\" drawable=\"")
+                        .append("icon_").append(i).append("\"/>\n");
+            }
+        }
+        mXml = sb.append("</resources>\n").toString();
+    }
+
+    @Benchmark
+    public HashMap<ComponentName, String> parse() throws XmlPullParserException, IOException {
+        KXmlParser parser = new KXmlParser();
+        parser.setInput(new StringReader(mXml));
+        HashMap<ComponentName, String> icons = new HashMap<>();
+        AppFilterParser.parse(parser, new AppFilterParser.Callback() {
+            @Override
+            public void onIcon(@NotNull ComponentName componentName, @NotNull String drawableName) {
+                icons.put(componentName, drawableName);
+            }
+
+            @Override
+            public void onCalendar(@NotNull ComponentName componentName, @NotNull String prefix) {
+                icons.put(componentName, prefix);
+            }
+
+            @Override
+            public void onClock(@NotNull String drawableName, @NotNull XmlPullParser parser) { }
+        });
+        return icons;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.allapps;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.UserHandle;
+
+import com.android.launcher3.model.data.AppInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Sorts the all apps list, including duplicate labels and work profile apps.
+ */
+@State(Scope.Benchmark)
+public class AppInfoComparatorBenchmark {
+
+    private static final String[] PREFIXES = {"", "", "", "Google ", "My ", "1", "_", "\u00c4"};
+
+    @Param({"100", "500"})
+    public int appCount;
+
+    private final List<AppInfo> mApps = new ArrayList<>();
+    private AppInfoComparator mComparator;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        UserHandle owner = new UserHandle(0);
+        UserHandle work = new UserHandle(10);
+        for (int i = 0; i < appCount; i++) {
+            String title = PREFIXES[random.nextInt(PREFIXES.length)] + "App " + random.nextInt(
+                    appCount / 2);
+            ComponentName cn = new ComponentName("com.example.app" + i, "com.example.Main");
+            mApps.add(new AppInfo(title, cn, random.nextInt(5) == 0 ? work : owner));
+        }
+        Collections.shuffle(mApps, random);
+        mComparator = new AppInfoComparator(new Context() { });
+    }
+
+    @Benchmark
+    public List<AppInfo> sort() {
+        List<AppInfo> apps = new ArrayList<>(mApps);
+        apps.sort(mComparator);
+        return apps;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.logging;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Cost of a FileLog call on the calling thread, writing to the file on the logger thread aside.
+ * Run with {@code -prof gc} to compare the allocations per call.
+ */
+@State(Scope.Benchmark)
+public class FileLogBenchmark {
+
+    private static final String TAG = "LoaderTask";
+    private static final String MESSAGE = "Loading workspace items";
+
+    private final DateFormat mDateFormat =
+            DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+    // Stands in for the message queue of the logger thread
+    private final ConcurrentLinkedQueue<String> mQueue = new ConcurrentLinkedQueue<>();
+    private final LogRingBuffer mBuffer = new LogRingBuffer(1024);
+    private final LogRingBuffer.Consumer mConsumer = (time, tag, msg, throwable) -> { };
+
+    private int mCount;
+
+    @Setup
+    public void setUp() {
+        mQueue.clear();
+        mBuffer.drain(mConsumer);
+    }
+
+    /**
+     * The previous implementation, formatting the line and posting it for every call.
+     */
+    @Benchmark
+    public boolean formatAndPost() {
+        String out;
+        synchronized (mDateFormat) {
+            out = String.format("%s %s %s", mDateFormat.format(new Date()), TAG, MESSAGE);
+        }
+        boolean added = mQueue.offer(out);
+        if (++mCount == 256) {
+            // Like the logger thread, keeps the queue from growing for the whole run
+            mCount = 0;
+            mQueue.clear();
+        }
+        return added;
+    }
+
+    @Benchmark
+    public boolean ringBufferAdd() {
+        boolean added = mBuffer.add(System.currentTimeMillis(), TAG, MESSAGE, null);
+        if (++mCount == 256) {
+            mCount = 0;
+            mBuffer.drain(mConsumer);
+        }
+        return added;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.search;
+
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Matches a query against a list of app titles, as all apps search does on every keystroke.
+ */
+@State(Scope.Benchmark)
+public class StringMatcherUtilityBenchmark {
+
+    private static final String[] WORDS = {"Google", "Play", "Store", "Camera", "Photos",
+            "Messages", "Settings", "Calendar", "Clock", "Maps", "Files", "Music", "Drive",
+            "Keep", "Notes", "Weather", "Wallet", "Translate", "Contacts", "Phone"};
+
+    @Param({"c", "cal", "settings", "xyz"})
+    public String query;
+
+    private final String[] mTitles = new String[200];
+    private StringMatcher mMatcher;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < mTitles.length; i++) {
+            mTitles[i] = WORDS[i % WORDS.length] + " " + WORDS[(i * 7 + 3) % WORDS.length]
+                    + (i % 3 == 0 ? "Pro" + i : "");
+        }
+        mMatcher = StringMatcher.getInstance();
+    }
+
+    @Benchmark
+    public void matchAllTitles(Blackhole bh) {
+        for (String title : mTitles) {
+            bh.consume(StringMatcherUtility.matches(query, title, mMatcher));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Finds vacant cells in a partially filled workspace page.
+ */
+@State(Scope.Benchmark)
+public class GridOccupancyBenchmark {
+
+    @Param({"5", "10"})
+    public int gridSize;
+
+    @Param({"1", "2"})
+    public int span;
+
+    private GridOccupancy mOccupancy;
+    private final int[] mVacant = new int[2];
+
+    @Setup
+    public void setUp() {
+        mOccupancy = new GridOccupancy(gridSize, gridSize);
+        // Fill everything but the last row, leaving a few holes too small for larger spans
+        mOccupancy.markCells(0, 0, gridSize, gridSize - 1, true);
+        for (int x = 0; x < gridSize; x += 2) {
+            mOccupancy.markCells(x, x % (gridSize - 1), 1, 1, false);
+        }
+    }
+
+    @Benchmark
+    public boolean findVacantCell() {
+        return mOccupancy.findVacantCell(mVacant, span, span);
+    }
+
+    @Benchmark
+    public boolean isRegionVacant() {
+        return mOccupancy.isRegionVacant(0, gridSize - span, span, span);
+    }
+}
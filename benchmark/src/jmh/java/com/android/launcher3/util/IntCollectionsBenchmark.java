@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Exercises {@link IntArray} and {@link IntSet} with screen id sized collections.
+ */
+@State(Scope.Benchmark)
+public class IntCollectionsBenchmark {
+
+    @Param({"16", "256"})
+    public int size;
+
+    private int[] mValues;
+    private IntArray mArray;
+    private String mConcatString;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mValues = new int[size];
+        for (int i = 0; i < size; i++) {
+            mValues[i] = random.nextInt(size * 4);
+        }
+        mArray = IntArray.wrap(mValues);
+        mConcatString = mArray.toConcatString();
+    }
+
+    @Benchmark
+    public IntArray arrayAdd() {
+        IntArray array = new IntArray();
+        for (int value : mValues) {
+            array.add(value);
+        }
+        return array;
+    }
+
+    @Benchmark
+    public int arrayContains() {
+        int found = 0;
+        for (int value : mValues) {
+            if (mArray.contains(value + 1)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public IntSet setAdd() {
+        IntSet set = new IntSet();
+        for (int value : mValues) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public IntArray concatStringRoundTrip() {
+        return IntArray.fromConcatString(mConcatString);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util;
+
+import android.content.ComponentName;
+
+import com.android.launcher3.util.PersistedItemLog.Record;
+
+import org.kxml2.io.KXmlParser;
+import org.kxml2.io.KXmlSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes 1000 items with {@link PersistedItemLog}, and with the xml format used before
+ * it. The intents of the xml format are given as uri strings, so the cost of Intent.toUri and
+ * Intent.parseUri, which the binary format avoids for launcher intents, isn't included.
+ */
+@State(Scope.Benchmark)
+public class PersistedItemLogBenchmark {
+
+    private static final int ITEM_COUNT = 1000;
+
+    private File mDir;
+    private List<Record> mRecords;
+    private PersistedItemLog mReadLog;
+    private PersistedItemLog mWriteLog;
+    private PersistedItemLog mQueueLog;
+    private List<Record> mQueue;
+    private File mXmlFile;
+    private int mNextItem;
+
+    @Setup
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("items").toFile();
+        mRecords = new ArrayList<>();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            mRecords.add(newRecord(i));
+        }
+
+        mReadLog = new PersistedItemLog(new File(mDir, "read.bin"));
+        mReadLog.write(mRecords);
+        mWriteLog = new PersistedItemLog(new File(mDir, "write.bin"));
+        mQueueLog = new PersistedItemLog(new File(mDir, "queue.bin"));
+        mQueue = new ArrayList<>(mRecords);
+        mQueueLog.write(mQueue);
+        mNextItem = ITEM_COUNT;
+
+        mXmlFile = new File(mDir, "items.xml");
+        xmlWrite();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : mDir.listFiles()) {
+            file.delete();
+        }
+        mDir.delete();
+    }
+
+    @Benchmark
+    public List<Record> binaryRead() throws IOException {
+        return mReadLog.read();
+    }
+
+    @Benchmark
+    public File binaryWrite() throws IOException {
+        mWriteLog.compact(mRecords);
+        return mWriteLog.getFile();
+    }
+
+    /**
+     * Adds an item and removes the oldest one, like the install queue.
+     */
+    @Benchmark
+    public File binaryQueueUpdate() throws IOException {
+        mQueue.remove(0);
+        mQueue.add(newRecord(mNextItem++));
+        mQueueLog.write(mQueue);
+        return mQueueLog.getFile();
+    }
+
+    @Benchmark
+    public List<String[]> xmlRead() throws Exception {
+        List<String[]> result = new ArrayList<>();
+        try (FileInputStream fis = new FileInputStream(mXmlFile)) {
+            KXmlParser parser = new KXmlParser();
+            parser.setInput(new InputStreamReader(fis, StandardCharsets.UTF_8));
+            int type;
+            while ((type = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (type == XmlPullParser.START_TAG && "entry".equals(parser.getName())) {
+                    result.add(new String[] {
+                            parser.getAttributeValue(null, "itemType"),
+                            parser.getAttributeValue(null, "profileId"),
+                            parser.getAttributeValue(null, "intent")});
+                }
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public File xmlWrite() throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(mXmlFile)) {
+            OutputStream out = new BufferedOutputStream(fos);
+            KXmlSerializer serializer = new KXmlSerializer();
+            serializer.setOutput(out, StandardCharsets.UTF_8.name());
+            serializer.startDocument(null, true);
+            serializer.startTag(null, "items");
+            for (Record record : mRecords) {
+                serializer.startTag(null, "entry");
+                serializer.attribute(null, "itemType", Integer.toString(record.itemType));
+                serializer.attribute(null, "profileId", Long.toString(record.profileSerial));
+                serializer.attribute(null, "intent", toUri(record.component));
+                serializer.endTag(null, "entry");
+            }
+            serializer.endTag(null, "items");
+            serializer.endDocument();
+            out.flush();
+            // Like AtomicFile.finishWrite
+            fos.getFD().sync();
+        }
+        return mXmlFile;
+    }
+
+    private static Record newRecord(int i) {
+        return new Record(0, i % 2, new ComponentName("com.example.app" + i,
+                "com.example.app" + i + ".MainActivity"), null);
+    }
+
+    /**
+     * The uri of the launcher intent of {@param cn}, as Intent.toUri writes it.
+     */
+    private static String toUri(ComponentName cn) {
+        return "#Intent;action=android.intent.action.MAIN;"
+                + "category=android.intent.category.LAUNCHER;launchFlags=0x10200000;"
+                + "component=" + cn.getPackageName() + "/"
+                + cn.getClassName().substring(cn.getPackageName().length()) + ";end";
+    }
+}
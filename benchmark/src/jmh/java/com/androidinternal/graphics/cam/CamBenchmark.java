@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.androidinternal.graphics.cam;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+/**
+ * Converts colors to and from CAM16, as done when generating Monet palettes. Each benchmark is
+ * paired with one running {@link ReferenceCam}, the implementation from before the lookup tables.
+ */
+@State(Scope.Benchmark)
+public class CamBenchmark {
+
+    private final int[] mColors = new int[64];
+    private final Cam[] mCams = new Cam[64];
+    private final Cam[] mReferenceCams = new Cam[64];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < mColors.length; i++) {
+            mColors[i] = 0xff000000 | random.nextInt(0xffffff);
+            mCams[i] = Cam.fromInt(mColors[i]);
+            mReferenceCams[i] = ReferenceCam.fromInt(mColors[i]);
+        }
+    }
+
+    @Benchmark
+    public void fromInt(Blackhole bh) {
+        for (int color : mColors) {
+            bh.consume(Cam.fromInt(color));
+        }
+    }
+
+    @Benchmark
+    public void viewed(Blackhole bh) {
+        for (Cam cam : mCams) {
+            bh.consume(cam.viewedInSrgb());
+        }
+    }
+
+    /**
+     * Generates a 13 tone palette per color, like a tonal palette of a color scheme.
+     */
+    @Benchmark
+    public void tonalPalette(Blackhole bh) {
+        for (Cam cam : mCams) {
+            for (int tone = 0; tone <= 100; tone += 8) {
+                bh.consume(Cam.getInt(cam.getHue(), cam.getChroma(), tone));
+            }
+        }
+    }
+
+    @Benchmark
+    public void lstarFromInt(Blackhole bh) {
+        for (int color : mColors) {
+            bh.consume(CamUtils.lstarFromInt(color));
+        }
+    }
+
+    @Benchmark
+    public void referenceFromInt(Blackhole bh) {
+        for (int color : mColors) {
+            bh.consume(ReferenceCam.fromInt(color));
+        }
+    }
+
+    @Benchmark
+    public void referenceViewed(Blackhole bh) {
+        for (Cam cam : mReferenceCams) {
+            bh.consume(ReferenceCam.viewedInSrgb(cam));
+        }
+    }
+
+    @Benchmark
+    public void referenceTonalPalette(Blackhole bh) {
+        for (Cam cam : mReferenceCams) {
+            for (int tone = 0; tone <= 100; tone += 8) {
+                bh.consume(ReferenceCam.getInt(cam.getHue(), cam.getChroma(), tone));
+            }
+        }
+    }
+
+    @Benchmark
+    public void referenceLstarFromInt(Blackhole bh) {
+        for (int color : mColors) {
+            bh.consume(ReferenceCam.lstarFromInt(color));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.DateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tests for {@link LogFileWriter}
+ */
+public class LogFileWriterTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private File mDir;
+    private LogFileWriter mWriter;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("logs").toFile();
+        mWriter = new LogFileWriter(mDir);
+    }
+
+    @After
+    public void tearDown() {
+        mWriter.close();
+        for (File file : mDir.listFiles()) {
+            file.delete();
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void accept_writesDateTagAndMessage() throws IOException {
+        long time = System.currentTimeMillis();
+        mWriter.accept(time, "Tag", "hello world", null);
+        mWriter.flush();
+
+        String date = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT)
+                .format(new Date(time));
+        assertEquals(date + " Tag hello world", readLines(fileOf(time)).get(0));
+    }
+
+    @Test
+    public void accept_writesStackTrace() throws IOException {
+        long time = System.currentTimeMillis();
+        mWriter.accept(time, "Tag", "failed", new IllegalStateException("broken"));
+        mWriter.accept(time, "Tag", "next", null);
+        mWriter.flush();
+
+        List<String> lines = readLines(fileOf(time));
+        assertTrue(lines.get(0).endsWith(" Tag failed"));
+        assertEquals("java.lang.IllegalStateException: broken", lines.get(1));
+        assertTrue(lines.get(2).trim().startsWith("at "));
+        assertTrue(lines.get(lines.size() - 1).endsWith(" Tag next"));
+    }
+
+    @Test
+    public void accept_rotatesFilesByRecordDay() throws IOException {
+        long today = midYear();
+        long tomorrow = today + 24 * HOUR;
+        mWriter.accept(today, "Tag", "today", null);
+        mWriter.accept(tomorrow, "Tag", "tomorrow", null);
+        mWriter.close();
+
+        assertFalse(fileOf(today).equals(fileOf(tomorrow)));
+        List<String> todayLines = readLines(fileOf(today));
+        assertEquals(1, todayLines.size());
+        assertTrue(todayLines.get(0).endsWith(" today"));
+        List<String> tomorrowLines = readLines(fileOf(tomorrow));
+        assertEquals(1, tomorrowLines.size());
+        assertTrue(tomorrowLines.get(0).endsWith(" tomorrow"));
+    }
+
+    @Test
+    public void accept_appendsToRecentFile() throws IOException {
+        long time = System.currentTimeMillis();
+        File file = fileOf(time);
+        Files.write(file.toPath(), "earlier\n".getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(time - HOUR);
+
+        mWriter.accept(time, "Tag", "later", null);
+        mWriter.flush();
+
+        List<String> lines = readLines(file);
+        assertEquals(2, lines.size());
+        assertEquals("earlier", lines.get(0));
+    }
+
+    @Test
+    public void accept_purgesStaleFile() throws IOException {
+        long time = System.currentTimeMillis();
+        File file = fileOf(time);
+        Files.write(file.toPath(), "stale\n".getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(time - 37 * HOUR);
+
+        mWriter.accept(time, "Tag", "fresh", null);
+        mWriter.flush();
+
+        List<String> lines = readLines(file);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith(" fresh"));
+    }
+
+    @Test
+    public void dumpAll_printsEachFile() {
+        long today = midYear();
+        mWriter.accept(today, "Tag", "today", null);
+        mWriter.accept(today + 24 * HOUR, "Tag", "tomorrow", null);
+        mWriter.close();
+
+        StringWriter out = new StringWriter();
+        mWriter.dumpAll(new PrintWriter(out));
+        String dump = out.toString();
+
+        assertTrue(dump.contains("--- logfile: " + fileOf(today).getName() + " ---"));
+        assertTrue(dump.contains(" Tag today"));
+        assertTrue(dump.contains(" Tag tomorrow"));
+        assertTrue(dump.indexOf(" Tag today") > dump.indexOf(fileOf(today).getName()));
+    }
+
+    /**
+     * Returns a time for which the next day doesn't wrap around the year, and so never uses
+     * the same file.
+     */
+    private static long midYear() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.MONTH, Calendar.JUNE);
+        calendar.set(Calendar.DAY_OF_MONTH, 15);
+        return calendar.getTimeInMillis();
+    }
+
+    private File fileOf(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        return new File(mDir, LogFileWriter.FILE_NAME_PREFIX
+                + calendar.get(Calendar.DAY_OF_YEAR) % LogFileWriter.LOG_DAYS);
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+}
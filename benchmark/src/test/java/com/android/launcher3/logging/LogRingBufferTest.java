@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests for {@link LogRingBuffer}
+ */
+public class LogRingBufferTest {
+
+    @Test
+    public void drain_keepsOrderAndFields() {
+        LogRingBuffer buffer = new LogRingBuffer(8);
+        Exception exception = new Exception();
+        buffer.add(1, "Tag1", "first", null);
+        buffer.add(2, "Tag2", "second", exception);
+        buffer.add(3, "Tag1", "third", null);
+
+        List<Object[]> records = new ArrayList<>();
+        assertEquals(3, buffer.drain((time, tag, msg, throwable) ->
+                records.add(new Object[] {time, tag, msg, throwable})));
+
+        assertEquals(3, records.size());
+        assertEquals(1L, records.get(0)[0]);
+        assertEquals("Tag1", records.get(0)[1]);
+        assertEquals("first", records.get(0)[2]);
+        assertNull(records.get(0)[3]);
+        assertEquals("second", records.get(1)[2]);
+        assertSame(exception, records.get(1)[3]);
+        assertEquals("third", records.get(2)[2]);
+
+        assertEquals(0, buffer.drain((time, tag, msg, throwable) -> { }));
+    }
+
+    @Test
+    public void overflow_dropsNewRecords() {
+        LogRingBuffer buffer = new LogRingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.add(i, "Tag", "msg" + i, null));
+        }
+        assertFalse(buffer.add(4, "Tag", "msg4", null));
+        assertFalse(buffer.add(5, "Tag", "msg5", null));
+
+        List<String> messages = new ArrayList<>();
+        buffer.drain((time, tag, msg, throwable) -> messages.add(msg));
+        assertEquals(Arrays.asList("msg0", "msg1", "msg2", "msg3"), messages);
+        assertEquals(2, buffer.takeDroppedCount());
+        assertEquals(0, buffer.takeDroppedCount());
+
+        // Drained slots are reused
+        assertTrue(buffer.add(6, "Tag", "msg6", null));
+        messages.clear();
+        buffer.drain((time, tag, msg, throwable) -> messages.add(msg));
+        assertEquals(Arrays.asList("msg6"), messages);
+    }
+
+    @Test
+    public void wrapAround_keepsOrder() {
+        LogRingBuffer buffer = new LogRingBuffer(4);
+        List<Long> times = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            assertTrue(buffer.add(i, "Tag", "msg", null));
+            if (i % 3 == 2) {
+                buffer.drain((time, tag, msg, throwable) -> times.add(time));
+            }
+        }
+        buffer.drain((time, tag, msg, throwable) -> times.add(time));
+
+        assertEquals(100, times.size());
+        for (int i = 0; i < times.size(); i++) {
+            assertEquals(i, (long) times.get(i));
+        }
+    }
+
+    @Test
+    public void concurrentProducers_keepOrderPerThread() throws Exception {
+        int threadCount = 4;
+        int recordsPerThread = 50_000;
+        LogRingBuffer buffer = new LogRingBuffer(256);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean producing = new AtomicBoolean(true);
+
+        Thread[] producers = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            String tag = "Thread" + t;
+            producers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < recordsPerThread; i++) {
+                    // Retry dropped records, so that every record is eventually drained
+                    while (!buffer.add(i, tag, null, null)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            producers[t].start();
+        }
+
+        long[] lastTimes = new long[threadCount];
+        Arrays.fill(lastTimes, -1);
+        int[] counts = new int[threadCount];
+        // Checked once drained, as the draining thread can't fail the test
+        AtomicBoolean inOrder = new AtomicBoolean(true);
+        LogRingBuffer.Consumer consumer = (time, tag, msg, throwable) -> {
+            int t = tag.charAt(tag.length() - 1) - '0';
+            if (time != lastTimes[t] + 1) {
+                inOrder.set(false);
+            }
+            lastTimes[t] = time;
+            counts[t]++;
+        };
+        Thread drainer = new Thread(() -> {
+            while (producing.get()) {
+                buffer.drain(consumer);
+            }
+        });
+        drainer.start();
+
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        producing.set(false);
+        drainer.join();
+        buffer.drain(consumer);
+
+        assertTrue(inOrder.get());
+        for (int t = 0; t < threadCount; t++) {
+            assertEquals(recordsPerThread, counts[t]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacity_mustBePowerOfTwo() {
+        new LogRingBuffer(1000);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link KeyedListDiff}, applying the operations to a list of views the way the
+ * taskbar does, and counting the views inflated and rebound.
+ */
+public class KeyedListDiffTest {
+
+    @Test
+    public void sameItems_noOperations() {
+        Views views = new Views(items("a", "b", "c"));
+        views.update(items("a", "b", "c"));
+
+        assertEquals(0, views.inflations);
+        assertEquals(0, views.rebinds);
+        assertEquals(0, views.moves);
+        assertEquals(0, views.removals);
+    }
+
+    @Test
+    public void changedContents_onlyRebindsChangedItem() {
+        Views views = new Views(items("a", "b", "c"));
+        List<Item> newItems = items("a", "b", "c");
+        newItems.set(1, new Item("b", 1));
+        views.update(newItems);
+
+        assertEquals(0, views.inflations);
+        assertEquals(1, views.rebinds);
+        assertEquals(newItems, views.items);
+    }
+
+    @Test
+    public void insertedItem_onlyInflatesNewItem() {
+        Views views = new Views(items("a", "c"));
+        views.update(items("a", "b", "c"));
+
+        assertEquals(1, views.inflations);
+        assertEquals(0, views.rebinds);
+        assertEquals(0, views.moves);
+    }
+
+    @Test
+    public void removedItem_keepsOtherViews() {
+        Views views = new Views(items("a", "b", "c"));
+        Object viewA = views.views.get(0);
+        Object viewC = views.views.get(2);
+        views.update(items("a", "c"));
+
+        assertEquals(0, views.inflations);
+        assertEquals(1, views.removals);
+        assertEquals(Arrays.asList(viewA, viewC), views.views);
+    }
+
+    @Test
+    public void reorderedItems_movesViews() {
+        Views views = new Views(items("a", "b", "c", "d"));
+        List<Object> oldViews = new ArrayList<>(views.views);
+        views.update(items("d", "b", "c", "a"));
+
+        assertEquals(0, views.inflations);
+        assertEquals(0, views.rebinds);
+        assertEquals(0, views.removals);
+        assertEquals(Arrays.asList(oldViews.get(3), oldViews.get(1), oldViews.get(2),
+                oldViews.get(0)), views.views);
+    }
+
+    @Test
+    public void duplicateKeys_removesExtraViews() {
+        Views views = new Views(items("a", "a", "b"));
+        views.update(items("b", "a"));
+
+        assertEquals(0, views.inflations);
+        assertEquals(items("b", "a"), views.items);
+        assertEquals(2, views.views.size());
+    }
+
+    @Test
+    public void randomUpdates_matchNewItems() {
+        Random random = new Random(42);
+        List<Item> current = new ArrayList<>();
+        Views views = new Views(current);
+        for (int round = 0; round < 1000; round++) {
+            List<Item> newItems = new ArrayList<>();
+            int size = random.nextInt(8);
+            for (int i = 0; i < size; i++) {
+                newItems.add(new Item(String.valueOf((char) ('a' + random.nextInt(10))),
+                        random.nextInt(2)));
+            }
+            Collections.shuffle(newItems, random);
+            views.update(newItems);
+
+            assertEquals(newItems, views.items);
+            assertEquals(newItems.size(), views.views.size());
+        }
+    }
+
+    private static List<Item> items(String... keys) {
+        List<Item> items = new ArrayList<>();
+        for (String key : keys) {
+            items.add(new Item(key, 0));
+        }
+        return items;
+    }
+
+    private static final class Item {
+
+        static final KeyedListDiff.ItemCallback<Item> CALLBACK =
+                new KeyedListDiff.ItemCallback<Item>() {
+                    @Override
+                    public boolean areItemsTheSame(Item oldItem, Item newItem) {
+                        return oldItem.key.equals(newItem.key);
+                    }
+
+                    @Override
+                    public boolean areContentsTheSame(Item oldItem, Item newItem) {
+                        return oldItem.content == newItem.content;
+                    }
+                };
+
+        final String key;
+        final int content;
+
+        Item(String key, int content) {
+            this.key = key;
+            this.content = content;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Item && key.equals(((Item) o).key)
+                    && content == ((Item) o).content;
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() * 31 + content;
+        }
+
+        @Override
+        public String toString() {
+            return key + content;
+        }
+    }
+
+    /**
+     * Stands in for the children of a view: each inflation creates a new view object, and
+     * views are bound to the item at their position.
+     */
+    private static final class Views implements KeyedListDiff.UpdateCallback<Item> {
+
+        final List<Object> views = new ArrayList<>();
+        final List<Item> items = new ArrayList<>();
+
+        int inflations;
+        int rebinds;
+        int moves;
+        int removals;
+
+        Views(List<Item> initialItems) {
+            for (Item item : initialItems) {
+                views.add(new Object());
+                items.add(item);
+            }
+        }
+
+        void update(List<Item> newItems) {
+            inflations = rebinds = moves = removals = 0;
+            KeyedListDiff.dispatch(new ArrayList<>(items), newItems, Item.CALLBACK, this);
+        }
+
+        @Override
+        public void onRemoved(int position) {
+            views.remove(position);
+            items.remove(position);
+            removals++;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            views.add(toPosition, views.remove(fromPosition));
+            items.add(toPosition, items.remove(fromPosition));
+            moves++;
+        }
+
+        @Override
+        public void onInserted(int position, Item item) {
+            views.add(position, new Object());
+            items.add(position, item);
+            inflations++;
+        }
+
+        @Override
+        public void onChanged(int position, Item item) {
+            items.set(position, item);
+            rebinds++;
+        }
+    }
+}
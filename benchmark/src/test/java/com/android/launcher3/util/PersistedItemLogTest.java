@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+
+import com.android.launcher3.util.PersistedItemLog.Record;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link PersistedItemLog}
+ */
+public class PersistedItemLogTest {
+
+    private File mDir;
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("items").toFile();
+        mFile = new File(mDir, "items.bin");
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : mDir.listFiles()) {
+            file.delete();
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void roundTrip_keepsAllFields() throws IOException {
+        List<Record> records = Arrays.asList(
+                app("com.example", "com.example.Main"),
+                // Classes outside of their package aren't shortened
+                app("com.example", "org.other.Main"),
+                new Record(6, Long.MAX_VALUE, null, "#Intent;action=android.intent.action.MAIN;"
+                        + "S.shortcut_id=\u00e9t\u00e9;end"),
+                new Record(0, -1, new ComponentName("p", "."), null));
+        new PersistedItemLog(mFile).write(records);
+
+        assertEquals(records, new PersistedItemLog(mFile).read());
+    }
+
+    @Test
+    public void read_missingFile_returnsEmpty() throws IOException {
+        PersistedItemLog log = new PersistedItemLog(mFile);
+        assertFalse(log.exists());
+        assertTrue(log.read().isEmpty());
+    }
+
+    @Test
+    public void queueUpdates_areAppended() throws IOException {
+        List<Record> records = apps(10);
+        PersistedItemLog log = new PersistedItemLog(mFile);
+        log.write(records);
+        long compactedSize = mFile.length();
+
+        // Add one item, then remove the first one, like the install queue
+        records.add(app("com.example", "Added"));
+        log.write(records);
+        records.remove(0);
+        log.write(records);
+
+        // Only the new record and the removal are written
+        assertTrue(mFile.length() - compactedSize < 80);
+        assertEquals(records, new PersistedItemLog(mFile).read());
+    }
+
+    @Test
+    public void reorderedItems_compactFile() throws IOException {
+        List<Record> records = apps(10);
+        PersistedItemLog log = new PersistedItemLog(mFile);
+        log.write(records);
+        long size = mFile.length();
+
+        List<Record> reordered = new ArrayList<>(records.subList(5, 10));
+        reordered.addAll(records.subList(0, 5));
+        log.write(reordered);
+
+        assertEquals(size, mFile.length());
+        assertEquals(reordered, new PersistedItemLog(mFile).read());
+    }
+
+    @Test
+    public void manyAppends_compactFile() throws IOException {
+        List<Record> records = apps(4);
+        PersistedItemLog log = new PersistedItemLog(mFile);
+        log.write(records);
+        long size = mFile.length();
+
+        for (int i = 0; i < 100; i++) {
+            records.remove(0);
+            records.add(app("com.example", "Activity" + (100 + i)));
+            log.write(records);
+        }
+
+        // The file only ever holds a few dozen appended operations
+        assertTrue(mFile.length() < size * 20);
+        assertEquals(records, new PersistedItemLog(mFile).read());
+    }
+
+    @Test
+    public void appendAfterRead_continuesLog() throws IOException {
+        List<Record> records = apps(3);
+        new PersistedItemLog(mFile).write(records);
+
+        PersistedItemLog log = new PersistedItemLog(mFile);
+        log.read();
+        records.add(app("com.example", "Added"));
+        log.write(records);
+
+        assertEquals(records, new PersistedItemLog(mFile).read());
+    }
+
+    @Test
+    public void crashDuringAppend_keepsPreviousRecords() throws IOException {
+        List<Record> records = apps(3);
+        PersistedItemLog log = new PersistedItemLog(mFile);
+        log.write(records);
+        List<Record> written = new ArrayList<>(records);
+        records.add(app("com.example", "Added"));
+        log.write(records);
+
+        // Cuts the last batch short, as if the process died while appending it
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.setLength(file.length() - 5);
+        }
+
+        PersistedItemLog reopened = new PersistedItemLog(mFile);
+        assertEquals(written, reopened.read());
+
+        // The next write doesn't append after the partial batch
+        written.add(app("com.example", "Other"));
+        reopened.write(written);
+        assertEquals(written, new PersistedItemLog(mFile).read());
+    }
+
+    @Test
+    public void corruptedAppend_keepsPreviousRecords() throws IOException {
+        List<Record> records = apps(3);
+        PersistedItemLog log = new PersistedItemLog(mFile);
+        log.write(records);
+        List<Record> written = new ArrayList<>(records);
+        records.add(app("com.example", "Added"));
+        log.write(records);
+
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.seek(file.length() - 3);
+            file.write('x');
+        }
+
+        assertEquals(written, new PersistedItemLog(mFile).read());
+    }
+
+    @Test
+    public void crashDuringCompaction_keepsPreviousRecords() throws IOException {
+        List<Record> records = apps(3);
+        PersistedItemLog log = new PersistedItemLog(mFile);
+        log.write(records);
+
+        // A compaction which died before replacing the file leaves a partial new file
+        try (FileOutputStream out = new FileOutputStream(log.getNewFile())) {
+            out.write(new byte[] {0x50, 0x49, 0x4c});
+        }
+        assertEquals(records, new PersistedItemLog(mFile).read());
+
+        // And the next compaction overwrites it
+        List<Record> reordered = new ArrayList<>(records);
+        reordered.add(0, reordered.remove(2));
+        log.write(reordered);
+        assertFalse(log.getNewFile().exists());
+        assertEquals(reordered, new PersistedItemLog(mFile).read());
+    }
+
+    @Test
+    public void unknownVersion_throws() throws IOException {
+        new PersistedItemLog(mFile).write(apps(1));
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.seek(4);
+            file.writeInt(PersistedItemLog.VERSION + 1);
+        }
+
+        assertThrows(IOException.class, () -> new PersistedItemLog(mFile).read());
+    }
+
+    @Test
+    public void notALog_throws() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(mFile))) {
+            out.writeBytes("<?xml version='1.0'?><items></items>");
+        }
+
+        assertThrows(IOException.class, () -> new PersistedItemLog(mFile).read());
+    }
+
+    @Test
+    public void delete_removesFiles() throws IOException {
+        PersistedItemLog log = new PersistedItemLog(mFile);
+        log.write(apps(2));
+        log.delete();
+
+        assertFalse(mFile.exists());
+        assertTrue(log.read().isEmpty());
+    }
+
+    private static Record app(String packageName, String className) {
+        return new Record(0, 0, new ComponentName(packageName, className), null);
+    }
+
+    private static List<Record> apps(int count) {
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(app("com.example", "com.example.Activity" + i));
+        }
+        return records;
+    }
+}
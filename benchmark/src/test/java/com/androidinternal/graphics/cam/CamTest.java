@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.androidinternal.graphics.cam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link Cam} and {@link CamUtils} against {@link ReferenceCam}, their implementation from
+ * before the lookup tables, over a grid of seed colors.
+ */
+public class CamTest {
+
+    // The largest color difference allowed, in CAM16-UCS
+    private static final float MAX_DELTA_E = 1f;
+
+    // Levels of each channel of the seed colors, 0 and 255 included
+    private static final int LEVELS = 9;
+
+    @Test
+    public void fromInt_matchesReference() {
+        float maxDeltaE = 0;
+        for (int color : seedColors()) {
+            maxDeltaE = Math.max(maxDeltaE,
+                    Cam.fromInt(color).distance(ReferenceCam.fromInt(color)));
+        }
+        assertTrue("Max delta E " + maxDeltaE, maxDeltaE <= MAX_DELTA_E);
+    }
+
+    @Test
+    public void getInt_matchesReference() {
+        float maxDeltaE = 0;
+        for (int color : seedColors()) {
+            Cam cam = Cam.fromInt(color);
+            // The tones of a tonal palette of the seed color
+            for (int tone = 0; tone <= 100; tone += 5) {
+                int actual = Cam.getInt(cam.getHue(), cam.getChroma(), tone);
+                int expected = ReferenceCam.getInt(cam.getHue(), cam.getChroma(), tone);
+                maxDeltaE = Math.max(maxDeltaE,
+                        ReferenceCam.fromInt(actual).distance(ReferenceCam.fromInt(expected)));
+            }
+        }
+        assertTrue("Max delta E " + maxDeltaE, maxDeltaE <= MAX_DELTA_E);
+    }
+
+    @Test
+    public void viewedInSrgb_matchesReference() {
+        float maxDeltaE = 0;
+        for (int color : seedColors()) {
+            int actual = Cam.fromInt(color).viewedInSrgb();
+            int expected = ReferenceCam.viewedInSrgb(ReferenceCam.fromInt(color));
+            maxDeltaE = Math.max(maxDeltaE,
+                    ReferenceCam.fromInt(actual).distance(ReferenceCam.fromInt(expected)));
+        }
+        assertTrue("Max delta E " + maxDeltaE, maxDeltaE <= MAX_DELTA_E);
+    }
+
+    @Test
+    public void lstarFromInt_matchesReference() {
+        for (int color : seedColors()) {
+            assertEquals(ReferenceCam.lstarFromInt(color), CamUtils.lstarFromInt(color), 1e-4f);
+        }
+    }
+
+    private static int[] seedColors() {
+        int[] colors = new int[LEVELS * LEVELS * LEVELS];
+        int i = 0;
+        for (int r = 0; r < LEVELS; r++) {
+            for (int g = 0; g < LEVELS; g++) {
+                for (int b = 0; b < LEVELS; b++) {
+                    colors[i++] = 0xff000000 | (level(r) << 16) | (level(g) << 8) | level(b);
+                }
+            }
+        }
+        return colors;
+    }
+
+    private static int level(int index) {
+        return Math.round(index * 255f / (LEVELS - 1));
+    }
+}
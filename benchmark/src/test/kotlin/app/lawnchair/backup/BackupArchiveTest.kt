@@ -0,0 +1,304 @@
+/*
+ * Copyright 2022, Lawnchair
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app.lawnchair.backup
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipInputStream
+import java.util.zip.ZipOutputStream
+import kotlin.random.Random
+
+/**
+ * Round trips, deduplication, corruption detection and incremental backups of [BackupArchive].
+ */
+class BackupArchiveTest {
+
+    @get:Rule
+    val tmpFolder = TemporaryFolder()
+
+    private val database = compressibleBytes(5 * CHUNK_SIZE / 2)
+    private val wallpaper = Random(1).nextBytes(3 * CHUNK_SIZE)
+    private val files = linkedMapOf(
+        "prefs.xml" to "<map />".toByteArray(),
+        "wallpaper.png" to wallpaper,
+        "launcher.db" to database,
+        // Repeats chunks of the database
+        "copy.db" to database.copyOf(2 * CHUNK_SIZE),
+        "empty" to ByteArray(0),
+    )
+
+    @Test
+    fun roundTrip() {
+        val backup = createBackup(files)
+
+        assertFilesEqual(files, readBackup(backup.bytes))
+    }
+
+    @Test
+    fun roundTrip_someFiles() {
+        val backup = createBackup(files)
+
+        val read = readBackup(backup.bytes, names = setOf("copy.db", "empty"))
+        assertEquals(setOf("copy.db", "empty"), read.keys)
+        assertArrayEquals(files["copy.db"], read["copy.db"])
+        assertEquals(0, read["empty"]!!.size)
+    }
+
+    @Test
+    fun roundTrip_storesRepeatedAndIncompressibleChunksOnce() {
+        val backup = createBackup(files)
+
+        // The copy is only referenced, the wallpaper isn't compressed
+        val chunkBytes = backup.bytesWritten
+        assertTrue(chunkBytes < wallpaper.size + database.size / 2)
+        assertTrue(chunkBytes >= wallpaper.size)
+    }
+
+    @Test
+    fun corruptedChunk_isDetected() {
+        val backup = createBackup(files)
+        val chunk = wallpaperChunk(backup.bytes, 1)
+
+        val corrupted = rewriteEntries(backup.bytes) { name, data ->
+            if (name == BackupArchive.CHUNK_PREFIX + chunk) {
+                data.copyOf().also { it[42] = (it[42] + 1).toByte() }
+            } else data
+        }
+
+        assertThrows(IOException::class.java) { readBackup(corrupted) }
+        // Files which aren't read are not verified
+        assertArrayEquals(database, readBackup(corrupted, setOf("launcher.db"))["launcher.db"])
+    }
+
+    @Test
+    fun missingChunk_isDetected() {
+        val backup = createBackup(files)
+        val chunk = wallpaperChunk(backup.bytes, 0)
+
+        val truncated = rewriteEntries(backup.bytes) { name, data ->
+            if (name == BackupArchive.CHUNK_PREFIX + chunk) null else data
+        }
+
+        assertThrows(IOException::class.java) { readBackup(truncated) }
+    }
+
+    @Test
+    fun roundTrip_knownSizes() {
+        val backup = createBackup(files, knownSizes = true)
+
+        assertFilesEqual(files, readBackup(backup.bytes))
+        assertEquals(createBackup(files).manifest.files.map { it.hash },
+            backup.manifest.files.map { it.hash })
+    }
+
+    @Test
+    fun roundTrip_longerThanExpected() {
+        val backup = createBackup(files, expectedSize = { it.size / 3L })
+
+        assertFilesEqual(files, readBackup(backup.bytes))
+    }
+
+    @Test
+    fun repeatedBackup_onlyWritesChangedChunks() {
+        val store = BackupArchive.ChunkStore(tmpFolder.newFolder())
+        val first = createBackup(files, store = store)
+        val changedDatabase = database.copyOf().also { it[CHUNK_SIZE + 7]++ }
+        val changedFiles = LinkedHashMap(files).apply { put("launcher.db", changedDatabase) }
+
+        val second = createBackup(changedFiles, store = store)
+
+        // Only the changed chunk of the database is written again
+        assertTrue(second.bytesWritten * 10 < first.bytesWritten)
+        assertTrue(second.bytes.size * 5 < first.bytes.size)
+        assertFilesEqual(changedFiles, readBackup(second.bytes, store = store))
+        assertFilesEqual(changedFiles, readBackupAtRandom(second.bytes, store))
+        // The first backup is still restorable
+        assertFilesEqual(files, readBackup(first.bytes, store = store))
+    }
+
+    @Test
+    fun repeatedBackup_deletesChunksOfOldBackups() {
+        val dir = tmpFolder.newFolder()
+        val store = BackupArchive.ChunkStore(dir, maxBackups = 2)
+        val first = createBackup(files, store = store)
+        val second = createBackup(files, store = store)
+        val changedFiles = LinkedHashMap(files).apply { put("prefs.xml", "<map/>".toByteArray()) }
+        createBackup(changedFiles, store = store)
+        assertFilesEqual(files, readBackup(second.bytes, store = store))
+
+        val fourth = createBackup(changedFiles, store = store)
+
+        // The old prefs are only referenced by the second backup, which isn't kept anymore
+        assertThrows(IOException::class.java) { readBackup(second.bytes, store = store) }
+        assertFilesEqual(changedFiles, readBackup(fourth.bytes, store = store))
+        // The first backup has all its chunks
+        assertFilesEqual(files, readBackup(first.bytes))
+        assertEquals(2, File(dir, "manifests").list()!!.size)
+    }
+
+    @Test
+    fun repeatedBackup_withoutStore_isDetected() {
+        val store = BackupArchive.ChunkStore(tmpFolder.newFolder())
+        createBackup(files, store = store)
+        val second = createBackup(files, store = store)
+
+        assertThrows(IOException::class.java) { readBackup(second.bytes) }
+        val emptyStore = BackupArchive.ChunkStore(tmpFolder.newFolder())
+        assertThrows(IOException::class.java) { readBackup(second.bytes, store = emptyStore) }
+    }
+
+    @Test
+    fun repeatedBackup_withCorruptedStoredChunk_isDetected() {
+        val dir = tmpFolder.newFolder()
+        val store = BackupArchive.ChunkStore(dir)
+        createBackup(files, store = store)
+        val second = createBackup(files, store = store)
+        assertEquals(0, second.bytesWritten)
+
+        val chunk = wallpaperChunk(second.bytes, 1)
+        val file = File(dir, "chunks").listFiles()!!.first { it.name.startsWith(chunk) }
+        file.writeBytes(file.readBytes().also { it[42] = (it[42] + 1).toByte() })
+
+        assertThrows(IOException::class.java) { readBackup(second.bytes, store = store) }
+        assertThrows(IOException::class.java) { readBackupAtRandom(second.bytes, store) }
+    }
+
+    private class Backup(
+        val bytes: ByteArray,
+        val manifest: BackupArchive.Manifest,
+        val bytesWritten: Long,
+    )
+
+    private fun createBackup(
+        files: Map<String, ByteArray>,
+        store: BackupArchive.ChunkStore? = null,
+        knownSizes: Boolean = false,
+        expectedSize: (ByteArray) -> Long = { if (knownSizes) it.size.toLong() else -1 },
+    ): Backup {
+        val out = ByteArrayOutputStream()
+        val manifest: BackupArchive.Manifest
+        val bytesWritten: Long
+        ZipOutputStream(out).use { zipOut ->
+            // Entries of the backup outside of the archive are ignored
+            zipOut.putNextEntry(ZipEntry("info.pb"))
+            zipOut.write("not part of the archive".toByteArray())
+            zipOut.closeEntry()
+            BackupArchive.Writer(zipOut, store, CHUNK_SIZE, 2).use { writer ->
+                files.forEach { (name, data) ->
+                    writer.addFile(name, data.inputStream(), expectedSize(data))
+                }
+                manifest = writer.finish()
+                bytesWritten = writer.bytesWritten
+            }
+        }
+        store?.addBackup(manifest)
+        return Backup(out.toByteArray(), manifest, bytesWritten)
+    }
+
+    private fun readBackup(
+        bytes: ByteArray,
+        names: Set<String>? = null,
+        store: BackupArchive.ChunkStore? = null,
+    ): Map<String, ByteArray> {
+        val manifest = ZipInputStream(bytes.inputStream()).use {
+            BackupArchive.readManifest(it)
+        }
+        assertNotNull(manifest)
+        val read = LinkedHashMap<String, ByteArray>()
+        val handlers = manifest!!.files.map { it.name }
+            .filter { names == null || it in names }
+            .associateWith { name -> { input: InputStream -> read[name] = input.readBytes() } }
+        ZipInputStream(bytes.inputStream()).use {
+            BackupArchive.Reader(manifest, store).read(it, handlers)
+        }
+        return read
+    }
+
+    private fun readBackupAtRandom(
+        bytes: ByteArray,
+        store: BackupArchive.ChunkStore,
+    ): Map<String, ByteArray> {
+        val file = tmpFolder.newFile().apply { writeBytes(bytes) }
+        return file.inputStream().use { input ->
+            val zipFile = BackupZipFile.open(BackupZipFile.sourceOf(input.channel))
+            val reader = BackupArchive.Reader(BackupArchive.readManifest(zipFile)!!, store)
+            files.keys.associateWith { reader.open(zipFile, it)!!.use(InputStream::readBytes) }
+        }
+    }
+
+    private fun assertFilesEqual(expected: Map<String, ByteArray>, actual: Map<String, ByteArray>) {
+        assertEquals(expected.keys, actual.keys)
+        expected.forEach { (name, data) -> assertArrayEquals(name, data, actual[name]) }
+    }
+
+    private fun wallpaperChunk(bytes: ByteArray, index: Int): String {
+        val manifest = ZipInputStream(bytes.inputStream()).use { BackupArchive.readManifest(it) }
+        return manifest!!.files.first { it.name == "wallpaper.png" }.chunks[index].hash
+    }
+
+    /**
+     * Copies the entries of a backup, replacing their data with [transform], or dropping them
+     * when it returns null.
+     */
+    private fun rewriteEntries(
+        bytes: ByteArray,
+        transform: (String, ByteArray) -> ByteArray?,
+    ): ByteArray {
+        val out = ByteArrayOutputStream()
+        ZipOutputStream(out).use { zipOut ->
+            ZipInputStream(bytes.inputStream()).use { zipIn ->
+                while (true) {
+                    val entry = zipIn.nextEntry ?: break
+                    val data = transform(entry.name, zipIn.readBytes()) ?: continue
+                    zipOut.putNextEntry(ZipEntry(entry.name))
+                    zipOut.write(data)
+                    zipOut.closeEntry()
+                }
+            }
+        }
+        return out.toByteArray()
+    }
+
+    companion object {
+        private const val CHUNK_SIZE = 64 * 1024
+
+        /**
+         * Returns bytes that compress like a database: repeated rows with a few distinct values.
+         */
+        private fun compressibleBytes(size: Int): ByteArray {
+            val random = Random(0)
+            val row = "_id=%08d title=App %d intent=#Intent;component=com.example/.Main;end\n"
+            val out = ByteArrayOutputStream(size)
+            var id = 0
+            while (out.size() < size) {
+                out.write(row.format(id++, random.nextInt(1000)).toByteArray())
+            }
+            return out.toByteArray().copyOf(size)
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2022, Lawnchair
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app.lawnchair.backup
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicLong
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+import kotlin.random.Random
+
+/**
+ * Bytes read by [BackupZipFile] to show a backup and to restore parts of it.
+ */
+class BackupZipFileTest {
+
+    private val info = "backup info".toByteArray()
+    private val wallpaper = Random(1).nextBytes(3 * CHUNK_SIZE + 1000)
+    private val screenshot = Random(2).nextBytes(CHUNK_SIZE / 4)
+    private val database = ByteArray(2 * CHUNK_SIZE) { (it / 64 % 251).toByte() }
+    private val prefs = "<map><int name=\"grid\" value=\"5\" /></map>".toByteArray()
+
+    private val files = linkedMapOf(
+        "wallpaper.png" to wallpaper,
+        "screenshot.png" to screenshot,
+        "launcher.db" to database,
+        "prefs.xml" to prefs,
+    )
+    private val backup = createBackup()
+
+    @Test
+    fun infoOnly_readsDirectoryAndInfo() {
+        val source = CountingSource(backup)
+        val zipFile = BackupZipFile.open(source)
+
+        assertArrayEquals(info, zipFile.open("info.pb")!!.readBytes())
+        val manifest = BackupArchive.readManifest(zipFile)!!
+        assertEquals(files.keys.toList(), manifest.files.map { it.name })
+
+        // The central directory, the info and the manifest, none of the files
+        assertTrue("${source.bytesRead} bytes read", source.bytesRead < 4096)
+    }
+
+    @Test
+    fun preview_onlyReadsScreenshot() {
+        val source = CountingSource(backup)
+        val zipFile = BackupZipFile.open(source)
+        val reader = BackupArchive.Reader(BackupArchive.readManifest(zipFile)!!)
+
+        assertArrayEquals(screenshot, reader.open(zipFile, "screenshot.png")!!.readBytes())
+
+        assertTrue(source.bytesRead < screenshot.size + 4096)
+    }
+
+    @Test
+    fun layoutOnly_doesNotReadWallpaper() {
+        val source = CountingSource(backup)
+        val zipFile = BackupZipFile.open(source)
+        val reader = BackupArchive.Reader(BackupArchive.readManifest(zipFile)!!)
+
+        assertArrayEquals(database, reader.open(zipFile, "launcher.db")!!.readBytes())
+        assertArrayEquals(prefs, reader.open(zipFile, "prefs.xml")!!.readBytes())
+
+        // The database compresses well, and the wallpaper isn't read
+        assertTrue(source.bytesRead < database.size / 4)
+        assertTrue(source.bytesRead < backup.size - wallpaper.size)
+    }
+
+    @Test
+    fun fullRestore_readsEachByteOnce() {
+        val source = CountingSource(backup)
+        val zipFile = BackupZipFile.open(source)
+        val reader = BackupArchive.Reader(BackupArchive.readManifest(zipFile)!!)
+
+        files.forEach { (name, data) ->
+            assertArrayEquals(name, data, reader.open(zipFile, name)!!.readBytes())
+        }
+
+        assertTrue(source.bytesRead >= wallpaper.size + screenshot.size)
+        assertTrue(source.bytesRead <= backup.size)
+    }
+
+    @Test
+    fun parallelRestore_readsAllFiles() {
+        val source = CountingSource(backup)
+        val zipFile = BackupZipFile.open(source)
+        val reader = BackupArchive.Reader(BackupArchive.readManifest(zipFile)!!)
+
+        val executor = Executors.newFixedThreadPool(files.size)
+        try {
+            val results = files.keys.associateWith { name ->
+                executor.submit(Callable { reader.open(zipFile, name)!!.readBytes() })
+            }
+            results.forEach { (name, result) -> assertArrayEquals(name, files[name], result.get()) }
+        } finally {
+            executor.shutdown()
+        }
+        assertTrue(source.bytesRead <= backup.size)
+    }
+
+    @Test
+    fun missingFile_returnsNull() {
+        val zipFile = BackupZipFile.open(CountingSource(backup))
+        val reader = BackupArchive.Reader(BackupArchive.readManifest(zipFile)!!)
+
+        assertNull(zipFile.open("missing"))
+        assertNull(reader.open(zipFile, "missing"))
+    }
+
+    @Test
+    fun plainEntries_ofOlderBackups() {
+        val out = ByteArrayOutputStream()
+        ZipOutputStream(out).use { zipOut ->
+            files.forEach { (name, data) ->
+                zipOut.putNextEntry(ZipEntry(name))
+                zipOut.write(data)
+                zipOut.closeEntry()
+            }
+        }
+        val source = CountingSource(out.toByteArray())
+        val zipFile = BackupZipFile.open(source)
+
+        assertNull(BackupArchive.readManifest(zipFile))
+        assertArrayEquals(prefs, zipFile.open("prefs.xml")!!.readBytes())
+        assertTrue(source.bytesRead < 4096)
+    }
+
+    @Test
+    fun corruptedChunk_isDetected() {
+        val corrupted = backup.copyOf()
+        val zipFile = BackupZipFile.open(CountingSource(corrupted))
+        val manifest = BackupArchive.readManifest(zipFile)!!
+        // Chunks which don't compress are stored as is, so their data can be found in the zip
+        val chunk = wallpaper.copyOfRange(CHUNK_SIZE, 2 * CHUNK_SIZE)
+        corrupted[indexOf(corrupted, chunk) + 100]++
+
+        val reader = BackupArchive.Reader(manifest)
+        assertThrows(IOException::class.java) {
+            reader.open(zipFile, "wallpaper.png")!!.readBytes()
+        }
+        assertArrayEquals(database, reader.open(zipFile, "launcher.db")!!.readBytes())
+    }
+
+    @Test
+    fun notZip_throws() {
+        assertThrows(IOException::class.java) {
+            BackupZipFile.open(CountingSource(Random(3).nextBytes(1000)))
+        }
+        assertThrows(IOException::class.java) {
+            BackupZipFile.open(CountingSource(ByteArray(0)))
+        }
+    }
+
+    private fun createBackup(): ByteArray {
+        val out = ByteArrayOutputStream()
+        ZipOutputStream(out).use { zipOut ->
+            zipOut.putNextEntry(ZipEntry("info.pb"))
+            zipOut.write(info)
+            zipOut.closeEntry()
+            BackupArchive.Writer(zipOut, chunkSize = CHUNK_SIZE).use { writer ->
+                files.forEach { (name, data) -> writer.addFile(name, data.inputStream()) }
+                writer.finish()
+            }
+        }
+        return out.toByteArray()
+    }
+
+    private fun indexOf(array: ByteArray, target: ByteArray): Int {
+        outer@ for (i in 0..array.size - target.size) {
+            for (j in target.indices) {
+                if (array[i + j] != target[j]) continue@outer
+            }
+            return i
+        }
+        throw AssertionError("Not found")
+    }
+
+    /**
+     * Counts the bytes read from a zip in memory.
+     */
+    private class CountingSource(private val bytes: ByteArray) : BackupZipFile.Source {
+
+        private val count = AtomicLong()
+        val bytesRead get() = count.get()
+
+        override val size = bytes.size.toLong()
+
+        override fun read(buffer: ByteBuffer, position: Long): Int {
+            if (position >= bytes.size) return -1
+            val length = minOf(buffer.remaining().toLong(), bytes.size - position).toInt()
+            buffer.put(bytes, position.toInt(), length)
+            count.addAndGet(length.toLong())
+            return length
+        }
+    }
+
+    companion object {
+        private const val CHUNK_SIZE = 256 * 1024
+    }
+}
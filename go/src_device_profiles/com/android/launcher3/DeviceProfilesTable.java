@@ -0,0 +1,40 @@
+/*
+ * Generated from the res/xml/device_profiles.xml next to this source directory, by
+ * GenerateDeviceProfilesTable in build.gradle. Do not edit, run
+ * ./gradlew updateDeviceProfilesTables instead.
+ */
+
+package com.android.launcher3;
+
+final class DeviceProfilesTable {
+
+    /** Attributes of each grid option, as pairs of styleable index and value. */
+    static final Object[][] GRID_OPTIONS = {
+            {
+                    R.styleable.GridDisplayOption_name, "4_by_4",
+                    R.styleable.GridDisplayOption_numRows, 4,
+                    R.styleable.GridDisplayOption_numColumns, 4,
+                    R.styleable.GridDisplayOption_numFolderRows, 4,
+                    R.styleable.GridDisplayOption_numFolderColumns, 4,
+                    R.styleable.GridDisplayOption_numHotseatIcons, 4,
+                    R.styleable.GridDisplayOption_dbFile, "launcher.db",
+                    R.styleable.GridDisplayOption_defaultLayoutId, R.xml.default_workspace_4x4,
+            },
+    };
+
+    /** Attributes of the display options of each grid option. */
+    static final Object[][][] DISPLAY_OPTIONS = {
+            {
+                    {
+                            R.styleable.ProfileDisplayOption_name, "Go Device",
+                            R.styleable.ProfileDisplayOption_minWidthDps, 296.0f,
+                            R.styleable.ProfileDisplayOption_minHeightDps, 491.33f,
+                            R.styleable.ProfileDisplayOption_iconImageSize, 60.0f,
+                            R.styleable.ProfileDisplayOption_iconTextSize, 14.0f,
+                            R.styleable.ProfileDisplayOption_canBeDefault, true,
+                    },
+            },
+    };
+
+    private DeviceProfilesTable() { }
+}
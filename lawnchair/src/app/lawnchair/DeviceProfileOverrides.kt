@@ -59,6 +59,8 @@ class DeviceProfileOverrides(context: Context) {
 
     fun getTextFactors() = TextFactors(preferenceManager2)
 
+    fun getProfileOptions(context: Context) = ProfileOptions(context, preferenceManager2)
+
     data class DBGridInfo(
         var numHotseatColumns: Int,
         var numRows: Int,
@@ -116,6 +118,30 @@ class DeviceProfileOverrides(context: Context) {
         }
     }
 
+    /**
+     * Preferences read by [com.android.launcher3.DeviceProfile] itself, so that a profile can be
+     * reused for as long as they are unchanged.
+     */
+    data class ProfileOptions(
+        val textFactors: TextFactors,
+        val drawerCellHeightFactor: Float,
+        val hotseatQsb: Boolean,
+        val showNotificationCount: Boolean,
+        val notificationDotColor: Int,
+    ) {
+        constructor(
+            context: Context,
+            prefs2: PreferenceManager2,
+        ) : this(
+            textFactors = TextFactors(prefs2),
+            drawerCellHeightFactor = prefs2.drawerCellHeightFactor.firstBlocking(),
+            hotseatQsb = prefs2.hotseatQsb.firstBlocking(),
+            showNotificationCount = prefs2.showNotificationCount.firstBlocking(),
+            notificationDotColor = prefs2.notificationDotColor.firstBlocking()
+                .colorPreferenceEntry.lightColor(context),
+        )
+    }
+
     data class TextFactors(
         var iconTextSizeFactor: Float,
         var allAppsIconTextSizeFactor: Float,
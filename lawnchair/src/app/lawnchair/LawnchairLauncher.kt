@@ -161,6 +161,14 @@ class LawnchairLauncher : QuickstepLauncher(), LifecycleOwner,
     private val insetsController by lazy { WindowInsetsControllerCompat(launcher.window, rootView) }
 
     private val themeProvider by lazy { ThemeProvider.INSTANCE.get(this) }
+    private val colorSchemeChangeListener = object : ThemeProvider.ColorSchemeChangeListener {
+        override fun onColorSchemeChanged() {
+            // Schemes for new seed colors finish generating in the background
+            runOnUiThread {
+                if (hasBeenResumed()) updateTheme() else addOnResumeCallback(::updateTheme)
+            }
+        }
+    }
     private lateinit var colorScheme: ColorScheme
 
     private val noStatusBarStateListener = object : StateManager.StateListener<LauncherState> {
@@ -185,6 +193,7 @@ class LawnchairLauncher : QuickstepLauncher(), LifecycleOwner,
         lifecycleRegistry.handleLifecycleEvent(Lifecycle.Event.ON_CREATE)
 
         prefs.launcherTheme.subscribeChanges(this, ::updateTheme)
+        themeProvider.addListener(colorSchemeChangeListener)
 
         if (prefs.autoLaunchRoot.get()) {
             lifecycleScope.launch {
@@ -323,6 +332,7 @@ class LawnchairLauncher : QuickstepLauncher(), LifecycleOwner,
 
     override fun onDestroy() {
         super.onDestroy()
+        themeProvider.removeListener(colorSchemeChangeListener)
         lifecycleRegistry.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY)
     }
 
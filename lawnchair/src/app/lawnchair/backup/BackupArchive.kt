@@ -0,0 +1,596 @@
+/*
+ * Copyright 2022, Lawnchair
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app.lawnchair.backup
+
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.security.MessageDigest
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.Inflater
+import java.util.zip.InflaterInputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipInputStream
+import java.util.zip.ZipOutputStream
+
+/**
+ * Chunked, content addressed storage of the files of a backup inside its zip.
+ *
+ * Files are split into chunks, which are hashed and compressed on a bounded pool of threads and
+ * stored once under `chunks/<sha256>`. The [Manifest], written last, lists the chunks of each
+ * file. Reading verifies every chunk and file hash, either while streaming the whole archive or
+ * when opening a single file through a [BackupZipFile].
+ *
+ * With a [ChunkStore], chunks which are already in it are only referenced by the manifest, so a
+ * repeated backup only writes the chunks which changed since the previous ones.
+ *
+ * It only depends on `java.*` so that it can also be tested on a plain JVM.
+ */
+object BackupArchive {
+
+    const val MANIFEST_FILE_NAME = "manifest"
+    const val CHUNK_PREFIX = "chunks/"
+
+    const val DEFAULT_CHUNK_SIZE = 1 shl 20
+    const val DEFAULT_MAX_STORED_BACKUPS = 3
+    @JvmField
+    val DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors().coerceIn(1, 4)
+
+    private const val MANIFEST_VERSION = 2
+    // Chunks of the first version were all in the archive
+    private const val MANIFEST_VERSION_WITHOUT_REFERENCES = 1
+
+    class Chunk(
+        val hash: String,
+        val size: Int,
+        /** Whether the stored chunk is deflated */
+        val compressed: Boolean,
+        /** Whether the chunk is only in the [ChunkStore] of the app, not in the archive */
+        val referenced: Boolean = false,
+    )
+
+    class FileEntry(
+        val name: String,
+        val size: Long,
+        val hash: String,
+        val chunks: List<Chunk>,
+    )
+
+    class Manifest(val files: List<FileEntry>) {
+
+        fun writeTo(out: DataOutputStream) {
+            out.writeInt(MANIFEST_VERSION)
+            out.writeInt(files.size)
+            files.forEach { file ->
+                out.writeUTF(file.name)
+                out.writeLong(file.size)
+                out.writeUTF(file.hash)
+                out.writeInt(file.chunks.size)
+                file.chunks.forEach { chunk ->
+                    out.writeUTF(chunk.hash)
+                    out.writeInt(chunk.size)
+                    out.writeBoolean(chunk.compressed)
+                    out.writeBoolean(chunk.referenced)
+                }
+            }
+            out.flush()
+        }
+
+        companion object {
+
+            @JvmStatic
+            @Throws(IOException::class)
+            fun readFrom(input: InputStream): Manifest {
+                val data = DataInputStream(input)
+                val version = data.readInt()
+                if (version != MANIFEST_VERSION && version != MANIFEST_VERSION_WITHOUT_REFERENCES) {
+                    throw IOException("Unsupported manifest version $version")
+                }
+                val files = List(data.readInt()) {
+                    val name = data.readUTF()
+                    val size = data.readLong()
+                    val hash = data.readUTF()
+                    val chunks = List(data.readInt()) {
+                        Chunk(
+                            hash = data.readUTF(),
+                            size = data.readInt(),
+                            compressed = data.readBoolean(),
+                            referenced = version == MANIFEST_VERSION && data.readBoolean(),
+                        )
+                    }
+                    FileEntry(name, size, hash, chunks)
+                }
+                return Manifest(files)
+            }
+        }
+    }
+
+    /**
+     * Chunks of the previous backups, kept by the app in the private directory [dir].
+     *
+     * A backup which references them can only be restored by the same install, and only while
+     * it is one of the last [maxBackups] backups added with [addBackup]. Older chunks are
+     * deleted then.
+     */
+    class ChunkStore @JvmOverloads constructor(
+        private val dir: File,
+        private val maxBackups: Int = DEFAULT_MAX_STORED_BACKUPS,
+    ) {
+
+        private val chunksDir = File(dir, "chunks")
+        private val manifestsDir = File(dir, "manifests")
+
+        /**
+         * Returns whether the chunk with [hash] is stored deflated, or null if it isn't stored.
+         */
+        fun find(hash: String): Boolean? = when {
+            chunkFile(hash, true).isFile -> true
+            chunkFile(hash, false).isFile -> false
+            else -> null
+        }
+
+        @Throws(IOException::class)
+        fun read(chunk: Chunk): ByteArray {
+            val file = chunkFile(chunk.hash, chunk.compressed)
+            if (!file.isFile) {
+                throw IOException("Missing chunk ${chunk.hash} of a previous backup")
+            }
+            return file.inputStream().buffered().use { readChunk(it, chunk) }
+        }
+
+        @Throws(IOException::class)
+        fun write(hash: String, compressed: Boolean, data: ByteArray) {
+            if (find(hash) != null) return
+            writeAtomically(chunkFile(hash, compressed)) { it.write(data) }
+        }
+
+        /**
+         * Keeps the chunks of [manifest], along with those of the previous backups up to
+         * [maxBackups], and deletes all the others.
+         */
+        @Throws(IOException::class)
+        fun addBackup(manifest: Manifest) {
+            val manifests = manifestFiles()
+            val id = (manifests.lastOrNull()?.name?.toLong() ?: 0) + 1
+            val manifestFile = File(manifestsDir, id.toString())
+            writeAtomically(manifestFile) { manifest.writeTo(DataOutputStream(it)) }
+
+            val retained = (manifests + manifestFile).takeLast(maxBackups)
+            (manifests - retained.toSet()).forEach { it.delete() }
+            val usedChunks = HashSet<String>()
+            retained.forEach { file ->
+                file.inputStream().buffered().use { Manifest.readFrom(it) }.files.forEach { entry ->
+                    entry.chunks.forEach { usedChunks.add(chunkFile(it.hash, it.compressed).name) }
+                }
+            }
+            chunksDir.listFiles()?.forEach { if (it.name !in usedChunks) it.delete() }
+        }
+
+        private fun manifestFiles(): List<File> =
+            manifestsDir.listFiles { file -> file.name.all(Char::isDigit) }
+                ?.sortedBy { it.name.toLong() }
+                .orEmpty()
+
+        private fun chunkFile(hash: String, compressed: Boolean) =
+            File(chunksDir, if (compressed) "$hash.z" else hash)
+
+        private fun writeAtomically(file: File, write: (OutputStream) -> Unit) {
+            val dir = file.parentFile!!
+            if (!dir.isDirectory && !dir.mkdirs()) {
+                throw IOException("Can't create $dir")
+            }
+            val tmpFile = File(dir, "${file.name}.tmp")
+            tmpFile.outputStream().buffered().use(write)
+            if (!tmpFile.renameTo(file)) {
+                tmpFile.delete()
+                throw IOException("Can't write $file")
+            }
+        }
+    }
+
+    /**
+     * Writes files into [out]. The caller owns [out] and can add its own entries before or after
+     * the archive.
+     *
+     * Chunks found in [store] are only referenced, and the chunks written to [out] are added to
+     * it, so that the next backup can reference them. The backup should be added to [store] with
+     * [ChunkStore.addBackup] once it is complete.
+     */
+    class Writer @JvmOverloads constructor(
+        private val out: ZipOutputStream,
+        private val store: ChunkStore? = null,
+        private val chunkSize: Int = DEFAULT_CHUNK_SIZE,
+        parallelism: Int = DEFAULT_PARALLELISM,
+    ) : Closeable {
+
+        private val executor: ExecutorService = Executors.newFixedThreadPool(parallelism)
+        // Bounds the memory used by the chunks read ahead of the one being written
+        private val maxPending = parallelism * 2
+        private val pending = ArrayDeque<Future<EncodedChunk>>()
+        // A deflater for each thread of the pool, reset for each chunk and ended on close
+        private val deflaters = ThreadLocal<Deflater>()
+        private val allDeflaters = ArrayList<Deflater>()
+
+        private val files = ArrayList<FileEntry>()
+        private val storedChunks = HashMap<String, Boolean>()
+
+        /** Bytes of chunk data written to [out] so far */
+        var bytesWritten = 0L
+            private set
+
+        /**
+         * Streams [input] into the archive as [name], in chunks of [chunkSize]. When the
+         * [expectedSize] of the file is known, the last chunk is only allocated for what remains.
+         */
+        @JvmOverloads
+        @Throws(IOException::class)
+        fun addFile(name: String, input: InputStream, expectedSize: Long = -1) {
+            val digest = sha256()
+            val chunks = ArrayList<Chunk>()
+            var size = 0L
+            while (true) {
+                val remaining = expectedSize - size
+                var offset = 0
+                val buffer = if (remaining > 0) {
+                    ByteArray(minOf(chunkSize.toLong(), remaining).toInt())
+                } else {
+                    // The file is longer than expected, or its size isn't known
+                    val first = input.read()
+                    if (first < 0) break
+                    offset = 1
+                    ByteArray(chunkSize).also { it[0] = first.toByte() }
+                }
+                val read = offset + input.readFully(buffer, offset)
+                if (read == 0) break
+                digest.update(buffer, 0, read)
+                size += read
+                if (pending.size >= maxPending) {
+                    chunks.add(writeChunk(pending.removeFirst().await()))
+                }
+                pending.addLast(executor.submit(Callable { encode(buffer, read) }))
+                if (read < buffer.size) break
+            }
+            while (pending.isNotEmpty()) {
+                chunks.add(writeChunk(pending.removeFirst().await()))
+            }
+            files.add(FileEntry(name, size, digest.digest().toHex(), chunks))
+        }
+
+        /**
+         * Writes the manifest of the added files, which must be done once all files are added.
+         */
+        @Throws(IOException::class)
+        fun finish(): Manifest {
+            val manifest = Manifest(ArrayList(files))
+            out.putNextEntry(ZipEntry(MANIFEST_FILE_NAME))
+            manifest.writeTo(DataOutputStream(out))
+            out.closeEntry()
+            return manifest
+        }
+
+        override fun close() {
+            pending.forEach { it.cancel(true) }
+            pending.clear()
+            executor.shutdownNow()
+            // A chunk still being encoded may be using its deflater, which is then left to the GC
+            if (!executor.awaitTermination(1, TimeUnit.SECONDS)) return
+            synchronized(allDeflaters) {
+                allDeflaters.forEach { it.end() }
+                allDeflaters.clear()
+            }
+        }
+
+        private fun encode(buffer: ByteArray, length: Int): EncodedChunk {
+            val hash = sha256().apply { update(buffer, 0, length) }.digest().toHex()
+            // Chunks of a previous backup are neither compressed nor written again
+            store?.find(hash)?.let { compressed ->
+                return EncodedChunk(hash, length, null, compressed)
+            }
+            val deflater = deflater().apply { reset() }
+            val deflated = ByteArrayOutputStream(length)
+            // Closing the stream finishes the deflater without ending it, so it can be reused
+            DeflaterOutputStream(deflated, deflater).use { it.write(buffer, 0, length) }
+            // Already compressed data, like the wallpaper, is stored as is
+            return if (deflated.size() < length) {
+                EncodedChunk(hash, length, deflated.toByteArray(), true)
+            } else {
+                val data = if (length == buffer.size) buffer else buffer.copyOf(length)
+                EncodedChunk(hash, length, data, false)
+            }
+        }
+
+        private fun deflater(): Deflater = deflaters.get()
+            ?: Deflater(Deflater.DEFAULT_COMPRESSION, true).also {
+                deflaters.set(it)
+                synchronized(allDeflaters) { allDeflaters.add(it) }
+            }
+
+        private fun writeChunk(chunk: EncodedChunk): Chunk {
+            storedChunks[chunk.hash]?.let { compressed ->
+                return Chunk(chunk.hash, chunk.size, compressed)
+            }
+            val data = chunk.data ?: return Chunk(chunk.hash, chunk.size, chunk.compressed, true)
+
+            // The chunk is already compressed, so it is stored without compressing it again
+            val entry = ZipEntry(CHUNK_PREFIX + chunk.hash).apply {
+                method = ZipEntry.STORED
+                size = data.size.toLong()
+                compressedSize = data.size.toLong()
+                crc = CRC32().apply { update(data) }.value
+            }
+            out.putNextEntry(entry)
+            out.write(data)
+            out.closeEntry()
+            bytesWritten += data.size
+            storedChunks[chunk.hash] = chunk.compressed
+            store?.write(chunk.hash, chunk.compressed, data)
+            return Chunk(chunk.hash, chunk.size, chunk.compressed)
+        }
+    }
+
+    /**
+     * Reads the files of an archive listed in [manifest]. Referenced chunks are read from
+     * [store], and reading them fails if it doesn't have them anymore.
+     */
+    class Reader @JvmOverloads constructor(
+        private val manifest: Manifest,
+        private val store: ChunkStore? = null,
+    ) {
+
+        /**
+         * Streams the files with a handler to it, verifying their hashes. A handler reading a
+         * corrupted file gets an [IOException] from its stream.
+         */
+        @Throws(IOException::class)
+        fun read(zipIn: ZipInputStream, handlers: Map<String, (InputStream) -> Unit>) {
+            val chunks = ChunkSequence(zipIn, manifest, store)
+            manifest.files.forEach { file ->
+                val handler = handlers[file.name]
+                if (handler == null) {
+                    file.chunks.forEach { chunks.skip(it) }
+                    return@forEach
+                }
+                FileStream(file, chunks::next).use { stream ->
+                    handler(stream)
+                    // Make sure the whole file is verified and the chunks are consumed in order
+                    stream.skipToEnd()
+                }
+            }
+        }
+
+        /**
+         * Opens [name] from [zipFile], only reading its own chunks, or returns null if there is
+         * no such file. Its hashes are verified as it is read.
+         */
+        @Throws(IOException::class)
+        fun open(zipFile: BackupZipFile, name: String): InputStream? {
+            val file = manifest.files.firstOrNull { it.name == name } ?: return null
+            return FileStream(file) { chunk ->
+                if (chunk.referenced) return@FileStream readReferenced(store, chunk)
+                val input = zipFile.open(CHUNK_PREFIX + chunk.hash)
+                    ?: throw IOException("Missing chunk ${chunk.hash}")
+                input.use { readChunk(it, chunk) }
+            }
+        }
+    }
+
+    /**
+     * Reads the manifest of an archive, or returns null if it isn't a chunked archive.
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun readManifest(zipIn: ZipInputStream): Manifest? {
+        while (true) {
+            val entry = zipIn.nextEntry ?: return null
+            if (entry.name == MANIFEST_FILE_NAME) {
+                return Manifest.readFrom(zipIn)
+            }
+        }
+    }
+
+    /**
+     * Reads the manifest of [zipFile], or returns null if it isn't a chunked archive.
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun readManifest(zipFile: BackupZipFile): Manifest? =
+        zipFile.open(MANIFEST_FILE_NAME)?.use { Manifest.readFrom(it) }
+
+    private class EncodedChunk(
+        val hash: String,
+        val size: Int,
+        /** The data to write, or null if the chunk is already in the [ChunkStore] */
+        val data: ByteArray?,
+        val compressed: Boolean,
+    )
+
+    /**
+     * Returns the chunks of the archive in the order of the manifest. Chunks are stored in that
+     * order, except for repeated chunks, which are kept in memory until their last use.
+     */
+    private class ChunkSequence(
+        private val zipIn: ZipInputStream,
+        manifest: Manifest,
+        private val store: ChunkStore?,
+    ) {
+
+        private val remainingUses = HashMap<String, Int>()
+        private val repeatedChunks = HashMap<String, ByteArray>()
+
+        init {
+            manifest.files.forEach { file ->
+                file.chunks.forEach {
+                    if (!it.referenced) remainingUses.merge(it.hash, 1, Int::plus)
+                }
+            }
+        }
+
+        fun next(chunk: Chunk): ByteArray {
+            if (chunk.referenced) return readReferenced(store, chunk)
+            val uses = remainingUses.merge(chunk.hash, -1, Int::plus)!!
+            val data = repeatedChunks[chunk.hash] ?: readChunk(zipIn.nextChunkEntry(chunk), chunk)
+            if (uses > 0) {
+                repeatedChunks[chunk.hash] = data
+            } else {
+                repeatedChunks.remove(chunk.hash)
+            }
+            return data
+        }
+
+        fun skip(chunk: Chunk) {
+            if (chunk.referenced) return
+            if (repeatedChunks.containsKey(chunk.hash) || remainingUses[chunk.hash]!! > 1) {
+                next(chunk)
+            } else {
+                // Not needed again, so it doesn't need to be read
+                remainingUses.remove(chunk.hash)
+                zipIn.nextChunkEntry(chunk)
+            }
+        }
+
+        private fun ZipInputStream.nextChunkEntry(chunk: Chunk): ZipInputStream {
+            while (true) {
+                val entry = nextEntry ?: throw IOException("Missing chunk ${chunk.hash}")
+                if (!entry.name.startsWith(CHUNK_PREFIX)) continue
+                if (entry.name != CHUNK_PREFIX + chunk.hash) {
+                    throw IOException("Unexpected chunk ${entry.name}, expected ${chunk.hash}")
+                }
+                return this
+            }
+        }
+    }
+
+    /**
+     * Concatenates the chunks of [file], and verifies the file hash once it is read.
+     */
+    private class FileStream(
+        private val file: FileEntry,
+        private val readChunk: (Chunk) -> ByteArray,
+    ) : InputStream() {
+
+        private val digest = sha256()
+        private var chunkIndex = 0
+        private var current: ByteArray? = null
+        private var position = 0
+
+        override fun read(): Int {
+            val data = nextData() ?: return -1
+            return data[position++].toInt() and 0xff
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (len == 0) return 0
+            val data = nextData() ?: return -1
+            val count = minOf(len, data.size - position)
+            System.arraycopy(data, position, b, off, count)
+            position += count
+            return count
+        }
+
+        fun skipToEnd() {
+            while (nextData() != null) {
+                position = current!!.size
+            }
+        }
+
+        private fun nextData(): ByteArray? {
+            current?.let { if (position < it.size) return it }
+            if (chunkIndex == file.chunks.size) {
+                if (current != null) {
+                    current = null
+                    val hash = digest.digest().toHex()
+                    if (hash != file.hash) {
+                        throw IOException("Hash mismatch for ${file.name}")
+                    }
+                }
+                return null
+            }
+            val data = readChunk(file.chunks[chunkIndex++])
+            digest.update(data)
+            current = data
+            position = 0
+            return data
+        }
+    }
+
+    private fun readChunk(input: InputStream, chunk: Chunk): ByteArray {
+        val data = ByteArray(chunk.size)
+        val read = if (chunk.compressed) {
+            val inflater = Inflater(true)
+            try {
+                InflaterInputStream(input, inflater).readFully(data)
+            } finally {
+                inflater.end()
+            }
+        } else {
+            input.readFully(data)
+        }
+        if (read != chunk.size) {
+            throw IOException("Truncated chunk ${chunk.hash}")
+        }
+        verify(chunk, data)
+        return data
+    }
+
+    private fun readReferenced(store: ChunkStore?, chunk: Chunk): ByteArray {
+        store ?: throw IOException("Chunk ${chunk.hash} is only in a previous backup")
+        return store.read(chunk)
+    }
+
+    private fun verify(chunk: Chunk, data: ByteArray) {
+        if (data.size != chunk.size || sha256().digest(data).toHex() != chunk.hash) {
+            throw IOException("Hash mismatch for chunk ${chunk.hash}")
+        }
+    }
+
+    private fun sha256() = MessageDigest.getInstance("SHA-256")
+
+    private fun ByteArray.toHex() = joinToString("") { "%02x".format(it) }
+
+    /**
+     * Reads from [offset] until [buffer] is full or the end of the stream, and returns the bytes
+     * read.
+     */
+    private fun InputStream.readFully(buffer: ByteArray, offset: Int = 0): Int {
+        var read = 0
+        while (offset + read < buffer.size) {
+            val count = read(buffer, offset + read, buffer.size - offset - read)
+            if (count < 0) break
+            read += count
+        }
+        return read
+    }
+
+    private fun <T> Future<T>.await(): T = try {
+        get()
+    } catch (e: ExecutionException) {
+        throw e.cause ?: e
+    }
+}
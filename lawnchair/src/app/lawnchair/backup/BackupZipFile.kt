@@ -0,0 +1,221 @@
+/*
+ * Copyright 2022, Lawnchair
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app.lawnchair.backup
+
+import java.io.EOFException
+import java.io.IOException
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.util.zip.Inflater
+import java.util.zip.InflaterInputStream
+import java.util.zip.ZipEntry
+
+/**
+ * Random access to the entries of a backup zip through its central directory, so that an entry
+ * is read without going through the entries before it. Only positional reads are used, so
+ * entries can be read from multiple threads at once.
+ *
+ * Zip64 archives and archives with a comment aren't supported, as backups are never written
+ * that way. It only depends on `java.*` so that it can also be tested on a plain JVM.
+ */
+class BackupZipFile private constructor(
+    private val source: Source,
+    private val entries: Map<String, Entry>,
+) {
+
+    /**
+     * Bytes of a zip, read at any position.
+     */
+    interface Source {
+        val size: Long
+
+        /**
+         * Reads into [buffer] from [position], and returns the number of bytes read, or -1 at
+         * the end of the source.
+         */
+        fun read(buffer: ByteBuffer, position: Long): Int
+    }
+
+    class Entry(
+        val name: String,
+        val method: Int,
+        val compressedSize: Long,
+        val size: Long,
+        internal val localHeaderOffset: Long,
+    )
+
+    val names: Set<String> get() = entries.keys
+
+    fun getEntry(name: String): Entry? = entries[name]
+
+    /**
+     * Opens the data of [name], or returns null if there is no such entry.
+     */
+    @Throws(IOException::class)
+    fun open(name: String): InputStream? {
+        val entry = entries[name] ?: return null
+        val header = source.readFully(entry.localHeaderOffset, LOCAL_HEADER_SIZE)
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw IOException("Invalid local header for $name")
+        }
+        val dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE +
+            header.getUShort(26) + header.getUShort(28)
+        val data = EntryStream(source, dataOffset, entry.compressedSize)
+        return when (entry.method) {
+            ZipEntry.STORED -> data
+            ZipEntry.DEFLATED -> {
+                val inflater = Inflater(true)
+                object : InflaterInputStream(data, inflater) {
+                    override fun close() {
+                        super.close()
+                        inflater.end()
+                    }
+                }
+            }
+            else -> throw IOException("Unsupported compression method ${entry.method}")
+        }
+    }
+
+    /**
+     * Reads the range of an entry's data, in reads of at most [BUFFER_SIZE].
+     */
+    private class EntryStream(
+        private val source: Source,
+        private var position: Long,
+        size: Long,
+    ) : InputStream() {
+
+        private val end = position + size
+
+        override fun read(): Int {
+            val b = ByteArray(1)
+            return if (read(b, 0, 1) < 0) -1 else b[0].toInt() and 0xff
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (len == 0) return 0
+            if (position >= end) return -1
+            val count = minOf(len.toLong(), end - position, BUFFER_SIZE.toLong()).toInt()
+            val read = source.read(ByteBuffer.wrap(b, off, count), position)
+            if (read < 0) throw EOFException("Truncated zip entry")
+            position += read
+            return read
+        }
+
+        override fun skip(n: Long): Long {
+            val count = minOf(n, end - position).coerceAtLeast(0)
+            position += count
+            return count
+        }
+
+        override fun available() = minOf(end - position, Int.MAX_VALUE.toLong()).toInt()
+    }
+
+    companion object {
+
+        private const val BUFFER_SIZE = 64 * 1024
+
+        private const val END_SIGNATURE = 0x06054b50
+        private const val END_SIZE = 22
+        private const val CENTRAL_HEADER_SIGNATURE = 0x02014b50
+        private const val CENTRAL_HEADER_SIZE = 46
+        private const val LOCAL_HEADER_SIGNATURE = 0x04034b50
+        private const val LOCAL_HEADER_SIZE = 30
+        private const val ZIP64_MARKER = 0xffffffffL
+
+        /**
+         * Reads the central directory of the zip in [source].
+         *
+         * @throws IOException if it isn't a zip this can read
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun open(source: Source): BackupZipFile {
+            if (source.size < END_SIZE) throw IOException("Not a zip")
+            val end = source.readFully(source.size - END_SIZE, END_SIZE)
+            if (end.getInt(0) != END_SIGNATURE) {
+                throw IOException("Unsupported zip, no end of central directory")
+            }
+            val count = end.getUShort(10)
+            val directorySize = end.getUInt(12)
+            val directoryOffset = end.getUInt(16)
+            if (directorySize == ZIP64_MARKER || directoryOffset == ZIP64_MARKER) {
+                throw IOException("Unsupported zip64")
+            }
+
+            val directory = source.readFully(directoryOffset, directorySize.toInt())
+            val entries = LinkedHashMap<String, Entry>(count)
+            var offset = 0
+            repeat(count) {
+                if (directory.getInt(offset) != CENTRAL_HEADER_SIGNATURE) {
+                    throw IOException("Invalid central directory")
+                }
+                val nameLength = directory.getUShort(offset + 28)
+                val nameBytes = ByteArray(nameLength)
+                directory.position(offset + CENTRAL_HEADER_SIZE)
+                directory.get(nameBytes)
+                val name = String(nameBytes, Charsets.UTF_8)
+                val entry = Entry(
+                    name = name,
+                    method = directory.getUShort(offset + 10),
+                    compressedSize = directory.getUInt(offset + 20),
+                    size = directory.getUInt(offset + 24),
+                    localHeaderOffset = directory.getUInt(offset + 42),
+                )
+                if (entry.compressedSize == ZIP64_MARKER
+                    || entry.localHeaderOffset == ZIP64_MARKER) {
+                    throw IOException("Unsupported zip64")
+                }
+                entries[name] = entry
+                offset += CENTRAL_HEADER_SIZE + nameLength +
+                    directory.getUShort(offset + 30) + directory.getUShort(offset + 32)
+            }
+            return BackupZipFile(source, entries)
+        }
+
+        /**
+         * Returns a source reading [channel], which must support positional reads.
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun sourceOf(channel: FileChannel): Source {
+            // Throws for channels which can't seek, like pipes
+            val size = channel.size()
+            return object : Source {
+                override val size = size
+                override fun read(buffer: ByteBuffer, position: Long) =
+                    channel.read(buffer, position)
+            }
+        }
+
+        private fun Source.readFully(position: Long, length: Int): ByteBuffer {
+            val buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN)
+            while (buffer.hasRemaining()) {
+                if (read(buffer, position + buffer.position()) < 0) {
+                    throw EOFException("Truncated zip")
+                }
+            }
+            return buffer.rewind() as ByteBuffer
+        }
+
+        private fun ByteBuffer.getUShort(index: Int) = getShort(index).toInt() and 0xffff
+
+        private fun ByteBuffer.getUInt(index: Int) = getInt(index).toLong() and 0xffffffffL
+    }
+}
@@ -6,6 +6,7 @@ import android.content.Context
 import android.graphics.Bitmap
 import android.graphics.BitmapFactory
 import android.net.Uri
+import android.os.ParcelFileDescriptor
 import androidx.core.graphics.drawable.toBitmap
 import app.lawnchair.LawnchairProto.BackupInfo
 import app.lawnchair.data.AppDatabase
@@ -21,10 +22,14 @@ import com.android.launcher3.R
 import com.android.launcher3.model.DeviceGridState
 import com.google.protobuf.Timestamp
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
+import java.io.ByteArrayOutputStream
 import java.io.File
 import java.io.FileInputStream
 import java.io.FileOutputStream
+import java.io.IOException
 import java.io.InputStream
 import java.text.SimpleDateFormat
 import java.util.*
@@ -40,63 +45,152 @@ class LawnchairBackup(
     lateinit var info: BackupInfo
     var screenshot: Bitmap? = null
     var wallpaper: Bitmap? = null
+    // Null for backups made before the files were stored in chunks
+    private var manifest: BackupArchive.Manifest? = null
 
     suspend fun readInfoAndPreview() {
         var tmpScreenshot: Bitmap? = null
         var tmpWallpaper: Bitmap? = null
-        readZip(mapOf(
-            INFO_FILE_NAME to { info = BackupInfo.newBuilder().mergeFrom(it).build() },
+        val previewHandlers = mapOf<String, (InputStream) -> Unit>(
             SCREENSHOT_FILE_NAME to { tmpScreenshot = BitmapFactory.decodeStream(it) },
             WALLPAPER_FILE_NAME to { tmpWallpaper = BitmapFactory.decodeStream(it) },
-        ))
+        )
+        val infoHandlers = mapOf<String, (InputStream) -> Unit>(
+            INFO_FILE_NAME to { info = BackupInfo.newBuilder().mergeFrom(it).build() },
+            BackupArchive.MANIFEST_FILE_NAME to { manifest = BackupArchive.Manifest.readFrom(it) },
+        )
+        // Only the info and the previews are read when the backup can be read at random
+        val readRandomly = withZipFile { zipFile ->
+            infoHandlers.forEach { (name, handler) -> zipFile.open(name)?.use(handler) }
+            readFiles(zipFile, previewHandlers)
+        }
+        if (!readRandomly) {
+            // Previews of older backups are plain entries, read along with the info
+            readZip(infoHandlers + previewHandlers)
+            manifest?.let { readArchive(it, previewHandlers) }
+        }
         val size = max(info.previewWidth, info.previewHeight).coerceAtMost(4000)
         screenshot = tmpScreenshot?.scaleDownTo(size)
         wallpaper = tmpWallpaper?.scaleDownToDisplaySize(context)
     }
 
     suspend fun restore(selectedContents: Int) {
-        val handlers = mutableMapOf<String, suspend (InputStream) -> Unit>()
+        val handlers = mutableMapOf<String, (InputStream) -> Unit>()
         val contents = selectedContents and info.contents
         if (contents.hasFlag(INCLUDE_LAYOUT_AND_SETTINGS)) {
             handlers.putAll(getFiles(context, forRestore = true).mapValues { entry ->
                 {
                     val file = entry.value
                     file.parentFile?.mkdirs()
-                    it.copyTo(file.outputStream())
+                    // Only replace the file once it is fully read and verified
+                    val tmpFile = File(file.parentFile, "${file.name}.tmp")
+                    tmpFile.outputStream().use { out -> it.copyTo(out) }
+                    if (!tmpFile.renameTo(file)) {
+                        tmpFile.delete()
+                        throw IOException("Can't restore ${file.name}")
+                    }
                 }
             })
         }
         if (contents.hasFlag(INCLUDE_WALLPAPER)) {
             handlers[WALLPAPER_FILE_NAME] = {
                 val wallpaperManager = WallpaperManager.getInstance(context)
-                wallpaperManager.setBitmap(BitmapFactory.decodeStream(it))
+                if (manifest != null) {
+                    // The original wallpaper file, which doesn't need to be decoded. It is only
+                    // set once it is fully read and verified
+                    val tmpFile = File.createTempFile("wallpaper", null, context.cacheDir)
+                    try {
+                        tmpFile.outputStream().use { out -> it.copyTo(out) }
+                        tmpFile.inputStream().use { file -> wallpaperManager.setStream(file) }
+                    } finally {
+                        tmpFile.delete()
+                    }
+                } else {
+                    wallpaperManager.setBitmap(BitmapFactory.decodeStream(it))
+                }
             }
         }
         context.getDatabasePath(LAUNCHER_DB_FILE_NAME).parentFile?.deleteRecursively()
         DeviceGridState(info.gridState).writeToPrefs(context, true)
-        readZip(handlers)
+        if (withZipFile { readFiles(it, handlers) }) return
+        val manifest = manifest
+        if (manifest != null) {
+            readArchive(manifest, handlers)
+        } else {
+            readZip(handlers)
+        }
     }
 
-    private suspend fun readZip(handlers: Map<String, suspend (InputStream) -> Unit>) {
+    /**
+     * Reads the files with a handler from [zipFile] in parallel, skipping all the others.
+     */
+    private suspend fun readFiles(
+        zipFile: BackupZipFile,
+        handlers: Map<String, (InputStream) -> Unit>
+    ) = coroutineScope {
+        val reader = manifest?.let { BackupArchive.Reader(it, chunkStore(context)) }
+        handlers.forEach { (name, handler) ->
+            launch(Dispatchers.IO) {
+                val input = if (reader != null) reader.open(zipFile, name) else zipFile.open(name)
+                input?.use(handler)
+            }
+        }
+    }
+
+    /**
+     * Runs [block] with random access to the entries of the backup. Returns false without
+     * running it if the backup can't be read that way, e.g. when its provider only gives a pipe.
+     */
+    private suspend fun withZipFile(
+        block: suspend (BackupZipFile) -> Unit
+    ): Boolean = withContext(Dispatchers.IO) {
+        val pfd = context.contentResolver.openFileDescriptor(uri, "r")!!
+        pfd.use {
+            FileInputStream(it.fileDescriptor).use { inStream ->
+                val zipFile = try {
+                    BackupZipFile.open(BackupZipFile.sourceOf(inStream.channel))
+                } catch (e: IOException) {
+                    return@withContext false
+                }
+                block(zipFile)
+                true
+            }
+        }
+    }
+
+    private suspend fun readZip(handlers: Map<String, (InputStream) -> Unit>) {
+        openZip { zipIs ->
+            var entry: ZipEntry?
+            while (true) {
+                entry = zipIs.nextEntry
+                if (entry == null) break
+                handlers[entry.name]?.invoke(zipIs)
+            }
+        }
+    }
+
+    private suspend fun readArchive(
+        manifest: BackupArchive.Manifest,
+        handlers: Map<String, (InputStream) -> Unit>
+    ) {
+        openZip { zipIs ->
+            BackupArchive.Reader(manifest, chunkStore(context)).read(zipIs, handlers)
+        }
+    }
+
+    private suspend fun openZip(block: (ZipInputStream) -> Unit) {
         withContext(Dispatchers.IO) {
             val pfd = context.contentResolver.openFileDescriptor(uri, "r")!!
             pfd.use {
                 FileInputStream(it.fileDescriptor).use { inStream ->
-                    ZipInputStream(inStream).use { zipIs ->
-                        var entry: ZipEntry?
-                        while (true) {
-                            entry = zipIs.nextEntry
-                            if (entry == null) break
-                            handlers[entry.name]?.invoke(zipIs)
-                        }
-                    }
+                    ZipInputStream(inStream.buffered()).use(block)
                 }
             }
         }
     }
 
     companion object {
-        private const val BACKUP_VERSION = 1
+        private const val BACKUP_VERSION = 2
 
         const val INFO_FILE_NAME = "info.pb"
         const val WALLPAPER_FILE_NAME = "wallpaper.png"
@@ -106,6 +200,7 @@ class LawnchairBackup(
         const val PREFS_FILE_NAME = "${LauncherFiles.SHARED_PREFERENCES_KEY}.xml"
         const val PREFS_DB_FILE_NAME = "preferences"
         const val PREFS_DATASTORE_FILE_NAME = "preferences.preferences_pb"
+        private const val CHUNK_STORE_DIR_NAME = "backup_chunks"
 
         const val INCLUDE_LAYOUT_AND_SETTINGS = 1 shl 0
         const val INCLUDE_WALLPAPER = 1 shl 1
@@ -152,35 +247,75 @@ class LawnchairBackup(
 
             AppDatabase.INSTANCE.get(context).checkpoint()
             val pfd = context.contentResolver.openFileDescriptor(fileUri, "w")!!
+            val chunkStore = chunkStore(context)
             withContext(Dispatchers.IO) {
-                pfd.use {
+                val manifest = pfd.use {
                     ZipOutputStream(FileOutputStream(pfd.fileDescriptor).buffered()).use { out ->
                         out.putNextEntry(ZipEntry(INFO_FILE_NAME))
                         info.writeTo(out)
+                        out.closeEntry()
 
-                        if (contents.hasFlag(INCLUDE_WALLPAPER)) {
-                            val wallpaperManager = WallpaperManager.getInstance(context)
-                            val wallpaperBitmap = wallpaperManager.drawable?.toBitmap()
-                            if (wallpaperBitmap != null) {
-                                out.putNextEntry(ZipEntry(WALLPAPER_FILE_NAME))
-                                wallpaperBitmap.compress(Bitmap.CompressFormat.PNG, 100, out)
+                        BackupArchive.Writer(out, chunkStore).use { archive ->
+                            if (contents.hasFlag(INCLUDE_WALLPAPER)) {
+                                addWallpaper(context, archive)
+                            }
+                            if (contents.hasFlag(INCLUDE_LAYOUT_AND_SETTINGS)) {
+                                val screenshot = ByteArrayOutputStream()
+                                screenshotBitmap.compress(Bitmap.CompressFormat.PNG, 85, screenshot)
+                                archive.addFile(
+                                    SCREENSHOT_FILE_NAME,
+                                    screenshot.toByteArray().inputStream(),
+                                    screenshot.size().toLong()
+                                )
                             }
-                        }
-                        if (contents.hasFlag(INCLUDE_LAYOUT_AND_SETTINGS)) {
-                            out.putNextEntry(ZipEntry(SCREENSHOT_FILE_NAME))
-                            screenshotBitmap.compress(Bitmap.CompressFormat.PNG, 85, out)
-                        }
 
-                        getFiles(context, forRestore = false).entries.forEach {
-                            if (!it.value.exists()) return@forEach
-                            out.putNextEntry(ZipEntry(it.key))
-                            it.value.inputStream().copyTo(out)
+                            getFiles(context, forRestore = false).entries.forEach {
+                                if (!it.value.exists()) return@forEach
+                                it.value.inputStream().use { file ->
+                                    archive.addFile(it.key, file, it.value.length())
+                                }
+                            }
+                            archive.finish()
                         }
                     }
                 }
+                // The next backups only reference the chunks which didn't change since this one
+                chunkStore.addBackup(manifest)
             }
         }
 
+        /**
+         * Adds the original wallpaper file, falling back to encoding the wallpaper drawable when
+         * the file isn't accessible.
+         */
+        @SuppressLint("MissingPermission")
+        private fun addWallpaper(context: Context, archive: BackupArchive.Writer) {
+            val wallpaperManager = WallpaperManager.getInstance(context)
+            val wallpaperFile = try {
+                wallpaperManager.getWallpaperFile(WallpaperManager.FLAG_SYSTEM)
+            } catch (e: SecurityException) {
+                null
+            }
+            if (wallpaperFile != null) {
+                val size = wallpaperFile.statSize
+                ParcelFileDescriptor.AutoCloseInputStream(wallpaperFile).buffered().use {
+                    archive.addFile(WALLPAPER_FILE_NAME, it, size)
+                }
+                return
+            }
+            val wallpaperBitmap = wallpaperManager.drawable?.toBitmap() ?: return
+            val out = ByteArrayOutputStream()
+            wallpaperBitmap.compress(Bitmap.CompressFormat.PNG, 100, out)
+            val bytes = out.toByteArray()
+            archive.addFile(WALLPAPER_FILE_NAME, bytes.inputStream(), bytes.size.toLong())
+        }
+
+        /**
+         * Returns the chunks of the previous backups, which only this install can read.
+         */
+        private fun chunkStore(context: Context) =
+            BackupArchive.ChunkStore(File(context.filesDir, CHUNK_STORE_DIR_NAME))
+
         private fun launcherDbFile(context: Context, forRestore: Boolean): File {
             val dbName = if (forRestore) RESTORED_DB_FILE_NAME else LauncherAppState.getIDP(context).dbFile
             return context.getDatabasePath(dbName)
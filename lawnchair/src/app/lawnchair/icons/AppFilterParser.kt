@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022, Lawnchair
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app.lawnchair.icons
+
+import android.content.ComponentName
+import org.xmlpull.v1.XmlPullParser
+import org.xmlpull.v1.XmlPullParserException
+import java.io.IOException
+
+/**
+ * Streams the entries of an icon pack's `appfilter.xml`. It only depends on [XmlPullParser]
+ * and [ComponentName] so that it can also be benchmarked on a plain JVM.
+ */
+object AppFilterParser {
+
+    private const val COMPONENT_START = "ComponentInfo{"
+    private const val COMPONENT_END = "}"
+
+    interface Callback {
+        fun onIcon(componentName: ComponentName, drawableName: String)
+        fun onCalendar(componentName: ComponentName, prefix: String)
+
+        /**
+         * Called for `dynamic-clock` entries while [parser] is still positioned on the tag.
+         */
+        fun onClock(drawableName: String, parser: XmlPullParser)
+    }
+
+    @JvmStatic
+    @Throws(XmlPullParserException::class, IOException::class)
+    fun parse(parser: XmlPullParser, callback: Callback) {
+        while (parser.next() != XmlPullParser.END_DOCUMENT) {
+            if (parser.eventType != XmlPullParser.START_TAG) continue
+            when (parser.name) {
+                "item" -> {
+                    val componentName = parseComponent(parser) ?: continue
+                    val drawableName = parser.getAttributeValue(null, "drawable") ?: continue
+                    callback.onIcon(componentName, drawableName)
+                }
+                "calendar" -> {
+                    val componentName = parseComponent(parser) ?: continue
+                    val prefix = parser.getAttributeValue(null, "prefix") ?: continue
+                    callback.onCalendar(componentName, prefix)
+                }
+                "dynamic-clock" -> {
+                    val drawableName = parser.getAttributeValue(null, "drawable") ?: continue
+                    callback.onClock(drawableName, parser)
+                }
+            }
+        }
+    }
+
+    private fun parseComponent(parser: XmlPullParser): ComponentName? {
+        var componentName = parser.getAttributeValue(null, "component") ?: return null
+        if (componentName.startsWith(COMPONENT_START) && componentName.endsWith(COMPONENT_END)) {
+            componentName = componentName.substring(
+                COMPONENT_START.length, componentName.length - COMPONENT_END.length)
+        }
+        return ComponentName.unflattenFromString(componentName)
+    }
+}
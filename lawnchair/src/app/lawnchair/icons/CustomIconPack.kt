@@ -67,49 +67,28 @@ class CustomIconPack(context: Context, packPackageName: String) :
 
     override fun loadInternal() {
         val parseXml = getXml("appfilter") ?: return
-        val compStart = "ComponentInfo{"
-        val compStartLength = compStart.length
-        val compEnd = "}"
-        val compEndLength = compEnd.length
         try {
-            while (parseXml.next() != XmlPullParser.END_DOCUMENT) {
-                if (parseXml.eventType != XmlPullParser.START_TAG) continue
-                val name = parseXml.name
-                val isCalendar = name == "calendar"
-                when (name) {
-                    "item", "calendar" -> {
-                        var componentName: String? = parseXml["component"]
-                        val drawableName = parseXml[if (isCalendar) "prefix" else "drawable"]
-                        if (componentName != null && drawableName != null) {
-                            if (componentName.startsWith(compStart) && componentName.endsWith(compEnd)) {
-                                componentName = componentName.substring(compStartLength, componentName.length - compEndLength)
-                            }
-                            val parsed = ComponentName.unflattenFromString(componentName)
-                            if (parsed != null) {
-                                if (isCalendar) {
-                                    calendarMap[parsed] = IconEntry(packPackageName, drawableName, IconType.Calendar)
-                                } else {
-                                    componentMap[parsed] = IconEntry(packPackageName, drawableName, IconType.Normal)
-                                }
-                            }
-                        }
-                    }
-                    "dynamic-clock" -> {
-                        val drawableName = parseXml["drawable"]
-                        if (drawableName != null) {
-                            if (parseXml is XmlResourceParser) {
-                                clockMetas[IconEntry(packPackageName, drawableName, IconType.Normal)] = ClockMetadata(
-                                    parseXml.getAttributeIntValue(null, "hourLayerIndex", -1),
-                                    parseXml.getAttributeIntValue(null, "minuteLayerIndex", -1),
-                                    parseXml.getAttributeIntValue(null, "secondLayerIndex", -1),
-                                    parseXml.getAttributeIntValue(null, "defaultHour", 0),
-                                    parseXml.getAttributeIntValue(null, "defaultMinute", 0),
-                                    parseXml.getAttributeIntValue(null, "defaultSecond", 0))
-                            }
-                        }
+            AppFilterParser.parse(parseXml, object : AppFilterParser.Callback {
+                override fun onIcon(componentName: ComponentName, drawableName: String) {
+                    componentMap[componentName] = IconEntry(packPackageName, drawableName, IconType.Normal)
+                }
+
+                override fun onCalendar(componentName: ComponentName, prefix: String) {
+                    calendarMap[componentName] = IconEntry(packPackageName, prefix, IconType.Calendar)
+                }
+
+                override fun onClock(drawableName: String, parser: XmlPullParser) {
+                    if (parser is XmlResourceParser) {
+                        clockMetas[IconEntry(packPackageName, drawableName, IconType.Normal)] = ClockMetadata(
+                            parser.getAttributeIntValue(null, "hourLayerIndex", -1),
+                            parser.getAttributeIntValue(null, "minuteLayerIndex", -1),
+                            parser.getAttributeIntValue(null, "secondLayerIndex", -1),
+                            parser.getAttributeIntValue(null, "defaultHour", 0),
+                            parser.getAttributeIntValue(null, "defaultMinute", 0),
+                            parser.getAttributeIntValue(null, "defaultSecond", 0))
                     }
                 }
-            }
+            })
             componentMap.forEach { (componentName, iconEntry) ->
                 if (clockMetas.containsKey(iconEntry)) {
                     clockMap[componentName] = iconEntry
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022, Lawnchair
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app.lawnchair.icons.shape
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Paint
+import android.graphics.Path
+import android.util.LruCache
+import kotlin.math.ceil
+
+/**
+ * Memoizes shape [Path]s and alpha-mask [Bitmap]s per (shape hash, size), so that folder
+ * previews, reveal animations and badging don't rebuild the same shape on every draw.
+ *
+ * Cached paths are laid out at the origin and must be treated as read-only; use [addToPath]
+ * to append a translated copy to a caller owned path.
+ */
+object IconShapeCache {
+
+    private const val MAX_PATHS = 32
+    private const val MAX_MASKS = 8
+
+    private val paths = LruCache<Key, Path>(MAX_PATHS)
+    private val masks = LruCache<Key, Bitmap>(MAX_MASKS)
+    private val maskPaint = Paint(Paint.ANTI_ALIAS_FLAG or Paint.FILTER_BITMAP_FLAG)
+
+    /**
+     * Returns the cached path for [shape] inscribed in a square of side `2 * radius`.
+     */
+    @JvmStatic
+    fun getPath(shape: IconShape, radius: Float): Path {
+        val key = Key(shape.getHashString(), radius)
+        paths.get(key)?.let { return it }
+        val path = Path().also { shape.addShape(it, 0f, 0f, radius) }
+        paths.put(key, path)
+        return path
+    }
+
+    /**
+     * Appends the cached path for [shape] to [out], translated by ([offsetX], [offsetY]).
+     */
+    @JvmStatic
+    fun addToPath(shape: IconShape, out: Path, offsetX: Float, offsetY: Float, radius: Float) {
+        out.addPath(getPath(shape, radius), offsetX, offsetY)
+    }
+
+    /**
+     * Returns an [Bitmap.Config.ALPHA_8] mask of [shape] with side `2 * radius`. Drawing it
+     * with a paint tints it with the paint's color, shader and xfermode.
+     */
+    @JvmStatic
+    fun getMask(shape: IconShape, radius: Float): Bitmap {
+        val key = Key(shape.getHashString(), radius)
+        masks.get(key)?.let { return it }
+        val size = ceil(radius * 2).toInt().coerceAtLeast(1)
+        val mask = Bitmap.createBitmap(size, size, Bitmap.Config.ALPHA_8)
+        Canvas(mask).drawPath(getPath(shape, radius), maskPaint)
+        masks.put(key, mask)
+        return mask
+    }
+
+    /**
+     * Returns the cached mask of [shape] when [radius] is on a whole pixel, which is the case for
+     * shapes at rest. Animated radii return null, so that intermediate sizes don't churn the
+     * mask cache.
+     */
+    @JvmStatic
+    fun getRestingMask(shape: IconShape, radius: Float): Bitmap? =
+        if (radius == Math.round(radius).toFloat()) getMask(shape, radius) else null
+
+    @JvmStatic
+    fun clear() {
+        paths.evictAll()
+        masks.evictAll()
+    }
+
+    private data class Key(val shapeHash: String, val radius: Float)
+}
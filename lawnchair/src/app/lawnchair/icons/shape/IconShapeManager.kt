@@ -63,7 +63,6 @@ class IconShapeManager(private val context: Context) {
         val iconR = Region().apply {
             setPath(comparePath, clip)
         }
-        val shapePath = Path()
         val shapeR = Region()
         return listOf(
             IconShape.Circle,
@@ -75,9 +74,7 @@ class IconShapeManager(private val context: Context) {
             IconShape.Cylinder
         )
             .minByOrNull {
-                shapePath.reset()
-                it.addShape(shapePath, 0f, 0f, size / 2f)
-                shapeR.setPath(shapePath, clip)
+                shapeR.setPath(IconShapeCache.getPath(it, size / 2f), clip)
                 shapeR.op(iconR, Region.Op.XOR)
 
                 GraphicsUtils.getArea(shapeR)
@@ -26,6 +26,7 @@ import app.lawnchair.font.FontCache
 import app.lawnchair.gestures.config.GestureHandlerConfig
 import app.lawnchair.icons.CustomAdaptiveIconDrawable
 import app.lawnchair.icons.shape.IconShape
+import app.lawnchair.icons.shape.IconShapeCache
 import app.lawnchair.icons.shape.IconShapeManager
 import app.lawnchair.qsb.providers.QsbSearchProvider
 import app.lawnchair.smartspace.model.SmartspaceCalendar
@@ -390,6 +391,7 @@ class PreferenceManager2(private val context: Context) : PreferenceManager {
     }
 
     private fun initializeIconShape(shape: IconShape) {
+        IconShapeCache.clear()
         CustomAdaptiveIconDrawable.sInitialized = true
         CustomAdaptiveIconDrawable.sMaskId = shape.getHashString()
         CustomAdaptiveIconDrawable.sMask = shape.getMaskPath()
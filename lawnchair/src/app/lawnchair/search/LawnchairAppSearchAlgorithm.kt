@@ -19,7 +19,6 @@ import com.android.launcher3.model.data.AppInfo
 import com.android.launcher3.popup.PopupPopulator
 import com.android.launcher3.search.SearchCallback
 import com.android.launcher3.search.StringMatcherUtility
-import com.android.launcher3.shortcuts.ShortcutRequest
 import com.android.launcher3.util.ComponentKey
 import com.android.launcher3.util.Executors
 import com.android.launcher3.util.PackageManagerHelper
@@ -90,9 +89,10 @@ class LawnchairAppSearchAlgorithm(context: Context) : LawnchairSearchAlgorithm(c
     }
 
     private fun getShortcuts(app: AppInfo): List<ShortcutInfo> {
-        val shortcuts = ShortcutRequest(context.launcher, app.user)
-            .withContainer(app.targetComponent)
-            .query(ShortcutRequest.PUBLISHED)
+        val activity = app.targetComponent ?: return emptyList()
+        // Served from the model's cache, so that typing doesn't query shortcuts on every key
+        val shortcuts = appState.model.deepShortcutCache
+            .getOrQueryShortcuts(context.launcher, activity, app.user)
         return PopupPopulator.sortAndFilterShortcuts(shortcuts, null)
     }
 
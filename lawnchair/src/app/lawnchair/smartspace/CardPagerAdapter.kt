@@ -7,6 +7,7 @@ import android.view.View
 import android.view.ViewGroup
 import androidx.viewpager.widget.PagerAdapter
 import app.lawnchair.smartspace.model.SmartspaceTarget
+import app.lawnchair.smartspace.model.isSameContent
 import com.android.launcher3.R
 import com.android.launcher3.util.Themes
 
@@ -17,10 +18,16 @@ class CardPagerAdapter(context: Context) : PagerAdapter() {
     private var smartspaceTargets = targets
     private val holders = SparseArray<ViewHolder>()
 
-    fun setTargets(newTargets: List<SmartspaceTarget>) {
+    /**
+     * Returns false without touching any card when [newTargets] has the same content as the
+     * current targets.
+     */
+    fun setTargets(newTargets: List<SmartspaceTarget>): Boolean {
+        if (targets.isSameContent(newTargets)) return false
         targets.clear()
         targets.addAll(newTargets)
         notifyDataSetChanged()
+        return true
     }
 
     override fun instantiateItem(container: ViewGroup, position: Int): ViewHolder {
@@ -46,7 +53,11 @@ class CardPagerAdapter(context: Context) : PagerAdapter() {
     override fun getItemPosition(obj: Any): Int {
         val viewHolder = obj as ViewHolder
         val target = getTargetAtPosition(viewHolder.position)
+        val multipleCards = smartspaceTargets.size > 1
         if (viewHolder.target === target) {
+            if (viewHolder.multipleCards != multipleCards) {
+                onBindViewHolder(viewHolder)
+            }
             return POSITION_UNCHANGED
         }
         if (target == null
@@ -55,8 +66,13 @@ class CardPagerAdapter(context: Context) : PagerAdapter() {
         ) {
             return POSITION_NONE
         }
+        // The card also shows whether there are other cards
+        val changed = !viewHolder.target.isSameContent(target)
+            || viewHolder.multipleCards != multipleCards
         viewHolder.target = target
-        onBindViewHolder(viewHolder)
+        if (changed) {
+            onBindViewHolder(viewHolder)
+        }
         return POSITION_UNCHANGED
     }
 
@@ -70,7 +86,8 @@ class CardPagerAdapter(context: Context) : PagerAdapter() {
     private fun onBindViewHolder(viewHolder: ViewHolder) {
         val target = smartspaceTargets[viewHolder.position]
         val card = viewHolder.card
-        card.setSmartspaceTarget(target, smartspaceTargets.size > 1)
+        viewHolder.multipleCards = smartspaceTargets.size > 1
+        card.setSmartspaceTarget(target, viewHolder.multipleCards)
         card.setPrimaryTextColor(currentTextColor)
     }
 
@@ -98,5 +115,7 @@ class CardPagerAdapter(context: Context) : PagerAdapter() {
         val position: Int,
         val card: BcSmartspaceCard,
         var target: SmartspaceTarget
-    )
+    ) {
+        var multipleCards = false
+    }
 }
@@ -4,6 +4,8 @@ import android.app.PendingIntent
 import android.content.Intent
 import android.graphics.drawable.Icon
 import android.os.Bundle
+import android.text.TextUtils
+import com.android.launcher3.Utilities
 
 data class SmartspaceAction(
     val id: String,
@@ -18,3 +20,28 @@ data class SmartspaceAction(
 )
 
 val SmartspaceAction?.hasIntent get() = this != null && (intent != null || pendingIntent != null || onClick != null)
+
+fun SmartspaceAction?.isSameContent(other: SmartspaceAction?): Boolean {
+    if (this == null || other == null) return this == other
+    if (this == other) return true
+    return id == other.id
+            && TextUtils.equals(title, other.title)
+            && TextUtils.equals(subtitle, other.subtitle)
+            && TextUtils.equals(contentDescription, other.contentDescription)
+            && pendingIntent == other.pendingIntent
+            && intent == other.intent
+            && onClick == other.onClick
+            && extras == other.extras
+            && icon.isSameIcon(other.icon)
+}
+
+private fun Icon?.isSameIcon(other: Icon?): Boolean {
+    if (this === other) return true
+    if (this == null || other == null || !Utilities.ATLEAST_P) return false
+    if (type != other.type) return false
+    return when (type) {
+        Icon.TYPE_RESOURCE -> resId == other.resId && resPackage == other.resPackage
+        Icon.TYPE_URI, Icon.TYPE_URI_ADAPTIVE_BITMAP -> uri == other.uri
+        else -> false
+    }
+}
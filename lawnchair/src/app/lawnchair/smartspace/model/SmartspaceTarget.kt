@@ -35,3 +35,23 @@ data class SmartspaceTarget(
         FEATURE_UPCOMING_ALARM
     }
 }
+
+/**
+ * Structural comparison used to skip rebinding cards. Unlike [equals] this also matches icons
+ * that were recreated from the same resource or uri.
+ */
+fun SmartspaceTarget.isSameContent(other: SmartspaceTarget?): Boolean {
+    if (other == null) return false
+    if (this == other) return true
+    return id == other.id
+            && score == other.score
+            && featureType == other.featureType
+            && headerAction.isSameContent(other.headerAction)
+            && baseAction.isSameContent(other.baseAction)
+}
+
+fun List<SmartspaceTarget>.isSameContent(other: List<SmartspaceTarget>): Boolean {
+    if (this === other) return true
+    if (size != other.size) return false
+    return indices.all { this[it].isSameContent(other[it]) }
+}
@@ -19,6 +19,8 @@ class BatteryStatusProvider(context: Context) : SmartspaceDataSource(
     context, R.string.smartspace_battery_status, { smartspaceBatteryStatus }
 ) {
     private val batteryManager = context.getSystemService<BatteryManager>()
+    private val chargingIcon = Icon.createWithResource(context, R.drawable.ic_charging)
+    private val batteryLowIcon = Icon.createWithResource(context, R.drawable.ic_battery_low)
 
     override val internalTargets = broadcastReceiverFlow(context, IntentFilter(Intent.ACTION_BATTERY_CHANGED))
         .map { intent ->
@@ -46,12 +48,11 @@ class BatteryStatusProvider(context: Context) : SmartspaceDataSource(
         } else {
             context.getString(R.string.n_percent, level)
         }
-        val iconResId = if (charging) R.drawable.ic_charging else R.drawable.ic_battery_low
         return SmartspaceTarget(
             id = "batteryStatus",
             headerAction = SmartspaceAction(
                 id = "batteryStatusAction",
-                icon = Icon.createWithResource(context, iconResId),
+                icon = if (charging) chargingIcon else batteryLowIcon,
                 title = title,
                 subtitle = subtitle
             ),
@@ -22,6 +22,7 @@ class NowPlayingProvider(context: Context) : SmartspaceDataSource(
 ) {
 
     private val defaultIcon = Icon.createWithResource(context, R.drawable.ic_music_note)
+    private var toggleAction: Pair<MediaListener, Runnable>? = null
 
     override val internalTargets = callbackFlow {
         val mediaListener = MediaListener(context) {
@@ -51,13 +52,22 @@ class NowPlayingProvider(context: Context) : SmartspaceDataSource(
                 title = title,
                 subtitle = subtitle,
                 pendingIntent = intent,
-                onClick = if (intent == null) Runnable { media.toggle(true) } else null,
+                onClick = if (intent == null) getToggleAction(media) else null,
             ),
             score = SmartspaceScores.SCORE_MEDIA,
             featureType = SmartspaceTarget.FeatureType.FEATURE_MEDIA,
         )
     }
 
+    /**
+     * Reuses the same runnable for a listener so that repeated metadata updates produce equal
+     * targets.
+     */
+    private fun getToggleAction(media: MediaListener): Runnable {
+        toggleAction?.takeIf { it.first === media }?.let { return it.second }
+        return Runnable { media.toggle(true) }.also { toggleAction = media to it }
+    }
+
     override suspend fun requiresSetup(): Boolean =
         isNotificationServiceEnabled(context = context).not() ||
             notificationDotsEnabled(context = context).first().not()
@@ -5,6 +5,7 @@ import android.content.Context
 import android.util.Log
 import app.lawnchair.preferences2.PreferenceManager2
 import app.lawnchair.smartspace.model.SmartspaceTarget
+import app.lawnchair.smartspace.model.isSameContent
 import com.patrykmichalik.opto.domain.Preference
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.flow.*
@@ -70,6 +71,10 @@ abstract class SmartspaceDataSource(
         val targets: List<SmartspaceTarget> = emptyList(),
         val requiresSetup: List<SmartspaceDataSource> = emptyList()
     ) {
+        fun isSameContent(other: State): Boolean {
+            return requiresSetup == other.requiresSetup && targets.isSameContent(other.targets)
+        }
+
         operator fun plus(other: State): State {
             return State(
                 targets = this.targets + other.targets,
@@ -4,6 +4,8 @@ import android.app.Activity
 import android.content.Context
 import app.lawnchair.smartspace.model.SmartspaceAction
 import app.lawnchair.smartspace.model.SmartspaceTarget
+import app.lawnchair.smartspace.model.isSameContent
+import app.lawnchair.smartspace.provider.SmartspaceDataSource.State
 import app.lawnchair.ui.preferences.PreferenceActivity
 import app.lawnchair.ui.preferences.Routes
 import app.lawnchair.util.dropWhileBusy
@@ -21,8 +23,23 @@ class SmartspaceProvider private constructor(context: Context) {
     )
 
     private val state = dataSources
-        .map { it.targets }
-        .reduce { acc, flow -> flow.combine(acc) { a, b -> a + b } }
+        // Keeps the order in which the sources used to be concatenated
+        .asReversed()
+        .map { source ->
+            // Battery and media sources can tick in bursts; only the latest state matters
+            source.targets
+                .conflate()
+                .distinctUntilChanged { old, new -> old.isSameContent(new) }
+        }
+        .let { flows ->
+            combine(flows) { states ->
+                State(
+                    targets = states.flatMap { it.targets },
+                    requiresSetup = states.flatMap { it.requiresSetup }
+                )
+            }
+        }
+        .distinctUntilChanged { old, new -> old.isSameContent(new) }
         .shareIn(
             MainScope(),
             SharingStarted.WhileSubscribed(),
@@ -8,7 +8,10 @@ import android.content.Intent
 import android.graphics.Bitmap
 import android.graphics.drawable.BitmapDrawable
 import android.graphics.drawable.Icon
+import android.os.SystemClock
+import android.os.Trace
 import android.text.TextUtils
+import android.util.Log
 import android.view.View
 import android.view.ViewGroup
 import android.widget.ImageView
@@ -20,12 +23,13 @@ import app.lawnchair.smartspace.model.SmartspaceAction
 import app.lawnchair.smartspace.model.SmartspaceScores
 import app.lawnchair.smartspace.model.SmartspaceTarget
 import app.lawnchair.util.Temperature
-import app.lawnchair.util.getAllChildren
 import app.lawnchair.util.pendingIntent
 import com.android.launcher3.R
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.emptyFlow
+import kotlinx.coroutines.flow.distinctUntilChanged
 import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.flowOn
 import kotlinx.coroutines.flow.map
 
 class SmartspaceWidgetReader(context: Context) : SmartspaceDataSource(
@@ -36,6 +40,9 @@ class SmartspaceWidgetReader(context: Context) : SmartspaceDataSource(
     override val disabledTargets = listOf(dummyTarget)
     private val widget: HeadlessWidgetsManager.Widget?
     override val internalTargets: Flow<List<SmartspaceTarget>>
+    private val weatherIconCache = IconCache()
+    private val cardIconCache = IconCache()
+    private val stats = UpdateStats()
 
     init {
         val appWidgetManager = AppWidgetManager.getInstance(context)
@@ -46,7 +53,15 @@ class SmartspaceWidgetReader(context: Context) : SmartspaceDataSource(
             val widgetsManager = HeadlessWidgetsManager.INSTANCE.get(context)
             widgetsManager.getWidget(provider, "smartspaceWidgetId")
         }
-        internalTargets = widget?.updates?.map(this::extractWidgetLayout) ?: flowOf(disabledTargets)
+        internalTargets = widget?.updates
+            ?.map(this::readSnapshot)
+            ?.flowOn(Dispatchers.Main)
+            ?.distinctUntilChanged { old, new ->
+                old.contentEquals(new).also { if (it) stats.onSkipped() }
+            }
+            ?.map(this::parseData)
+            ?.flowOn(Dispatchers.Default)
+            ?: flowOf(disabledTargets)
     }
 
     override suspend fun requiresSetup() = widget?.isBound == false
@@ -56,49 +71,82 @@ class SmartspaceWidgetReader(context: Context) : SmartspaceDataSource(
         BlankActivity.startBlankActivityForResult(activity, intent)
     }
 
-    private fun extractWidgetLayout(appWidgetHostView: ViewGroup): List<SmartspaceTarget> {
-        val children = appWidgetHostView.getAllChildren().filter { it.isVisible }
-        val texts = children.filterIsInstance<TextView>().filter { !TextUtils.isEmpty(it.text) }
-        val images = children.filterIsInstance<ImageView>()
+    /**
+     * Walks the inflated widget once on the main thread and copies out the few values we need,
+     * so that building targets can happen off the main thread.
+     */
+    private fun readSnapshot(appWidgetHostView: ViewGroup): WidgetSnapshot {
+        val startTime = SystemClock.elapsedRealtimeNanos()
+        Trace.beginSection("SmartspaceWidgetReader.readSnapshot")
+        val texts = ArrayList<TextView>()
+        val images = ArrayList<ImageView>()
+        collectViews(appWidgetHostView, texts, images)
+
         var weatherIconView: ImageView? = null
         var cardIconView: ImageView? = null
         var title: TextView? = null
         var subtitle: TextView? = null
         var subtitle2: TextView? = null
         var temperatureText: TextView? = null
-        if (texts.isEmpty()) return listOf(dummyTarget)
-        if (images.isNotEmpty()) {
-            weatherIconView = images.last()
-            temperatureText = texts.last()
+        if (texts.isNotEmpty()) {
+            if (images.isNotEmpty()) {
+                weatherIconView = images.last()
+                temperatureText = texts.last()
+            }
+            if (images.size > 1 && texts.size > 2) {
+                cardIconView = images.first()
+                title = texts[0]
+                subtitle = texts[1]
+                if (texts.size > 3) {
+                    subtitle2 = texts[2]
+                }
+            }
         }
-        if (images.size > 1 && texts.size > 2) {
-            cardIconView = images.first()
-            title = texts[0]
-            subtitle = texts[1]
-            if (texts.size > 3) {
-                subtitle2 = texts[2]
+        val snapshot = WidgetSnapshot(
+            isEmpty = texts.isEmpty(),
+            weatherIcon = extractBitmap(weatherIconView),
+            temperature = temperatureText?.text?.toString(),
+            weatherIntent = (temperatureText?.parent as? View)?.pendingIntent,
+            cardIcon = extractBitmap(cardIconView),
+            title = title?.text,
+            subtitle = subtitle?.text,
+            subtitle2 = subtitle2?.text,
+            cardIntent = (title?.parent?.parent?.parent as? View)?.pendingIntent
+        )
+        Trace.endSection()
+        stats.onSnapshot(SystemClock.elapsedRealtimeNanos() - startTime)
+        return snapshot
+    }
+
+    private fun collectViews(group: ViewGroup, texts: MutableList<TextView>, images: MutableList<ImageView>) {
+        for (i in 0 until group.childCount) {
+            val child = group.getChildAt(i)
+            when {
+                child is ViewGroup -> collectViews(child, texts, images)
+                !child.isVisible -> Unit
+                child is TextView -> if (!TextUtils.isEmpty(child.text)) texts.add(child)
+                child is ImageView -> images.add(child)
             }
         }
-        return parseData(extractBitmap(weatherIconView), temperatureText, extractBitmap(cardIconView), title, subtitle, subtitle2)
     }
 
-    private fun parseData(
-        weatherIcon: Bitmap?, temperature: TextView?,
-        cardIcon: Bitmap?, title: TextView?, subtitle: TextView?, subtitle2: TextView?
-    ): List<SmartspaceTarget> {
-        val weather = parseWeatherData(weatherIcon, temperature) ?: dummyTarget
+    private fun parseData(snapshot: WidgetSnapshot): List<SmartspaceTarget> {
+        if (snapshot.isEmpty) return listOf(dummyTarget)
+        val weather = parseWeatherData(snapshot) ?: dummyTarget
+        val cardIcon = snapshot.cardIcon
+        val title = snapshot.title
+        val subtitle = snapshot.subtitle
         val card = if (cardIcon != null && title != null && subtitle != null) {
-            val pendingIntent = (title.parent.parent.parent as? View)?.pendingIntent
-            val ttl = title.text.toString() + if (subtitle2 != null) subtitle.text.toString() else ""
-            val sub = subtitle2 ?: subtitle
+            val subtitle2 = snapshot.subtitle2
+            val ttl = title.toString() + if (subtitle2 != null) subtitle.toString() else ""
             SmartspaceTarget(
                 id = "smartspaceWidgetCard",
                 headerAction = SmartspaceAction(
                     id = "smartspaceWidgetCardAction",
-                    icon = Icon.createWithBitmap(cardIcon),
+                    icon = cardIconCache.get(cardIcon),
                     title = ttl,
-                    subtitle = sub.text,
-                    pendingIntent = pendingIntent
+                    subtitle = subtitle2 ?: subtitle,
+                    pendingIntent = snapshot.cardIntent
                 ),
                 score = SmartspaceScores.SCORE_CALENDAR,
                 featureType = SmartspaceTarget.FeatureType.FEATURE_CALENDAR
@@ -109,17 +157,16 @@ class SmartspaceWidgetReader(context: Context) : SmartspaceDataSource(
         return listOfNotNull(card, weather)
     }
 
-    private fun parseWeatherData(weatherIcon: Bitmap?, temperatureText: TextView?): SmartspaceTarget? {
-        val temperature = temperatureText?.text?.toString()
-        val pendingIntent = (temperatureText?.parent as? View)?.pendingIntent
+    private fun parseWeatherData(snapshot: WidgetSnapshot): SmartspaceTarget? {
+        val weatherIcon = snapshot.weatherIcon
         val weatherData = parseWeatherData(
-            weatherIcon, temperature, pendingIntent
+            weatherIcon, snapshot.temperature, snapshot.weatherIntent
         ) ?: return null
         return SmartspaceTarget(
             id = "smartspaceWidgetWeather",
             headerAction = SmartspaceAction(
                 id = "smartspaceWidgetWeatherAction",
-                icon = weatherIcon?.let { Icon.createWithBitmap(it) },
+                icon = weatherIcon?.let { weatherIconCache.get(it) },
                 title = "",
                 subtitle = weatherData.getTitle(),
                 pendingIntent = weatherData.pendingIntent
@@ -133,6 +180,93 @@ class SmartspaceWidgetReader(context: Context) : SmartspaceDataSource(
         return (imageView?.drawable as? BitmapDrawable)?.bitmap
     }
 
+    /**
+     * Values read from a single widget update. Bitmaps are compared by content since every
+     * update from GSA inflates fresh drawables even when nothing changed.
+     */
+    private class WidgetSnapshot(
+        val isEmpty: Boolean,
+        val weatherIcon: Bitmap?,
+        val temperature: String?,
+        val weatherIntent: PendingIntent?,
+        val cardIcon: Bitmap?,
+        val title: CharSequence?,
+        val subtitle: CharSequence?,
+        val subtitle2: CharSequence?,
+        val cardIntent: PendingIntent?
+    ) {
+
+        fun contentEquals(other: WidgetSnapshot): Boolean {
+            return isEmpty == other.isEmpty
+                    && temperature == other.temperature
+                    && weatherIntent == other.weatherIntent
+                    && cardIntent == other.cardIntent
+                    && TextUtils.equals(title, other.title)
+                    && TextUtils.equals(subtitle, other.subtitle)
+                    && TextUtils.equals(subtitle2, other.subtitle2)
+                    && bitmapEquals(weatherIcon, other.weatherIcon)
+                    && bitmapEquals(cardIcon, other.cardIcon)
+        }
+
+        private fun bitmapEquals(a: Bitmap?, b: Bitmap?): Boolean {
+            if (a === b) return true
+            if (a == null || b == null) return false
+            return a.sameAs(b)
+        }
+    }
+
+    /**
+     * Reuses the last [Icon] while the bitmap content stays the same, so that targets built from
+     * consecutive updates compare equal and don't cause cards to be rebound.
+     */
+    private class IconCache {
+
+        private var bitmap: Bitmap? = null
+        private var icon: Icon? = null
+
+        @Synchronized
+        fun get(newBitmap: Bitmap): Icon {
+            val cached = icon
+            if (cached != null && bitmap?.sameAs(newBitmap) == true) {
+                return cached
+            }
+            bitmap = newBitmap
+            return Icon.createWithBitmap(newBitmap).also { icon = it }
+        }
+    }
+
+    /**
+     * Per-update cost of reading the widget on the main thread, and how many updates were
+     * dropped because their content didn't change. Only logged when [DEBUG] is set.
+     */
+    private class UpdateStats {
+
+        @Volatile private var updateCount = 0
+        @Volatile private var skippedCount = 0
+        @Volatile private var lastMainThreadNanos = 0L
+        @Volatile private var totalMainThreadNanos = 0L
+
+        fun onSnapshot(nanos: Long) {
+            if (!DEBUG) return
+            updateCount++
+            lastMainThreadNanos = nanos
+            totalMainThreadNanos += nanos
+            Log.d(TAG, "widget update read: $this")
+        }
+
+        fun onSkipped() {
+            if (!DEBUG) return
+            skippedCount++
+            Log.d(TAG, "widget update skipped: $this")
+        }
+
+        override fun toString(): String {
+            val averageMainThreadNanos = totalMainThreadNanos / updateCount.coerceAtLeast(1)
+            return "updates=$updateCount skipped=$skippedCount " +
+                    "lastMainThreadUs=${lastMainThreadNanos / 1000} avgMainThreadUs=${averageMainThreadNanos / 1000}"
+        }
+    }
+
     data class WeatherData(
         val icon: Bitmap,
         private val temperature: Temperature,
@@ -147,6 +281,8 @@ class SmartspaceWidgetReader(context: Context) : SmartspaceDataSource(
     }
 
     companion object {
+        private const val TAG = "SmartspaceWidgetReader"
+        private const val DEBUG = false
         private const val GSA_PACKAGE = "com.google.android.googlequicksearchbox"
         private const val WIDGET_CLASS_NAME = "com.google.android.apps.gsa.staticplugins.smartspace.widget.SmartspaceWidgetProvider"
 
@@ -11,6 +11,7 @@ import android.util.SparseArray
 import androidx.core.graphics.ColorUtils
 import app.lawnchair.preferences2.PreferenceManager2
 import app.lawnchair.theme.color.AndroidColor
+import app.lawnchair.theme.color.ColorSchemeCache
 import app.lawnchair.theme.color.ColorOption
 import app.lawnchair.theme.color.MonetColorSchemeCompat
 import app.lawnchair.theme.color.SystemColorScheme
@@ -26,6 +27,7 @@ import dev.kdrag0n.colorkt.rgb.Srgb
 import dev.kdrag0n.monet.theme.ColorScheme
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
 
 class ThemeProvider(private val context: Context) {
     private val preferenceManager2 = PreferenceManager2.getInstance(context)
@@ -34,6 +36,9 @@ class ThemeProvider(private val context: Context) {
     private var accentColor: ColorOption = preferenceManager2.accentColor.firstBlocking()
 
     private val colorSchemeMap = SparseArray<ColorScheme>()
+    private val colorSchemeCache = ColorSchemeCache(context)
+    private val pendingSeeds = mutableSetOf<Int>()
+    private var lastColorScheme: ColorScheme? = null
     private val listeners = mutableListOf<ColorSchemeChangeListener>()
 
     init {
@@ -88,15 +93,39 @@ class ThemeProvider(private val context: Context) {
         else -> getColorScheme(context.getSystemAccent(darkTheme = false))
     }
 
-    private fun getColorScheme(colorInt: Int): ColorScheme {
-        var colorScheme = colorSchemeMap[colorInt]
+    /**
+     * Returns the scheme for [colorInt] if it was already generated or persisted. Otherwise the
+     * scheme is generated in the background and the previously returned scheme is used until
+     * listeners are notified that the new one is ready.
+     */
+    private fun getColorScheme(colorInt: Int): ColorScheme = synchronized(colorSchemeMap) {
+        var colorScheme = colorSchemeMap[colorInt] ?: colorSchemeCache.get(colorInt)
         if (colorScheme == null) {
-            colorScheme = MonetColorSchemeCompat(colorInt)
-            colorSchemeMap.append(colorInt, colorScheme)
+            val previous = lastColorScheme
+            if (previous != null) {
+                generateColorScheme(colorInt)
+                return previous
+            }
+            colorScheme = MonetColorSchemeCompat(colorInt).also(colorSchemeCache::put)
         }
+        colorSchemeMap.append(colorInt, colorScheme)
+        lastColorScheme = colorScheme
         return colorScheme
     }
 
+    private fun generateColorScheme(colorInt: Int) {
+        if (!pendingSeeds.add(colorInt)) return
+        coroutineScope.launch {
+            val colorScheme = MonetColorSchemeCompat(colorInt)
+            colorSchemeCache.put(colorScheme)
+            synchronized(colorSchemeMap) {
+                colorSchemeMap.append(colorInt, colorScheme)
+                pendingSeeds.remove(colorInt)
+            }
+            notifyColorSchemeChanged()
+        }
+    }
+
     fun addListener(listener: ColorSchemeChangeListener) {
         listeners.add(listener)
     }
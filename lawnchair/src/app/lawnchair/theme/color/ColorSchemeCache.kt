@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022, Lawnchair
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app.lawnchair.theme.color
+
+import android.content.Context
+import android.util.Log
+import androidx.annotation.ColorInt
+import androidx.core.content.edit
+
+/**
+ * Small persisted cache of generated [MonetColorSchemeCompat] palettes, keyed by seed color and
+ * [ALGORITHM_VERSION] so that cold starts don't have to redo the CAM16 conversions.
+ */
+class ColorSchemeCache(context: Context) {
+
+    private val prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+
+    @Synchronized
+    fun get(@ColorInt seedColor: Int): MonetColorSchemeCompat? {
+        val value = prefs.getString(getKey(seedColor), null) ?: return null
+        return try {
+            val palettes = value.split(PALETTE_SEPARATOR).map { palette ->
+                palette.split(COLOR_SEPARATOR).map { it.toLong(16).toInt() }
+            }
+            MonetColorSchemeCompat.fromPalettes(seedColor, palettes)
+        } catch (e: RuntimeException) {
+            Log.w(TAG, "Dropping malformed color scheme for ${Integer.toHexString(seedColor)}", e)
+            prefs.edit { remove(getKey(seedColor)) }
+            null
+        }
+    }
+
+    @Synchronized
+    fun put(scheme: MonetColorSchemeCompat) {
+        val key = getKey(scheme.seedColor)
+        val value = scheme.palettes.joinToString(PALETTE_SEPARATOR) { palette ->
+            palette.joinToString(COLOR_SEPARATOR) { Integer.toHexString(it) }
+        }
+        val order = prefs.getString(KEY_ORDER, "")!!
+            .split(COLOR_SEPARATOR)
+            .filter { it.isNotEmpty() && it != key }
+            .toMutableList()
+        order.add(key)
+        prefs.edit {
+            // Drop the least recently written schemes, and anything left by an older algorithm
+            while (order.size > MAX_ENTRIES) {
+                remove(order.removeAt(0))
+            }
+            prefs.all.keys
+                .filter { it != KEY_ORDER && it !in order }
+                .forEach { remove(it) }
+            putString(key, value)
+            putString(KEY_ORDER, order.joinToString(COLOR_SEPARATOR))
+        }
+    }
+
+    private fun getKey(seedColor: Int) = "v${ALGORITHM_VERSION}_${Integer.toHexString(seedColor)}"
+
+    companion object {
+        private const val TAG = "ColorSchemeCache"
+        private const val PREFS_NAME = "color_schemes"
+        private const val KEY_ORDER = "order"
+        private const val PALETTE_SEPARATOR = ";"
+        private const val COLOR_SEPARATOR = ","
+        private const val MAX_ENTRIES = 8
+
+        /**
+         * Bump whenever the output of [com.android.systemui.monet.ColorScheme] changes.
+         */
+        const val ALGORITHM_VERSION = 1
+    }
+}
@@ -103,10 +103,18 @@ data class SetLStarColorToken(
     private val lStar: Double
 ) : ColorToken {
 
+    // Resolved on every bind of the views using it, while the color only changes with the scheme.
+    // Keeps the last result to skip the CAM16 round trip and its iterative search.
+    @Volatile
+    private var lastConversion: Pair<Int, Int>? = null
+
     override fun resolve(context: Context, scheme: ColorScheme, uiColorMode: UiColorMode): Color {
         val color = token.resolveColor(context, scheme, uiColorMode)
+        lastConversion?.let { (from, to) -> if (from == color) return AndroidColor(to) }
         val cam = Cam.fromInt(color)
-        return AndroidColor(Cam.getInt(cam.hue, cam.chroma, lStar.toFloat()))
+        val result = Cam.getInt(cam.hue, cam.chroma, lStar.toFloat())
+        lastConversion = color to result
+        return AndroidColor(result)
     }
 }
 
@@ -6,16 +6,27 @@ import com.android.systemui.monet.ColorScheme as MonetColorScheme
 import dev.kdrag0n.monet.theme.ColorScheme
 import dev.kdrag0n.monet.theme.ColorSwatch
 
-class MonetColorSchemeCompat(@ColorInt private val seedColor: Int) : ColorScheme() {
+class MonetColorSchemeCompat private constructor(
+    @ColorInt val seedColor: Int,
+    /**
+     * The generated tones in the order neutral1, neutral2, accent1, accent2, accent3.
+     */
+    val palettes: List<List<Int>>,
+) : ColorScheme() {
 
-    private val scheme = MonetColorScheme(seedColor, darkTheme = false)
+    constructor(@ColorInt seedColor: Int) : this(
+        seedColor,
+        MonetColorScheme(seedColor, darkTheme = false).let {
+            listOf(it.neutral1, it.neutral2, it.accent1, it.accent2, it.accent3)
+        }
+    )
 
-    override val neutral1: ColorSwatch = mapColors(scheme.neutral1)
-    override val neutral2: ColorSwatch = mapColors(scheme.neutral2)
+    override val neutral1: ColorSwatch = mapColors(palettes[0])
+    override val neutral2: ColorSwatch = mapColors(palettes[1])
 
-    override val accent1: ColorSwatch = mapColors(scheme.accent1)
-    override val accent2: ColorSwatch = mapColors(scheme.accent2)
-    override val accent3: ColorSwatch = mapColors(scheme.accent3)
+    override val accent1: ColorSwatch = mapColors(palettes[2])
+    override val accent2: ColorSwatch = mapColors(palettes[3])
+    override val accent3: ColorSwatch = mapColors(palettes[4])
 
     private fun mapColors(colors: List<Int>): Map<Int, Color> {
         val paletteSize = colors.size
@@ -31,4 +42,16 @@ class MonetColorSchemeCompat(@ColorInt private val seedColor: Int) : ColorScheme
         colorMap[0] = AndroidColor(android.graphics.Color.WHITE)
         return colorMap
     }
+
+    companion object {
+        const val PALETTE_COUNT = 5
+
+        /**
+         * Restores a scheme from previously generated [palettes] without running the CAM16 math.
+         */
+        fun fromPalettes(@ColorInt seedColor: Int, palettes: List<List<Int>>): MonetColorSchemeCompat {
+            require(palettes.size == PALETTE_COUNT) { "expected $PALETTE_COUNT palettes" }
+            return MonetColorSchemeCompat(seedColor, palettes)
+        }
+    }
 }
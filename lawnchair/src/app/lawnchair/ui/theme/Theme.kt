@@ -57,8 +57,17 @@ fun getColorScheme(darkTheme: Boolean): ColorScheme {
     val context = LocalContext.current
     val preferenceManager2 = preferenceManager2()
     val accentColor by preferenceManager2.accentColor.asState()
-    val colorScheme = remember(accentColor) {
-        ThemeProvider.INSTANCE.get(context).colorScheme
+    val themeProvider = ThemeProvider.INSTANCE.get(context)
+    // The scheme for a new seed color may still be generating in the background
+    val colorScheme by produceState(themeProvider.colorScheme, themeProvider, accentColor) {
+        value = themeProvider.colorScheme
+        val listener = object : ThemeProvider.ColorSchemeChangeListener {
+            override fun onColorSchemeChanged() {
+                value = themeProvider.colorScheme
+            }
+        }
+        themeProvider.addListener(listener)
+        awaitDispose { themeProvider.removeListener(listener) }
     }
 
     return m3ColorScheme(colorScheme = colorScheme, isDark = darkTheme)
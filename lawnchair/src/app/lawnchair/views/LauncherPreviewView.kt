@@ -1,7 +1,6 @@
 package app.lawnchair.views
 
 import android.annotation.SuppressLint
-import android.appwidget.AppWidgetProviderInfo
 import android.content.Context
 import android.util.Log
 import android.view.ContextThemeWrapper
@@ -13,14 +12,10 @@ import androidx.annotation.UiThread
 import androidx.annotation.WorkerThread
 import com.android.launcher3.InvariantDeviceProfile
 import com.android.launcher3.LauncherAppState
-import com.android.launcher3.LauncherSettings.Favorites.*
 import com.android.launcher3.R
 import com.android.launcher3.graphics.LauncherPreviewRenderer
-import com.android.launcher3.model.BgDataModel
-import com.android.launcher3.model.GridSizeMigrationTaskV2
-import com.android.launcher3.model.LoaderTask
-import com.android.launcher3.model.ModelDelegate
-import com.android.launcher3.util.ComponentKey
+import com.android.launcher3.graphics.PreviewModelCache
+import com.android.launcher3.graphics.PreviewRenderRecords
 import com.android.launcher3.util.Executors.MAIN_EXECUTOR
 import com.android.launcher3.util.Executors.MODEL_EXECUTOR
 import com.android.launcher3.util.RunnableList
@@ -80,33 +75,24 @@ class LauncherPreviewView(
 
     @WorkerThread
     private fun loadModelData() {
-        val migrated = doGridMigrationIfNecessary()
+        val previewModel = PreviewModelCache.INSTANCE.get(context).getPreviewModel(idp)
 
         val inflationContext = ContextThemeWrapper(appContext, Themes.getActivityThemeRes(context))
-        if (migrated) {
+        if (previewModel != null) {
             val previewContext = LauncherPreviewRenderer.PreviewContext(inflationContext, idp)
-            object : LoaderTask(
-                LauncherAppState.getInstance(previewContext),
-                null,
-                BgDataModel(),
-                ModelDelegate(), null
-            ) {
-                override fun run() {
-                    loadWorkspace(
-                        emptyList(), PREVIEW_CONTENT_URI,
-                        "$SCREEN = 0 or $CONTAINER = $CONTAINER_HOTSEAT"
-                    )
-                    MAIN_EXECUTOR.execute {
-                        renderView(previewContext, mBgDataModel, mWidgetProvidersMap)
-                        onDestroyCallbacks.add { previewContext.onDestroy() }
-                    }
-                }
-            }.run()
+            val records = PreviewRenderRecords.resolve(
+                previewContext, idp, previewModel.dataModel, previewModel.widgetProvidersMap
+            )
+            MAIN_EXECUTOR.execute {
+                renderView(previewContext, records)
+                onDestroyCallbacks.add { previewContext.onDestroy() }
+            }
         } else {
             LauncherAppState.getInstance(inflationContext).model.loadAsync { dataModel ->
                 if (dataModel != null) {
+                    val records = PreviewRenderRecords.resolve(inflationContext, idp, dataModel, null)
                     MAIN_EXECUTOR.execute {
-                        renderView(inflationContext, dataModel, null)
+                        renderView(inflationContext, records)
                     }
                 } else {
                     onReadyCallbacks.executeAllAndDestroy()
@@ -116,21 +102,8 @@ class LauncherPreviewView(
         }
     }
 
-    @WorkerThread
-    private fun doGridMigrationIfNecessary(): Boolean {
-        val needsToMigrate = GridSizeMigrationTaskV2.needsToMigrate(context, idp)
-        if (!needsToMigrate) {
-            return false
-        }
-        return GridSizeMigrationTaskV2.migrateGridIfNeeded(context, idp)
-    }
-
     @UiThread
-    private fun renderView(
-        inflationContext: Context,
-        dataModel: BgDataModel,
-        widgetProviderInfoMap: Map<ComponentKey, AppWidgetProviderInfo>?
-    ) {
+    private fun renderView(inflationContext: Context, records: PreviewRenderRecords) {
         if (destroyed) {
             return
         }
@@ -140,7 +113,8 @@ class LauncherPreviewView(
             renderer.setWorkspaceSearchContainer(R.layout.smartspace_widget_placeholder)
         }
 
-        val view = renderer.getRenderedView(dataModel, widgetProviderInfoMap)
+        val view = renderer.getRenderedView(records)
+        onDestroyCallbacks.add { renderer.destroy() }
         updateScale(view)
         view.pivotX = if (layoutDirection == LAYOUT_DIRECTION_RTL) view.measuredWidth.toFloat() else 0f
         view.pivotY = 0f
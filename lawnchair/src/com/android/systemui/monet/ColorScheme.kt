@@ -75,7 +75,7 @@ class ColorScheme(@ColorInt seed: Int, val darkTheme: Boolean) {
         } else {
             seed
         }
-        val camSeed = Cam.fromInt(seedArgb)
+        val camSeed = if (seedArgb == seed) proposedSeedCam else Cam.fromInt(seedArgb)
         val hue = camSeed.hue
         val chroma = camSeed.chroma.coerceAtLeast(ACCENT1_CHROMA)
         val tertiaryHue = wrapDegrees((hue + ACCENT3_HUE_SHIFT).toInt())
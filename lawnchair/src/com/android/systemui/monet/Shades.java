@@ -16,6 +16,8 @@
 package com.android.systemui.monet;
 
 
+import android.util.LruCache;
+
 import androidx.annotation.ColorInt;
 
 import com.androidinternal.graphics.ColorUtils;
@@ -40,6 +42,12 @@ public class Shades {
      */
     public static final float MIDDLE_LSTAR = 49.6f;
 
+    // Shades already generated, keyed by the bits of their hue and chroma. Schemes of nearby seed
+    // colors, like while picking an accent color, share the palettes of fixed chroma and the
+    // tertiary palette, whose hue is rounded to a degree.
+    private static final int MAX_CACHED_SHADES = 64;
+    private static final LruCache<Long, int[]> sShadesCache = new LruCache<>(MAX_CACHED_SHADES);
+
     /**
      * Generate shades of a color. Ordered in lightness _descending_.
      * <p>
@@ -50,6 +58,17 @@ public class Shades {
      * @return shades of a color, as argb integers. Ordered by lightness descending.
      */
     public static @ColorInt int[] of(float hue, float chroma) {
+        Long key = ((long) Float.floatToIntBits(hue) << 32)
+                | (Float.floatToIntBits(chroma) & 0xffffffffL);
+        int[] shades = sShadesCache.get(key);
+        if (shades == null) {
+            shades = generate(hue, chroma);
+            sShadesCache.put(key, shades);
+        }
+        return shades.clone();
+    }
+
+    private static @ColorInt int[] generate(float hue, float chroma) {
         int[] shades = new int[12];
         // At tone 90 and above, blue and yellow hues can reach a much higher chroma.
         // To preserve a consistent appearance across all hues, use a maximum chroma of 40.
@@ -16,6 +16,8 @@
 
 package com.androidinternal.graphics.cam;
 
+import android.graphics.Color;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.graphics.ColorUtils;
@@ -149,14 +151,20 @@ public class Cam {
      */
     @NonNull
     public static Cam fromIntInFrame(int argb, @NonNull Frame frame) {
-        // Transform ARGB int to XYZ
-        float[] xyz = CamUtils.xyzFromInt(argb);
+        // Transform ARGB int to XYZ, inlined from CamUtils.xyzFromInt to avoid an allocation
+        final float red = CamUtils.linearized(Color.red(argb));
+        final float green = CamUtils.linearized(Color.green(argb));
+        final float blue = CamUtils.linearized(Color.blue(argb));
+        float[][] srgbToXyz = CamUtils.SRGB_TO_XYZ;
+        float x = (red * srgbToXyz[0][0]) + (green * srgbToXyz[0][1]) + (blue * srgbToXyz[0][2]);
+        float y = (red * srgbToXyz[1][0]) + (green * srgbToXyz[1][1]) + (blue * srgbToXyz[1][2]);
+        float z = (red * srgbToXyz[2][0]) + (green * srgbToXyz[2][1]) + (blue * srgbToXyz[2][2]);
 
         // Transform XYZ to 'cone'/'rgb' responses
         float[][] matrix = CamUtils.XYZ_TO_CAM16RGB;
-        float rT = (xyz[0] * matrix[0][0]) + (xyz[1] * matrix[0][1]) + (xyz[2] * matrix[0][2]);
-        float gT = (xyz[0] * matrix[1][0]) + (xyz[1] * matrix[1][1]) + (xyz[2] * matrix[1][2]);
-        float bT = (xyz[0] * matrix[2][0]) + (xyz[1] * matrix[2][1]) + (xyz[2] * matrix[2][2]);
+        float rT = (x * matrix[0][0]) + (y * matrix[0][1]) + (z * matrix[0][2]);
+        float gT = (x * matrix[1][0]) + (y * matrix[1][1]) + (z * matrix[1][2]);
+        float bT = (x * matrix[2][0]) + (y * matrix[2][1]) + (z * matrix[2][2]);
 
         // Discount illuminant
         float rD = frame.getRgbD()[0] * rT;
@@ -206,9 +214,7 @@ public class Cam {
         float eHue = 0.25f * (float) (Math.cos(huePrime * Math.PI / 180.0 + 2.0) + 3.8);
         float p1 = 50000.0f / 13.0f * eHue * frame.getNc() * frame.getNcb();
         float t = p1 * (float) Math.sqrt(a * a + b * b) / (u + 0.305f);
-        float alpha =
-                (float) Math.pow(t, 0.9) * (float) Math.pow(1.64 - Math.pow(0.29, frame.getN()),
-                        0.73);
+        float alpha = (float) Math.pow(t, 0.9) * (float) frame.getAlphaFactor();
         // CAM16 chroma, colorfulness, saturation
         float c = alpha * (float) Math.sqrt(j / 100.0);
         float m = c * frame.getFlRoot();
@@ -283,14 +289,11 @@ public class Cam {
                         ? 0.0f
                         : getChroma() / (float) Math.sqrt(getJ() / 100.0);
 
-        float t =
-                (float) Math.pow(alpha / Math.pow(1.64 - Math.pow(0.29, frame.getN()), 0.73),
-                        1.0 / 0.9);
+        float t = (float) Math.pow(alpha / frame.getAlphaFactor(), 1.0 / 0.9);
         float hRad = getHue() * (float) Math.PI / 180.0f;
 
         float eHue = 0.25f * (float) (Math.cos(hRad + 2.0) + 3.8);
-        float ac = frame.getAw() * (float) Math.pow(getJ() / 100.0,
-                1.0 / frame.getC() / frame.getZ());
+        float ac = frame.getAw() * (float) Math.pow(getJ() / 100.0, frame.getJExponentInverse());
         float p1 = eHue * (50000.0f / 13.0f) * frame.getNc() * frame.getNcb();
         float p2 = (ac / frame.getNbb());
 
@@ -79,6 +79,16 @@ public final class CamUtils {
             {0.01932141f, 0.11916382f, 0.95034478f}
     };
 
+    // Linearized sRGB components scaled to [0, 100], indexed by the 8-bit component value.
+    // Avoids a Math.pow per channel on every int -> XYZ conversion.
+    private static final float[] LINEARIZED = new float[256];
+
+    static {
+        for (int i = 0; i < LINEARIZED.length; i++) {
+            LINEARIZED[i] = computeLinearized(i);
+        }
+    }
+
     static int intFromLstar(float lstar) {
         if (lstar < 1) {
             return 0xff000000;
@@ -154,6 +164,10 @@ public final class CamUtils {
     }
 
     static float linearized(int rgbComponent) {
+        return LINEARIZED[rgbComponent];
+    }
+
+    private static float computeLinearized(int rgbComponent) {
         float normalized = (float) rgbComponent / 255.0f;
 
         if (normalized <= 0.04045f) {
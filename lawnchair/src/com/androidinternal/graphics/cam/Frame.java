@@ -68,6 +68,10 @@ public final class Frame {
     private final float mFl;
     private final float mFlRoot;
     private final float mZ;
+    // Terms of the chroma <-> alpha and J <-> achromatic response conversions that only depend
+    // on the frame, precomputed with the same double precision arithmetic Cam used inline.
+    private final double mAlphaFactor;
+    private final double mJExponentInverse;
 
     float getAw() {
         return mAw;
@@ -110,6 +114,16 @@ public final class Frame {
         return mZ;
     }
 
+    /** Returns {@code (1.64 - 0.29^n)^0.73} */
+    double getAlphaFactor() {
+        return mAlphaFactor;
+    }
+
+    /** Returns {@code 1 / c / z} */
+    double getJExponentInverse() {
+        return mJExponentInverse;
+    }
+
     private Frame(float n, float aw, float nbb, float ncb, float c, float nc, float[] rgbD,
                   float fl, float fLRoot, float z) {
         mN = n;
@@ -122,6 +136,8 @@ public final class Frame {
         mFl = fl;
         mFlRoot = fLRoot;
         mZ = z;
+        mAlphaFactor = Math.pow(1.64 - Math.pow(0.29, n), 0.73);
+        mJExponentInverse = 1.0 / c / z;
     }
 
     /** Create a custom frame. */
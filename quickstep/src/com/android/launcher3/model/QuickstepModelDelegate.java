@@ -30,7 +30,6 @@ import static com.android.launcher3.model.PredictionHelper.wrapAppTargetWithItem
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 
 import android.Manifest;
-import static java.util.stream.Collectors.toCollection;
 
 import android.app.StatsManager;
 import android.app.prediction.AppPredictionContext;
@@ -138,6 +137,7 @@ public class QuickstepModelDelegate extends ModelDelegate {
 
         // Widgets prediction isn't used frequently. And thus, it is not persisted on disk.
         mDataModel.extraItems.put(CONTAINER_WIDGETS_PREDICTION, mWidgetsRecommendationState.items);
+        mDataModel.invalidateItemIndices();
         mActive = true;
     }
 
@@ -374,17 +374,14 @@ public class QuickstepModelDelegate extends ModelDelegate {
 
     private Bundle getBundleForWidgetsOnWorkspace(Context context, BgDataModel dataModel) {
         Bundle bundle = new Bundle();
-        ArrayList<AppTargetEvent> widgetEvents =
-                dataModel.getAllWorkspaceItems().stream()
-                        .filter(PredictionHelper::isTrackedForWidgetPrediction)
-                        .map(item -> {
-                            AppTarget target = getAppTargetFromItemInfo(context, item);
-                            if (target == null) return null;
-                            return wrapAppTargetWithItemLocation(
-                                    target, AppTargetEvent.ACTION_PIN, item);
-                        })
-                        .filter(Objects::nonNull)
-                        .collect(toCollection(ArrayList::new));
+        ArrayList<AppTargetEvent> widgetEvents = new ArrayList<>();
+        dataModel.forAllWorkspaceItems(item -> {
+            if (!PredictionHelper.isTrackedForWidgetPrediction(item)) return;
+            AppTarget target = getAppTargetFromItemInfo(context, item);
+            if (target == null) return;
+            widgetEvents.add(wrapAppTargetWithItemLocation(
+                    target, AppTargetEvent.ACTION_PIN, item));
+        });
         bundle.putParcelableArrayList(BUNDLE_KEY_ADDED_APP_WIDGETS, widgetEvents);
         return bundle;
     }
@@ -52,6 +52,10 @@ public class TaskbarModelCallbacks implements
 
     private boolean mBindInProgress = false;
 
+    // Prediction updates come in bursts, so they are committed at most once per frame
+    private final Runnable mCommitItemsToUI = this::commitItemsToUI;
+    private boolean mCommitScheduled = false;
+
     public TaskbarModelCallbacks(
             TaskbarActivityContext context, TaskbarView container) {
         mContext = context;
@@ -62,6 +66,10 @@ public class TaskbarModelCallbacks implements
         mControllers = controllers;
     }
 
+    public void onDestroy() {
+        cancelScheduledCommit();
+    }
+
     @Override
     public void startBinding() {
         mBindInProgress = true;
@@ -156,11 +164,23 @@ public class TaskbarModelCallbacks implements
     public void bindExtraContainerItems(FixedContainerItems item) {
         if (item.containerId == Favorites.CONTAINER_HOTSEAT_PREDICTION) {
             mPredictedItems = item.items;
-            commitItemsToUI();
+            if (!mCommitScheduled) {
+                mCommitScheduled = true;
+                mContainer.postOnAnimation(mCommitItemsToUI);
+            }
+        }
+    }
+
+    private void cancelScheduledCommit() {
+        if (mCommitScheduled) {
+            mCommitScheduled = false;
+            mContainer.removeCallbacks(mCommitItemsToUI);
         }
     }
 
     private void commitItemsToUI() {
+        // Any scheduled commit is covered by this one
+        cancelScheduledCommit();
         if (mBindInProgress) {
             return;
         }
@@ -15,10 +15,13 @@
  */
 package com.android.launcher3.taskbar;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Canvas;
 import android.graphics.Rect;
+import android.os.UserHandle;
+import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
@@ -32,12 +35,18 @@ import com.android.launcher3.BubbleTextView;
 import com.android.launcher3.Insettable;
 import com.android.launcher3.R;
 import com.android.launcher3.folder.FolderIcon;
+import com.android.launcher3.icons.BitmapInfo;
 import com.android.launcher3.model.data.FolderInfo;
 import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.ItemInfoWithIcon;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.uioverrides.ApiWrapper;
+import com.android.launcher3.util.KeyedListDiff;
 import com.android.launcher3.views.ActivityContext;
 
+import java.util.ArrayList;
+import java.util.Objects;
+
 /**
  * Hosts the Taskbar content such as Hotseat and Recent Apps. Drawn on top of other apps.
  */
@@ -63,6 +72,11 @@ public class TaskbarView extends FrameLayout implements FolderIcon.FolderIconPar
     // Only non-null when the corresponding Folder is open.
     private @Nullable FolderIcon mLeaveBehindFolderIcon;
 
+    // The items shown, in the order of the children
+    private final ArrayList<BoundItem> mBoundItems = new ArrayList<>();
+    private final HotseatUpdater mHotseatUpdater = new HotseatUpdater();
+    private int mNumViewsAnimated;
+
     public TaskbarView(@NonNull Context context) {
         this(context, null);
     }
@@ -114,81 +128,178 @@ public class TaskbarView extends FrameLayout implements FolderIcon.FolderIconPar
     }
 
     /**
-     * Inflates/binds the Hotseat views to show in the Taskbar given their ItemInfos.
+     * Inflates/binds the Hotseat views to show in the Taskbar given their ItemInfos. Only the
+     * differences with the items shown so far are applied: views are kept for the items which
+     * remain, and only rebound if their contents changed.
      */
     protected void updateHotseatItems(ItemInfo[] hotseatItemInfos) {
-        int nextViewIndex = 0;
-        int numViewsAnimated = 0;
+        ArrayList<BoundItem> newItems = new ArrayList<>(hotseatItemInfos.length);
+        for (ItemInfo hotseatItemInfo : hotseatItemInfos) {
+            if (hotseatItemInfo != null) {
+                newItems.add(new BoundItem(hotseatItemInfo));
+            }
+        }
 
-        for (int i = 0; i < hotseatItemInfos.length; i++) {
-            ItemInfo hotseatItemInfo = hotseatItemInfos[i];
-            if (hotseatItemInfo == null) {
-                continue;
+        mNumViewsAnimated = 0;
+        KeyedListDiff.dispatch(mBoundItems, newItems, BoundItem.CALLBACK, mHotseatUpdater);
+        mBoundItems.clear();
+        mBoundItems.addAll(newItems);
+
+        // Unchanged items can still be new instances, which click handling reads from the tag
+        for (int i = 0; i < mBoundItems.size(); i++) {
+            View hotseatView = getChildAt(i);
+            ItemInfo hotseatItemInfo = mBoundItems.get(i).info;
+            if (hotseatView.getTag() != hotseatItemInfo) {
+                hotseatView.setTag(hotseatItemInfo);
             }
+        }
+    }
 
-            // Replace any Hotseat views with the appropriate type if it's not already that type.
-            final int expectedLayoutResId;
-            boolean isFolder = false;
-            if (hotseatItemInfo.isPredictedItem()) {
-                expectedLayoutResId = R.layout.taskbar_predicted_app_icon;
-            } else if (hotseatItemInfo instanceof FolderInfo) {
-                expectedLayoutResId = R.layout.folder_icon;
-                isFolder = true;
-            } else {
-                expectedLayoutResId = R.layout.taskbar_app_icon;
+    private View inflateHotseatView(ItemInfo hotseatItemInfo, @LayoutRes int layoutResId) {
+        View hotseatView;
+        if (hotseatItemInfo instanceof FolderInfo) {
+            FolderIcon folderIcon = FolderIcon.inflateFolderAndIcon(layoutResId,
+                    mActivityContext, this, (FolderInfo) hotseatItemInfo);
+            folderIcon.setTextVisible(false);
+            hotseatView = folderIcon;
+        } else {
+            hotseatView = inflate(layoutResId);
+        }
+        hotseatView.setPadding(mItemPadding, mItemPadding, mItemPadding, mItemPadding);
+        return hotseatView;
+    }
+
+    private void bindHotseatView(View hotseatView, ItemInfo hotseatItemInfo) {
+        if (hotseatView instanceof BubbleTextView
+                && hotseatItemInfo instanceof WorkspaceItemInfo) {
+            BubbleTextView btv = (BubbleTextView) hotseatView;
+            WorkspaceItemInfo workspaceInfo = (WorkspaceItemInfo) hotseatItemInfo;
+
+            boolean animate = btv.shouldAnimateIconChange(workspaceInfo);
+            btv.applyFromWorkspaceItem(workspaceInfo, animate, mNumViewsAnimated);
+            if (animate) {
+                mNumViewsAnimated++;
             }
+        }
+    }
+
+    /**
+     * Applies the hotseat diff to the children, which are always in the order of mBoundItems.
+     */
+    private class HotseatUpdater implements KeyedListDiff.UpdateCallback<BoundItem> {
+
+        @Override
+        public void onRemoved(int position) {
+            removeAndRecycle(getChildAt(position));
+        }
 
-            View hotseatView = null;
-            while (nextViewIndex < getChildCount()) {
-                hotseatView = getChildAt(nextViewIndex);
-
-                // see if the view can be reused
-                if ((hotseatView.getSourceLayoutResId() != expectedLayoutResId)
-                        || (isFolder && (hotseatView.getTag() != hotseatItemInfo))) {
-                    // Unlike for BubbleTextView, we can't reapply a new FolderInfo after inflation,
-                    // so if the info changes we need to reinflate. This should only happen if a new
-                    // folder is dragged to the position that another folder previously existed.
-                    removeAndRecycle(hotseatView);
-                    hotseatView = null;
-                } else {
-                    // View found
-                    break;
-                }
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            // Reorders the child without removing it from the window
+            View hotseatView = getChildAt(fromPosition);
+            detachViewFromParent(fromPosition);
+            attachViewToParent(hotseatView, toPosition, hotseatView.getLayoutParams());
+            requestLayout();
+            invalidate();
+        }
+
+        @Override
+        public void onInserted(int position, BoundItem item) {
+            View hotseatView = inflateHotseatView(item.info, item.layoutResId);
+            addView(hotseatView, position, new LayoutParams(mIconTouchSize, mIconTouchSize));
+            bindHotseatView(hotseatView, item.info);
+            setClickAndLongClickListenersForIcon(hotseatView);
+        }
+
+        @Override
+        public void onChanged(int position, BoundItem item) {
+            bindHotseatView(getChildAt(position), item.info);
+        }
+    }
+
+    /**
+     * A hotseat item, with the contents its view was bound to. The contents are copied, as the
+     * model updates some items in place.
+     */
+    private static final class BoundItem {
+
+        static final KeyedListDiff.ItemCallback<BoundItem> CALLBACK =
+                new KeyedListDiff.ItemCallback<BoundItem>() {
+                    @Override
+                    public boolean areItemsTheSame(BoundItem oldItem, BoundItem newItem) {
+                        return oldItem.isSameItem(newItem);
+                    }
+
+                    @Override
+                    public boolean areContentsTheSame(BoundItem oldItem, BoundItem newItem) {
+                        return oldItem.hasSameContents(newItem);
+                    }
+                };
+
+        final ItemInfo info;
+        final @LayoutRes int layoutResId;
+
+        private final int mScreenId;
+        private final ComponentName mComponent;
+        private final UserHandle mUser;
+        private final CharSequence mTitle;
+        private final CharSequence mContentDescription;
+        private final BitmapInfo mBitmap;
+        private final int mRuntimeStatusFlags;
+        private final int mProgressLevel;
+
+        BoundItem(ItemInfo info) {
+            this.info = info;
+            if (info.isPredictedItem()) {
+                layoutResId = R.layout.taskbar_predicted_app_icon;
+            } else if (info instanceof FolderInfo) {
+                layoutResId = R.layout.folder_icon;
+            } else {
+                layoutResId = R.layout.taskbar_app_icon;
             }
 
-            if (hotseatView == null) {
-                if (isFolder) {
-                    FolderInfo folderInfo = (FolderInfo) hotseatItemInfo;
-                    FolderIcon folderIcon = FolderIcon.inflateFolderAndIcon(expectedLayoutResId,
-                            mActivityContext, this, folderInfo);
-                    folderIcon.setTextVisible(false);
-                    hotseatView = folderIcon;
-                } else {
-                    hotseatView = inflate(expectedLayoutResId);
-                }
-                LayoutParams lp = new LayoutParams(mIconTouchSize, mIconTouchSize);
-                hotseatView.setPadding(mItemPadding, mItemPadding, mItemPadding, mItemPadding);
-                addView(hotseatView, nextViewIndex, lp);
+            mScreenId = info.screenId;
+            mComponent = info.getTargetComponent();
+            mUser = info.user;
+            mTitle = info.title;
+            mContentDescription = info.contentDescription;
+            if (info instanceof ItemInfoWithIcon) {
+                ItemInfoWithIcon infoWithIcon = (ItemInfoWithIcon) info;
+                mBitmap = infoWithIcon.bitmap;
+                mRuntimeStatusFlags = infoWithIcon.runtimeStatusFlags;
+                mProgressLevel = infoWithIcon.getProgressLevel();
+            } else {
+                mBitmap = null;
+                mRuntimeStatusFlags = 0;
+                mProgressLevel = 0;
             }
+        }
 
-            // Apply the Hotseat ItemInfos, or hide the view if there is none for a given index.
-            if (hotseatView instanceof BubbleTextView
-                    && hotseatItemInfo instanceof WorkspaceItemInfo) {
-                BubbleTextView btv = (BubbleTextView) hotseatView;
-                WorkspaceItemInfo workspaceInfo = (WorkspaceItemInfo) hotseatItemInfo;
-
-                boolean animate = btv.shouldAnimateIconChange((WorkspaceItemInfo) hotseatItemInfo);
-                btv.applyFromWorkspaceItem(workspaceInfo, animate, numViewsAnimated);
-                if (animate) {
-                    numViewsAnimated++;
-                }
+        boolean isSameItem(BoundItem other) {
+            if (layoutResId != other.layoutResId) {
+                return false;
             }
-            setClickAndLongClickListenersForIcon(hotseatView);
-            nextViewIndex++;
+            if (info.isPredictedItem()) {
+                // Prediction slots keep their view, which animates to the new prediction
+                return mScreenId == other.mScreenId;
+            }
+            if (info instanceof FolderInfo || info.id == ItemInfo.NO_ID) {
+                // Unlike for BubbleTextView, we can't reapply a new FolderInfo after inflation,
+                // so if the info changes we need to reinflate. This should only happen if a new
+                // folder is dragged to the position that another folder previously existed.
+                return info == other.info;
+            }
+            return info.id == other.info.id;
         }
-        // Remove remaining views
-        while (nextViewIndex < getChildCount()) {
-            removeAndRecycle(getChildAt(nextViewIndex));
+
+        boolean hasSameContents(BoundItem other) {
+            return Objects.equals(mComponent, other.mComponent)
+                    && Objects.equals(mUser, other.mUser)
+                    && TextUtils.equals(mTitle, other.mTitle)
+                    && TextUtils.equals(mContentDescription, other.mContentDescription)
+                    && mBitmap == other.mBitmap
+                    && mRuntimeStatusFlags == other.mRuntimeStatusFlags
+                    && mProgressLevel == other.mProgressLevel;
         }
     }
 
@@ -97,6 +97,7 @@ public class TaskbarViewController {
 
     public void onDestroy() {
         LauncherAppState.getInstance(mActivity).getModel().removeCallbacks(mModelCallbacks);
+        mModelCallbacks.onDestroy();
     }
 
     public boolean areIconsVisible() {
@@ -25,6 +25,7 @@ import static com.android.launcher3.icons.GraphicsUtils.setColorAlphaBound;
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.ObjectAnimator;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.res.ColorStateList;
 import android.content.res.TypedArray;
@@ -53,6 +54,7 @@ import androidx.annotation.UiThread;
 
 import com.android.launcher3.accessibility.LauncherAccessibilityDelegate;
 import com.android.launcher3.dot.DotInfo;
+import com.android.launcher3.dot.DotViewIndex;
 import com.android.launcher3.dragndrop.DraggableView;
 import com.android.launcher3.folder.FolderIcon;
 import com.android.launcher3.graphics.IconPalette;
@@ -70,6 +72,7 @@ import com.android.launcher3.model.data.PackageItemInfo;
 import com.android.launcher3.model.data.SearchActionItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.ShortcutUtil;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.views.BubbleTextHolder;
 import com.android.launcher3.views.IconLabelDotView;
@@ -248,6 +251,41 @@ public class BubbleTextView extends TextView implements ItemInfoUpdateReceiver,
         super.onFocusChanged(focused, direction, previouslyFocusedRect);
     }
 
+    @Override
+    public void setTag(Object tag) {
+        super.setTag(tag);
+        if (isAttachedToWindow()) {
+            updateDotViewIndex();
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateDotViewIndex();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        DotViewIndex index = mActivity.getDotViewIndex();
+        if (index != null) {
+            index.unregister(this);
+        }
+    }
+
+    private void updateDotViewIndex() {
+        DotViewIndex index = mActivity.getDotViewIndex();
+        if (index == null) {
+            return;
+        }
+        if (getTag() instanceof ItemInfo) {
+            index.register(this, (ItemInfo) getTag());
+        } else {
+            index.unregister(this);
+        }
+    }
+
     /**
      * Resets the view so it can be recycled.
      */
@@ -430,6 +468,9 @@ public class BubbleTextView extends TextView implements ItemInfoUpdateReceiver,
             return false;
         }
         if (isLongClickable()) {
+            if (event.getAction() == MotionEvent.ACTION_DOWN) {
+                prefetchDeepShortcuts();
+            }
             super.onTouchEvent(event);
             mLongPressHelper.onTouchEvent(event);
             // Keep receiving the rest of the events
@@ -439,6 +480,23 @@ public class BubbleTextView extends TextView implements ItemInfoUpdateReceiver,
         }
     }
 
+    /**
+     * Starts loading the deep shortcuts of this icon, so that they are ready if a long press
+     * opens its popup.
+     */
+    private void prefetchDeepShortcuts() {
+        if (!(getTag() instanceof ItemInfo)) {
+            return;
+        }
+        ItemInfo info = (ItemInfo) getTag();
+        LauncherAppState app = LauncherAppState.getInstanceNoCreate();
+        ComponentName activity = info.getTargetComponent();
+        if (app == null || activity == null || !ShortcutUtil.supportsDeepShortcuts(info)) {
+            return;
+        }
+        app.getModel().getDeepShortcutCache().prefetch(app.getContext(), activity, info.user);
+    }
+
     /**
      * Returns true if the touch down at the provided position be ignored
      */
@@ -46,13 +46,10 @@ import com.android.launcher3.uioverrides.ApiWrapper;
 import com.android.launcher3.util.DisplayController;
 import com.android.launcher3.util.DisplayController.Info;
 import com.android.launcher3.util.WindowBounds;
-import com.patrykmichalik.opto.core.PreferenceExtensionsKt;
 
 import java.io.PrintWriter;
 
 import app.lawnchair.DeviceProfileOverrides;
-import app.lawnchair.preferences2.PreferenceManager2;
-import app.lawnchair.theme.color.ColorOption;
 
 @SuppressLint("NewApi")
 public class DeviceProfile {
@@ -236,9 +233,10 @@ public class DeviceProfile {
     DeviceProfile(Context context, InvariantDeviceProfile inv, Info info, WindowBounds windowBounds,
             boolean isMultiWindowMode, boolean transposeLayoutWithOrientation,
             boolean useTwoPanels) {
-        mTextFactors = DeviceProfileOverrides.INSTANCE.get(context).getTextFactors();
-        PreferenceManager2 preferenceManager2 = PreferenceManager2.INSTANCE.get(context);
-        allAppsCellHeightMultiplier = PreferenceExtensionsKt.firstBlocking(preferenceManager2.getDrawerCellHeightFactor());
+        DeviceProfileOverrides.ProfileOptions profileOptions =
+                DeviceProfileOverrides.INSTANCE.get(context).getProfileOptions(context);
+        mTextFactors = profileOptions.getTextFactors();
+        allAppsCellHeightMultiplier = profileOptions.getDrawerCellHeightFactor();
 
         this.inv = inv;
         this.isLandscape = windowBounds.isLandscape();
@@ -351,7 +349,7 @@ public class DeviceProfile {
         int hotseatBottomPaddingRes;
         int hotseatBottomNonTallPaddingRes;
         int hotseatExtraVerticalSizeRes;
-        boolean hotseatQsb = PreferenceExtensionsKt.firstBlocking(preferenceManager2.getHotseatQsb());
+        boolean hotseatQsb = profileOptions.getHotseatQsb();
         if (hotseatQsb) {
             hotseatTopPaddingRes = R.dimen.dynamic_grid_hotseat_top_padding;
             hotseatBottomPaddingRes = R.dimen.dynamic_grid_hotseat_bottom_padding;
@@ -495,7 +493,7 @@ public class DeviceProfile {
                 R.dimen.drag_flingToDeleteMinVelocity);
 
         // Check if notification dots should show the notification count
-        boolean showNotificationCount = PreferenceExtensionsKt.firstBlocking(preferenceManager2.getShowNotificationCount());
+        boolean showNotificationCount = profileOptions.getShowNotificationCount();
 
         // Load the default font to use on notification dots
         Typeface typeface = null;
@@ -504,8 +502,7 @@ public class DeviceProfile {
         }
 
         // Load dot color
-        ColorOption colorOption = PreferenceExtensionsKt.firstBlocking(preferenceManager2.getNotificationDotColor());
-        int color = colorOption.getColorPreferenceEntry().getLightColor().invoke(context);
+        int color = profileOptions.getNotificationDotColor();
 
         // This is done last, after iconSizePx is calculated above.
         Path dotPath = GraphicsUtils.getShapePath(DEFAULT_DOT_SIZE);
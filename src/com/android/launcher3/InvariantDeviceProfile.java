@@ -28,12 +28,12 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.content.res.Resources;
-import android.content.res.TypedArray;
 import android.content.res.XmlResourceParser;
 import android.graphics.Point;
 import android.graphics.PointF;
 import android.graphics.Rect;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.Log;
@@ -177,6 +177,11 @@ public class InvariantDeviceProfile {
 
     private final ArrayList<OnIDPChangeListener> mChangeListeners = new ArrayList<>();
 
+    // Display options loaded from DeviceProfilesTable, by device type
+    private final SparseArray<List<DisplayOption>> mDisplayOptions = new SparseArray<>();
+    // Profiles built by the last initGrid, reused by the next one when their inputs are unchanged
+    private ArrayMap<ProfileKey, DeviceProfile> mProfileCache = new ArrayMap<>();
+
     @VisibleForTesting
     public InvariantDeviceProfile() {
     }
@@ -373,17 +378,23 @@ public class InvariantDeviceProfile {
         fillResIconDpi = getLauncherIconDensity(iconBitmapSize);
 
         final List<DeviceProfile> localSupportedProfiles = new ArrayList<>();
+        final ArrayMap<ProfileKey, DeviceProfile> profileCache = new ArrayMap<>();
+        final Object[] profileState = toProfileState(context, displayInfo);
         defaultWallpaperSize = new Point(displayInfo.currentSize);
         for (WindowBounds bounds : displayInfo.supportedBounds) {
-            DeviceProfile dp;
-            try {
-                dp = new DeviceProfile.Builder(context, this, displayInfo)
-                        .setUseTwoPanels(deviceType == TYPE_MULTI_DISPLAY)
-                        .setWindowBounds(bounds).build();
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to create device profile for bounds " + bounds, e);
-                continue;
+            ProfileKey key = new ProfileKey(profileState, bounds, displayInfo.isTablet(bounds));
+            DeviceProfile dp = mProfileCache.get(key);
+            if (dp == null) {
+                try {
+                    dp = new DeviceProfile.Builder(context, this, displayInfo)
+                            .setUseTwoPanels(deviceType == TYPE_MULTI_DISPLAY)
+                            .setWindowBounds(bounds).build();
+                } catch (Exception e) {
+                    Log.e(TAG, "Failed to create device profile for bounds " + bounds, e);
+                    continue;
+                }
             }
+            profileCache.put(key, dp);
             localSupportedProfiles.add(dp);
 
             // Wallpaper size should be the maximum of the all possible sizes Launcher expects
@@ -401,6 +412,7 @@ public class InvariantDeviceProfile {
                     Math.max(defaultWallpaperSize.x, Math.round(parallaxFactor * displayWidth));
         }
         supportedProfiles = Collections.unmodifiableList(localSupportedProfiles);
+        mProfileCache = profileCache;
 
         ComponentName cn = new ComponentName(context.getPackageName(), getClass().getName());
         defaultWidgetPadding = AppWidgetHostView.getDefaultPaddingForWidget(context, cn, null);
@@ -432,6 +444,21 @@ public class InvariantDeviceProfile {
                 numDatabaseAllAppsColumns, dbFile};
     }
 
+    /**
+     * Returns the state, besides the window bounds, that the {@link DeviceProfile}s built by
+     * {@link #initGrid} depend on. This is the resulting grid rather than the preferences it was
+     * computed from, along with the preferences read by the profiles themselves.
+     */
+    private Object[] toProfileState(Context context, Info displayInfo) {
+        return new Object[]{
+                closestProfile, deviceType, numRows, numColumns, numFolderRows, numFolderColumns,
+                numShownHotseatIcons, numDatabaseHotseatIcons, numAllAppsColumns,
+                numDatabaseAllAppsColumns, isScalable, devicePaddingId, enableTaskbarOnPhone,
+                iconBitmapSize, iconSize, iconTextSize, minCellSize, borderSpaces,
+                folderBorderSpace, horizontalMargin, displayInfo.densityDpi, displayInfo.fontScale,
+                DeviceProfileOverrides.INSTANCE.get(context).getProfileOptions(context)};
+    }
+
     private void onConfigChanged(Context context) {
         Object[] oldState = toModelState();
 
@@ -445,43 +472,19 @@ public class InvariantDeviceProfile {
         }
     }
 
-    private static ArrayList<DisplayOption> getPredefinedDeviceProfiles(Context context,
+    private ArrayList<DisplayOption> getPredefinedDeviceProfiles(Context context,
             String gridName, @DeviceType int deviceType, boolean allowDisabledGrid) {
         ArrayList<DisplayOption> profiles = new ArrayList<>();
-
-        try (XmlResourceParser parser = context.getResources().getXml(R.xml.device_profiles)) {
-            final int depth = parser.getDepth();
-            int type;
-            while (((type = parser.next()) != XmlPullParser.END_TAG ||
-                    parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
-                if ((type == XmlPullParser.START_TAG)
-                        && GridOption.TAG_NAME.equals(parser.getName())) {
-
-                    GridOption gridOption = new GridOption(context, Xml.asAttributeSet(parser),
-                            deviceType);
-                    if (gridOption.isEnabled || allowDisabledGrid) {
-                        final int displayDepth = parser.getDepth();
-                        while (((type = parser.next()) != XmlPullParser.END_TAG
-                                || parser.getDepth() > displayDepth)
-                                && type != XmlPullParser.END_DOCUMENT) {
-                            if ((type == XmlPullParser.START_TAG) && "display-option".equals(
-                                    parser.getName())) {
-                                profiles.add(new DisplayOption(gridOption, context,
-                                        Xml.asAttributeSet(parser)));
-                            }
-                        }
-                    }
-                }
+        for (DisplayOption option : getDisplayOptions(deviceType)) {
+            if (option.grid.isEnabled || allowDisabledGrid) {
+                profiles.add(option);
             }
-        } catch (IOException | XmlPullParserException e) {
-            throw new RuntimeException(e);
         }
 
         ArrayList<DisplayOption> filteredProfiles = new ArrayList<>();
         if (!TextUtils.isEmpty(gridName)) {
             for (DisplayOption option : profiles) {
-                if (gridName.equals(option.grid.name)
-                        && (option.grid.isEnabled || allowDisabledGrid)) {
+                if (gridName.equals(option.grid.name)) {
                     filteredProfiles.add(option);
                 }
             }
@@ -501,30 +504,84 @@ public class InvariantDeviceProfile {
     }
 
     /**
-     * @return all the grid options that can be shown on the device
+     * Returns the display options of all the grids, enabled or not, for {@param deviceType}.
+     * They are loaded once per device type, and must not be modified.
      */
-    public static List<GridOption> parseAllGridOptions(Context context) {
-        Info defaultInfo = DisplayController.INSTANCE.get(context).getInfo();
-        @DeviceType int deviceType = getDeviceType(defaultInfo);
-        List<GridOption> result = new ArrayList<>();
+    private List<DisplayOption> getDisplayOptions(@DeviceType int deviceType) {
+        List<DisplayOption> cached = mDisplayOptions.get(deviceType);
+        if (cached == null) {
+            cached = loadDisplayOptions(deviceType);
+            mDisplayOptions.put(deviceType, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Returns the display options of all the grids for {@param deviceType}, from the table
+     * precompiled from R.xml.device_profiles at build time.
+     */
+    @VisibleForTesting
+    static List<DisplayOption> loadDisplayOptions(@DeviceType int deviceType) {
+        ArrayList<DisplayOption> profiles = new ArrayList<>();
+        for (int i = 0; i < DeviceProfilesTable.GRID_OPTIONS.length; i++) {
+            GridOption gridOption = new GridOption(
+                    OptionAttrs.fromTable(DeviceProfilesTable.GRID_OPTIONS[i]),
+                    new SparseArray<>(), deviceType);
+            for (Object[] displayOption : DeviceProfilesTable.DISPLAY_OPTIONS[i]) {
+                profiles.add(new DisplayOption(gridOption, OptionAttrs.fromTable(displayOption)));
+            }
+        }
+        return profiles;
+    }
 
+    /**
+     * Returns the display options of all the grids for {@param deviceType}, parsed from
+     * R.xml.device_profiles. This is what {@link #loadDisplayOptions} must be equivalent to.
+     */
+    @VisibleForTesting
+    static List<DisplayOption> parseDisplayOptions(Context context, @DeviceType int deviceType) {
+        ArrayList<DisplayOption> profiles = new ArrayList<>();
         try (XmlResourceParser parser = context.getResources().getXml(R.xml.device_profiles)) {
             final int depth = parser.getDepth();
             int type;
-            while (((type = parser.next()) != XmlPullParser.END_TAG
-                    || parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
+            while (((type = parser.next()) != XmlPullParser.END_TAG ||
+                    parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
                 if ((type == XmlPullParser.START_TAG)
                         && GridOption.TAG_NAME.equals(parser.getName())) {
-                    GridOption option =
-                            new GridOption(context, Xml.asAttributeSet(parser), deviceType);
-                    if (option.isEnabled) {
-                        result.add(option);
+
+                    GridOption gridOption = new GridOption(context, Xml.asAttributeSet(parser),
+                            deviceType);
+                    final int displayDepth = parser.getDepth();
+                    while (((type = parser.next()) != XmlPullParser.END_TAG
+                            || parser.getDepth() > displayDepth)
+                            && type != XmlPullParser.END_DOCUMENT) {
+                        if ((type == XmlPullParser.START_TAG) && "display-option".equals(
+                                parser.getName())) {
+                            profiles.add(new DisplayOption(gridOption, context,
+                                    Xml.asAttributeSet(parser)));
+                        }
                     }
                 }
             }
         } catch (IOException | XmlPullParserException e) {
-            Log.e(TAG, "Error parsing device profile", e);
-            return Collections.emptyList();
+            throw new RuntimeException(e);
+        }
+        return profiles;
+    }
+
+    /**
+     * @return all the grid options that can be shown on the device
+     */
+    public static List<GridOption> parseAllGridOptions(Context context) {
+        Info defaultInfo = DisplayController.INSTANCE.get(context).getInfo();
+        @DeviceType int deviceType = getDeviceType(defaultInfo);
+        List<GridOption> result = new ArrayList<>();
+        for (Object[] values : DeviceProfilesTable.GRID_OPTIONS) {
+            GridOption option =
+                    new GridOption(OptionAttrs.fromTable(values), new SparseArray<>(), deviceType);
+            if (option.isEnabled) {
+                result.add(option);
+            }
         }
         return result;
     }
@@ -603,7 +660,8 @@ public class InvariantDeviceProfile {
         float weights = 0;
 
         if (dist(width, height, closestPoint.minWidthDps, closestPoint.minHeightDps) == 0) {
-            return closestPoint;
+            // Return a copy, as the parsed options are cached and the result gets modified
+            return new DisplayOption(closestOption).add(closestPoint);
         }
 
         DisplayOption out = new DisplayOption(closestOption);
@@ -729,8 +787,15 @@ public class InvariantDeviceProfile {
         private final SparseArray<TypedValue> extraAttrs;
 
         public GridOption(Context context, AttributeSet attrs, @DeviceType int deviceType) {
-            TypedArray a = context.obtainStyledAttributes(
-                    attrs, R.styleable.GridDisplayOption);
+            this(OptionAttrs.fromTypedArray(
+                    context.obtainStyledAttributes(attrs, R.styleable.GridDisplayOption)),
+                    Themes.createValueMap(context, attrs,
+                            IntArray.wrap(R.styleable.GridDisplayOption)),
+                    deviceType);
+        }
+
+        GridOption(OptionAttrs a, SparseArray<TypedValue> extraAttrs,
+                @DeviceType int deviceType) {
             name = a.getString(R.styleable.GridDisplayOption_name);
             numRows = a.getInt(R.styleable.GridDisplayOption_numRows, 0);
             numColumns = a.getInt(R.styleable.GridDisplayOption_numColumns, 0);
@@ -774,8 +839,40 @@ public class InvariantDeviceProfile {
                             == DEVICE_CATEGORY_MULTI_DISPLAY));
 
             a.recycle();
-            extraAttrs = Themes.createValueMap(context, attrs,
-                    IntArray.wrap(R.styleable.GridDisplayOption));
+            this.extraAttrs = extraAttrs;
+        }
+    }
+
+    /**
+     * Key of a {@link DeviceProfile} built by {@link #initGrid}.
+     */
+    private static final class ProfileKey {
+
+        private final Object[] mState;
+        private final WindowBounds mBounds;
+        private final boolean mIsTablet;
+        private final int mHashCode;
+
+        ProfileKey(Object[] state, WindowBounds bounds, boolean isTablet) {
+            mState = state;
+            mBounds = bounds;
+            mIsTablet = isTablet;
+            mHashCode = 31 * Arrays.deepHashCode(state) + bounds.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ProfileKey)) {
+                return false;
+            }
+            ProfileKey other = (ProfileKey) obj;
+            return mHashCode == other.mHashCode && mIsTablet == other.mIsTablet
+                    && mBounds.equals(other.mBounds) && Arrays.deepEquals(mState, other.mState);
         }
     }
 
@@ -798,9 +895,12 @@ public class InvariantDeviceProfile {
         private final float[] textSizes = new float[COUNT_SIZES];
 
         DisplayOption(GridOption grid, Context context, AttributeSet attrs) {
-            this.grid = grid;
+            this(grid, OptionAttrs.fromTypedArray(
+                    context.obtainStyledAttributes(attrs, R.styleable.ProfileDisplayOption)));
+        }
 
-            TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.ProfileDisplayOption);
+        DisplayOption(GridOption grid, OptionAttrs a) {
+            this.grid = grid;
 
             minWidthDps = a.getFloat(R.styleable.ProfileDisplayOption_minWidthDps, 0);
             minHeightDps = a.getFloat(R.styleable.ProfileDisplayOption_minHeightDps, 0);
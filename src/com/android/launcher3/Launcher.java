@@ -133,6 +133,7 @@ import com.android.launcher3.anim.PropertyListBuilder;
 import com.android.launcher3.compat.AccessibilityManagerCompat;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.dot.DotInfo;
+import com.android.launcher3.dot.DotViewIndex;
 import com.android.launcher3.dragndrop.DragController;
 import com.android.launcher3.dragndrop.DragLayer;
 import com.android.launcher3.dragndrop.DragOptions;
@@ -226,7 +227,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Set;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
@@ -344,6 +345,7 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
     private LauncherAccessibilityDelegate mAccessibilityDelegate;
 
     private PopupDataProvider mPopupDataProvider;
+    private final DotViewIndex mDotViewIndex = new DotViewIndex();
 
     private IntSet mSynchronouslyBoundPages = new IntSet();
     @NonNull private IntSet mPagesToBindSynchronously = new IntSet();
@@ -692,6 +694,11 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
         return mPopupDataProvider.getDotInfoForItem(info);
     }
 
+    @Override
+    public DotViewIndex getDotViewIndex() {
+        return mDotViewIndex;
+    }
+
     @Override
     public void invalidateParent(ItemInfo info) {
         if (info.container >= 0) {
@@ -1438,9 +1445,14 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
         }
     };
 
-    private void updateNotificationDots(Predicate<PackageUserKey> updatedDots) {
-        mWorkspace.updateNotificationDots(updatedDots);
-        mAppsView.getAppsStore().updateNotificationDots(updatedDots);
+    private void updateNotificationDots(Set<PackageUserKey> updatedDots) {
+        mDotViewIndex.forEachView(updatedDots, v -> {
+            if (v instanceof BubbleTextView && v.getTag() instanceof ItemInfo) {
+                ((BubbleTextView) v).applyDotState((ItemInfo) v.getTag(), true /* animate */);
+            } else if (v instanceof FolderIcon) {
+                ((FolderIcon) v).updateDotInfo();
+            }
+        });
     }
 
     @Override
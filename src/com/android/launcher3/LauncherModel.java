@@ -61,6 +61,7 @@ import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.pm.InstallSessionTracker;
 import com.android.launcher3.pm.PackageInstallInfo;
 import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.shortcuts.DeepShortcutCache;
 import com.android.launcher3.shortcuts.ShortcutRequest;
 import com.android.launcher3.testing.TestProtocol;
 import com.android.launcher3.util.IntSet;
@@ -106,6 +107,14 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
         }
     }
 
+    /**
+     * Returns the {@link BgDataModel#getVersion()} of the loaded workspace, or -1 if the model
+     * is not loaded.
+     */
+    public int getWorkspaceVersion() {
+        return isModelLoaded() ? mBgDataModel.getVersion() : -1;
+    }
+
     private final ArrayList<Callbacks> mCallbacksList = new ArrayList<>(1);
 
     // < only access in worker thread >
@@ -141,6 +150,13 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
         return mModelDelegate;
     }
 
+    /**
+     * Returns the cache of published deep shortcuts, which can be used from any thread.
+     */
+    public DeepShortcutCache getDeepShortcutCache() {
+        return mBgDataModel.deepShortcutCache;
+    }
+
     /**
      * Adds the provided items to the workspace.
      */
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3;
+
+import android.content.res.TypedArray;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Styleable attribute values of a grid or display option of {@code R.xml.device_profiles}, read
+ * either from the xml through a {@link TypedArray} or from the precompiled
+ * {@code DeviceProfilesTable}. Mirrors the subset of {@link TypedArray} used by
+ * {@link InvariantDeviceProfile}, so that both sources go through the same defaults.
+ */
+interface OptionAttrs {
+
+    boolean hasValue(int index);
+
+    @Nullable
+    String getString(int index);
+
+    int getInt(int index, int defValue);
+
+    float getFloat(int index, float defValue);
+
+    boolean getBoolean(int index, boolean defValue);
+
+    int getResourceId(int index, int defValue);
+
+    void recycle();
+
+    static OptionAttrs fromTypedArray(TypedArray a) {
+        return new OptionAttrs() {
+            @Override
+            public boolean hasValue(int index) {
+                return a.hasValue(index);
+            }
+
+            @Override
+            public String getString(int index) {
+                return a.getString(index);
+            }
+
+            @Override
+            public int getInt(int index, int defValue) {
+                return a.getInt(index, defValue);
+            }
+
+            @Override
+            public float getFloat(int index, float defValue) {
+                return a.getFloat(index, defValue);
+            }
+
+            @Override
+            public boolean getBoolean(int index, boolean defValue) {
+                return a.getBoolean(index, defValue);
+            }
+
+            @Override
+            public int getResourceId(int index, int defValue) {
+                return a.getResourceId(index, defValue);
+            }
+
+            @Override
+            public void recycle() {
+                a.recycle();
+            }
+        };
+    }
+
+    /**
+     * @param values pairs of styleable index and value, as generated in DeviceProfilesTable
+     */
+    static OptionAttrs fromTable(Object[] values) {
+        return new OptionAttrs() {
+            @Override
+            public boolean hasValue(int index) {
+                return get(index) != null;
+            }
+
+            @Override
+            public String getString(int index) {
+                Object value = get(index);
+                return value == null ? null : value.toString();
+            }
+
+            @Override
+            public int getInt(int index, int defValue) {
+                Object value = get(index);
+                return value instanceof Number ? ((Number) value).intValue() : defValue;
+            }
+
+            @Override
+            public float getFloat(int index, float defValue) {
+                Object value = get(index);
+                return value instanceof Number ? ((Number) value).floatValue() : defValue;
+            }
+
+            @Override
+            public boolean getBoolean(int index, boolean defValue) {
+                Object value = get(index);
+                return value instanceof Boolean ? (Boolean) value : defValue;
+            }
+
+            @Override
+            public int getResourceId(int index, int defValue) {
+                return getInt(index, defValue);
+            }
+
+            @Override
+            public void recycle() { }
+
+            private Object get(int index) {
+                for (int i = 0; i < values.length; i += 2) {
+                    if ((Integer) values[i] == index) {
+                        return values[i + 1];
+                    }
+                }
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.dot;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.PackageUserKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Reverse index from {@link PackageUserKey} to the attached views which show a notification dot
+ * for that package, so that a dot change only touches the affected views.
+ *
+ * Views register themselves when attached or rebound and unregister when detached. Must only be
+ * accessed on the UI thread.
+ */
+public class DotViewIndex {
+
+    private final HashMap<PackageUserKey, List<View>> mViewsByKey = new HashMap<>();
+    private final HashMap<View, Collection<PackageUserKey>> mKeysByView = new HashMap<>();
+
+    private final HashSet<View> mTmpVisited = new HashSet<>();
+    private final ArrayList<View> mTmpViews = new ArrayList<>();
+
+    /**
+     * Registers a view bound to {@param info}, replacing any previous registration of the view.
+     * For folders the view is registered for the packages of all the folder contents.
+     */
+    public void register(@NonNull View view, @NonNull ItemInfo info) {
+        unregister(view);
+        Collection<PackageUserKey> keys = getKeys(info);
+        if (keys.isEmpty()) {
+            return;
+        }
+        mKeysByView.put(view, keys);
+        for (PackageUserKey key : keys) {
+            List<View> views = mViewsByKey.get(key);
+            if (views == null) {
+                views = new ArrayList<>(1);
+                mViewsByKey.put(key, views);
+            }
+            views.add(view);
+        }
+    }
+
+    public void unregister(@NonNull View view) {
+        Collection<PackageUserKey> keys = mKeysByView.remove(view);
+        if (keys == null) {
+            return;
+        }
+        for (PackageUserKey key : keys) {
+            List<View> views = mViewsByKey.get(key);
+            if (views != null) {
+                views.remove(view);
+                if (views.isEmpty()) {
+                    mViewsByKey.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls {@param op} once for every view registered for any of the {@param keys}.
+     */
+    public void forEachView(@NonNull Collection<PackageUserKey> keys, @NonNull Consumer<View> op) {
+        // Copy first, as the operation may rebind views and modify the index
+        mTmpVisited.clear();
+        mTmpViews.clear();
+        for (PackageUserKey key : keys) {
+            List<View> views = mViewsByKey.get(key);
+            if (views == null) {
+                continue;
+            }
+            for (View view : views) {
+                if (mTmpVisited.add(view)) {
+                    mTmpViews.add(view);
+                }
+            }
+        }
+        mTmpVisited.clear();
+        for (int i = 0; i < mTmpViews.size(); i++) {
+            op.accept(mTmpViews.get(i));
+        }
+        mTmpViews.clear();
+    }
+
+    private static Collection<PackageUserKey> getKeys(ItemInfo info) {
+        if (info instanceof FolderInfo) {
+            Set<PackageUserKey> keys = new HashSet<>();
+            for (WorkspaceItemInfo si : ((FolderInfo) info).contents) {
+                PackageUserKey key = new PackageUserKey(null, null);
+                if (key.updateFromItemInfo(si)) {
+                    keys.add(key);
+                }
+            }
+            return keys;
+        }
+        PackageUserKey key = new PackageUserKey(null, null);
+        return key.updateFromItemInfo(info)
+                ? Collections.singletonList(key) : Collections.emptyList();
+    }
+}
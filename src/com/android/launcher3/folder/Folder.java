@@ -96,7 +96,6 @@ import com.android.launcher3.model.data.FolderInfo.FolderListener;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.pageindicators.PageIndicatorDots;
-import com.android.launcher3.util.Executors;
 import com.android.launcher3.util.Themes;
 import com.android.launcher3.util.LauncherBindableItemsContainer.ItemOperator;
 import com.android.launcher3.util.Thunk;
@@ -1096,13 +1095,9 @@ public class Folder extends AbstractFloatingView implements ClipPathView, DragSo
         }
         if (FeatureFlags.FOLDER_NAME_SUGGEST.get() && !isBind
                 && total > 1 /* no need to update if there's one icon */) {
-            Executors.MODEL_EXECUTOR.post(() -> {
-                FolderNameInfos nameInfos = new FolderNameInfos();
-                FolderNameProvider fnp = FolderNameProvider.newInstance(getContext());
-                fnp.getSuggestedFolderName(
-                        getContext(), mInfo.contents, nameInfos);
-                mInfo.suggestedFolderNames = nameInfos;
-            });
+            FolderNameProvider.newInstance(getContext()).getSuggestedFolderName(
+                    getContext(), mInfo.contents,
+                    nameInfos -> mInfo.suggestedFolderNames = nameInfos);
         }
     }
 
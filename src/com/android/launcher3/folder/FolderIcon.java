@@ -43,6 +43,7 @@ import android.view.ViewGroup;
 import android.widget.FrameLayout;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.Alarm;
 import com.android.launcher3.BubbleTextView;
@@ -60,6 +61,7 @@ import com.android.launcher3.Workspace;
 import com.android.launcher3.allapps.AllAppsContainerView;
 import com.android.launcher3.anim.Interpolators;
 import com.android.launcher3.config.FeatureFlags;
+import com.android.launcher3.dot.DotViewIndex;
 import com.android.launcher3.dot.FolderDotInfo;
 import com.android.launcher3.dragndrop.BaseItemDragListener;
 import com.android.launcher3.dragndrop.DragLayer;
@@ -77,7 +79,6 @@ import com.android.launcher3.model.data.FolderInfo.LabelState;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.touch.ItemClickHandler;
-import com.android.launcher3.util.Executors;
 import com.android.launcher3.util.Thunk;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.views.IconLabelDotView;
@@ -419,15 +420,12 @@ public class FolderIcon extends FrameLayout implements FolderListener, IconLabel
 
             if (!itemAdded) mPreviewItemManager.hidePreviewItem(index, true);
 
-            FolderNameInfos nameInfos = new FolderNameInfos();
             if (FeatureFlags.FOLDER_NAME_SUGGEST.get()) {
-                Executors.MODEL_EXECUTOR.post(() -> {
-                    d.folderNameProvider.getSuggestedFolderName(
-                            getContext(), mInfo.contents, nameInfos);
-                    showFinalView(finalIndex, item, nameInfos, d.logInstanceId);
-                });
+                d.folderNameProvider.getSuggestedFolderName(getContext(), mInfo.contents,
+                        nameInfos -> showFinalView(finalIndex, item, nameInfos,
+                                d.logInstanceId));
             } else {
-                showFinalView(finalIndex, item, nameInfos, d.logInstanceId);
+                showFinalView(finalIndex, item, new FolderNameInfos(), d.logInstanceId);
             }
         } else {
             addItem(item);
@@ -509,6 +507,40 @@ public class FolderIcon extends FrameLayout implements FolderListener, IconLabel
         mDotInfo = dotInfo;
     }
 
+    /**
+     * Recomputes the dot from the dots of all the folder contents.
+     */
+    public void updateDotInfo() {
+        FolderDotInfo folderDotInfo = new FolderDotInfo();
+        for (WorkspaceItemInfo si : mInfo.contents) {
+            folderDotInfo.addDotInfo(mActivity.getDotInfoForItem(si));
+        }
+        setDotInfo(folderDotInfo);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateDotViewIndex();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mPreviewItemManager.clearCachedPreview();
+        DotViewIndex index = mActivity == null ? null : mActivity.getDotViewIndex();
+        if (index != null) {
+            index.unregister(this);
+        }
+    }
+
+    private void updateDotViewIndex() {
+        DotViewIndex index = mActivity == null ? null : mActivity.getDotViewIndex();
+        if (index != null && mInfo != null && isAttachedToWindow()) {
+            index.register(this, mInfo);
+        }
+    }
+
     public ClippedFolderIconLayoutRule getLayoutRule() {
         return mPreviewLayoutRule;
     }
@@ -600,6 +632,11 @@ public class FolderIcon extends FrameLayout implements FolderListener, IconLabel
         return mBackground;
     }
 
+    @VisibleForTesting
+    PreviewItemManager getPreviewItemManager() {
+        return mPreviewItemManager;
+    }
+
     public PreviewItemManager getPreviewItemManager() {
         return mPreviewItemManager;
     }
@@ -668,6 +705,15 @@ public class FolderIcon extends FrameLayout implements FolderListener, IconLabel
         return mPreviewItemManager.verifyDrawable(who) || super.verifyDrawable(who);
     }
 
+    @Override
+    public void invalidateDrawable(@NonNull Drawable drawable) {
+        if (mPreviewItemManager.verifyDrawable(drawable)) {
+            // A preview item changed, for example a themed or clock icon
+            mPreviewItemManager.onItemDrawableInvalidated();
+        }
+        super.invalidateDrawable(drawable);
+    }
+
     @Override
     public void onItemsChanged(boolean animate) {
         updatePreviewItems(animate);
@@ -693,6 +739,7 @@ public class FolderIcon extends FrameLayout implements FolderListener, IconLabel
         updatePreviewItems(false);
         boolean wasDotted = mDotInfo.hasDot();
         mDotInfo.addDotInfo(mActivity.getDotInfoForItem(item));
+        updateDotViewIndex();
         boolean isDotted = mDotInfo.hasDot();
         updateDotScale(wasDotted, isDotted);
         setContentDescription(getAccessiblityTitle(mInfo.title));
@@ -705,6 +752,7 @@ public class FolderIcon extends FrameLayout implements FolderListener, IconLabel
         updatePreviewItems(false);
         boolean wasDotted = mDotInfo.hasDot();
         items.stream().map(mActivity::getDotInfoForItem).forEach(mDotInfo::subtractDotInfo);
+        updateDotViewIndex();
         boolean isDotted = mDotInfo.hasDot();
         updateDotScale(wasDotted, isDotted);
         setContentDescription(getAccessiblityTitle(mInfo.title));
@@ -15,6 +15,8 @@
  */
 package com.android.launcher3.folder;
 
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
 import android.content.ComponentName;
 import android.content.Context;
 import android.os.Process;
@@ -22,25 +24,21 @@ import android.os.UserHandle;
 import android.text.TextUtils;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.R;
 import com.android.launcher3.model.AllAppsList;
 import com.android.launcher3.model.BaseModelUpdateTask;
 import com.android.launcher3.model.BgDataModel;
 import com.android.launcher3.model.data.AppInfo;
-import com.android.launcher3.model.data.FolderInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
-import com.android.launcher3.util.IntSparseArrayMap;
 import com.android.launcher3.util.Preconditions;
 import com.android.launcher3.util.ResourceBasedOverride;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * Locates provider for the folder name.
@@ -55,45 +53,57 @@ public class FolderNameProvider implements ResourceBasedOverride {
      * name edit box can also be used to provide suggestion.
      */
     public static final int SUGGEST_MAX = 4;
-    protected IntSparseArrayMap<FolderInfo> mFolderInfos;
-    protected List<AppInfo> mAppInfos;
+    @Nullable
+    protected AllAppsList mAppsList;
 
     /**
      * Retrieve instance of this object that can be overridden in runtime based on the build
-     * variant of the application.
+     * variant of the application. Suggestions should be requested with
+     * {@link #getSuggestedFolderName(Context, ArrayList, Consumer)}, which runs on the model
+     * thread against the current apps.
      */
     public static FolderNameProvider newInstance(Context context) {
-        FolderNameProvider fnp = Overrides.getObject(FolderNameProvider.class,
+        return Overrides.getObject(FolderNameProvider.class,
                 context.getApplicationContext(), R.string.folder_name_provider_class);
-        Preconditions.assertWorkerThread();
-        fnp.load(context);
-
-        return fnp;
     }
 
-    public static FolderNameProvider newInstance(Context context, List<AppInfo> appInfos,
-            IntSparseArrayMap<FolderInfo> folderInfos) {
+    /**
+     * Retrieve instance of this object using {@param appsList}, for callers already on the model
+     * thread.
+     */
+    public static FolderNameProvider newInstance(Context context, AllAppsList appsList) {
         Preconditions.assertWorkerThread();
-        FolderNameProvider fnp = Overrides.getObject(FolderNameProvider.class,
-                context.getApplicationContext(), R.string.folder_name_provider_class);
-        fnp.load(appInfos, folderInfos);
-
+        FolderNameProvider fnp = newInstance(context);
+        fnp.mAppsList = appsList;
         return fnp;
     }
 
-    private void load(Context context) {
+    /**
+     * Generates the suggested folder names on the model thread, and delivers them to
+     * {@param callback} on the main thread.
+     */
+    public void getSuggestedFolderName(Context context,
+            ArrayList<WorkspaceItemInfo> workspaceItemInfos,
+            Consumer<FolderNameInfos> callback) {
+        // Copy the items, as the folder contents may change on the main thread in the meantime
+        ArrayList<WorkspaceItemInfo> items = new ArrayList<>(workspaceItemInfos);
         LauncherAppState.getInstance(context).getModel().enqueueModelUpdateTask(
-                new FolderNameWorker());
-    }
-
-    private void load(List<AppInfo> appInfos, IntSparseArrayMap<FolderInfo> folderInfos) {
-        mAppInfos = appInfos;
-        mFolderInfos = folderInfos;
+                new BaseModelUpdateTask() {
+                    @Override
+                    public void execute(LauncherAppState app, BgDataModel dataModel,
+                            AllAppsList apps) {
+                        mAppsList = apps;
+                        FolderNameInfos nameInfos = new FolderNameInfos();
+                        getSuggestedFolderName(context, items, nameInfos);
+                        MAIN_EXECUTOR.execute(() -> callback.accept(nameInfos));
+                    }
+                });
     }
 
     /**
      * Generate and rank the suggested Folder names.
      */
+    @WorkerThread
     public void getSuggestedFolderName(Context context,
             ArrayList<WorkspaceItemInfo> workspaceItemInfos,
             FolderNameInfos nameInfos) {
@@ -103,39 +113,50 @@ public class FolderNameProvider implements ResourceBasedOverride {
         }
         // If all the icons are from work profile,
         // Then, suggest "Work" as the folder name
-        Set<UserHandle> users = workspaceItemInfos.stream().map(w -> w.user)
-                .collect(Collectors.toSet());
-        if (users.size() == 1 && !users.contains(Process.myUserHandle())) {
+        UserHandle user = null;
+        boolean singleUser = true;
+        // If all the icons are from same package (e.g., main icon, shortcut, shortcut)
+        // Then, suggest the package's title as the folder name
+        String packageName = null;
+        boolean singlePackage = true;
+        for (int i = 0; i < workspaceItemInfos.size(); i++) {
+            WorkspaceItemInfo info = workspaceItemInfos.get(i);
+            if (user == null) {
+                user = info.user;
+            } else if (!user.equals(info.user)) {
+                singleUser = false;
+            }
+            ComponentName cn = info.getTargetComponent();
+            if (cn == null) {
+                continue;
+            }
+            if (packageName == null) {
+                packageName = cn.getPackageName();
+            } else if (!packageName.equals(cn.getPackageName())) {
+                singlePackage = false;
+            }
+        }
+
+        if (user != null && singleUser && !user.equals(Process.myUserHandle())) {
             setAsLastSuggestion(nameInfos,
                     context.getResources().getString(R.string.work_folder_name));
         }
 
-        // If all the icons are from same package (e.g., main icon, shortcut, shortcut)
-        // Then, suggest the package's title as the folder name
-        Set<String> packageNames = workspaceItemInfos.stream()
-                .map(WorkspaceItemInfo::getTargetComponent)
-                .filter(Objects::nonNull)
-                .map(ComponentName::getPackageName)
-                .collect(Collectors.toSet());
-
-        if (packageNames.size() == 1) {
-            Optional<AppInfo> info = getAppInfoByPackageName(packageNames.iterator().next());
+        if (packageName != null && singlePackage) {
+            AppInfo info = getAppInfoByPackageName(packageName);
             // Place it as first viable suggestion and shift everything else
-            info.ifPresent(i -> setAsFirstSuggestion(nameInfos, i.title.toString()));
+            if (info != null) {
+                setAsFirstSuggestion(nameInfos, info.title.toString());
+            }
         }
         if (DEBUG) {
             Log.d(TAG, "getSuggestedFolderName:" + nameInfos.toString());
         }
     }
 
-    private Optional<AppInfo> getAppInfoByPackageName(String packageName) {
-        if (mAppInfos == null || mAppInfos.isEmpty()) {
-            return Optional.empty();
-        }
-        return mAppInfos.stream()
-                .filter(info -> info.componentName != null)
-                .filter(info -> info.componentName.getPackageName().equals(packageName))
-                .findAny();
+    @Nullable
+    private AppInfo getAppInfoByPackageName(String packageName) {
+        return mAppsList == null ? null : mAppsList.findAppInfoByPackage(packageName);
     }
 
     private void setAsFirstSuggestion(FolderNameInfos nameInfos, CharSequence label) {
@@ -170,13 +191,4 @@ public class FolderNameProvider implements ResourceBasedOverride {
         // Overwrite the last suggestion.
         nameInfos.setLabel(labels.length - 1, label, 1.0f);
     }
-
-    private class FolderNameWorker extends BaseModelUpdateTask {
-        @Override
-        public void execute(LauncherAppState app, BgDataModel dataModel, AllAppsList apps) {
-            mFolderInfos = dataModel.folders.clone();
-            mAppInfos = Arrays.asList(apps.copyData());
-        }
-    }
-
 }
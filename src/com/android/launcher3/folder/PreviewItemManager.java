@@ -27,19 +27,24 @@ import android.animation.AnimatorListenerAdapter;
 import android.animation.ObjectAnimator;
 import android.animation.ValueAnimator;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Path;
 import android.graphics.PointF;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
 import android.util.FloatProperty;
 import android.view.View;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.BubbleTextView;
 import com.android.launcher3.Utilities;
 import com.android.launcher3.graphics.PreloadIconDrawable;
+import com.android.launcher3.icons.BitmapRenderer;
 import com.android.launcher3.model.data.ItemInfoWithIcon;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.views.ActivityContext;
@@ -90,6 +95,23 @@ public class PreviewItemManager {
     private float mCurrentPageItemsTransX = 0;
     private boolean mShouldSlideInFirstPage;
 
+    // The resting preview is rendered once into a bitmap, and redrawn from it until the items,
+    // their drawables or the layout change. Animations draw the items live.
+    private Bitmap mCachedPreview;
+    private final RectF mCachedPreviewBounds = new RectF();
+    private boolean mCachedPreviewDirty = true;
+    private boolean mParamsAnimating;
+    private long mCachedPreviewRenderTime;
+    private int mCachedPreviewRenderCount;
+    private boolean mRenderingCachedPreview;
+    // Set when an item drawable invalidates itself soon after the cache was rendered, like an
+    // animated or clock icon, until the items are rebuilt
+    private boolean mHasAnimatedDrawables;
+
+    // Item drawables invalidating themselves more often than this are drawn live, rendering the
+    // cache again on each of their frames would cost more than drawing them
+    private static final long MIN_CACHED_PREVIEW_LIFETIME_MS = 1000;
+
     static final int INITIAL_ITEM_ANIMATION_DURATION = 350;
     private static final int FINAL_ITEM_ANIMATION_DURATION = 200;
 
@@ -146,6 +168,7 @@ public class PreviewItemManager {
                     Utilities.isRtl(mIcon.getResources()));
 
             updatePreviewItems(false);
+            invalidateCachedPreview();
         }
     }
 
@@ -186,9 +209,17 @@ public class PreviewItemManager {
      * Draws the preview items on {@param canvas}.
      */
     public void draw(Canvas canvas) {
+        PreviewBackground bg = mIcon.getFolderBackground();
+        boolean animating = mParamsAnimating;
+        mParamsAnimating = false;
+        if (!animating && !mHasAnimatedDrawables && canvas.isHardwareAccelerated()
+                && isAtRest()) {
+            drawCachedPreview(canvas, bg);
+            return;
+        }
+
         int saveCount = canvas.getSaveCount();
         // The items are drawn in coordinates relative to the preview offset
-        PreviewBackground bg = mIcon.getFolderBackground();
         Path clipPath = bg.getClipPath();
         float firstPageItemsTransX = 0;
         if (mShouldSlideInFirstPage) {
@@ -207,9 +238,118 @@ public class PreviewItemManager {
     }
 
     public void onParamsChanged() {
+        // Only animations change the params frame by frame, don't render those into the cache
+        mParamsAnimating = true;
+        invalidateCachedPreview();
         mIcon.invalidate();
     }
 
+    /**
+     * Marks the cached preview as outdated, it will be rendered again on the next draw at rest.
+     */
+    void invalidateCachedPreview() {
+        mCachedPreviewDirty = true;
+    }
+
+    /**
+     * Called when the drawable of a preview item invalidates itself.
+     */
+    void onItemDrawableInvalidated() {
+        if (mRenderingCachedPreview) {
+            // Drawing the items into the cache, which can make them update their state
+            return;
+        }
+        if (mCachedPreview != null && SystemClock.uptimeMillis() - mCachedPreviewRenderTime
+                < MIN_CACHED_PREVIEW_LIFETIME_MS) {
+            mHasAnimatedDrawables = true;
+            mCachedPreview = null;
+        }
+        invalidateCachedPreview();
+    }
+
+    /**
+     * Returns how many times the cached preview was rendered.
+     */
+    @VisibleForTesting
+    int getCachedPreviewRenderCount() {
+        return mCachedPreviewRenderCount;
+    }
+
+    /**
+     * Returns the drawable of the preview item at {@param index} of the first page.
+     */
+    @VisibleForTesting
+    Drawable getPreviewItemDrawable(int index) {
+        return mFirstPageParams.get(index).drawable;
+    }
+
+    /**
+     * Releases the cached preview, for example when the icon is detached.
+     */
+    void clearCachedPreview() {
+        mCachedPreview = null;
+        mCachedPreviewDirty = true;
+    }
+
+    /**
+     * Returns whether the preview items are in their final state, and can be drawn from a cache.
+     */
+    private boolean isAtRest() {
+        if (mShouldSlideInFirstPage || !mCurrentPageParams.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < mFirstPageParams.size(); i++) {
+            PreviewItemDrawingParams p = mFirstPageParams.get(i);
+            // Pending icons animate their progress, so keep drawing them live
+            if (p.anim != null || p.index == EXIT_INDEX
+                    || p.drawable instanceof PreloadIconDrawable) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void drawCachedPreview(Canvas canvas, PreviewBackground bg) {
+        if (mCachedPreviewDirty || mCachedPreview == null) {
+            renderCachedPreview();
+        }
+        if (mCachedPreview != null) {
+            canvas.drawBitmap(mCachedPreview, bg.basePreviewOffsetX + mCachedPreviewBounds.left,
+                    bg.basePreviewOffsetY + mCachedPreviewBounds.top, null);
+        }
+    }
+
+    private void renderCachedPreview() {
+        mCachedPreviewDirty = false;
+        mCachedPreview = null;
+
+        // Bounds of the visible items, relative to the preview offset and snapped to whole
+        // pixels so that the bitmap is drawn without filtering
+        RectF bounds = mCachedPreviewBounds;
+        bounds.setEmpty();
+        for (int i = 0; i < mFirstPageParams.size(); i++) {
+            PreviewItemDrawingParams p = mFirstPageParams.get(i);
+            if (!p.hidden && p.drawable != null) {
+                float size = mIntrinsicIconSize * p.scale;
+                bounds.union(p.transX, p.transY, p.transX + size, p.transY + size);
+            }
+        }
+        if (bounds.isEmpty()) {
+            return;
+        }
+        bounds.set((float) Math.floor(bounds.left), (float) Math.floor(bounds.top),
+                (float) Math.ceil(bounds.right), (float) Math.ceil(bounds.bottom));
+
+        PointF offset = new PointF(-bounds.left, -bounds.top);
+        mRenderingCachedPreview = true;
+        mCachedPreview = BitmapRenderer.createHardwareBitmap(
+                (int) bounds.width(), (int) bounds.height(),
+                c -> drawParams(c, mFirstPageParams, offset, false, null));
+        mRenderingCachedPreview = false;
+        mCachedPreviewRenderTime = SystemClock.uptimeMillis();
+        mCachedPreviewRenderCount++;
+    }
+
     /**
      * Draws each preview item.
      *
@@ -248,10 +388,14 @@ public class PreviewItemManager {
                 mFirstPageParams.get(index) : null;
         if (params != null) {
             params.hidden = hidden;
+            invalidateCachedPreview();
         }
     }
 
     void buildParamsForPage(int page, ArrayList<PreviewItemDrawingParams> params, boolean animate) {
+        invalidateCachedPreview();
+        // The new drawables may not animate
+        mHasAnimatedDrawables = false;
         List<WorkspaceItemInfo> items = mIcon.getPreviewItemsOnPage(page);
         int prevNumItems = params.size();
 
@@ -335,6 +479,7 @@ public class PreviewItemManager {
             }
         }
         if (modified) {
+            invalidateCachedPreview();
             mIcon.invalidate();
         }
     }
@@ -364,6 +509,7 @@ public class PreviewItemManager {
      */
     public void onDrop(List<WorkspaceItemInfo> oldItems, List<WorkspaceItemInfo> newItems,
             WorkspaceItemInfo dropped) {
+        invalidateCachedPreview();
         int numItems = newItems.size();
         final ArrayList<PreviewItemDrawingParams> params = mFirstPageParams;
         buildParamsForPage(0, params, false);
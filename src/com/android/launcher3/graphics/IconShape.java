@@ -26,8 +26,10 @@ import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.content.res.XmlResourceParser;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.Rect;
@@ -41,6 +43,9 @@ import android.util.Xml;
 import android.view.View;
 import android.view.ViewOutlineProvider;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
 import com.android.launcher3.R;
 import com.android.launcher3.Utilities;
 import com.android.launcher3.anim.RoundedRectRevealOutlineProvider;
@@ -57,6 +62,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import app.lawnchair.icons.CustomAdaptiveIconDrawable;
+import app.lawnchair.icons.shape.IconShapeCache;
 import app.lawnchair.preferences2.PreferenceManager2;
 
 /**
@@ -113,15 +119,44 @@ public abstract class IconShape {
     private static abstract class PathShape extends IconShape {
 
         private final Path mTmpPath = new Path();
+        private final Matrix mTmpMatrix = new Matrix();
+        private final float[] mTmpValues = new float[9];
 
         @Override
         public final void drawShape(Canvas canvas, float offsetX, float offsetY, float radius,
                 Paint paint) {
+            // A mask is only as sharp as the path when it isn't scaled, rotated or skewed
+            Bitmap mask = paint.getStyle() == Paint.Style.FILL ? getMask(radius) : null;
+            if (mask != null && isTranslateOnly(canvas)) {
+                canvas.drawBitmap(mask, offsetX, offsetY, paint);
+                return;
+            }
             mTmpPath.reset();
             addToPath(mTmpPath, offsetX, offsetY, radius);
             canvas.drawPath(mTmpPath, paint);
         }
 
+        /**
+         * Returns an alpha mask of the shape with side {@code 2 * radius}, drawn instead of the
+         * path when possible, or null to always draw the path.
+         */
+        @Nullable
+        protected Bitmap getMask(float radius) {
+            return null;
+        }
+
+        private boolean isTranslateOnly(Canvas canvas) {
+            canvas.getMatrix(mTmpMatrix);
+            if (mTmpMatrix.isIdentity()) {
+                return true;
+            }
+            mTmpMatrix.getValues(mTmpValues);
+            return mTmpValues[Matrix.MSCALE_X] == 1 && mTmpValues[Matrix.MSKEW_X] == 0
+                    && mTmpValues[Matrix.MSKEW_Y] == 0 && mTmpValues[Matrix.MSCALE_Y] == 1
+                    && mTmpValues[Matrix.MPERSP_0] == 0 && mTmpValues[Matrix.MPERSP_1] == 0
+                    && mTmpValues[Matrix.MPERSP_2] == 1;
+        }
+
         protected abstract AnimatorUpdateListener newUpdateListener(
                 Rect startRect, Rect endRect, float endRadius, Path outPath);
 
@@ -166,13 +201,23 @@ public abstract class IconShape {
         private final app.lawnchair.icons.shape.IconShape mIconShape;
 
         public AdaptiveIconShape(Context context) {
-            PreferenceManager2 preferenceManager2 = PreferenceManager2.getInstance(context);
-            mIconShape = PreferenceExtensionsKt.firstBlocking(preferenceManager2.getIconShape());
+            this(PreferenceExtensionsKt.firstBlocking(
+                    PreferenceManager2.getInstance(context).getIconShape()));
+        }
+
+        @VisibleForTesting
+        AdaptiveIconShape(app.lawnchair.icons.shape.IconShape iconShape) {
+            mIconShape = iconShape;
+        }
+
+        @Override
+        protected Bitmap getMask(float radius) {
+            return IconShapeCache.getRestingMask(mIconShape, radius);
         }
 
         @Override
         public void addToPath(Path path, float offsetX, float offsetY, float radius) {
-            mIconShape.addShape(path, offsetX, offsetY, radius);
+            IconShapeCache.addToPath(mIconShape, path, offsetX, offsetY, radius);
         }
 
         @Override
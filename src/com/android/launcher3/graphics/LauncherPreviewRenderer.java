@@ -23,11 +23,6 @@ import static android.view.View.MeasureSpec.makeMeasureSpec;
 import static android.view.View.VISIBLE;
 import static android.view.ViewGroup.LayoutParams.MATCH_PARENT;
 
-import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT_PREDICTION;
-import static com.android.launcher3.model.ModelUtils.filterCurrentWorkspaceItems;
-import static com.android.launcher3.model.ModelUtils.getMissingHotseatRanks;
-import static com.android.launcher3.model.ModelUtils.sortWorkspaceItemsSpatially;
-
 import android.annotation.TargetApi;
 import android.app.Fragment;
 import android.app.WallpaperColors;
@@ -39,6 +34,8 @@ import android.content.Context;
 import android.content.ContextWrapper;
 import android.content.Intent;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Rect;
 import android.graphics.drawable.ColorDrawable;
@@ -76,9 +73,6 @@ import com.android.launcher3.icons.BaseIconFactory;
 import com.android.launcher3.icons.BitmapInfo;
 import com.android.launcher3.icons.LauncherIcons;
 import com.android.launcher3.model.BgDataModel;
-import com.android.launcher3.model.BgDataModel.FixedContainerItems;
-import com.android.launcher3.model.WidgetItem;
-import com.android.launcher3.model.WidgetsModel;
 import com.android.launcher3.model.data.FolderInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.LauncherAppWidgetInfo;
@@ -88,8 +82,6 @@ import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.uioverrides.PredictedAppIconInflater;
 import com.android.launcher3.uioverrides.plugins.PluginManagerWrapper;
 import com.android.launcher3.util.ComponentKey;
-import com.android.launcher3.util.IntArray;
-import com.android.launcher3.util.IntSet;
 import com.android.launcher3.util.MainThreadInitializedObject;
 import com.android.launcher3.util.MainThreadInitializedObject.SandboxContext;
 import com.android.launcher3.views.ActivityContext;
@@ -102,9 +94,7 @@ import com.android.launcher3.widget.NavigableAppWidgetHostView;
 import com.android.launcher3.widget.custom.CustomWidgetManager;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -201,6 +191,7 @@ public class LauncherPreviewRenderer extends ContextWrapper
     private final InsettableFrameLayout mRootView;
     private final Hotseat mHotseat;
     private final Map<Integer, CellLayout> mWorkspaceScreens = new HashMap<>();
+    private final ArrayList<FolderIcon> mFolderIcons = new ArrayList<>();
     private final AppWidgetHost mAppWidgetHost;
     private final SparseIntArray mWallpaperColorResources;
     private int mWorkspaceSearchContainer = R.layout.search_container_workspace;
@@ -301,10 +292,43 @@ public class LauncherPreviewRenderer extends ContextWrapper
     /** Populate preview and render it. */
     public View getRenderedView(BgDataModel dataModel,
             Map<ComponentKey, AppWidgetProviderInfo> widgetProviderInfoMap) {
-        populate(dataModel, widgetProviderInfoMap);
+        return getRenderedView(
+                PreviewRenderRecords.resolve(mContext, mIdp, dataModel, widgetProviderInfoMap));
+    }
+
+    /**
+     * Populate preview with items resolved off the UI thread, see
+     * {@link PreviewRenderRecords#resolve}, and render it. Inflates and measures every view of
+     * the preview.
+     */
+    public View getRenderedView(PreviewRenderRecords records) {
+        populate(records);
         return mRootView;
     }
 
+    /**
+     * Populate preview and draws it into a bitmap with a software canvas, for static thumbnails
+     * which don't need a surface or a window.
+     */
+    public Bitmap getRenderedBitmap(PreviewRenderRecords records) {
+        populate(records);
+        Bitmap bitmap = Bitmap.createBitmap(mRootView.getMeasuredWidth(),
+                mRootView.getMeasuredHeight(), Bitmap.Config.ARGB_8888);
+        mRootView.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    /**
+     * Detaches the rendered view from the model, as folder icons listen to their folder info
+     * which may outlive the preview.
+     */
+    public void destroy() {
+        for (FolderIcon folderIcon : mFolderIcons) {
+            folderIcon.removeListeners();
+        }
+        mFolderIcons.clear();
+    }
+
     @Override
     public View onCreateView(View parent, String name, Context context, AttributeSet attrs) {
         if ("TextClock".equals(name)) {
@@ -370,33 +394,10 @@ public class LauncherPreviewRenderer extends ContextWrapper
                 : mHotseat;
         FolderIcon folderIcon = FolderIcon.inflateIcon(R.layout.folder_icon, this, screen,
                 info);
+        mFolderIcons.add(folderIcon);
         addInScreenFromBind(folderIcon, info);
     }
 
-    private void inflateAndAddWidgets(
-            LauncherAppWidgetInfo info,
-            Map<ComponentKey, AppWidgetProviderInfo> widgetProviderInfoMap) {
-        if (widgetProviderInfoMap == null) {
-            return;
-        }
-        AppWidgetProviderInfo providerInfo = widgetProviderInfoMap.get(
-                new ComponentKey(info.providerName, info.user));
-        if (providerInfo == null) {
-            return;
-        }
-        inflateAndAddWidgets(info, LauncherAppWidgetProviderInfo.fromProviderInfo(
-                getApplicationContext(), providerInfo));
-    }
-
-    private void inflateAndAddWidgets(LauncherAppWidgetInfo info, WidgetsModel widgetsModel) {
-        WidgetItem widgetItem = widgetsModel.getWidgetProviderInfoByProviderName(
-                info.providerName, info.user);
-        if (widgetItem == null) {
-            return;
-        }
-        inflateAndAddWidgets(info, widgetItem.widgetInfo);
-    }
-
     private void inflateAndAddWidgets(
             LauncherAppWidgetInfo info, LauncherAppWidgetProviderInfo providerInfo) {
         AppWidgetHostView view;
@@ -447,67 +448,18 @@ public class LauncherPreviewRenderer extends ContextWrapper
         }
     }
 
-    private void populate(BgDataModel dataModel,
-            Map<ComponentKey, AppWidgetProviderInfo> widgetProviderInfoMap) {
-        // Separate the items that are on the current screen, and the other remaining items.
-        ArrayList<ItemInfo> currentWorkspaceItems = new ArrayList<>();
-        ArrayList<ItemInfo> otherWorkspaceItems = new ArrayList<>();
-        ArrayList<LauncherAppWidgetInfo> currentAppWidgets = new ArrayList<>();
-        ArrayList<LauncherAppWidgetInfo> otherAppWidgets = new ArrayList<>();
-
-        IntSet currentScreenIds = IntSet.wrap(mWorkspaceScreens.keySet());
-        filterCurrentWorkspaceItems(currentScreenIds, dataModel.workspaceItems,
-                currentWorkspaceItems, otherWorkspaceItems);
-        filterCurrentWorkspaceItems(currentScreenIds, dataModel.appWidgets, currentAppWidgets,
-                otherAppWidgets);
-
-        sortWorkspaceItemsSpatially(mIdp, currentWorkspaceItems);
-        for (ItemInfo itemInfo : currentWorkspaceItems) {
-            switch (itemInfo.itemType) {
-                case Favorites.ITEM_TYPE_APPLICATION:
-                case Favorites.ITEM_TYPE_SHORTCUT:
-                case Favorites.ITEM_TYPE_DEEP_SHORTCUT:
-                    inflateAndAddIcon((WorkspaceItemInfo) itemInfo);
-                    break;
-                case Favorites.ITEM_TYPE_FOLDER:
-                    inflateAndAddFolder((FolderInfo) itemInfo);
-                    break;
-                default:
-                    break;
+    private void populate(PreviewRenderRecords records) {
+        for (ItemInfo itemInfo : records.workspaceItems) {
+            if (itemInfo instanceof FolderInfo) {
+                inflateAndAddFolder((FolderInfo) itemInfo);
+            } else {
+                inflateAndAddIcon((WorkspaceItemInfo) itemInfo);
             }
         }
-        for (ItemInfo itemInfo : currentAppWidgets) {
-            switch (itemInfo.itemType) {
-                case Favorites.ITEM_TYPE_APPWIDGET:
-                case Favorites.ITEM_TYPE_CUSTOM_APPWIDGET:
-                    if (widgetProviderInfoMap != null) {
-                        inflateAndAddWidgets(
-                                (LauncherAppWidgetInfo) itemInfo, widgetProviderInfoMap);
-                    } else {
-                        inflateAndAddWidgets((LauncherAppWidgetInfo) itemInfo,
-                                dataModel.widgetsModel);
-                    }
-                    break;
-                default:
-                    break;
-            }
+        for (PreviewRenderRecords.WidgetRecord widget : records.widgets) {
+            inflateAndAddWidgets(widget.info, widget.providerInfo);
         }
-        IntArray ranks = getMissingHotseatRanks(currentWorkspaceItems,
-                mDp.numShownHotseatIcons);
-        FixedContainerItems hotseatpredictions =
-                dataModel.extraItems.get(CONTAINER_HOTSEAT_PREDICTION);
-        List<ItemInfo> predictions = hotseatpredictions == null
-                ? Collections.emptyList() : hotseatpredictions.items;
-        int count = Math.min(ranks.size(), predictions.size());
-        for (int i = 0; i < count; i++) {
-            int rank = ranks.get(i);
-            WorkspaceItemInfo itemInfo =
-                    new WorkspaceItemInfo((WorkspaceItemInfo) predictions.get(i));
-            itemInfo.container = CONTAINER_HOTSEAT_PREDICTION;
-            itemInfo.rank = rank;
-            itemInfo.cellX = mHotseat.getCellXFromOrder(rank);
-            itemInfo.cellY = mHotseat.getCellYFromOrder(rank);
-            itemInfo.screenId = rank;
+        for (WorkspaceItemInfo itemInfo : records.predictedItems) {
             inflateAndAddPredictedIcon(itemInfo);
         }
 
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.graphics;
+
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.ArrayMap;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.LauncherSettings;
+import com.android.launcher3.Workspace;
+import com.android.launcher3.graphics.LauncherPreviewRenderer.PreviewContext;
+import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.model.DeviceGridState;
+import com.android.launcher3.model.GridSizeMigrationTaskV2;
+import com.android.launcher3.model.LoaderTask;
+import com.android.launcher3.model.ModelDelegate;
+import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.MainThreadInitializedObject;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * Caches the models loaded to preview grids other than the current one, so that switching
+ * between grid options renders from memory instead of migrating and loading the preview table
+ * again. As they are migrated from the workspace, all the cached models are dropped whenever the
+ * live model changes, including when items get a new title or icon. They are also dropped when
+ * the grid changes and when memory is trimmed.
+ *
+ * The current grid is not cached, it is previewed directly from the live model.
+ */
+public class PreviewModelCache {
+
+    public static final MainThreadInitializedObject<PreviewModelCache> INSTANCE =
+            new MainThreadInitializedObject<>(PreviewModelCache::new);
+
+    /**
+     * Loads the model to preview a grid.
+     */
+    @VisibleForTesting
+    interface Loader {
+
+        /**
+         * Returns the loaded model, or null if the grid should be previewed with the live model.
+         */
+        @WorkerThread
+        @Nullable
+        PreviewModel load(InvariantDeviceProfile idp);
+    }
+
+    private final Loader mLoader;
+    private final IntSupplier mLiveVersion;
+
+    // Only one model is loaded at a time, while the cached models can be cleared at any time
+    private final Object mLoadLock = new Object();
+    private final ArrayMap<String, PreviewModel> mModels = new ArrayMap<>();
+    private int mModelsLiveVersion = -1;
+
+    private PreviewModelCache(Context context) {
+        this(idp -> loadMigratedModel(context, idp),
+                () -> LauncherAppState.getInstance(context).getModel().getWorkspaceVersion());
+        InvariantDeviceProfile.INSTANCE.get(context)
+                .addOnChangeListener(modelPropertiesChanged -> clear());
+        context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                    clear();
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration configuration) { }
+
+            @Override
+            public void onLowMemory() {
+                clear();
+            }
+        });
+    }
+
+    /**
+     * @param liveVersion returns the version of the live model, or -1 if it is not loaded
+     */
+    @VisibleForTesting
+    PreviewModelCache(Loader loader, IntSupplier liveVersion) {
+        mLoader = loader;
+        mLiveVersion = liveVersion;
+    }
+
+    /**
+     * Returns the model to preview {@param idp}, loading it if it is not cached, or null if the
+     * live model should be previewed instead.
+     */
+    @WorkerThread
+    @Nullable
+    public PreviewModel getPreviewModel(InvariantDeviceProfile idp) {
+        synchronized (mLoadLock) {
+            // Read before loading, so that changes made during the load drop the new model
+            int liveVersion = mLiveVersion.getAsInt();
+            String key = getKey(idp);
+            PreviewModel model;
+            synchronized (mModels) {
+                if (liveVersion != mModelsLiveVersion) {
+                    mModels.clear();
+                    mModelsLiveVersion = liveVersion;
+                }
+                model = mModels.get(key);
+            }
+            if (model != null) {
+                return model;
+            }
+
+            model = mLoader.load(idp);
+            synchronized (mModels) {
+                // Changes can't be tracked while the live model is not loaded, and a model
+                // loaded while the cache was cleared may be stale
+                if (model != null && liveVersion >= 0 && liveVersion == mModelsLiveVersion) {
+                    mModels.put(key, model);
+                }
+            }
+            return model;
+        }
+    }
+
+    /**
+     * Drops all the cached models. This doesn't wait for a model being loaded, which is then
+     * not cached.
+     */
+    public void clear() {
+        synchronized (mModels) {
+            mModels.clear();
+            mModelsLiveVersion = -1;
+        }
+    }
+
+    /**
+     * Returns the key of the models of {@param idp}: its database, which the live workspace is
+     * migrated into, the grid it is migrated to and the size of the loaded icons.
+     */
+    private static String getKey(InvariantDeviceProfile idp) {
+        return idp.dbFile + ":" + new DeviceGridState(idp) + ":" + idp.iconBitmapSize;
+    }
+
+    @WorkerThread
+    @Nullable
+    private static PreviewModel loadMigratedModel(Context context, InvariantDeviceProfile idp) {
+        if (!GridSizeMigrationTaskV2.needsToMigrate(context, idp)
+                || !GridSizeMigrationTaskV2.migrateGridIfNeeded(context, idp)) {
+            return null;
+        }
+
+        // Icons are loaded for the previewed grid, through the app state of a preview context.
+        // The loaded items don't depend on it, so it is only kept for the load.
+        PreviewContext previewContext = new PreviewContext(context, idp);
+        try {
+            return loadPreviewModel(LauncherAppState.getInstance(previewContext));
+        } finally {
+            previewContext.onDestroy();
+        }
+    }
+
+    /**
+     * Loads the previewed items of {@link LauncherSettings.Favorites#PREVIEW_CONTENT_URI}, with
+     * the icon cache of {@param app}.
+     */
+    @VisibleForTesting
+    @WorkerThread
+    static PreviewModel loadPreviewModel(LauncherAppState app) {
+        PreviewLoaderTask task = new PreviewLoaderTask(app);
+        task.run();
+        return task.getPreviewModel();
+    }
+
+    /**
+     * Model loaded from {@link LauncherSettings.Favorites#PREVIEW_CONTENT_URI} for a migrated
+     * grid. Must not be modified, as it can be rendered by multiple previews.
+     */
+    public static final class PreviewModel {
+
+        public final BgDataModel dataModel;
+        public final Map<ComponentKey, AppWidgetProviderInfo> widgetProvidersMap;
+
+        @VisibleForTesting
+        PreviewModel(BgDataModel dataModel,
+                Map<ComponentKey, AppWidgetProviderInfo> widgetProvidersMap) {
+            this.dataModel = dataModel;
+            this.widgetProvidersMap = widgetProvidersMap;
+        }
+    }
+
+    /**
+     * Loads the items which can be previewed: the hotseat and the first two screens, so that the
+     * model can be rendered both on one and two panels.
+     */
+    private static class PreviewLoaderTask extends LoaderTask {
+
+        PreviewLoaderTask(LauncherAppState app) {
+            super(app, null, new BgDataModel(), new ModelDelegate(), null);
+        }
+
+        @Override
+        public void run() {
+            String query = LauncherSettings.Favorites.SCREEN + " = " + Workspace.FIRST_SCREEN_ID
+                    + " or " + LauncherSettings.Favorites.SCREEN + " = "
+                    + Workspace.SECOND_SCREEN_ID
+                    + " or " + LauncherSettings.Favorites.CONTAINER + " = "
+                    + LauncherSettings.Favorites.CONTAINER_HOTSEAT;
+            loadWorkspace(new ArrayList<>(), LauncherSettings.Favorites.PREVIEW_CONTENT_URI,
+                    query);
+        }
+
+        PreviewModel getPreviewModel() {
+            return new PreviewModel(mBgDataModel, mWidgetProvidersMap);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.graphics;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT_PREDICTION;
+import static com.android.launcher3.model.ModelUtils.filterCurrentWorkspaceItems;
+import static com.android.launcher3.model.ModelUtils.getMissingHotseatRanks;
+import static com.android.launcher3.model.ModelUtils.sortWorkspaceItemsSpatially;
+
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.Context;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.DeviceProfile;
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.Workspace;
+import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.model.BgDataModel.FixedContainerItems;
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.LauncherAppWidgetInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.IntArray;
+import com.android.launcher3.util.IntSet;
+import com.android.launcher3.widget.LauncherAppWidgetProviderInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Items of a {@link LauncherPreviewRenderer} preview, resolved from the model off the UI thread:
+ * the items of the previewed screens in binding order, the provider info of their widgets and the
+ * predicted icons filling the hotseat.
+ *
+ * <p>Only the model work moves off the UI thread. Each render still inflates its own views, as
+ * they are themed by the context of that render, and widget host views still get their
+ * RemoteViews when they are created on the UI thread.
+ */
+public class PreviewRenderRecords {
+
+    /** Icons and folders of the previewed screens and the hotseat, sorted spatially */
+    public final List<ItemInfo> workspaceItems;
+    public final List<WidgetRecord> widgets;
+    /** Copies of the predicted items, already placed in the missing hotseat ranks */
+    public final List<WorkspaceItemInfo> predictedItems;
+
+    private PreviewRenderRecords(List<ItemInfo> workspaceItems, List<WidgetRecord> widgets,
+            List<WorkspaceItemInfo> predictedItems) {
+        this.workspaceItems = workspaceItems;
+        this.widgets = widgets;
+        this.predictedItems = predictedItems;
+    }
+
+    /**
+     * Resolves the items of {@param dataModel} to preview with {@param idp}.
+     *
+     * @param widgetProviderInfoMap provider infos of the widgets, or null to look them up in the
+     *                              widgets model
+     */
+    @WorkerThread
+    public static PreviewRenderRecords resolve(Context context, InvariantDeviceProfile idp,
+            BgDataModel dataModel,
+            @Nullable Map<ComponentKey, AppWidgetProviderInfo> widgetProviderInfoMap) {
+        DeviceProfile dp = idp.getDeviceProfile(context);
+        IntSet currentScreenIds = IntSet.wrap(Workspace.FIRST_SCREEN_ID);
+        if (dp.isTwoPanels) {
+            currentScreenIds.add(Workspace.SECOND_SCREEN_ID);
+        }
+
+        // Separate the items that are on the current screen, and the other remaining items.
+        ArrayList<ItemInfo> currentWorkspaceItems = new ArrayList<>();
+        ArrayList<ItemInfo> otherWorkspaceItems = new ArrayList<>();
+        ArrayList<LauncherAppWidgetInfo> currentAppWidgets = new ArrayList<>();
+        ArrayList<LauncherAppWidgetInfo> otherAppWidgets = new ArrayList<>();
+        // Filtering sorts the lists in place, so work on copies of the model snapshot
+        BgDataModel.Snapshot snapshot = dataModel.getSnapshot();
+        filterCurrentWorkspaceItems(currentScreenIds, new ArrayList<>(snapshot.workspaceItems),
+                currentWorkspaceItems, otherWorkspaceItems);
+        filterCurrentWorkspaceItems(currentScreenIds, new ArrayList<>(snapshot.appWidgets),
+                currentAppWidgets, otherAppWidgets);
+        sortWorkspaceItemsSpatially(idp, currentWorkspaceItems);
+
+        ArrayList<ItemInfo> workspaceItems = new ArrayList<>(currentWorkspaceItems.size());
+        for (ItemInfo itemInfo : currentWorkspaceItems) {
+            switch (itemInfo.itemType) {
+                case Favorites.ITEM_TYPE_APPLICATION:
+                case Favorites.ITEM_TYPE_SHORTCUT:
+                case Favorites.ITEM_TYPE_DEEP_SHORTCUT:
+                case Favorites.ITEM_TYPE_FOLDER:
+                    workspaceItems.add(itemInfo);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        ArrayList<WidgetRecord> widgets = new ArrayList<>(currentAppWidgets.size());
+        for (LauncherAppWidgetInfo info : currentAppWidgets) {
+            switch (info.itemType) {
+                case Favorites.ITEM_TYPE_APPWIDGET:
+                case Favorites.ITEM_TYPE_CUSTOM_APPWIDGET:
+                    LauncherAppWidgetProviderInfo providerInfo = getProviderInfo(
+                            context, info, dataModel, widgetProviderInfoMap);
+                    if (providerInfo != null) {
+                        widgets.add(new WidgetRecord(info, providerInfo));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        IntArray ranks = getMissingHotseatRanks(currentWorkspaceItems, dp.numShownHotseatIcons);
+        FixedContainerItems hotseatPredictions =
+                dataModel.extraItems.get(CONTAINER_HOTSEAT_PREDICTION);
+        List<ItemInfo> predictions = hotseatPredictions == null
+                ? Collections.emptyList() : hotseatPredictions.items;
+        int count = Math.min(ranks.size(), predictions.size());
+        ArrayList<WorkspaceItemInfo> predictedItems = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int rank = ranks.get(i);
+            WorkspaceItemInfo itemInfo =
+                    new WorkspaceItemInfo((WorkspaceItemInfo) predictions.get(i));
+            itemInfo.container = CONTAINER_HOTSEAT_PREDICTION;
+            itemInfo.rank = rank;
+            // The preview hotseat is always horizontal
+            itemInfo.cellX = rank;
+            itemInfo.cellY = 0;
+            itemInfo.screenId = rank;
+            predictedItems.add(itemInfo);
+        }
+        return new PreviewRenderRecords(workspaceItems, widgets, predictedItems);
+    }
+
+    @Nullable
+    private static LauncherAppWidgetProviderInfo getProviderInfo(Context context,
+            LauncherAppWidgetInfo info, BgDataModel dataModel,
+            @Nullable Map<ComponentKey, AppWidgetProviderInfo> widgetProviderInfoMap) {
+        if (widgetProviderInfoMap != null) {
+            AppWidgetProviderInfo providerInfo = widgetProviderInfoMap.get(
+                    new ComponentKey(info.providerName, info.user));
+            return providerInfo == null ? null : LauncherAppWidgetProviderInfo.fromProviderInfo(
+                    context.getApplicationContext(), providerInfo);
+        }
+        WidgetItem widgetItem = dataModel.widgetsModel.getWidgetProviderInfoByProviderName(
+                info.providerName, info.user);
+        return widgetItem == null ? null : widgetItem.widgetInfo;
+    }
+
+    /**
+     * A widget of the preview, with its resolved provider info.
+     */
+    public static class WidgetRecord {
+
+        public final LauncherAppWidgetInfo info;
+        public final LauncherAppWidgetProviderInfo providerInfo;
+
+        WidgetRecord(LauncherAppWidgetInfo info, LauncherAppWidgetProviderInfo providerInfo) {
+            this.info = info;
+            this.providerInfo = providerInfo;
+        }
+    }
+}
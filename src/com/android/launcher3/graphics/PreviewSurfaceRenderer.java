@@ -20,7 +20,6 @@ import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 
 import android.app.WallpaperColors;
-import android.appwidget.AppWidgetProviderInfo;
 import android.content.Context;
 import android.hardware.display.DisplayManager;
 import android.os.Bundle;
@@ -37,24 +36,15 @@ import android.view.animation.AccelerateDecelerateInterpolator;
 import androidx.annotation.UiThread;
 import androidx.annotation.WorkerThread;
 
-import com.android.launcher3.DeviceProfile;
 import com.android.launcher3.InvariantDeviceProfile;
 import com.android.launcher3.LauncherAppState;
-import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.Utilities;
-import com.android.launcher3.Workspace;
 import com.android.launcher3.graphics.LauncherPreviewRenderer.PreviewContext;
-import com.android.launcher3.model.BgDataModel;
-import com.android.launcher3.model.GridSizeMigrationTaskV2;
-import com.android.launcher3.model.LoaderTask;
-import com.android.launcher3.model.ModelDelegate;
-import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.graphics.PreviewModelCache.PreviewModel;
 import com.android.launcher3.util.RunnableList;
 import com.android.launcher3.util.Themes;
 import com.android.launcher3.widget.LocalColorExtractor;
 
-import java.util.ArrayList;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /** Render preview using surface view. */
@@ -133,7 +123,8 @@ public class PreviewSurfaceRenderer {
 
     @WorkerThread
     private void loadModelData() {
-        final boolean migrated = doGridMigrationIfNecessary();
+        final PreviewModel previewModel =
+                PreviewModelCache.INSTANCE.get(mContext).getPreviewModel(mIdp);
 
         final Context inflationContext;
         if (mWallpaperColors != null) {
@@ -152,38 +143,22 @@ public class PreviewSurfaceRenderer {
                     Themes.getActivityThemeRes(mContext));
         }
 
-        if (migrated) {
+        if (previewModel != null) {
+            // The grid differs from the current one, render the migrated model in its context
             PreviewContext previewContext = new PreviewContext(inflationContext, mIdp);
-            new LoaderTask(
-                    LauncherAppState.getInstance(previewContext),
-                    null,
-                    new BgDataModel(),
-                    new ModelDelegate(), null) {
-
-                @Override
-                public void run() {
-                    DeviceProfile deviceProfile = mIdp.getDeviceProfile(previewContext);
-                    String query =
-                            LauncherSettings.Favorites.SCREEN + " = " + Workspace.FIRST_SCREEN_ID
-                            + " or " + LauncherSettings.Favorites.CONTAINER + " = "
-                            + LauncherSettings.Favorites.CONTAINER_HOTSEAT;
-                    if (deviceProfile.isTwoPanels) {
-                        query += " or " + LauncherSettings.Favorites.SCREEN + " = "
-                                + Workspace.SECOND_SCREEN_ID;
-                    }
-                    loadWorkspace(new ArrayList<>(), LauncherSettings.Favorites.PREVIEW_CONTENT_URI,
-                            query);
-
-                    MAIN_EXECUTOR.execute(() -> {
-                        renderView(previewContext, mBgDataModel, mWidgetProvidersMap);
-                        mOnDestroyCallbacks.add(previewContext::onDestroy);
-                    });
-                }
-            }.run();
+            PreviewRenderRecords records = PreviewRenderRecords.resolve(previewContext, mIdp,
+                    previewModel.dataModel, previewModel.widgetProvidersMap);
+            MAIN_EXECUTOR.execute(() -> {
+                renderView(previewContext, records);
+                mOnDestroyCallbacks.add(previewContext::onDestroy);
+            });
         } else {
             LauncherAppState.getInstance(inflationContext).getModel().loadAsync(dataModel -> {
                 if (dataModel != null) {
-                    MAIN_EXECUTOR.execute(() -> renderView(inflationContext, dataModel, null));
+                    // Called on the model thread, only bind the items on the UI thread
+                    PreviewRenderRecords records = PreviewRenderRecords.resolve(
+                            inflationContext, mIdp, dataModel, null);
+                    MAIN_EXECUTOR.execute(() -> renderView(inflationContext, records));
                 } else {
                     Log.e(TAG, "Model loading failed");
                 }
@@ -191,22 +166,15 @@ public class PreviewSurfaceRenderer {
         }
     }
 
-    @WorkerThread
-    private boolean doGridMigrationIfNecessary() {
-        if (!GridSizeMigrationTaskV2.needsToMigrate(mContext, mIdp)) {
-            return false;
-        }
-        return GridSizeMigrationTaskV2.migrateGridIfNeeded(mContext, mIdp);
-    }
-
     @UiThread
-    private void renderView(Context inflationContext, BgDataModel dataModel,
-            Map<ComponentKey, AppWidgetProviderInfo> widgetProviderInfoMap) {
+    private void renderView(Context inflationContext, PreviewRenderRecords records) {
         if (mDestroyed) {
             return;
         }
-        View view = new LauncherPreviewRenderer(inflationContext, mIdp, mWallpaperColors)
-                .getRenderedView(dataModel, widgetProviderInfoMap);
+        LauncherPreviewRenderer renderer =
+                new LauncherPreviewRenderer(inflationContext, mIdp, mWallpaperColors);
+        View view = renderer.getRenderedView(records);
+        mOnDestroyCallbacks.add(renderer::destroy);
         // This aspect scales the view to fit in the surface and centers it
         final float scale = Math.min(mWidth / (float) view.getMeasuredWidth(),
                 mHeight / (float) view.getMeasuredHeight());
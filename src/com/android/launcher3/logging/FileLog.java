@@ -10,18 +10,11 @@ import android.util.Pair;
 
 import androidx.annotation.VisibleForTesting;
 
-import com.android.launcher3.util.IOUtils;
-
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.PrintWriter;
-import java.text.DateFormat;
-import java.util.Calendar;
-import java.util.Date;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Wrapper around {@link Log} to allow writing to a file.
@@ -33,24 +26,28 @@ import java.util.concurrent.TimeUnit;
 public final class FileLog {
 
     protected static final boolean ENABLED = true;
-    private static final String FILE_NAME_PREFIX = "log-";
-    private static final DateFormat DATE_FORMAT =
-            DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
 
-    private static final long MAX_LOG_FILE_SIZE = 8 << 20;  // 4 mb
+    // Lines logged faster than the logger thread writes them are dropped past this count
+    private static final int BUFFER_SIZE = 1024;
+
+    private static final LogRingBuffer sBuffer = new LogRingBuffer(BUFFER_SIZE);
+    private static final AtomicBoolean sWriteScheduled = new AtomicBoolean();
 
+    private static final Object sLock = new Object();
     private static Handler sHandler = null;
     private static File sLogsDirectory = null;
 
-    public static final int LOG_DAYS = 4;
+    public static final int LOG_DAYS = LogFileWriter.LOG_DAYS;
 
     public static void setDir(File logsDir) {
         if (ENABLED) {
-            synchronized (DATE_FORMAT) {
+            synchronized (sLock) {
                 // If the target directory changes, stop any active thread.
                 if (sHandler != null && !logsDir.equals(sLogsDirectory)) {
                     ((HandlerThread) sHandler.getLooper().getThread()).quit();
                     sHandler = null;
+                    // The pending write is lost with the thread, the next line schedules one
+                    sWriteScheduled.set(false);
                 }
             }
         }
@@ -81,20 +78,23 @@ public final class FileLog {
         print(tag, msg, null);
     }
 
+    /**
+     * Queues the line to be formatted and written by the logger thread, which is only woken up
+     * if it isn't already going to write.
+     */
     public static void print(String tag, String msg, Exception e) {
         if (!ENABLED) {
             return;
         }
-        String out = String.format("%s %s %s", DATE_FORMAT.format(new Date()), tag, msg);
-        if (e != null) {
-            out += "\n" + Log.getStackTraceString(e);
+        sBuffer.add(System.currentTimeMillis(), tag, msg, e);
+        if (!sWriteScheduled.get() && sWriteScheduled.compareAndSet(false, true)) {
+            getHandler().sendEmptyMessage(LogWriterCallback.MSG_WRITE);
         }
-        Message.obtain(getHandler(), LogWriterCallback.MSG_WRITE, out).sendToTarget();
     }
 
     @VisibleForTesting
     static Handler getHandler() {
-        synchronized (DATE_FORMAT) {
+        synchronized (sLock) {
             if (sHandler == null) {
                 sHandler = new Handler(createAndStartNewLooper("file-logger"),
                         new LogWriterCallback());
@@ -120,9 +120,7 @@ public final class FileLog {
     }
 
     /**
-     * Writes logs to the file.
-     * Log files are named log-0 for even days of the year and log-1 for odd days of the year.
-     * Logs older than 36 hours are purged.
+     * Drains the buffered lines in batches and writes them through a {@link LogFileWriter}.
      */
     private static class LogWriterCallback implements Handler.Callback {
 
@@ -132,59 +130,55 @@ public final class FileLog {
         private static final int MSG_CLOSE = 2;
         private static final int MSG_FLUSH = 3;
 
-        private String mCurrentFileName = null;
-        private PrintWriter mCurrentWriter = null;
+        private LogFileWriter mWriter = null;
+
+        private final LogRingBuffer.Consumer mDiscard = (time, tag, msg, throwable) -> { };
 
         private void closeWriter() {
-            IOUtils.closeSilently(mCurrentWriter);
-            mCurrentWriter = null;
+            if (mWriter != null) {
+                mWriter.close();
+            }
+        }
+
+        /**
+         * Writes all the buffered lines, or discards them if there is no directory to write to.
+         */
+        private void drain() {
+            // Cleared first, so that lines added while draining schedule another write
+            sWriteScheduled.set(false);
+            File dir = sLogsDirectory;
+            if (dir == null) {
+                sBuffer.drain(mDiscard);
+                sBuffer.takeDroppedCount();
+                return;
+            }
+            if (mWriter == null || !dir.equals(mWriter.dir)) {
+                closeWriter();
+                mWriter = new LogFileWriter(dir);
+            }
+            if (sBuffer.drain(mWriter) == 0) {
+                return;
+            }
+            long dropped = sBuffer.takeDroppedCount();
+            if (dropped > 0) {
+                mWriter.accept(System.currentTimeMillis(), "FileLog",
+                        dropped + " lines dropped, logged faster than they were written", null);
+            }
+            mWriter.flush();
+
+            // Auto close file stream after some time.
+            sHandler.removeMessages(MSG_CLOSE);
+            sHandler.sendEmptyMessageDelayed(MSG_CLOSE, CLOSE_DELAY);
         }
 
         @Override
         public boolean handleMessage(Message msg) {
-            if (sLogsDirectory == null || !ENABLED) {
+            if (!ENABLED) {
                 return true;
             }
             switch (msg.what) {
                 case MSG_WRITE: {
-                    Calendar cal = Calendar.getInstance();
-                    // suffix with 0 or 1 based on the day of the year.
-                    String fileName = FILE_NAME_PREFIX + (cal.get(Calendar.DAY_OF_YEAR) % LOG_DAYS);
-
-                    if (!fileName.equals(mCurrentFileName)) {
-                        closeWriter();
-                    }
-
-                    try {
-                        if (mCurrentWriter == null) {
-                            mCurrentFileName = fileName;
-
-                            boolean append = false;
-                            File logFile = new File(sLogsDirectory, fileName);
-                            if (logFile.exists()) {
-                                Calendar modifiedTime = Calendar.getInstance();
-                                modifiedTime.setTimeInMillis(logFile.lastModified());
-
-                                // If the file was modified more that 36 hours ago, purge the file.
-                                // We use instead of 24 to account for day-365 followed by day-1
-                                modifiedTime.add(Calendar.HOUR, 36);
-                                append = cal.before(modifiedTime)
-                                        && logFile.length() < MAX_LOG_FILE_SIZE;
-                            }
-                            mCurrentWriter = new PrintWriter(new FileWriter(logFile, append));
-                        }
-
-                        mCurrentWriter.println((String) msg.obj);
-                        mCurrentWriter.flush();
-
-                        // Auto close file stream after some time.
-                        sHandler.removeMessages(MSG_CLOSE);
-                        sHandler.sendEmptyMessageDelayed(MSG_CLOSE, CLOSE_DELAY);
-                    } catch (Exception e) {
-                        Log.e("FileLog", "Error writing logs to file", e);
-                        // Close stream, will try reopening during next log
-                        closeWriter();
-                    }
+                    drain();
                     return true;
                 }
                 case MSG_CLOSE: {
@@ -192,14 +186,13 @@ public final class FileLog {
                     return true;
                 }
                 case MSG_FLUSH: {
+                    drain();
                     closeWriter();
                     Pair<PrintWriter, CountDownLatch> p =
                             (Pair<PrintWriter, CountDownLatch>) msg.obj;
 
-                    if (p.first != null) {
-                        for (int i = 0; i < LOG_DAYS; i++) {
-                            dumpFile(p.first, FILE_NAME_PREFIX + i);
-                        }
+                    if (p.first != null && mWriter != null) {
+                        mWriter.dumpAll(p.first);
                     }
                     p.second.countDown();
                     return true;
@@ -209,27 +202,6 @@ public final class FileLog {
         }
     }
 
-    private static void dumpFile(PrintWriter out, String fileName) {
-        File logFile = new File(sLogsDirectory, fileName);
-        if (logFile.exists()) {
-
-            BufferedReader in = null;
-            try {
-                in = new BufferedReader(new FileReader(logFile));
-                out.println();
-                out.println("--- logfile: " + fileName + " ---");
-                String line;
-                while ((line = in.readLine()) != null) {
-                    out.println(line);
-                }
-            } catch (Exception e) {
-                // ignore
-            } finally {
-                IOUtils.closeSilently(in);
-            }
-        }
-    }
-
     /**
      * Gets files used for FileLog
      */
@@ -239,7 +211,7 @@ public final class FileLog {
         } catch (InterruptedException e) { }
         File[] files = new File[LOG_DAYS];
         for (int i = 0; i < LOG_DAYS; i++) {
-            files[i] = new File(sLogsDirectory, FILE_NAME_PREFIX + i);
+            files[i] = new File(sLogsDirectory, LogFileWriter.FILE_NAME_PREFIX + i);
         }
         return files;
     }
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.logging;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.text.DateFormat;
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Formats log records and writes them to the file of the day they were logged.
+ * Log files are named log-0 to log-3 based on the day of the year, so that the logs of the last
+ * {@link #LOG_DAYS} days are kept. Logs older than 36 hours are purged.
+ *
+ * Not thread safe, it is only used from the logger thread. It only depends on {@link Log} so that
+ * it can also be tested and benchmarked on a plain JVM.
+ */
+final class LogFileWriter implements LogRingBuffer.Consumer {
+
+    static final String FILE_NAME_PREFIX = "log-";
+    static final int LOG_DAYS = 4;
+
+    private static final long MAX_LOG_FILE_SIZE = 8 << 20;  // 8 mb
+
+    final File dir;
+
+    private final DateFormat mDateFormat =
+            DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+    private final Calendar mCalendar = Calendar.getInstance();
+    private final Date mDate = new Date();
+
+    private int mCurrentFileIndex = -1;
+    private PrintWriter mCurrentWriter = null;
+
+    LogFileWriter(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Appends a record to the file of its day, in the format "date tag msg", followed by the
+     * stack trace of {@param throwable} if any. Records are only flushed by {@link #flush}.
+     */
+    @Override
+    public void accept(long time, String tag, String msg, Throwable throwable) {
+        mCalendar.setTimeInMillis(time);
+        int fileIndex = mCalendar.get(Calendar.DAY_OF_YEAR) % LOG_DAYS;
+        if (fileIndex != mCurrentFileIndex) {
+            close();
+        }
+
+        try {
+            if (mCurrentWriter == null) {
+                mCurrentFileIndex = fileIndex;
+
+                boolean append = false;
+                File logFile = new File(dir, FILE_NAME_PREFIX + fileIndex);
+                if (logFile.exists()) {
+                    Calendar modifiedTime = Calendar.getInstance();
+                    modifiedTime.setTimeInMillis(logFile.lastModified());
+
+                    // If the file was modified more that 36 hours ago, purge the file.
+                    // We use instead of 24 to account for day-365 followed by day-1
+                    modifiedTime.add(Calendar.HOUR, 36);
+                    append = mCalendar.before(modifiedTime)
+                            && logFile.length() < MAX_LOG_FILE_SIZE;
+                }
+                mCurrentWriter = new PrintWriter(new FileWriter(logFile, append));
+            }
+
+            mDate.setTime(time);
+            mCurrentWriter.print(mDateFormat.format(mDate));
+            mCurrentWriter.print(' ');
+            mCurrentWriter.print(tag);
+            mCurrentWriter.print(' ');
+            mCurrentWriter.print(msg);
+            if (throwable != null) {
+                mCurrentWriter.println();
+                mCurrentWriter.print(Log.getStackTraceString(throwable));
+            }
+            mCurrentWriter.println();
+        } catch (Exception e) {
+            Log.e("FileLog", "Error writing logs to file", e);
+            // Close stream, will try reopening during next log
+            close();
+        }
+    }
+
+    void flush() {
+        if (mCurrentWriter != null) {
+            mCurrentWriter.flush();
+        }
+    }
+
+    void close() {
+        if (mCurrentWriter != null) {
+            mCurrentWriter.close();
+            mCurrentWriter = null;
+        }
+        mCurrentFileIndex = -1;
+    }
+
+    /**
+     * Copies all the log files to {@param out}.
+     */
+    void dumpAll(PrintWriter out) {
+        for (int i = 0; i < LOG_DAYS; i++) {
+            dumpFile(out, FILE_NAME_PREFIX + i);
+        }
+    }
+
+    private void dumpFile(PrintWriter out, String fileName) {
+        File logFile = new File(dir, fileName);
+        if (logFile.exists()) {
+            try (BufferedReader in = new BufferedReader(new FileReader(logFile))) {
+                out.println();
+                out.println("--- logfile: " + fileName + " ---");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    out.println(line);
+                }
+            } catch (Exception e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free, fixed size queue of log records, added from any thread and drained by a single
+ * thread. Records are kept as their raw parts in preallocated slots, so adding one neither
+ * allocates nor formats anything. Records are drained in the order their slots were claimed.
+ *
+ * When the buffer is full, new records are dropped and counted, rather than blocking the caller.
+ */
+final class LogRingBuffer {
+
+    /**
+     * Receives the drained records.
+     */
+    interface Consumer {
+        void accept(long time, String tag, String msg, Throwable throwable);
+    }
+
+    private final int mMask;
+    // Sequence of each slot: its index while empty and its index + 1 once published, following
+    // the bounded queue design of Dmitry Vyukov
+    private final AtomicLongArray mSequences;
+    private final long[] mTimes;
+    private final String[] mTags;
+    private final String[] mMessages;
+    private final Throwable[] mThrowables;
+
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    // Only accessed by the draining thread
+    private long mHead;
+
+    /**
+     * @param capacity the number of records, a power of two
+     */
+    LogRingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        mMask = capacity - 1;
+        mSequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            mSequences.set(i, i);
+        }
+        mTimes = new long[capacity];
+        mTags = new String[capacity];
+        mMessages = new String[capacity];
+        mThrowables = new Throwable[capacity];
+    }
+
+    /**
+     * Adds a record, or drops it if the buffer is full.
+     * @return whether the record was added
+     */
+    boolean add(long time, String tag, String msg, Throwable throwable) {
+        long position = mTail.get();
+        int index;
+        while (true) {
+            index = (int) (position & mMask);
+            long difference = mSequences.get(index) - position;
+            if (difference == 0) {
+                if (mTail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = mTail.get();
+            } else if (difference < 0) {
+                // The slot still holds the record added a full lap ago
+                mDropped.incrementAndGet();
+                return false;
+            } else {
+                position = mTail.get();
+            }
+        }
+        mTimes[index] = time;
+        mTags[index] = tag;
+        mMessages[index] = msg;
+        mThrowables[index] = throwable;
+        // Publishes the fields written above to the draining thread
+        mSequences.set(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Passes the published records to {@param consumer} in order, and frees their slots.
+     * Must only be called from one thread at a time.
+     * @return the number of records drained
+     */
+    int drain(Consumer consumer) {
+        int count = 0;
+        while (true) {
+            int index = (int) (mHead & mMask);
+            if (mSequences.get(index) != mHead + 1) {
+                // Empty, or the next record is not published yet
+                return count;
+            }
+            long time = mTimes[index];
+            String tag = mTags[index];
+            String msg = mMessages[index];
+            Throwable throwable = mThrowables[index];
+            mTags[index] = null;
+            mMessages[index] = null;
+            mThrowables[index] = null;
+            mSequences.set(index, mHead + mMask + 1);
+            mHead++;
+            count++;
+            consumer.accept(time, tag, msg, throwable);
+        }
+    }
+
+    /**
+     * Returns the number of records dropped since the last call, and resets it.
+     */
+    long takeDroppedCount() {
+        return mDropped.getAndSet(0);
+    }
+}
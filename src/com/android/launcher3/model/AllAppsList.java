@@ -46,6 +46,7 @@ import com.android.launcher3.util.SafeCloseable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.function.Consumer;
@@ -73,6 +74,10 @@ public class AllAppsList {
 
     private AlphabeticIndexCompat mIndex;
 
+    /** Lazily built index of the first app of each package, cleared whenever the list changes. */
+    @Nullable
+    private HashMap<String, AppInfo> mAppsByPackage;
+
     /**
      * @see Callbacks#FLAG_HAS_SHORTCUT_PERMISSION
      * @see Callbacks#FLAG_QUIET_MODE_ENABLED
@@ -149,6 +154,7 @@ public class AllAppsList {
 
         data.add(info);
         mDataChanged = true;
+        mAppsByPackage = null;
     }
 
     @Nullable
@@ -173,6 +179,7 @@ public class AllAppsList {
 
         data.add(promiseAppInfo);
         mDataChanged = true;
+        mAppsByPackage = null;
 
         return promiseAppInfo;
     }
@@ -213,6 +220,7 @@ public class AllAppsList {
         AppInfo removed = data.remove(index);
         if (removed != null) {
             mDataChanged = true;
+            mAppsByPackage = null;
             mRemoveListener.accept(removed);
         }
     }
@@ -220,6 +228,7 @@ public class AllAppsList {
     public void clear() {
         data.clear();
         mDataChanged = false;
+        mAppsByPackage = null;
         // Reset the index as locales might have changed
         mIndex = new AlphabeticIndexCompat(LocaleList.getDefault());
     }
@@ -359,6 +368,21 @@ public class AllAppsList {
         return null;
     }
 
+    /**
+     * Returns the first app of {@param packageName}, in any profile, or null if there is none.
+     */
+    public @Nullable AppInfo findAppInfoByPackage(@NonNull String packageName) {
+        if (mAppsByPackage == null) {
+            mAppsByPackage = new HashMap<>(data.size());
+            for (AppInfo info : data) {
+                if (info.componentName != null) {
+                    mAppsByPackage.putIfAbsent(info.componentName.getPackageName(), info);
+                }
+            }
+        }
+        return mAppsByPackage.get(packageName);
+    }
+
     public AppInfo[] copyData() {
         AppInfo[] result = data.toArray(EMPTY_ARRAY);
         Arrays.sort(result, COMPONENT_KEY_COMPARATOR);
@@ -76,17 +76,9 @@ public abstract class BaseLoaderResults {
      * Binds all loaded data to actual views on the main thread.
      */
     public void bindWorkspace(boolean incrementBindId) {
-        // Save a copy of all the bg-thread collections
-        ArrayList<ItemInfo> workspaceItems = new ArrayList<>();
-        ArrayList<LauncherAppWidgetInfo> appWidgets = new ArrayList<>();
-        final IntArray orderedScreenIds = new IntArray();
-        ArrayList<FixedContainerItems> extraItems = new ArrayList<>();
-
+        // Bind from a snapshot of the bg-thread collections, taken without holding the model lock
+        BgDataModel.Snapshot snapshot = mBgDataModel.getSnapshot();
         synchronized (mBgDataModel) {
-            workspaceItems.addAll(mBgDataModel.workspaceItems);
-            appWidgets.addAll(mBgDataModel.appWidgets);
-            orderedScreenIds.addAll(mBgDataModel.collectWorkspaceScreens());
-            mBgDataModel.extraItems.forEach(extraItems::add);
             if (incrementBindId) {
                 mBgDataModel.lastBindId++;
             }
@@ -95,7 +87,9 @@ public abstract class BaseLoaderResults {
 
         for (Callbacks cb : mCallbacksList) {
             new WorkspaceBinder(cb, mUiExecutor, mApp, mBgDataModel, mMyBindingId,
-                    workspaceItems, appWidgets, extraItems, orderedScreenIds).bind();
+                    new ArrayList<>(snapshot.workspaceItems),
+                    new ArrayList<>(snapshot.appWidgets), snapshot.extraItems,
+                    snapshot.getWorkspaceScreens()).bind();
         }
     }
 
@@ -143,7 +137,7 @@ public abstract class BaseLoaderResults {
         private final ArrayList<ItemInfo> mWorkspaceItems;
         private final ArrayList<LauncherAppWidgetInfo> mAppWidgets;
         private final IntArray mOrderedScreenIds;
-        private final ArrayList<FixedContainerItems> mExtraItems;
+        private final List<FixedContainerItems> mExtraItems;
 
         WorkspaceBinder(Callbacks callbacks,
                 Executor uiExecutor,
@@ -152,7 +146,7 @@ public abstract class BaseLoaderResults {
                 int myBindingId,
                 ArrayList<ItemInfo> workspaceItems,
                 ArrayList<LauncherAppWidgetInfo> appWidgets,
-                ArrayList<FixedContainerItems> extraItems,
+                List<FixedContainerItems> extraItems,
                 IntArray orderedScreenIds) {
             mCallbacks = callbacks;
             mUiExecutor = uiExecutor;
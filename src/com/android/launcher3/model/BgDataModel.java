@@ -26,6 +26,7 @@ import static java.util.stream.Collectors.mapping;
 import android.content.Context;
 import android.content.pm.LauncherApps;
 import android.content.pm.ShortcutInfo;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.text.TextUtils;
 import android.util.ArraySet;
@@ -43,6 +44,7 @@ import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.LauncherAppWidgetInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.shortcuts.DeepShortcutCache;
 import com.android.launcher3.shortcuts.ShortcutKey;
 import com.android.launcher3.shortcuts.ShortcutRequest;
 import com.android.launcher3.shortcuts.ShortcutRequest.QueryResult;
@@ -51,6 +53,7 @@ import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
 import com.android.launcher3.util.IntSparseArrayMap;
 import com.android.launcher3.util.ItemInfoMatcher;
+import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.RunnableList;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 
@@ -110,6 +113,11 @@ public class BgDataModel {
      */
     public final HashMap<ComponentKey, Integer> deepShortcutMap = new HashMap<>();
 
+    /**
+     * Published deep shortcuts of each package, kept in sync with {@link #deepShortcutMap}.
+     */
+    public final DeepShortcutCache deepShortcutCache = new DeepShortcutCache();
+
     /**
      * Entire list of widgets.
      */
@@ -120,6 +128,23 @@ public class BgDataModel {
      */
     public int lastBindId = 0;
 
+    /**
+     * Secondary indices over {@link #itemsIdMap}, built lazily and dropped whenever items are
+     * added, removed or moved. Must be accessed with the model locked.
+     */
+    @Nullable
+    private HashMap<PackageUserKey, ArrayList<WorkspaceItemInfo>> mItemsByPackage;
+    @Nullable
+    private IntSet mDesktopScreens;
+    private final PackageUserKey mTempPackageUserKey = new PackageUserKey(null, null);
+
+    /**
+     * Incremented whenever items are added, removed, moved or changed, see {@link #getSnapshot()}.
+     */
+    private volatile int mVersion;
+    @Nullable
+    private volatile Snapshot mSnapshot;
+
     /**
      * Clears all the data
      */
@@ -129,19 +154,79 @@ public class BgDataModel {
         folders.clear();
         itemsIdMap.clear();
         deepShortcutMap.clear();
+        deepShortcutCache.clear();
         extraItems.clear();
+        invalidateItemIndices();
+    }
+
+    /**
+     * Drops the package and screen indices and the current snapshot, to be called when items
+     * are added to, removed from or moved in the model outside of {@link #addItem} and
+     * {@link #removeItem}.
+     */
+    public synchronized void invalidateItemIndices() {
+        mItemsByPackage = null;
+        mDesktopScreens = null;
+        mVersion++;
+    }
+
+    /**
+     * Marks items as changed in place, like a new title or icon. The indices stay valid, but the
+     * version changes so that copies of the items, like cached previews, are refreshed.
+     */
+    public synchronized void onItemsChanged() {
+        mVersion++;
+    }
+
+    /**
+     * Returns the version of the workspace items, which changes whenever items are added,
+     * removed, moved or changed.
+     */
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Returns an immutable snapshot of the workspace items, which can be read from any thread
+     * without locking the model. Snapshots are copied at most once per model change, by the
+     * first reader after the change, so that writers such as the loader don't pay for them.
+     *
+     * Note that the items themselves are shared with the model, only the collections are
+     * snapshotted.
+     */
+    public Snapshot getSnapshot() {
+        Snapshot snapshot = mSnapshot;
+        if (snapshot != null && snapshot.version == mVersion) {
+            return snapshot;
+        }
+        synchronized (this) {
+            snapshot = mSnapshot;
+            if (snapshot == null || snapshot.version != mVersion) {
+                ArrayList<FixedContainerItems> extras = new ArrayList<>(extraItems.size());
+                extraItems.forEach(extras::add);
+                snapshot = new Snapshot(mVersion, workspaceItems, appWidgets, extras,
+                        collectWorkspaceScreens());
+                mSnapshot = snapshot;
+            }
+            return snapshot;
+        }
     }
 
     /**
      * Creates an array of valid workspace screens based on current items in the model.
      */
     public synchronized IntArray collectWorkspaceScreens() {
-        IntSet screenSet = new IntSet();
-        for (ItemInfo item: itemsIdMap) {
-            if (item.container == LauncherSettings.Favorites.CONTAINER_DESKTOP) {
-                screenSet.add(item.screenId);
+        if (mDesktopScreens == null) {
+            mDesktopScreens = new IntSet();
+            for (int i = 0; i < itemsIdMap.size(); i++) {
+                ItemInfo item = itemsIdMap.valueAt(i);
+                if (item.container == LauncherSettings.Favorites.CONTAINER_DESKTOP) {
+                    mDesktopScreens.add(item.screenId);
+                }
             }
         }
+        IntSet screenSet = new IntSet();
+        screenSet.copyFrom(mDesktopScreens);
         if (FeatureFlags.topQsbOnFirstScreenEnabled(LawnchairApp.getInstance()) || screenSet.isEmpty()) {
             screenSet.add(Workspace.FIRST_SCREEN_ID);
         }
@@ -151,6 +236,10 @@ public class BgDataModel {
     public synchronized void dump(String prefix, FileDescriptor fd, PrintWriter writer,
             String[] args) {
         writer.println(prefix + "Data Model:");
+        Snapshot snapshot = mSnapshot;
+        writer.println(prefix + " version: " + mVersion + ", snapshot version: "
+                + (snapshot == null ? "none" : snapshot.version + ", age: "
+                        + (SystemClock.uptimeMillis() - snapshot.createdAtMillis) + "ms"));
         writer.println(prefix + " ---- workspace items ");
         for (int i = 0; i < workspaceItems.size(); i++) {
             writer.println(prefix + '\t' + workspaceItems.get(i).toString());
@@ -215,6 +304,7 @@ public class BgDataModel {
             }
             itemsIdMap.remove(item.id);
         }
+        invalidateItemIndices();
         updatedDeepShortcuts.forEach(user -> updateShortcutPinnedState(context, user));
     }
 
@@ -233,6 +323,7 @@ public class BgDataModel {
         }
 
         itemsIdMap.put(item.id, item);
+        invalidateItemIndices();
         switch (item.itemType) {
             case LauncherSettings.Favorites.ITEM_TYPE_FOLDER:
                 folders.put(item.id, (FolderInfo) item);
@@ -360,6 +451,15 @@ public class BgDataModel {
         return folderInfo;
     }
 
+    /**
+     * Adds the shortcut counts of all the shortcuts of {@param user}, as returned by
+     * {@link ShortcutRequest#ALL}, and caches the shortcuts.
+     */
+    public synchronized void updateDeepShortcutCounts(UserHandle user, QueryResult shortcuts) {
+        deepShortcutCache.setAllShortcuts(user, shortcuts);
+        updateDeepShortcutCounts(null, user, shortcuts);
+    }
+
     /**
      * Clear all the deep shortcut counts for the given package, and re-add the new shortcut counts.
      */
@@ -374,6 +474,8 @@ public class BgDataModel {
                     keysIter.remove();
                 }
             }
+            // The shortcuts given here may only have their key fields, query them when needed
+            deepShortcutCache.invalidate(packageName, user);
         }
 
         // Now add the new shortcuts to the map.
@@ -401,27 +503,112 @@ public class BgDataModel {
         return items;
     }
 
+    /**
+     * Calls the provided {@code op} for all workspace items including widgets, without copying
+     * them like {@link #getAllWorkspaceItems()}. Reads the current {@link #getSnapshot()}, so the
+     * model is not locked during the call.
+     */
+    public void forAllWorkspaceItems(Consumer<? super ItemInfo> op) {
+        Snapshot snapshot = getSnapshot();
+        for (int i = 0; i < snapshot.workspaceItems.size(); i++) {
+            op.accept(snapshot.workspaceItems.get(i));
+        }
+        for (int i = 0; i < snapshot.appWidgets.size(); i++) {
+            op.accept(snapshot.appWidgets.get(i));
+        }
+    }
+
     /**
      * Calls the provided {@code op} for all workspaceItems in the in-memory model (both persisted
      * items and dynamic/predicted items for the provided {@code userHandle}.
      * Note the call is not synchronized over the model, that should be handled by the called.
      */
     public void forAllWorkspaceItemInfos(UserHandle userHandle, Consumer<WorkspaceItemInfo> op) {
-        for (ItemInfo info : itemsIdMap) {
+        for (int i = 0; i < itemsIdMap.size(); i++) {
+            ItemInfo info = itemsIdMap.valueAt(i);
             if (info instanceof WorkspaceItemInfo && userHandle.equals(info.user)) {
                 op.accept((WorkspaceItemInfo) info);
             }
         }
+        forAllExtraWorkspaceItemInfos(userHandle, null, op);
+    }
+
+    /**
+     * Same as {@link #forAllWorkspaceItemInfos(UserHandle, Consumer)}, but only for the items
+     * targeting {@code packageName}. Persisted items are looked up in a package index, so this
+     * doesn't walk the whole model.
+     * Note the call is not synchronized over the model, that should be handled by the called.
+     */
+    public void forAllWorkspaceItemInfos(
+            UserHandle userHandle, String packageName, Consumer<WorkspaceItemInfo> op) {
+        if (mItemsByPackage == null) {
+            mItemsByPackage = new HashMap<>();
+            for (int i = 0; i < itemsIdMap.size(); i++) {
+                ItemInfo info = itemsIdMap.valueAt(i);
+                String targetPackage = info.getTargetPackage();
+                if (info instanceof WorkspaceItemInfo && targetPackage != null) {
+                    mItemsByPackage.computeIfAbsent(
+                            new PackageUserKey(targetPackage, info.user),
+                            k -> new ArrayList<>()).add((WorkspaceItemInfo) info);
+                }
+            }
+        }
+        mTempPackageUserKey.update(packageName, userHandle);
+        ArrayList<WorkspaceItemInfo> items = mItemsByPackage.get(mTempPackageUserKey);
+        if (items != null) {
+            for (int i = 0; i < items.size(); i++) {
+                op.accept(items.get(i));
+            }
+        }
+        forAllExtraWorkspaceItemInfos(userHandle, packageName, op);
+    }
 
+    private void forAllExtraWorkspaceItemInfos(UserHandle userHandle,
+            @Nullable String packageName, Consumer<WorkspaceItemInfo> op) {
         for (int i = extraItems.size() - 1; i >= 0; i--) {
-            for (ItemInfo info : extraItems.valueAt(i).items) {
-                if (info instanceof WorkspaceItemInfo && userHandle.equals(info.user)) {
+            List<ItemInfo> items = extraItems.valueAt(i).items;
+            for (int j = 0; j < items.size(); j++) {
+                ItemInfo info = items.get(j);
+                if (info instanceof WorkspaceItemInfo && userHandle.equals(info.user)
+                        && (packageName == null || packageName.equals(info.getTargetPackage()))) {
                     op.accept((WorkspaceItemInfo) info);
                 }
             }
         }
     }
 
+    /**
+     * Immutable view of the workspace collections of the model at a given {@link #version}.
+     */
+    public static final class Snapshot {
+
+        public final int version;
+        /** {@link SystemClock#uptimeMillis()} when the snapshot was taken */
+        public final long createdAtMillis;
+        public final List<ItemInfo> workspaceItems;
+        public final List<LauncherAppWidgetInfo> appWidgets;
+        public final List<FixedContainerItems> extraItems;
+        private final IntArray mWorkspaceScreens;
+
+        Snapshot(int version, List<ItemInfo> workspaceItems,
+                List<LauncherAppWidgetInfo> appWidgets, List<FixedContainerItems> extraItems,
+                IntArray workspaceScreens) {
+            this.version = version;
+            this.createdAtMillis = SystemClock.uptimeMillis();
+            this.workspaceItems = Collections.unmodifiableList(new ArrayList<>(workspaceItems));
+            this.appWidgets = Collections.unmodifiableList(new ArrayList<>(appWidgets));
+            this.extraItems = Collections.unmodifiableList(extraItems);
+            mWorkspaceScreens = workspaceScreens;
+        }
+
+        /**
+         * Returns a copy of the ordered workspace screen ids, as callers usually modify it.
+         */
+        public IntArray getWorkspaceScreens() {
+            return mWorkspaceScreens.clone();
+        }
+    }
+
     /**
      * An object containing items corresponding to a fixed container
      */
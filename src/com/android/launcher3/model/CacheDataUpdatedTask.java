@@ -50,15 +50,17 @@ public class CacheDataUpdatedTask extends BaseModelUpdateTask {
         ArrayList<WorkspaceItemInfo> updatedShortcuts = new ArrayList<>();
 
         synchronized (dataModel) {
-            dataModel.forAllWorkspaceItemInfos(mUser, si -> {
-                ComponentName cn = si.getTargetComponent();
-                if (si.itemType == LauncherSettings.Favorites.ITEM_TYPE_APPLICATION
-                        && isValidShortcut(si) && cn != null
-                        && mPackages.contains(cn.getPackageName())) {
-                    iconCache.getTitleAndIcon(si, si.usingLowResIcon());
-                    updatedShortcuts.add(si);
-                }
-            });
+            for (String packageName : mPackages) {
+                dataModel.forAllWorkspaceItemInfos(mUser, packageName, si -> {
+                    ComponentName cn = si.getTargetComponent();
+                    if (si.itemType == LauncherSettings.Favorites.ITEM_TYPE_APPLICATION
+                            && isValidShortcut(si) && cn != null
+                            && packageName.equals(cn.getPackageName())) {
+                        iconCache.getTitleAndIcon(si, si.usingLowResIcon());
+                        updatedShortcuts.add(si);
+                    }
+                });
+            }
             apps.updateIconsAndLabels(mPackages, mUser);
         }
         bindUpdatedWorkspaceItems(updatedShortcuts);
@@ -19,18 +19,19 @@ package com.android.launcher3.model;
 import static com.android.launcher3.provider.LauncherDbUtils.dropTable;
 
 import android.content.ComponentName;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
-import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.graphics.Point;
 import android.util.ArrayMap;
 import android.util.Log;
+import android.util.Pair;
+import android.util.SparseArray;
 
 import androidx.annotation.VisibleForTesting;
 
@@ -48,10 +49,8 @@ import com.android.launcher3.widget.LauncherAppWidgetProviderInfo;
 import com.android.launcher3.widget.WidgetManagerHelper;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -80,6 +79,8 @@ public class GridSizeMigrationTaskV2 {
     private final int mDestHotseatSize;
     private final int mTrgX, mTrgY;
 
+    private int mStatementCount;
+
     @VisibleForTesting
     protected GridSizeMigrationTaskV2(Context context, SQLiteDatabase db, DbReader srcReader,
                                       DbReader destReader, int destHotseatSize, Point targetSize) {
@@ -147,7 +148,8 @@ public class GridSizeMigrationTaskV2 {
         }
 
         SharedPreferences prefs = Utilities.getPrefs(context);
-        HashSet<String> validPackages = getValidPackages(context);
+        // Shared by both tables, so that each intent is only verified once
+        ItemVerifier verifier = new ItemVerifier(getValidPackages(context));
 
         if (migrateForPreview) {
             if (!LauncherSettings.Settings.call(
@@ -172,11 +174,11 @@ public class GridSizeMigrationTaskV2 {
             DbReader srcReader = new DbReader(t.getDb(),
                     migrateForPreview ? LauncherSettings.Favorites.TABLE_NAME
                             : LauncherSettings.Favorites.TMP_TABLE,
-                    context, validPackages);
+                    context, verifier);
             DbReader destReader = new DbReader(t.getDb(),
                     migrateForPreview ? LauncherSettings.Favorites.PREVIEW_TABLE_NAME
                             : LauncherSettings.Favorites.TABLE_NAME,
-                    context, validPackages);
+                    context, verifier);
 
             Point targetSize = new Point(idp.numColumns, idp.numRows);
             GridSizeMigrationTaskV2 task = new GridSizeMigrationTaskV2(context, t.getDb(),
@@ -210,46 +212,55 @@ public class GridSizeMigrationTaskV2 {
             return false;
         }
 
-        // Migrate hotseat
-        HotseatPlacementSolution hotseatSolution = new HotseatPlacementSolution(mDb, mSrcReader,
-                mDestReader, mContext, mDestHotseatSize, mHotseatItems, mHotseatDiff);
-        hotseatSolution.find();
-
-        // Sort the items by the reading order.
-        Collections.sort(mWorkspaceDiff);
-
-        // Migrate workspace.
-        // First we create a collection of the screens
-        List<Integer> screens = new ArrayList<>();
-        for (int screenId = 0; screenId <= mDestReader.mLastScreenId; screenId++) {
-            screens.add(screenId);
-        }
-
-        // Then we place the items on the screens
-        for (int screenId : screens) {
-            if (DEBUG) {
-                Log.d(TAG, "Migrating " + screenId);
-            }
-            GridPlacementSolution workspaceSolution = new GridPlacementSolution(mDb, mSrcReader,
-                    mDestReader, mContext, screenId, mTrgX, mTrgY, mWorkspaceDiff);
-            workspaceSolution.find();
-            if (mWorkspaceDiff.isEmpty()) {
-                break;
+        // All the inserts go through the same compiled statements, in a single transaction. When
+        // called from migrateGridIfNeeded, this is nested in the transaction of the migration.
+        try (SQLiteTransaction t = new SQLiteTransaction(mDb);
+             DbWriter writer = new DbWriter(mDb, mContext, mSrcReader.mTableName,
+                     mDestReader.mTableName)) {
+            // Migrate hotseat
+            HotseatPlacementSolution hotseatSolution = new HotseatPlacementSolution(writer,
+                    mDestHotseatSize, mHotseatItems, mHotseatDiff);
+            hotseatSolution.find();
+
+            // Migrate workspace. The items are already in reading order, as they were loaded.
+            // First we place the items on the existing screens
+            for (int screenId = 0; screenId <= mDestReader.mLastScreenId; screenId++) {
+                if (DEBUG) {
+                    Log.d(TAG, "Migrating " + screenId);
+                }
+                GridPlacementSolution workspaceSolution = new GridPlacementSolution(writer,
+                        mDestReader, screenId, mTrgX, mTrgY, mWorkspaceDiff);
+                workspaceSolution.find();
+                if (mWorkspaceDiff.isEmpty()) {
+                    break;
+                }
             }
-        }
 
-        // In case the new grid is smaller, there might be some leftover items that don't fit on
-        // any of the screens, in this case we add them to new screens until all of them are placed.
-        int screenId = mDestReader.mLastScreenId + 1;
-        while (!mWorkspaceDiff.isEmpty()) {
-            GridPlacementSolution workspaceSolution = new GridPlacementSolution(mDb, mSrcReader,
-                    mDestReader, mContext, screenId, mTrgX, mTrgY, mWorkspaceDiff);
-            workspaceSolution.find();
-            screenId++;
+            // In case the new grid is smaller, there might be some leftover items that don't fit
+            // on any of the screens, in this case we add them to new screens until all of them
+            // are placed.
+            int screenId = mDestReader.mLastScreenId + 1;
+            while (!mWorkspaceDiff.isEmpty()) {
+                GridPlacementSolution workspaceSolution = new GridPlacementSolution(writer,
+                        mDestReader, screenId, mTrgX, mTrgY, mWorkspaceDiff);
+                workspaceSolution.find();
+                screenId++;
+            }
+            t.commit();
+            mStatementCount += writer.mStatementCount;
         }
         return true;
     }
 
+    /**
+     * Returns the number of SQL statements run so far by the migration, including the loading of
+     * both tables.
+     */
+    @VisibleForTesting
+    int getStatementCount() {
+        return mSrcReader.mStatementCount + mDestReader.mStatementCount + mStatementCount;
+    }
+
     /** Return what's in the src but not in the dest */
     private static List<DbEntry> calcDiff(List<DbEntry> src, List<DbEntry> dest) {
         Set<String> destIntentSet = new HashSet<>();
@@ -284,58 +295,6 @@ public class GridSizeMigrationTaskV2 {
         return folder;
     }
 
-    private static void insertEntryInDb(SQLiteDatabase db, Context context, DbEntry entry,
-                                        String srcTableName, String destTableName) {
-        int id = copyEntryAndUpdate(db, context, entry, srcTableName, destTableName);
-
-        if (entry.itemType == LauncherSettings.Favorites.ITEM_TYPE_FOLDER) {
-            for (Set<Integer> itemIds : entry.mFolderItems.values()) {
-                for (int itemId : itemIds) {
-                    copyEntryAndUpdate(db, context, itemId, id, srcTableName, destTableName);
-                }
-            }
-        }
-    }
-
-    private static int copyEntryAndUpdate(SQLiteDatabase db, Context context,
-                                          DbEntry entry, String srcTableName, String destTableName) {
-        return copyEntryAndUpdate(db, context, entry, -1, -1, srcTableName, destTableName);
-    }
-
-    private static int copyEntryAndUpdate(SQLiteDatabase db, Context context,
-                                          int id, int folderId, String srcTableName, String destTableName) {
-        return copyEntryAndUpdate(db, context, null, id, folderId, srcTableName, destTableName);
-    }
-
-    private static int copyEntryAndUpdate(SQLiteDatabase db, Context context,
-                                          DbEntry entry, int id, int folderId, String srcTableName, String destTableName) {
-        int newId = -1;
-        Cursor c = db.query(srcTableName, null,
-                LauncherSettings.Favorites._ID + " = '" + (entry != null ? entry.id : id) + "'",
-                null, null, null, null);
-        while (c.moveToNext()) {
-            ContentValues values = new ContentValues();
-            DatabaseUtils.cursorRowToContentValues(c, values);
-            if (entry != null) {
-                entry.updateContentValues(values);
-            } else {
-                values.put(LauncherSettings.Favorites.CONTAINER, folderId);
-            }
-            newId = LauncherSettings.Settings.call(context.getContentResolver(),
-                    LauncherSettings.Settings.METHOD_NEW_ITEM_ID).getInt(
-                    LauncherSettings.Settings.EXTRA_VALUE);
-            values.put(LauncherSettings.Favorites._ID, newId);
-            db.insert(destTableName, null, values);
-        }
-        c.close();
-        return newId;
-    }
-
-    private static void removeEntryFromDb(SQLiteDatabase db, String tableName, IntArray entryIds) {
-        db.delete(tableName,
-                Utilities.createDbSelectionQuery(LauncherSettings.Favorites._ID, entryIds), null);
-    }
-
     private static HashSet<String> getValidPackages(Context context) {
         // Initialize list of valid packages. This contain all the packages which are already on
         // the device and packages which are being installed. Any item which doesn't belong to
@@ -355,54 +314,66 @@ public class GridSizeMigrationTaskV2 {
 
     protected static class GridPlacementSolution {
 
-        private final SQLiteDatabase mDb;
-        private final DbReader mSrcReader;
-        private final DbReader mDestReader;
-        private final Context mContext;
+        private final DbWriter mWriter;
         private final GridOccupancy mOccupied;
         private final int mScreenId;
         private final int mTrgX;
         private final int mTrgY;
         private final List<DbEntry> mItemsToPlace;
 
+        /**
+         * Free-span index of the screen: the number of consecutive vacant cells starting at each
+         * cell and going right, indexed by [y][x]. Checking if a region is vacant only needs one
+         * lookup per row, and only the rows of a placed item need to be updated.
+         */
+        private final int[][] mVacantRuns;
+        private int mVacantCells;
+
         private int mNextStartX;
         private int mNextStartY;
 
-        GridPlacementSolution(SQLiteDatabase db, DbReader srcReader, DbReader destReader,
-                              Context context, int screenId, int trgX, int trgY, List<DbEntry> itemsToPlace) {
-            mDb = db;
-            mSrcReader = srcReader;
-            mDestReader = destReader;
-            mContext = context;
+        GridPlacementSolution(DbWriter writer, DbReader destReader, int screenId, int trgX,
+                int trgY, List<DbEntry> itemsToPlace) {
+            mWriter = writer;
             mOccupied = new GridOccupancy(trgX, trgY);
             mScreenId = screenId;
             mTrgX = trgX;
             mTrgY = trgY;
             mNextStartX = 0;
             mNextStartY = mTrgY - 1;
-            List<DbEntry> existedEntries = mDestReader.mWorkspaceEntriesByScreenId.get(screenId);
+            List<DbEntry> existedEntries = destReader.mWorkspaceEntriesByScreenId.get(screenId);
             if (existedEntries != null) {
                 for (DbEntry entry : existedEntries) {
                     mOccupied.markCells(entry, true);
                 }
             }
+            mVacantRuns = new int[trgY][trgX];
+            for (int y = 0; y < trgY; y++) {
+                updateVacantRuns(y);
+                for (int x = 0; x < trgX; x++) {
+                    if (!mOccupied.cells[x][y]) {
+                        mVacantCells++;
+                    }
+                }
+            }
             mItemsToPlace = itemsToPlace;
         }
 
         public void find() {
-            Iterator<DbEntry> iterator = mItemsToPlace.iterator();
-            while (iterator.hasNext()) {
-                final DbEntry entry = iterator.next();
+            // Compacts the items which are not placed in place, keeping their order
+            int remaining = 0;
+            for (int i = 0; i < mItemsToPlace.size(); i++) {
+                final DbEntry entry = mItemsToPlace.get(i);
                 if (entry.minSpanX > mTrgX || entry.minSpanY > mTrgY) {
-                    iterator.remove();
                     continue;
                 }
                 if (findPlacement(entry)) {
-                    insertEntryInDb(mDb, mContext, entry, mSrcReader.mTableName,
-                            mDestReader.mTableName);
-                    iterator.remove();
+                    mWriter.insertEntry(entry);
+                    continue;
                 }
+                mItemsToPlace.set(remaining++, entry);
             }
+            mItemsToPlace.subList(remaining, mItemsToPlace.size()).clear();
         }
 
         /**
@@ -411,11 +382,19 @@ public class GridSizeMigrationTaskV2 {
          * to speed up the search.
          */
         private boolean findPlacement(DbEntry entry) {
-            for (int y = mNextStartY; y >= (mScreenId == 0 ? 1 /* smartspace */ : 0); y--) {
+            int minY = mScreenId == 0 ? 1 /* smartspace */ : 0;
+            if (Math.min(entry.spanX * entry.spanY, entry.minSpanX * entry.minSpanY)
+                    > mVacantCells) {
+                // Can't fit anywhere, same outcome as a full search without the scan
+                if (mNextStartY >= minY) {
+                    mNextStartX = 0;
+                }
+                return false;
+            }
+            for (int y = mNextStartY; y >= minY; y--) {
                 for (int x = mNextStartX; x < mTrgX; x++) {
-                    boolean fits = mOccupied.isRegionVacant(x, y, entry.spanX, entry.spanY);
-                    boolean minFits = mOccupied.isRegionVacant(x, y, entry.minSpanX,
-                            entry.minSpanY);
+                    boolean fits = isRegionVacant(x, y, entry.spanX, entry.spanY);
+                    boolean minFits = isRegionVacant(x, y, entry.minSpanX, entry.minSpanY);
                     if (minFits) {
                         entry.spanX = entry.minSpanX;
                         entry.spanY = entry.minSpanY;
@@ -424,7 +403,7 @@ public class GridSizeMigrationTaskV2 {
                         entry.screenId = mScreenId;
                         entry.cellX = x;
                         entry.cellY = y;
-                        mOccupied.markCells(entry, true);
+                        markCells(entry);
                         mNextStartX = x + entry.spanX;
                         mNextStartY = y;
                         return true;
@@ -434,24 +413,45 @@ public class GridSizeMigrationTaskV2 {
             }
             return false;
         }
+
+        private boolean isRegionVacant(int x, int y, int spanX, int spanY) {
+            if (x < 0 || y < 0 || x + spanX > mTrgX || y + spanY > mTrgY) {
+                return false;
+            }
+            for (int j = y; j < y + spanY; j++) {
+                if (mVacantRuns[j][x] < spanX) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void markCells(DbEntry entry) {
+            mOccupied.markCells(entry, true);
+            mVacantCells -= entry.spanX * entry.spanY;
+            for (int y = entry.cellY; y < entry.cellY + entry.spanY; y++) {
+                updateVacantRuns(y);
+            }
+        }
+
+        private void updateVacantRuns(int y) {
+            int run = 0;
+            for (int x = mTrgX - 1; x >= 0; x--) {
+                run = mOccupied.cells[x][y] ? 0 : run + 1;
+                mVacantRuns[y][x] = run;
+            }
+        }
     }
 
     protected static class HotseatPlacementSolution {
 
-        private final SQLiteDatabase mDb;
-        private final DbReader mSrcReader;
-        private final DbReader mDestReader;
-        private final Context mContext;
+        private final DbWriter mWriter;
         private final HotseatOccupancy mOccupied;
         private final List<DbEntry> mItemsToPlace;
 
-        HotseatPlacementSolution(SQLiteDatabase db, DbReader srcReader, DbReader destReader,
-                                 Context context, int hotseatSize, List<DbEntry> placedHotseatItems,
-                                 List<DbEntry> itemsToPlace) {
-            mDb = db;
-            mSrcReader = srcReader;
-            mDestReader = destReader;
-            mContext = context;
+        HotseatPlacementSolution(DbWriter writer, int hotseatSize,
+                List<DbEntry> placedHotseatItems, List<DbEntry> itemsToPlace) {
+            mWriter = writer;
             mOccupied = new HotseatOccupancy(hotseatSize);
             for (DbEntry entry : placedHotseatItems) {
                 mOccupied.markCells(entry, true);
@@ -468,8 +468,7 @@ public class GridSizeMigrationTaskV2 {
                     // to something other than -1.
                     entry.cellX = i;
                     entry.cellY = 0;
-                    insertEntryInDb(mDb, mContext, entry, mSrcReader.mTableName,
-                            mDestReader.mTableName);
+                    mWriter.insertEntry(entry);
                     mOccupied.markCells(entry, true);
                 }
             }
@@ -494,20 +493,29 @@ public class GridSizeMigrationTaskV2 {
         private final SQLiteDatabase mDb;
         private final String mTableName;
         private final Context mContext;
-        private final HashSet<String> mValidPackages;
+        private final ItemVerifier mVerifier;
         private int mLastScreenId = -1;
+        private int mStatementCount;
 
         private final ArrayList<DbEntry> mHotseatEntries = new ArrayList<>();
         private final ArrayList<DbEntry> mWorkspaceEntries = new ArrayList<>();
         private final Map<Integer, ArrayList<DbEntry>> mWorkspaceEntriesByScreenId =
                 new ArrayMap<>();
 
+        /** Id and intent of the items of each folder, loaded on first use */
+        private SparseArray<ArrayList<Pair<Integer, String>>> mFolderItems;
+        private final IntArray mEntriesToRemove = new IntArray();
+
         DbReader(SQLiteDatabase db, String tableName, Context context,
                  HashSet<String> validPackages) {
+            this(db, tableName, context, new ItemVerifier(validPackages));
+        }
+
+        DbReader(SQLiteDatabase db, String tableName, Context context, ItemVerifier verifier) {
             mDb = db;
             mTableName = tableName;
             mContext = context;
-            mValidPackages = validPackages;
+            mVerifier = verifier;
         }
 
         protected ArrayList<DbEntry> loadHotseatEntries() {
@@ -518,14 +526,13 @@ public class GridSizeMigrationTaskV2 {
                             LauncherSettings.Favorites.INTENT,               // 2
                             LauncherSettings.Favorites.SCREEN},              // 3
                     LauncherSettings.Favorites.CONTAINER + " = "
-                            + LauncherSettings.Favorites.CONTAINER_HOTSEAT);
+                            + LauncherSettings.Favorites.CONTAINER_HOTSEAT, null);
 
             final int indexId = c.getColumnIndexOrThrow(LauncherSettings.Favorites._ID);
             final int indexItemType = c.getColumnIndexOrThrow(LauncherSettings.Favorites.ITEM_TYPE);
             final int indexIntent = c.getColumnIndexOrThrow(LauncherSettings.Favorites.INTENT);
             final int indexScreen = c.getColumnIndexOrThrow(LauncherSettings.Favorites.SCREEN);
 
-            IntArray entriesToRemove = new IntArray();
             while (c.moveToNext()) {
                 DbEntry entry = new DbEntry();
                 entry.id = c.getInt(indexId);
@@ -539,7 +546,7 @@ public class GridSizeMigrationTaskV2 {
                         case LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT:
                         case LauncherSettings.Favorites.ITEM_TYPE_APPLICATION: {
                             entry.mIntent = c.getString(indexIntent);
-                            verifyIntent(c.getString(indexIntent));
+                            mVerifier.verifyIntent(entry.mIntent);
                             break;
                         }
                         case LauncherSettings.Favorites.ITEM_TYPE_FOLDER: {
@@ -556,13 +563,13 @@ public class GridSizeMigrationTaskV2 {
                     if (DEBUG) {
                         Log.d(TAG, "Removing item " + entry.id, e);
                     }
-                    entriesToRemove.add(entry.id);
+                    mEntriesToRemove.add(entry.id);
                     continue;
                 }
                 mHotseatEntries.add(entry);
             }
-            removeEntryFromDb(mDb, mTableName, entriesToRemove);
             c.close();
+            removeEntries();
             return mHotseatEntries;
         }
 
@@ -580,7 +587,12 @@ public class GridSizeMigrationTaskV2 {
                             LauncherSettings.Favorites.APPWIDGET_PROVIDER,   // 8
                             LauncherSettings.Favorites.APPWIDGET_ID},        // 9
                     LauncherSettings.Favorites.CONTAINER + " = "
-                            + LauncherSettings.Favorites.CONTAINER_DESKTOP);
+                            + LauncherSettings.Favorites.CONTAINER_DESKTOP,
+                    // Same as DbEntry#compareTo, so that the entries stream in reading order
+                    LauncherSettings.Favorites.SCREEN + ", "
+                            + LauncherSettings.Favorites.CELLY + " DESC, "
+                            + LauncherSettings.Favorites.CELLX + ", "
+                            + LauncherSettings.Favorites._ID);
             return loadWorkspaceEntries(c);
         }
 
@@ -598,7 +610,6 @@ public class GridSizeMigrationTaskV2 {
             final int indexAppWidgetId = c.getColumnIndexOrThrow(
                     LauncherSettings.Favorites.APPWIDGET_ID);
 
-            IntArray entriesToRemove = new IntArray();
             WidgetManagerHelper widgetManagerHelper = new WidgetManagerHelper(mContext);
             while (c.moveToNext()) {
                 DbEntry entry = new DbEntry();
@@ -618,13 +629,13 @@ public class GridSizeMigrationTaskV2 {
                         case LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT:
                         case LauncherSettings.Favorites.ITEM_TYPE_APPLICATION: {
                             entry.mIntent = c.getString(indexIntent);
-                            verifyIntent(entry.mIntent);
+                            mVerifier.verifyIntent(entry.mIntent);
                             break;
                         }
                         case LauncherSettings.Favorites.ITEM_TYPE_APPWIDGET: {
                             entry.mProvider = c.getString(indexAppWidgetProvider);
                             ComponentName cn = ComponentName.unflattenFromString(entry.mProvider);
-                            verifyPackage(cn.getPackageName());
+                            mVerifier.verifyPackage(cn.getPackageName());
 
                             int widgetId = c.getInt(indexAppWidgetId);
                             LauncherAppWidgetProviderInfo pInfo =
@@ -657,7 +668,7 @@ public class GridSizeMigrationTaskV2 {
                     if (DEBUG) {
                         Log.d(TAG, "Removing item " + entry.id, e);
                     }
-                    entriesToRemove.add(entry.id);
+                    mEntriesToRemove.add(entry.id);
                     continue;
                 }
                 mWorkspaceEntries.add(entry);
@@ -666,54 +677,117 @@ public class GridSizeMigrationTaskV2 {
                 }
                 mWorkspaceEntriesByScreenId.get(entry.screenId).add(entry);
             }
-            removeEntryFromDb(mDb, mTableName, entriesToRemove);
             c.close();
+            removeEntries();
             return mWorkspaceEntries;
         }
 
         private int getFolderItemsCount(DbEntry entry) {
-            Cursor c = queryWorkspace(
-                    new String[]{LauncherSettings.Favorites._ID, LauncherSettings.Favorites.INTENT},
-                    LauncherSettings.Favorites.CONTAINER + " = " + entry.id);
-
+            ArrayList<Pair<Integer, String>> items = getFolderItems().get(entry.id);
+            if (items == null) {
+                return 0;
+            }
             int total = 0;
-            while (c.moveToNext()) {
+            for (Pair<Integer, String> item : items) {
                 try {
-                    int id = c.getInt(0);
-                    String intent = c.getString(1);
-                    verifyIntent(intent);
+                    mVerifier.verifyIntent(item.second);
                     total++;
-                    if (!entry.mFolderItems.containsKey(intent)) {
-                        entry.mFolderItems.put(intent, new HashSet<>());
+                    if (!entry.mFolderItems.containsKey(item.second)) {
+                        entry.mFolderItems.put(item.second, new HashSet<>());
                     }
-                    entry.mFolderItems.get(intent).add(id);
+                    entry.mFolderItems.get(item.second).add(item.first);
                 } catch (Exception e) {
-                    removeEntryFromDb(mDb, mTableName, IntArray.wrap(c.getInt(0)));
+                    mEntriesToRemove.add(item.first);
                 }
             }
-            c.close();
             return total;
         }
 
-        private Cursor queryWorkspace(String[] columns, String where) {
-            return mDb.query(mTableName, columns, where, null, null, null, null);
+        /**
+         * Loads the items of all the folders with a single query, instead of one per folder.
+         */
+        private SparseArray<ArrayList<Pair<Integer, String>>> getFolderItems() {
+            if (mFolderItems != null) {
+                return mFolderItems;
+            }
+            mFolderItems = new SparseArray<>();
+            Cursor c = queryWorkspace(new String[]{
+                            LauncherSettings.Favorites._ID,                  // 0
+                            LauncherSettings.Favorites.INTENT,               // 1
+                            LauncherSettings.Favorites.CONTAINER},           // 2
+                    LauncherSettings.Favorites.CONTAINER + " >= 0", null);
+            while (c.moveToNext()) {
+                int container = c.getInt(2);
+                ArrayList<Pair<Integer, String>> items = mFolderItems.get(container);
+                if (items == null) {
+                    items = new ArrayList<>();
+                    mFolderItems.put(container, items);
+                }
+                items.add(Pair.create(c.getInt(0), c.getString(1)));
+            }
+            c.close();
+            return mFolderItems;
+        }
+
+        /** Removes all the invalid entries found so far with a single statement. */
+        private void removeEntries() {
+            if (mEntriesToRemove.isEmpty()) {
+                return;
+            }
+            mStatementCount++;
+            mDb.delete(mTableName, Utilities.createDbSelectionQuery(
+                    LauncherSettings.Favorites._ID, mEntriesToRemove), null);
+            mEntriesToRemove.clear();
+        }
+
+        private Cursor queryWorkspace(String[] columns, String where, String orderBy) {
+            mStatementCount++;
+            return mDb.query(mTableName, columns, where, null, null, null, orderBy);
+        }
+    }
+
+    /**
+     * Verifies that items belong to valid packages. The result of each intent is memoized, as the
+     * source and destination tables mostly contain the same intents.
+     */
+    protected static class ItemVerifier {
+
+        private final HashSet<String> mValidPackages;
+        private final HashMap<String, Boolean> mVerifiedIntents = new HashMap<>();
+
+        ItemVerifier(HashSet<String> validPackages) {
+            mValidPackages = validPackages;
         }
 
         /** Verifies if the mIntent should be restored. */
-        private void verifyIntent(String intentStr)
-                throws Exception {
-            Intent intent = Intent.parseUri(intentStr, 0);
-            if (intent.getComponent() != null) {
-                verifyPackage(intent.getComponent().getPackageName());
-            } else if (intent.getPackage() != null) {
-                // Only verify package if the component was null.
-                verifyPackage(intent.getPackage());
+        void verifyIntent(String intentStr) throws Exception {
+            Boolean valid = mVerifiedIntents.get(intentStr);
+            if (valid == null) {
+                valid = isValidIntent(intentStr);
+                mVerifiedIntents.put(intentStr, valid);
+            }
+            if (!valid) {
+                throw new Exception("Intent not available");
+            }
+        }
+
+        private boolean isValidIntent(String intentStr) {
+            try {
+                Intent intent = Intent.parseUri(intentStr, 0);
+                if (intent.getComponent() != null) {
+                    verifyPackage(intent.getComponent().getPackageName());
+                } else if (intent.getPackage() != null) {
+                    // Only verify package if the component was null.
+                    verifyPackage(intent.getPackage());
+                }
+                return true;
+            } catch (Exception e) {
+                return false;
             }
         }
 
         /** Verifies if the package should be restored */
-        private void verifyPackage(String packageName)
-                throws Exception {
+        void verifyPackage(String packageName) throws Exception {
             if (!mValidPackages.contains(packageName)) {
                 // TODO(b/151468819): Handle promise app icon restoration during grid migration.
                 throw new Exception("Package not available");
@@ -721,6 +795,119 @@ public class GridSizeMigrationTaskV2 {
         }
     }
 
+    /**
+     * Copies placed entries from the source table into the destination table, with statements
+     * compiled once per migration. Rows are copied by {@code INSERT ... SELECT} within the
+     * database, only the new id and the updated position are bound.
+     */
+    protected static class DbWriter implements AutoCloseable {
+
+        // Parameters shared by both statements
+        private static final int ARG_NEW_ID = 1;
+        private static final int ARG_SRC_ID = 2;
+        // Parameters of the entry statement
+        private static final int ARG_SCREEN = 3;
+        private static final int ARG_CELLX = 4;
+        private static final int ARG_CELLY = 5;
+        private static final int ARG_SPANX = 6;
+        private static final int ARG_SPANY = 7;
+        // Parameters of the folder item statement
+        private static final int ARG_CONTAINER = 3;
+
+        private final Context mContext;
+        private final SQLiteStatement mInsertEntry;
+        private final SQLiteStatement mInsertFolderItem;
+        private int mStatementCount;
+
+        DbWriter(SQLiteDatabase db, Context context, String srcTableName, String destTableName) {
+            mContext = context;
+            String[] columns;
+            try (Cursor c = db.query(srcTableName, null, null, null, null, null, null, "0")) {
+                columns = c.getColumnNames();
+            }
+            mStatementCount++;
+
+            ArrayMap<String, Integer> entryArgs = new ArrayMap<>();
+            entryArgs.put(LauncherSettings.Favorites._ID, ARG_NEW_ID);
+            entryArgs.put(LauncherSettings.Favorites.SCREEN, ARG_SCREEN);
+            entryArgs.put(LauncherSettings.Favorites.CELLX, ARG_CELLX);
+            entryArgs.put(LauncherSettings.Favorites.CELLY, ARG_CELLY);
+            entryArgs.put(LauncherSettings.Favorites.SPANX, ARG_SPANX);
+            entryArgs.put(LauncherSettings.Favorites.SPANY, ARG_SPANY);
+            mInsertEntry = db.compileStatement(
+                    buildCopySql(columns, entryArgs, srcTableName, destTableName));
+
+            ArrayMap<String, Integer> folderItemArgs = new ArrayMap<>();
+            folderItemArgs.put(LauncherSettings.Favorites._ID, ARG_NEW_ID);
+            folderItemArgs.put(LauncherSettings.Favorites.CONTAINER, ARG_CONTAINER);
+            mInsertFolderItem = db.compileStatement(
+                    buildCopySql(columns, folderItemArgs, srcTableName, destTableName));
+        }
+
+        /**
+         * Returns an insert of the row {@link #ARG_SRC_ID} of the source table into the
+         * destination table, where the {@param args} columns are replaced by numbered parameters.
+         */
+        private static String buildCopySql(String[] columns, ArrayMap<String, Integer> args,
+                String srcTableName, String destTableName) {
+            StringBuilder names = new StringBuilder();
+            StringBuilder values = new StringBuilder();
+            for (String column : columns) {
+                if (names.length() > 0) {
+                    names.append(", ");
+                    values.append(", ");
+                }
+                names.append(column);
+                Integer arg = args.get(column);
+                values.append(arg != null ? "?" + arg : column);
+            }
+            return "INSERT INTO " + destTableName + " (" + names + ") SELECT " + values
+                    + " FROM " + srcTableName
+                    + " WHERE " + LauncherSettings.Favorites._ID + " = ?" + ARG_SRC_ID;
+        }
+
+        /** Inserts {@param entry} at its new position, along with its folder items if any. */
+        void insertEntry(DbEntry entry) {
+            int id = newItemId();
+            mInsertEntry.bindLong(ARG_NEW_ID, id);
+            mInsertEntry.bindLong(ARG_SRC_ID, entry.id);
+            mInsertEntry.bindLong(ARG_SCREEN, entry.screenId);
+            mInsertEntry.bindLong(ARG_CELLX, entry.cellX);
+            mInsertEntry.bindLong(ARG_CELLY, entry.cellY);
+            mInsertEntry.bindLong(ARG_SPANX, entry.spanX);
+            mInsertEntry.bindLong(ARG_SPANY, entry.spanY);
+            mStatementCount++;
+            if (mInsertEntry.executeInsert() < 0) {
+                // The source row is gone
+                return;
+            }
+
+            if (entry.itemType == LauncherSettings.Favorites.ITEM_TYPE_FOLDER) {
+                for (Set<Integer> itemIds : entry.mFolderItems.values()) {
+                    for (int itemId : itemIds) {
+                        mInsertFolderItem.bindLong(ARG_NEW_ID, newItemId());
+                        mInsertFolderItem.bindLong(ARG_SRC_ID, itemId);
+                        mInsertFolderItem.bindLong(ARG_CONTAINER, id);
+                        mStatementCount++;
+                        mInsertFolderItem.executeInsert();
+                    }
+                }
+            }
+        }
+
+        private int newItemId() {
+            return LauncherSettings.Settings.call(mContext.getContentResolver(),
+                    LauncherSettings.Settings.METHOD_NEW_ITEM_ID).getInt(
+                    LauncherSettings.Settings.EXTRA_VALUE);
+        }
+
+        @Override
+        public void close() {
+            mInsertEntry.close();
+            mInsertFolderItem.close();
+        }
+    }
+
     protected static class DbEntry extends ItemInfo implements Comparable<DbEntry> {
 
         private String mIntent;
@@ -751,13 +938,5 @@ public class GridSizeMigrationTaskV2 {
         public int hashCode() {
             return Objects.hash(mIntent);
         }
-
-        public void updateContentValues(ContentValues values) {
-            values.put(LauncherSettings.Favorites.SCREEN, screenId);
-            values.put(LauncherSettings.Favorites.CELLX, cellX);
-            values.put(LauncherSettings.Favorites.CELLY, cellY);
-            values.put(LauncherSettings.Favorites.SPANX, spanX);
-            values.put(LauncherSettings.Favorites.SPANY, spanY);
-        }
     }
 }
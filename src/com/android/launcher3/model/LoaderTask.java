@@ -936,6 +936,7 @@ public class LoaderTask implements Runnable {
                     mBgDataModel.folders.remove(folderId);
                     mBgDataModel.itemsIdMap.remove(folderId);
                 }
+                mBgDataModel.invalidateItemIndices();
             }
 
         }
@@ -1033,10 +1034,10 @@ public class LoaderTask implements Runnable {
         if (mBgAllAppsList.hasShortcutHostPermission()) {
             for (UserHandle user : mUserCache.getUserProfiles()) {
                 if (mUserManager.isUserUnlocked(user)) {
-                    List<ShortcutInfo> shortcuts = new ShortcutRequest(mApp.getContext(), user)
+                    QueryResult shortcuts = new ShortcutRequest(mApp.getContext(), user)
                             .query(ShortcutRequest.ALL);
                     allShortcuts.addAll(shortcuts);
-                    mBgDataModel.updateDeepShortcutCounts(null, user, shortcuts);
+                    mBgDataModel.updateDeepShortcutCounts(user, shortcuts);
                 }
             }
         }
@@ -1045,7 +1046,7 @@ public class LoaderTask implements Runnable {
 
     private void loadFolderNames() {
         FolderNameProvider provider = FolderNameProvider.newInstance(mApp.getContext(),
-                mBgAllAppsList.data, mBgDataModel.folders);
+                mBgAllAppsList);
 
         synchronized (mBgDataModel) {
             for (int i = 0; i < mBgDataModel.folders.size(); i++) {
@@ -1111,7 +1112,10 @@ public class LoaderTask implements Runnable {
         FileLog.d(TAG, widgetDimension.toString());
     }
 
-    private static void logASplit(final TimingLogger logger, final String label) {
+    /**
+     * Called on the loader thread right after each phase of the load completes.
+     */
+    protected void logASplit(final TimingLogger logger, final String label) {
         logger.addSplit(label);
         if (DEBUG) {
             Log.d(TAG, label);
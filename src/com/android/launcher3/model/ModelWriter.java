@@ -182,6 +182,7 @@ public class ModelWriter {
     public void moveItemsInDatabase(final ArrayList<ItemInfo> items, int container, int screen) {
         ArrayList<ContentValues> contentValues = new ArrayList<>();
         int count = items.size();
+        mBgDataModel.onItemsChanged();
         notifyOtherCallbacks(c -> c.bindItemsModified(items));
 
         for (int i = 0; i < count; i++) {
@@ -234,6 +235,7 @@ public class ModelWriter {
     }
 
     private void notifyItemModified(ItemInfo item) {
+        mBgDataModel.onItemsChanged();
         notifyOtherCallbacks(c -> c.bindItemsModified(Collections.singletonList(item)));
     }
 
@@ -501,6 +503,8 @@ public class ModelWriter {
                 } else {
                     mBgDataModel.workspaceItems.remove(modelItem);
                 }
+                // The item may have moved to another screen
+                mBgDataModel.invalidateItemIndices();
                 mVerifier.verifyModel();
             }
         }
@@ -64,7 +64,7 @@ public class PackageIncrementalDownloadUpdatedTask extends BaseModelUpdateTask {
 
         final ArrayList<WorkspaceItemInfo> updatedWorkspaceItems = new ArrayList<>();
         synchronized (dataModel) {
-            dataModel.forAllWorkspaceItemInfos(mUser, si -> {
+            dataModel.forAllWorkspaceItemInfos(mUser, mPackageName, si -> {
                 if (mPackageName.equals(si.getTargetPackage())) {
                     si.runtimeStatusFlags &= ~ItemInfoWithIcon.FLAG_INSTALL_SESSION_ACTIVE;
                     si.setProgressLevel(downloadInfo);
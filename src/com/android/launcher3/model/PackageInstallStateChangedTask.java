@@ -69,9 +69,9 @@ public class PackageInstallStateChangedTask extends BaseModelUpdateTask {
 
         synchronized (dataModel) {
             final HashSet<ItemInfo> updates = new HashSet<>();
-            dataModel.forAllWorkspaceItemInfos(mInstallInfo.user, si -> {
-                if (si.hasPromiseIconUi()
-                        && mInstallInfo.packageName.equals(si.getTargetPackage())) {
+            final String packageName = mInstallInfo.packageName;
+            dataModel.forAllWorkspaceItemInfos(mInstallInfo.user, packageName, si -> {
+                if (si.hasPromiseIconUi() && packageName.equals(si.getTargetPackage())) {
                     si.setProgressLevel(mInstallInfo);
                     updates.add(si);
                 }
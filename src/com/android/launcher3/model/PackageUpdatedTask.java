@@ -189,6 +189,13 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                 break;
         }
 
+        if (mOp == OP_ADD || mOp == OP_UPDATE || mOp == OP_REMOVE || mOp == OP_UNAVAILABLE) {
+            // Published shortcuts come from the package manifest, and may have changed with it
+            for (int i = 0; i < N; i++) {
+                dataModel.deepShortcutCache.invalidate(packages[i], mUser);
+            }
+        }
+
         bindApplicationsIfNeeded();
 
         final IntSet removedShortcuts = new IntSet();
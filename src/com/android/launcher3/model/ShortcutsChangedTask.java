@@ -58,7 +58,7 @@ public class ShortcutsChangedTask extends BaseModelUpdateTask {
         ArrayList<WorkspaceItemInfo> matchingWorkspaceItems = new ArrayList<>();
 
         synchronized (dataModel) {
-            dataModel.forAllWorkspaceItemInfos(mUser, si -> {
+            dataModel.forAllWorkspaceItemInfos(mUser, mPackageName, si -> {
                 if ((si.itemType == LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT)
                         && mPackageName.equals(si.getIntent().getPackage())) {
                     matchingWorkspaceItems.add(si);
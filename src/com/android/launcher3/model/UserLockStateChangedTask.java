@@ -106,11 +106,11 @@ public class UserLockStateChangedTask extends BaseModelUpdateTask {
                 keysIter.remove();
             }
         }
+        dataModel.deepShortcutCache.removeUser(mUser);
 
         if (mIsUserUnlocked) {
             dataModel.updateDeepShortcutCounts(
-                    null, mUser,
-                    new ShortcutRequest(context, mUser).query(ShortcutRequest.ALL));
+                    mUser, new ShortcutRequest(context, mUser).query(ShortcutRequest.ALL));
         }
         bindDeepShortcuts(dataModel);
     }
@@ -188,7 +188,9 @@ public class ItemInfo {
 
     @Nullable
     public ComponentName getTargetComponent() {
-        return Optional.ofNullable(getIntent()).map(Intent::getComponent).orElse(mComponentName);
+        Intent intent = getIntent();
+        ComponentName cn = intent == null ? null : intent.getComponent();
+        return cn != null ? cn : mComponentName;
     }
 
     /**
@@ -31,10 +31,10 @@ import android.service.notification.NotificationListenerService;
 import android.service.notification.StatusBarNotification;
 import android.text.TextUtils;
 import android.util.Log;
-import android.util.Pair;
 
 import androidx.annotation.AnyThread;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.util.PackageUserKey;
@@ -44,6 +44,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -66,6 +68,14 @@ public class NotificationListener extends NotificationListenerService {
     private static final int MSG_NOTIFICATION_FULL_REFRESH = 3;
     private static final int MSG_CANCEL_NOTIFICATION = 4;
     private static final int MSG_RANKING_UPDATE = 5;
+    private static final int MSG_FLUSH_CHANGES = 6;
+    private static final int MSG_NOTIFICATION_BATCH = 7;
+
+    /**
+     * How long posted and removed notifications are held on the worker thread before being
+     * delivered to the UI, so that bursts are coalesced into a single update per frame.
+     */
+    private static final long BATCH_DELAY_MS = 16;
 
     private static NotificationListener sNotificationListenerInstance = null;
     private static NotificationsChangedListener sNotificationsChangedListener;
@@ -80,6 +90,12 @@ public class NotificationListener extends NotificationListenerService {
     /** Maps keys to their corresponding current group key */
     private final Map<String, String> mNotificationGroupKeyMap = new HashMap<>();
 
+    /** Changes not yet delivered to the UI, keyed by notification key. Worker thread only. */
+    private final LinkedHashMap<String, NotificationChange> mPendingChanges =
+            new LinkedHashMap<>();
+    /** The ranked keys at the last ranking update. Worker thread only. */
+    private final HashSet<String> mRankedKeys = new HashSet<>();
+
     /** The last notification key that was dismissed from launcher UI */
     private String mLastKeyDismissedByLauncher;
 
@@ -126,18 +142,18 @@ public class NotificationListener extends NotificationListenerService {
         switch (message.what) {
             case MSG_NOTIFICATION_POSTED: {
                 StatusBarNotification sbn = (StatusBarNotification) message.obj;
-                mUiHandler.obtainMessage(notificationIsValidForUI(sbn)
-                                ? MSG_NOTIFICATION_POSTED : MSG_NOTIFICATION_REMOVED,
-                        toKeyPair(sbn)).sendToTarget();
+                // A notification can be posted again with a different group
+                updateGroupKeyIfNecessary(sbn);
+                enqueueChange(sbn, notificationIsValidForUI(sbn));
                 return true;
             }
             case MSG_NOTIFICATION_REMOVED: {
                 StatusBarNotification sbn = (StatusBarNotification) message.obj;
-                mUiHandler.obtainMessage(MSG_NOTIFICATION_REMOVED,
-                        toKeyPair(sbn)).sendToTarget();
+                enqueueChange(sbn, false);
 
                 NotificationGroup notificationGroup = mNotificationGroupMap.get(sbn.getGroupKey());
                 String key = sbn.getKey();
+                mNotificationGroupKeyMap.remove(key);
                 if (notificationGroup != null) {
                     notificationGroup.removeChildKey(key);
                     if (notificationGroup.isEmpty()) {
@@ -155,10 +171,16 @@ public class NotificationListener extends NotificationListenerService {
                 return true;
             }
             case MSG_NOTIFICATION_FULL_REFRESH:
+                // The refresh reflects everything that is still pending
+                mPendingChanges.clear();
+                mWorkerHandler.removeMessages(MSG_FLUSH_CHANGES);
+                mRankedKeys.clear();
+
                 List<StatusBarNotification> activeNotifications = null;
                 if (sIsConnected) {
                     try {
                         activeNotifications = Arrays.stream(getActiveNotifications())
+                                .peek(this::updateGroupKeyIfNecessary)
                                 .filter(this::notificationIsValidForUI)
                                 .collect(Collectors.toList());
                     } catch (SecurityException ex) {
@@ -178,8 +200,27 @@ public class NotificationListener extends NotificationListenerService {
             }
             case MSG_RANKING_UPDATE: {
                 String[] keys = ((RankingMap) message.obj).getOrderedKeys();
-                for (StatusBarNotification sbn : getActiveNotifications(keys)) {
-                    updateGroupKeyIfNecessary(sbn);
+                if (mRankedKeys.size() == keys.length
+                        && mRankedKeys.containsAll(Arrays.asList(keys))) {
+                    // Only the order or importance changed, group membership only changes when
+                    // a notification is posted or removed, which update the groups themselves.
+                    return true;
+                }
+                mRankedKeys.clear();
+                Collections.addAll(mRankedKeys, keys);
+                StatusBarNotification[] notifications = getActiveNotifications(keys);
+                if (notifications != null) {
+                    for (StatusBarNotification sbn : notifications) {
+                        updateGroupKeyIfNecessary(sbn);
+                    }
+                }
+                return true;
+            }
+            case MSG_FLUSH_CHANGES: {
+                if (!mPendingChanges.isEmpty()) {
+                    mUiHandler.obtainMessage(MSG_NOTIFICATION_BATCH,
+                            new ArrayList<>(mPendingChanges.values())).sendToTarget();
+                    mPendingChanges.clear();
                 }
                 return true;
             }
@@ -187,20 +228,28 @@ public class NotificationListener extends NotificationListenerService {
         return false;
     }
 
+    /**
+     * Queues a change to be delivered with the next batch. A later change to the same
+     * notification replaces the earlier one, so only the latest state reaches the UI.
+     */
+    @WorkerThread
+    private void enqueueChange(StatusBarNotification sbn, boolean isPosted) {
+        String key = sbn.getKey();
+        // Remove first so that the batch stays in the order of the latest changes
+        mPendingChanges.remove(key);
+        mPendingChanges.put(key, new NotificationChange(PackageUserKey.fromNotification(sbn),
+                NotificationKeyData.fromNotification(sbn), isPosted));
+        if (!mWorkerHandler.hasMessages(MSG_FLUSH_CHANGES)) {
+            mWorkerHandler.sendEmptyMessageDelayed(MSG_FLUSH_CHANGES, BATCH_DELAY_MS);
+        }
+    }
+
     private boolean handleUiMessage(Message message) {
         switch (message.what) {
-            case MSG_NOTIFICATION_POSTED:
-                if (sNotificationsChangedListener != null) {
-                    Pair<PackageUserKey, NotificationKeyData> msg = (Pair) message.obj;
-                    sNotificationsChangedListener.onNotificationPosted(
-                            msg.first, msg.second);
-                }
-                break;
-            case MSG_NOTIFICATION_REMOVED:
+            case MSG_NOTIFICATION_BATCH:
                 if (sNotificationsChangedListener != null) {
-                    Pair<PackageUserKey, NotificationKeyData> msg = (Pair) message.obj;
-                    sNotificationsChangedListener.onNotificationRemoved(
-                            msg.first, msg.second);
+                    sNotificationsChangedListener.onNotificationsChanged(
+                            (List<NotificationChange>) message.obj);
                 }
                 break;
             case MSG_NOTIFICATION_FULL_REFRESH:
@@ -244,6 +293,8 @@ public class NotificationListener extends NotificationListenerService {
         super.onListenerDisconnected();
         sIsConnected = false;
         mSettingsCache.unregister(NOTIFICATION_BADGING_URI, mNotificationSettingsChangedListener);
+        // Changes queued while connected are replaced by the refresh
+        mWorkerHandler.removeMessages(MSG_FLUSH_CHANGES);
         onNotificationFullRefresh();
     }
 
@@ -265,6 +316,8 @@ public class NotificationListener extends NotificationListenerService {
 
     @Override
     public void onNotificationRankingUpdate(RankingMap rankingMap) {
+        // Only the latest ranking matters
+        mWorkerHandler.removeMessages(MSG_RANKING_UPDATE);
         mWorkerHandler.obtainMessage(MSG_RANKING_UPDATE, rankingMap).sendToTarget();
     }
 
@@ -310,6 +363,26 @@ public class NotificationListener extends NotificationListenerService {
         }
     }
 
+    /**
+     * Returns the group of notifications of {@param groupKey}, if it has children or a summary.
+     */
+    @VisibleForTesting
+    @WorkerThread
+    @Nullable
+    NotificationGroup getNotificationGroup(String groupKey) {
+        return mNotificationGroupMap.get(groupKey);
+    }
+
+    /**
+     * Returns the group key which the notification of {@param key} was last posted with.
+     */
+    @VisibleForTesting
+    @WorkerThread
+    @Nullable
+    String getGroupKey(String key) {
+        return mNotificationGroupKeyMap.get(key);
+    }
+
     /**
      * This makes a potentially expensive binder call and should be run on a background thread.
      */
@@ -327,8 +400,6 @@ public class NotificationListener extends NotificationListenerService {
     @WorkerThread
     private boolean notificationIsValidForUI(StatusBarNotification sbn) {
         Notification notification = sbn.getNotification();
-        updateGroupKeyIfNecessary(sbn);
-
         getCurrentRanking().getRanking(sbn.getKey(), mTempRanking);
         if (!mTempRanking.canShowBadge()) {
             return false;
@@ -347,9 +418,21 @@ public class NotificationListener extends NotificationListenerService {
         return !isGroupHeader && !missingTitleAndText;
     }
 
-    private static Pair<PackageUserKey, NotificationKeyData> toKeyPair(StatusBarNotification sbn) {
-        return Pair.create(PackageUserKey.fromNotification(sbn),
-                NotificationKeyData.fromNotification(sbn));
+    /**
+     * The latest state of a single notification within a batch of changes.
+     */
+    public static class NotificationChange {
+        public final PackageUserKey packageUserKey;
+        public final NotificationKeyData notificationKey;
+        /** Whether the notification should be shown, as opposed to removed. */
+        public final boolean isPosted;
+
+        public NotificationChange(PackageUserKey packageUserKey,
+                NotificationKeyData notificationKey, boolean isPosted) {
+            this.packageUserKey = packageUserKey;
+            this.notificationKey = notificationKey;
+            this.isPosted = isPosted;
+        }
     }
 
     public interface NotificationsChangedListener {
@@ -358,5 +441,18 @@ public class NotificationListener extends NotificationListenerService {
         void onNotificationRemoved(PackageUserKey removedPackageUserKey,
                 NotificationKeyData notificationKey);
         void onNotificationFullRefresh(List<StatusBarNotification> activeNotifications);
+
+        /**
+         * Called with a coalesced batch of changes, containing each notification at most once.
+         */
+        default void onNotificationsChanged(List<NotificationChange> changes) {
+            for (NotificationChange change : changes) {
+                if (change.isPosted) {
+                    onNotificationPosted(change.packageUserKey, change.notificationKey);
+                } else {
+                    onNotificationRemoved(change.packageUserKey, change.notificationKey);
+                }
+            }
+        }
     }
 }
@@ -17,6 +17,7 @@
 package com.android.launcher3.popup;
 
 import android.content.ComponentName;
+import android.os.UserHandle;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
 
@@ -28,6 +29,7 @@ import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.notification.NotificationKeyData;
 import com.android.launcher3.notification.NotificationListener;
+import com.android.launcher3.notification.NotificationListener.NotificationChange;
 import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.ShortcutUtil;
@@ -38,9 +40,11 @@ import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -53,12 +57,18 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
     private static final boolean LOGD = false;
     private static final String TAG = "PopupDataProvider";
 
-    private final Consumer<Predicate<PackageUserKey>> mNotificationDotsChangeListener;
+    private final Consumer<Set<PackageUserKey>> mNotificationDotsChangeListener;
 
-    /** Maps launcher activity components to a count of how many shortcuts they have. */
-    private HashMap<ComponentKey, Integer> mDeepShortcutMap = new HashMap<>();
+    /**
+     * Maps users to their launcher activity components, and those to a count of how many
+     * shortcuts they have. Split by user so that lookups don't need to allocate a key.
+     */
+    private HashMap<UserHandle, HashMap<ComponentName, Integer>> mShortcutCountsByUser =
+            new HashMap<>();
     /** Maps packages to their DotInfo's . */
     private Map<PackageUserKey, DotInfo> mPackageUserToDotInfos = new HashMap<>();
+    /** Reused for dot lookups, which happen for every icon on each dot update. */
+    private final PackageUserKey mTempPackageUserKey = new PackageUserKey(null, null);
 
     /** All installed widgets. */
     private List<WidgetsListBaseEntry> mAllWidgets = List.of();
@@ -67,13 +77,16 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
 
     private PopupDataChangeListener mChangeListener = PopupDataChangeListener.INSTANCE;
 
-    public PopupDataProvider(Consumer<Predicate<PackageUserKey>> notificationDotsChangeListener) {
+    /**
+     * @param notificationDotsChangeListener receives the keys of the packages whose dots changed
+     */
+    public PopupDataProvider(Consumer<Set<PackageUserKey>> notificationDotsChangeListener) {
         mNotificationDotsChangeListener = notificationDotsChangeListener;
     }
 
-    private void updateNotificationDots(Predicate<PackageUserKey> updatedDots) {
+    private void updateNotificationDots(Set<PackageUserKey> updatedDots) {
         mNotificationDotsChangeListener.accept(updatedDots);
-        mChangeListener.onNotificationDotsUpdated(updatedDots);
+        mChangeListener.onNotificationDotsUpdated(updatedDots::contains);
     }
 
     @Override
@@ -85,7 +98,7 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
             mPackageUserToDotInfos.put(postedPackageUserKey, dotInfo);
         }
         if (dotInfo.addOrUpdateNotificationKey(notificationKey)) {
-            updateNotificationDots(postedPackageUserKey::equals);
+            updateNotificationDots(Collections.singleton(postedPackageUserKey));
         }
     }
 
@@ -97,7 +110,39 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
             if (oldDotInfo.getNotificationKeys().size() == 0) {
                 mPackageUserToDotInfos.remove(removedPackageUserKey);
             }
-            updateNotificationDots(removedPackageUserKey::equals);
+            updateNotificationDots(Collections.singleton(removedPackageUserKey));
+            trimNotifications(mPackageUserToDotInfos);
+        }
+    }
+
+    @Override
+    public void onNotificationsChanged(List<NotificationChange> changes) {
+        // Apply the whole batch before notifying, so that each dot is only redrawn once
+        Set<PackageUserKey> updatedDots = new HashSet<>();
+        boolean notificationsRemoved = false;
+        for (NotificationChange change : changes) {
+            PackageUserKey packageUserKey = change.packageUserKey;
+            DotInfo dotInfo = mPackageUserToDotInfos.get(packageUserKey);
+            if (change.isPosted) {
+                if (dotInfo == null) {
+                    dotInfo = new DotInfo();
+                    mPackageUserToDotInfos.put(packageUserKey, dotInfo);
+                }
+                if (dotInfo.addOrUpdateNotificationKey(change.notificationKey)) {
+                    updatedDots.add(packageUserKey);
+                }
+            } else if (dotInfo != null && dotInfo.removeNotificationKey(change.notificationKey)) {
+                if (dotInfo.getNotificationKeys().size() == 0) {
+                    mPackageUserToDotInfos.remove(packageUserKey);
+                }
+                updatedDots.add(packageUserKey);
+                notificationsRemoved = true;
+            }
+        }
+        if (!updatedDots.isEmpty()) {
+            updateNotificationDots(updatedDots);
+        }
+        if (notificationsRemoved) {
             trimNotifications(mPackageUserToDotInfos);
         }
     }
@@ -134,7 +179,7 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
         }
 
         if (!updatedDots.isEmpty()) {
-            updateNotificationDots(updatedDots::containsKey);
+            updateNotificationDots(updatedDots.keySet());
         }
         trimNotifications(updatedDots);
     }
@@ -144,8 +189,14 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
     }
 
     public void setDeepShortcutMap(HashMap<ComponentKey, Integer> deepShortcutMapCopy) {
-        mDeepShortcutMap = deepShortcutMapCopy;
-        if (LOGD) Log.d(TAG, "bindDeepShortcutMap: " + mDeepShortcutMap);
+        HashMap<UserHandle, HashMap<ComponentName, Integer>> countsByUser = new HashMap<>();
+        for (Map.Entry<ComponentKey, Integer> entry : deepShortcutMapCopy.entrySet()) {
+            ComponentKey key = entry.getKey();
+            countsByUser.computeIfAbsent(key.user, u -> new HashMap<>())
+                    .put(key.componentName, entry.getValue());
+        }
+        mShortcutCountsByUser = countsByUser;
+        if (LOGD) Log.d(TAG, "bindDeepShortcutMap: " + deepShortcutMapCopy);
     }
 
     public int getShortcutCountForItem(ItemInfo info) {
@@ -157,21 +208,18 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
             return 0;
         }
 
-        Integer count = mDeepShortcutMap.get(new ComponentKey(component, info.user));
+        HashMap<ComponentName, Integer> counts = mShortcutCountsByUser.get(info.user);
+        Integer count = counts == null ? null : counts.get(component);
         return count == null ? 0 : count;
     }
 
     public @Nullable DotInfo getDotInfoForItem(@NonNull ItemInfo info) {
-        if (!ShortcutUtil.supportsShortcuts(info)) {
-            return null;
-        }
-        DotInfo dotInfo = mPackageUserToDotInfos.get(PackageUserKey.fromItemInfo(info));
-        if (dotInfo == null) {
+        // Also checks ShortcutUtil.supportsShortcuts
+        if (!mTempPackageUserKey.updateFromItemInfo(info)) {
             return null;
         }
-        List<NotificationKeyData> notifications = getNotificationsForItem(
-                info, dotInfo.getNotificationKeys());
-        if (notifications.isEmpty()) {
+        DotInfo dotInfo = mPackageUserToDotInfos.get(mTempPackageUserKey);
+        if (dotInfo == null || !hasNotificationsForItem(info, dotInfo.getNotificationKeys())) {
             return null;
         }
         return dotInfo;
@@ -248,15 +296,40 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
             return notifications;
         }
         String[] personKeys = ShortcutUtil.getPersonKeysIfPinnedShortcut(info);
-        return notifications.stream().filter((NotificationKeyData notification) -> {
-                    if (notification.shortcutId != null) {
-                        return notification.shortcutId.equals(shortcutId);
-                    }
-                    if (notification.personKeysFromNotification.length != 0) {
-                        return Arrays.equals(notification.personKeysFromNotification, personKeys);
-                    }
-                    return false;
-                }).collect(Collectors.toList());
+        return notifications.stream()
+                .filter(notification -> isNotificationForShortcut(
+                        notification, shortcutId, personKeys))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Same as {@code !getNotificationsForItem(info, notifications).isEmpty()}, without
+     * allocating the filtered list.
+     */
+    private static boolean hasNotificationsForItem(
+            @NonNull ItemInfo info, @NonNull List<NotificationKeyData> notifications) {
+        String shortcutId = ShortcutUtil.getShortcutIdIfPinnedShortcut(info);
+        if (shortcutId == null) {
+            return !notifications.isEmpty();
+        }
+        String[] personKeys = ShortcutUtil.getPersonKeysIfPinnedShortcut(info);
+        for (int i = 0; i < notifications.size(); i++) {
+            if (isNotificationForShortcut(notifications.get(i), shortcutId, personKeys)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNotificationForShortcut(NotificationKeyData notification,
+            String shortcutId, String[] personKeys) {
+        if (notification.shortcutId != null) {
+            return notification.shortcutId.equals(shortcutId);
+        }
+        if (notification.personKeysFromNotification.length != 0) {
+            return Arrays.equals(notification.personKeysFromNotification, personKeys);
+        }
+        return false;
     }
 
     public void dump(String prefix, PrintWriter writer) {
@@ -34,8 +34,8 @@ import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.notification.NotificationInfo;
 import com.android.launcher3.notification.NotificationKeyData;
 import com.android.launcher3.notification.NotificationListener;
+import com.android.launcher3.shortcuts.DeepShortcutCache;
 import com.android.launcher3.shortcuts.DeepShortcutView;
-import com.android.launcher3.shortcuts.ShortcutRequest;
 import com.android.launcher3.views.ActivityContext;
 
 import java.util.ArrayList;
@@ -152,23 +152,44 @@ public class PopupPopulator {
                 uiHandler.post(() -> container.applyNotificationInfos(infos));
             }
 
-            List<ShortcutInfo> shortcuts = new ShortcutRequest(context, user)
-                    .withContainer(activity)
-                    .query(ShortcutRequest.PUBLISHED);
             String shortcutIdToDeDupe = notificationKeys.isEmpty() ? null
                     : notificationKeys.get(0).shortcutId;
+            if (activity == null) {
+                return;
+            }
+            DeepShortcutCache shortcutCache =
+                    LauncherAppState.getInstance(context).getModel().getDeepShortcutCache();
+            List<ShortcutInfo> cachedShortcuts = shortcutCache.getShortcuts(activity, user);
+            List<ShortcutInfo> shortcuts = cachedShortcuts != null ? cachedShortcuts
+                    : shortcutCache.queryShortcuts(context, activity, user);
             shortcuts = PopupPopulator.sortAndFilterShortcuts(shortcuts, shortcutIdToDeDupe);
-            IconCache cache = LauncherAppState.getInstance(context).getIconCache();
-            for (int i = 0; i < shortcuts.size() && i < shortcutViews.size(); i++) {
-                final ShortcutInfo shortcut = shortcuts.get(i);
-                final WorkspaceItemInfo si = new WorkspaceItemInfo(shortcut, context);
-                cache.getUnbadgedShortcutIcon(si, shortcut);
-                si.rank = i;
-                si.container = CONTAINER_SHORTCUTS;
-
-                final DeepShortcutView view = shortcutViews.get(i);
-                uiHandler.post(() -> view.applyShortcutInfo(si, shortcut, container));
+            applyShortcuts(context, uiHandler, container, shortcutViews, shortcuts);
+
+            if (cachedShortcuts != null) {
+                // Revalidate the cached shortcuts, in case a change was missed
+                List<ShortcutInfo> freshShortcuts = PopupPopulator.sortAndFilterShortcuts(
+                        shortcutCache.queryShortcuts(context, activity, user),
+                        shortcutIdToDeDupe);
+                if (!DeepShortcutCache.isSameShortcuts(shortcuts, freshShortcuts)) {
+                    applyShortcuts(context, uiHandler, container, shortcutViews, freshShortcuts);
+                }
             }
         };
     }
+
+    private static <T extends Context & ActivityContext> void applyShortcuts(T context,
+            Handler uiHandler, PopupContainerWithArrow container,
+            List<DeepShortcutView> shortcutViews, List<ShortcutInfo> shortcuts) {
+        IconCache cache = LauncherAppState.getInstance(context).getIconCache();
+        for (int i = 0; i < shortcuts.size() && i < shortcutViews.size(); i++) {
+            final ShortcutInfo shortcut = shortcuts.get(i);
+            final WorkspaceItemInfo si = new WorkspaceItemInfo(shortcut, context);
+            cache.getUnbadgedShortcutIcon(si, shortcut);
+            si.rank = i;
+            si.container = CONTAINER_SHORTCUTS;
+
+            final DeepShortcutView view = shortcutViews.get(i);
+            uiHandler.post(() -> view.applyShortcutInfo(si, shortcut, container));
+        }
+    }
 }
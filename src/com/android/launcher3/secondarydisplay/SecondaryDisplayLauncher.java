@@ -94,8 +94,8 @@ public class SecondaryDisplayLauncher extends BaseDraggingActivity
         mAppsView = findViewById(R.id.apps_view);
         mAppsButton = findViewById(R.id.all_apps_button);
 
-        mPopupDataProvider = new PopupDataProvider(
-                mAppsView.getAppsStore()::updateNotificationDots);
+        mPopupDataProvider = new PopupDataProvider(updatedDots ->
+                mAppsView.getAppsStore().updateNotificationDots(updatedDots::contains));
 
         mModel.addCallbacksAndLoad(this);
     }
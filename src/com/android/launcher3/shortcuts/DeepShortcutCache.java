@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.shortcuts;
+
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.ShortcutInfo;
+import android.os.UserHandle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.util.PackageUserKey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Caches the published (dynamic and manifest) deep shortcuts of each package, so that popups and
+ * search can show them without a binder call. The cache is seeded by the loader, and packages
+ * are invalidated when their shortcuts or the package itself change.
+ */
+public class DeepShortcutCache {
+
+    private final HashMap<PackageUserKey, List<ShortcutInfo>> mShortcuts = new HashMap<>();
+    /** Users whose shortcuts were all loaded, so a missing package means it has none. */
+    private final HashSet<UserHandle> mLoadedUsers = new HashSet<>();
+    /** Packages of loaded users which changed since, and must be queried again. */
+    private final HashSet<PackageUserKey> mStalePackages = new HashSet<>();
+    /** Number of invalidations of each package, so that queries racing them aren't cached. */
+    private final HashMap<PackageUserKey, Integer> mGenerations = new HashMap<>();
+    /** Number of times users were removed or the cache cleared, for the same purpose. */
+    private int mResetCount;
+
+    /**
+     * Replaces the cached shortcuts of {@param user} with all of its shortcuts, as returned by
+     * {@link ShortcutRequest#ALL}. Pinned only shortcuts are ignored. If the query failed, the
+     * packages of the user are queried again on next use.
+     */
+    public synchronized void setAllShortcuts(
+            UserHandle user, ShortcutRequest.QueryResult shortcuts) {
+        removeUser(user);
+        if (!shortcuts.wasSuccess()) {
+            // A failed query returns no shortcuts, which doesn't mean packages have none
+            return;
+        }
+        for (ShortcutInfo shortcut : shortcuts) {
+            if (shortcut.isDynamic() || shortcut.isDeclaredInManifest()) {
+                mShortcuts.computeIfAbsent(new PackageUserKey(shortcut.getPackage(), user),
+                        k -> new ArrayList<>()).add(shortcut);
+            }
+        }
+        mLoadedUsers.add(user);
+    }
+
+    /**
+     * Drops the cached shortcuts of a package, they will be queried again on next use.
+     */
+    public synchronized void invalidate(String packageName, UserHandle user) {
+        PackageUserKey key = new PackageUserKey(packageName, user);
+        mShortcuts.remove(key);
+        mGenerations.merge(key, 1, Integer::sum);
+        if (mLoadedUsers.contains(user)) {
+            mStalePackages.add(key);
+        }
+    }
+
+    /**
+     * Drops all the cached shortcuts of {@param user}, for example when it gets locked.
+     */
+    public synchronized void removeUser(UserHandle user) {
+        mShortcuts.keySet().removeIf(key -> key.mUser.equals(user));
+        mStalePackages.removeIf(key -> key.mUser.equals(user));
+        mLoadedUsers.remove(user);
+        mResetCount++;
+    }
+
+    public synchronized void clear() {
+        mShortcuts.clear();
+        mLoadedUsers.clear();
+        mStalePackages.clear();
+        mGenerations.clear();
+        mResetCount++;
+    }
+
+    /**
+     * Returns the cached published shortcuts of {@param activity}, or null if they are not known.
+     */
+    @Nullable
+    public synchronized List<ShortcutInfo> getShortcuts(
+            @NonNull ComponentName activity, @NonNull UserHandle user) {
+        PackageUserKey key = new PackageUserKey(activity.getPackageName(), user);
+        List<ShortcutInfo> shortcuts = mShortcuts.get(key);
+        if (shortcuts == null) {
+            return mLoadedUsers.contains(user) && !mStalePackages.contains(key)
+                    ? new ArrayList<>() : null;
+        }
+        return filterByActivity(shortcuts, activity);
+    }
+
+    /**
+     * Queries the published shortcuts of the package of {@param activity} and caches them.
+     * @return the shortcuts of {@param activity}
+     */
+    @WorkerThread
+    public List<ShortcutInfo> queryShortcuts(
+            @NonNull Context context, @NonNull ComponentName activity, @NonNull UserHandle user) {
+        PackageUserKey key = new PackageUserKey(activity.getPackageName(), user);
+        int generation;
+        int resetCount;
+        synchronized (this) {
+            generation = mGenerations.getOrDefault(key, 0);
+            resetCount = mResetCount;
+        }
+        // The binder call is made without the lock, so that cached packages can be read meanwhile
+        ShortcutRequest.QueryResult shortcuts = new ShortcutRequest(context, user)
+                .forPackage(activity.getPackageName())
+                .query(ShortcutRequest.PUBLISHED);
+        synchronized (this) {
+            // Don't cache failures, which return an empty list, nor results which may predate
+            // an invalidation made during the query
+            if (shortcuts.wasSuccess() && resetCount == mResetCount
+                    && generation == mGenerations.getOrDefault(key, 0)) {
+                mShortcuts.put(key, new ArrayList<>(shortcuts));
+                mStalePackages.remove(key);
+            }
+        }
+        return filterByActivity(shortcuts, activity);
+    }
+
+    /**
+     * Returns the cached shortcuts of {@param activity}, querying them on a cache miss.
+     */
+    @WorkerThread
+    public List<ShortcutInfo> getOrQueryShortcuts(
+            @NonNull Context context, @NonNull ComponentName activity, @NonNull UserHandle user) {
+        List<ShortcutInfo> shortcuts = getShortcuts(activity, user);
+        return shortcuts != null ? shortcuts : queryShortcuts(context, activity, user);
+    }
+
+    /**
+     * Loads the shortcuts of {@param activity} in the background if they are not cached, for
+     * example when an icon is touched, before its long press opens a popup.
+     */
+    public void prefetch(
+            @NonNull Context context, @NonNull ComponentName activity, @NonNull UserHandle user) {
+        if (getShortcuts(activity, user) != null) {
+            return;
+        }
+        // At the front of the queue, so that it is done before the popup asks for the shortcuts
+        MODEL_EXECUTOR.getHandler().postAtFrontOfQueue(() -> {
+            if (getShortcuts(activity, user) == null) {
+                queryShortcuts(context, activity, user);
+            }
+        });
+    }
+
+    /**
+     * Returns whether the two lists contain the same versions of the same shortcuts.
+     */
+    public static boolean isSameShortcuts(List<ShortcutInfo> a, List<ShortcutInfo> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            ShortcutInfo sa = a.get(i);
+            ShortcutInfo sb = b.get(i);
+            if (!sa.getId().equals(sb.getId())
+                    || sa.getLastChangedTimestamp() != sb.getLastChangedTimestamp()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<ShortcutInfo> filterByActivity(
+            List<ShortcutInfo> shortcuts, ComponentName activity) {
+        // Always a new list, as callers sort and filter it in place
+        List<ShortcutInfo> result = new ArrayList<>();
+        for (int i = 0; i < shortcuts.size(); i++) {
+            ShortcutInfo shortcut = shortcuts.get(i);
+            if (activity.equals(shortcut.getActivity())) {
+                result.add(shortcut);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes the remove, move, insert and change operations which turn one list into another,
+ * matching the items of both lists by key, so that the views of the items which are kept can be
+ * reused and only the views of the items whose contents changed are rebound.
+ *
+ * Meant for short lists like the hotseat: items are matched with linear scans.
+ */
+public final class KeyedListDiff {
+
+    /**
+     * Compares the items of the two lists.
+     */
+    public interface ItemCallback<T> {
+
+        /**
+         * Returns whether both items have the same key, and so can share a view.
+         */
+        boolean areItemsTheSame(T oldItem, T newItem);
+
+        /**
+         * Returns whether the view of {@param oldItem} also shows {@param newItem} as is.
+         * Only called for items which are the same.
+         */
+        boolean areContentsTheSame(T oldItem, T newItem);
+    }
+
+    /**
+     * Receives the operations in order. Each position is in the list as updated by the previous
+     * operations, so they can be applied as they come to the children of a view.
+     */
+    public interface UpdateCallback<T> {
+
+        void onRemoved(int position);
+
+        void onMoved(int fromPosition, int toPosition);
+
+        void onInserted(int position, T item);
+
+        void onChanged(int position, T item);
+    }
+
+    private KeyedListDiff() { }
+
+    /**
+     * Dispatches the operations turning {@param oldItems} into {@param newItems}. Items without
+     * a match in the other list are removed or inserted, and the items which are kept are moved
+     * into place, then changed if their contents differ.
+     */
+    public static <T> void dispatch(List<T> oldItems, List<T> newItems,
+            ItemCallback<T> itemCallback, UpdateCallback<T> updateCallback) {
+        ArrayList<T> current = new ArrayList<>(oldItems);
+
+        // Remove the items which are gone first, so that they aren't moved around
+        for (int i = current.size() - 1; i >= 0; i--) {
+            if (!containsSame(newItems, current.get(i), itemCallback)) {
+                current.remove(i);
+                updateCallback.onRemoved(i);
+            }
+        }
+
+        for (int i = 0; i < newItems.size(); i++) {
+            T newItem = newItems.get(i);
+            int index = indexOfSame(current, i, newItem, itemCallback);
+            if (index < 0) {
+                current.add(i, newItem);
+                updateCallback.onInserted(i, newItem);
+                continue;
+            }
+            if (index != i) {
+                current.add(i, current.remove(index));
+                updateCallback.onMoved(index, i);
+            }
+            if (!itemCallback.areContentsTheSame(current.get(i), newItem)) {
+                updateCallback.onChanged(i, newItem);
+            }
+            current.set(i, newItem);
+        }
+
+        // Only left when the old list had more items with the same key than the new one
+        for (int i = current.size() - 1; i >= newItems.size(); i--) {
+            current.remove(i);
+            updateCallback.onRemoved(i);
+        }
+    }
+
+    private static <T> boolean containsSame(List<T> newItems, T oldItem,
+            ItemCallback<T> itemCallback) {
+        for (int i = 0; i < newItems.size(); i++) {
+            if (itemCallback.areItemsTheSame(oldItem, newItems.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <T> int indexOfSame(List<T> current, int start, T newItem,
+            ItemCallback<T> itemCallback) {
+        for (int i = start; i < current.size(); i++) {
+            if (itemCallback.areItemsTheSame(current.get(i), newItem)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -56,7 +56,10 @@ public class PackageUserKey {
         mPackageName = packageName;
         mWidgetCategory = widgetCategory;
         mUser = user;
-        mHashCode = Objects.hash(packageName, widgetCategory, user);
+        // Same as Objects.hash(packageName, widgetCategory, user), without the varargs array
+        int hashCode = 31 + Objects.hashCode(packageName);
+        hashCode = 31 * hashCode + widgetCategory;
+        mHashCode = 31 * hashCode + Objects.hashCode(user);
     }
 
     /**
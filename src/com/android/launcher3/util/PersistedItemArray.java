@@ -16,6 +16,7 @@
 
 package com.android.launcher3.util;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.os.UserHandle;
@@ -28,18 +29,19 @@ import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.AutoInstallsLayout;
 import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.PersistedItemLog.Record;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlSerializer;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -48,6 +50,8 @@ import java.util.function.LongFunction;
 
 /**
  * Utility class to read/write a list of {@link com.android.launcher3.model.data.ItemInfo} on disk.
+ * Items are stored in a binary {@link PersistedItemLog}, files written by older versions as xml
+ * are still read, and replaced by the binary file.
  * This class is not thread safe, the caller should ensure proper threading
  */
 public class PersistedItemArray<T extends ItemInfo> {
@@ -58,9 +62,13 @@ public class PersistedItemArray<T extends ItemInfo> {
     private static final String TAG_ENTRY = "entry";
 
     private final String mFileName;
+    private final String mLegacyFileName;
+
+    private PersistedItemLog mLog;
 
     public PersistedItemArray(String fileName) {
-        mFileName = fileName + ".xml";
+        mFileName = fileName + ".bin";
+        mLegacyFileName = fileName + ".xml";
     }
 
     /**
@@ -68,44 +76,25 @@ public class PersistedItemArray<T extends ItemInfo> {
      */
     @WorkerThread
     public void write(Context context, List<T> items) {
-        AtomicFile file = getFile(context);
-        FileOutputStream fos;
-        try {
-            fos = file.startWrite();
-        } catch (IOException e) {
-            Log.e(TAG, "Unable to persist items in " + mFileName, e);
-            return;
-        }
-
         UserCache userCache = UserCache.INSTANCE.get(context);
+        List<Record> records = new ArrayList<>(items.size());
+        for (T item : items) {
+            Intent intent = item.getIntent();
+            if (intent == null) {
+                continue;
+            }
+            records.add(toRecord(item.itemType,
+                    userCache.getSerialNumberForUser(item.user), intent));
+        }
 
         try {
-            XmlSerializer out = Xml.newSerializer();
-            out.setOutput(fos, StandardCharsets.UTF_8.name());
-            out.startDocument(null, true);
-            out.startTag(null, TAG_ROOT);
-            for (T item : items) {
-                Intent intent = item.getIntent();
-                if (intent == null) {
-                    continue;
-                }
-
-                out.startTag(null, TAG_ENTRY);
-                out.attribute(null, Favorites.ITEM_TYPE, Integer.toString(item.itemType));
-                out.attribute(null, Favorites.PROFILE_ID,
-                        Long.toString(userCache.getSerialNumberForUser(item.user)));
-                out.attribute(null, Favorites.INTENT, intent.toUri(0));
-                out.endTag(null, TAG_ENTRY);
-            }
-            out.endTag(null, TAG_ROOT);
-            out.endDocument();
+            getLog(context).write(records);
         } catch (IOException e) {
-            file.failWrite(fos);
             Log.e(TAG, "Unable to persist items in " + mFileName, e);
             return;
         }
-
-        file.finishWrite(fos);
+        // Older items are only kept in the legacy file until the binary file is written
+        getLegacyFile(context).delete();
     }
 
     /**
@@ -122,8 +111,57 @@ public class PersistedItemArray<T extends ItemInfo> {
      */
     @WorkerThread
     public List<T> read(Context context, ItemFactory<T> factory, LongFunction<UserHandle> userFn) {
-        List<T> result = new ArrayList<>();
-        try (FileInputStream fis = getFile(context).openRead()) {
+        PersistedItemLog log = getLog(context);
+        List<Record> records = null;
+        if (log.exists()) {
+            try {
+                records = log.read();
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to read items in " + mFileName, e);
+            }
+        }
+        if (records == null) {
+            // Written by an older version, or the binary file is unreadable
+            records = readLegacy(context);
+            if (records == null) {
+                return Collections.emptyList();
+            }
+            if (!records.isEmpty()) {
+                try {
+                    log.compact(records);
+                    getLegacyFile(context).delete();
+                } catch (IOException e) {
+                    Log.e(TAG, "Unable to migrate items to " + mFileName, e);
+                }
+            }
+        }
+
+        List<T> result = new ArrayList<>(records.size());
+        for (Record record : records) {
+            try {
+                UserHandle user = userFn.apply(record.profileSerial);
+                Intent intent = toIntent(record);
+                if (user != null && intent != null) {
+                    T item = factory.createInfo(record.itemType, user, intent);
+                    if (item != null) {
+                        result.add(item);
+                    }
+                }
+            } catch (Exception e) {
+                // Ignore this entry
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the records of the xml file written by older versions, or returns null if the file
+     * can't be read.
+     */
+    @Nullable
+    private List<Record> readLegacy(Context context) {
+        List<Record> result = new ArrayList<>();
+        try (FileInputStream fis = getLegacyFile(context).openRead()) {
             XmlPullParser parser = Xml.newPullParser();
             parser.setInput(new InputStreamReader(fis, StandardCharsets.UTF_8));
 
@@ -139,17 +177,11 @@ public class PersistedItemArray<T extends ItemInfo> {
                 try {
                     int itemType = Integer.parseInt(
                             parser.getAttributeValue(null, Favorites.ITEM_TYPE));
-                    UserHandle user = userFn.apply(Long.parseLong(
-                            parser.getAttributeValue(null, Favorites.PROFILE_ID)));
+                    long profileSerial = Long.parseLong(
+                            parser.getAttributeValue(null, Favorites.PROFILE_ID));
                     Intent intent = Intent.parseUri(
                             parser.getAttributeValue(null, Favorites.INTENT), 0);
-
-                    if (user != null && intent != null) {
-                        T item = factory.createInfo(itemType, user, intent);
-                        if (item != null) {
-                            result.add(item);
-                        }
-                    }
+                    result.add(toRecord(itemType, profileSerial, intent));
                 } catch (Exception e) {
                     // Ignore this entry
                 }
@@ -157,17 +189,51 @@ public class PersistedItemArray<T extends ItemInfo> {
         } catch (FileNotFoundException e) {
             // Ignore
         } catch (IOException | XmlPullParserException e) {
-            Log.e(TAG, "Unable to read items in " + mFileName, e);
-            return Collections.emptyList();
+            Log.e(TAG, "Unable to read items in " + mLegacyFileName, e);
+            return null;
         }
         return result;
     }
 
     /**
-     * Returns the underlying file used for persisting data
+     * Deletes the persisted items
      */
-    public AtomicFile getFile(Context context) {
-        return new AtomicFile(context.getFileStreamPath(mFileName));
+    public void delete(Context context) {
+        getLog(context).delete();
+        getLegacyFile(context).delete();
+    }
+
+    private PersistedItemLog getLog(Context context) {
+        if (mLog == null) {
+            mLog = new PersistedItemLog(context.getFileStreamPath(mFileName));
+        }
+        return mLog;
+    }
+
+    private AtomicFile getLegacyFile(Context context) {
+        return new AtomicFile(context.getFileStreamPath(mLegacyFileName));
+    }
+
+    /**
+     * Stores launcher intents as their component, and any other intent as its uri.
+     */
+    private static Record toRecord(int itemType, long profileSerial, Intent intent) {
+        ComponentName cn = intent.getComponent();
+        if (cn != null) {
+            Intent launchIntent = AppInfo.makeLaunchIntent(cn);
+            if (intent.filterEquals(launchIntent) && intent.getFlags() == launchIntent.getFlags()
+                    && intent.getExtras() == null && intent.getSelector() == null
+                    && intent.getSourceBounds() == null) {
+                return new Record(itemType, profileSerial, cn, null);
+            }
+        }
+        return new Record(itemType, profileSerial, null, intent.toUri(0));
+    }
+
+    private static Intent toIntent(Record record) throws URISyntaxException {
+        return record.component != null
+                ? AppInfo.makeLaunchIntent(record.component)
+                : Intent.parseUri(record.intentUri, 0);
     }
 
     /**
@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util;
+
+import android.content.ComponentName;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Binary storage for the records of a {@link PersistedItemArray}, as a log of batches of
+ * operations. Writing a list which only removes records from the previous one and appends new
+ * ones, like a queue, appends a small batch to the file instead of rewriting it. The file is
+ * compacted into a single batch when the appended operations outgrow the records, or when the
+ * list changes otherwise.
+ *
+ * Each batch is checksummed: a batch cut short by a crash while appending is ignored along with
+ * anything after it, and compaction replaces the file with a rename, so the file always holds
+ * the records of a completed write. It only depends on java.* and {@link ComponentName} so that
+ * it can also be tested on a plain JVM.
+ *
+ * This class is not thread safe, the caller should ensure proper threading
+ */
+public class PersistedItemLog {
+
+    private static final int MAGIC = 0x50494c47;  // "PILG"
+    static final int VERSION = 1;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private static final byte INTENT_COMPONENT = 1;
+    private static final byte INTENT_URI = 2;
+
+    // Operations which can always be appended before compacting, on top of the record count
+    private static final int MIN_COMPACTION_OPS = 32;
+
+    private final File mFile;
+
+    // The records in the file, or null if the file wasn't read or written yet.
+    private List<Record> mRecords;
+    // Operations appended since the file was last compacted, or -1 if it must be compacted
+    private int mAppendedOps = -1;
+
+    public PersistedItemLog(File file) {
+        mFile = file;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Returns whether the file exists, even if it can't be read.
+     */
+    public boolean exists() {
+        return mFile.exists();
+    }
+
+    /**
+     * Reads the records in the file, or returns an empty list if there is no file.
+     * @throws IOException if the file can't be read, or is in an unknown format
+     */
+    public List<Record> read() throws IOException {
+        // Until the file is read, the next write rewrites it
+        mRecords = null;
+        mAppendedOps = -1;
+        List<Record> records = new ArrayList<>();
+        int ops = 0;
+        boolean complete = true;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an item log: " + mFile);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported item log version " + version);
+            }
+
+            CRC32 crc = new CRC32();
+            long maxLength = mFile.length();
+            int first;
+            while ((first = in.read()) >= 0) {
+                byte[] batch = readBatch(in, first, maxLength, crc);
+                if (batch == null) {
+                    // A batch cut short by a crash while it was appended
+                    complete = false;
+                    break;
+                }
+                ops += applyBatch(batch, records);
+            }
+        } catch (FileNotFoundException e) {
+            mRecords = new ArrayList<>();
+            return Collections.emptyList();
+        }
+        mRecords = records;
+        // A batch cut short is left in the file, it is compacted away by the next write
+        mAppendedOps = complete ? ops : -1;
+        return new ArrayList<>(records);
+    }
+
+    /**
+     * Writes {@param records} to the file, by appending the operations changing the last read
+     * or written records into them when possible.
+     */
+    public void write(List<Record> records) throws IOException {
+        if (mRecords == null || mAppendedOps < 0) {
+            compact(records);
+            return;
+        }
+
+        // Removes the records which aren't kept in order, and appends the new ones after them
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int ops = 0;
+        int kept = 0;
+        int position = 0;
+        for (Record record : mRecords) {
+            if (kept < records.size() && record.equals(records.get(kept))) {
+                kept++;
+                position++;
+            } else {
+                out.writeByte(OP_REMOVE);
+                out.writeInt(position);
+                ops++;
+            }
+        }
+        for (int i = kept; i < records.size(); i++) {
+            writeAdd(out, records.get(i));
+            ops++;
+        }
+
+        if (ops == 0) {
+            return;
+        }
+        // Rewriting is as cheap once the operations outnumber the records
+        if (ops >= records.size()
+                || mAppendedOps + ops > Math.max(MIN_COMPACTION_OPS, records.size())) {
+            compact(records);
+            return;
+        }
+
+        try (FileOutputStream fos = new FileOutputStream(mFile, true)) {
+            fos.write(frame(bytes.toByteArray()));
+            fos.getFD().sync();
+        } catch (IOException e) {
+            // The file may end with part of the batch now
+            mAppendedOps = -1;
+            throw e;
+        }
+        mRecords = new ArrayList<>(records);
+        mAppendedOps += ops;
+    }
+
+    /**
+     * Rewrites the file with only {@param records}. The file is replaced once the new one is
+     * completely written, so a crash leaves either the old or the new records.
+     */
+    public void compact(List<Record> records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Record record : records) {
+            writeAdd(out, record);
+        }
+
+        File newFile = getNewFile();
+        try (FileOutputStream fos = new FileOutputStream(newFile)) {
+            DataOutputStream header = new DataOutputStream(fos);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            fos.write(frame(bytes.toByteArray()));
+            fos.getFD().sync();
+        } catch (IOException e) {
+            newFile.delete();
+            throw e;
+        }
+        if (!newFile.renameTo(mFile)) {
+            newFile.delete();
+            throw new IOException("Unable to replace " + mFile);
+        }
+        mRecords = new ArrayList<>(records);
+        mAppendedOps = 0;
+    }
+
+    /**
+     * Deletes the file.
+     */
+    public void delete() {
+        mFile.delete();
+        getNewFile().delete();
+        mRecords = new ArrayList<>();
+        mAppendedOps = -1;
+    }
+
+    /**
+     * Returns the file the compacted records are written to before they replace the file.
+     */
+    File getNewFile() {
+        return new File(mFile.getPath() + ".new");
+    }
+
+    /**
+     * Reads the batch starting with {@param first}, or returns null if it is incomplete.
+     */
+    private static byte[] readBatch(DataInputStream in, int first, long maxLength, CRC32 crc)
+            throws IOException {
+        try {
+            int length = (first << 24) | (in.readUnsignedByte() << 16)
+                    | in.readUnsignedShort();
+            long checksum = in.readInt() & 0xffffffffL;
+            if (length < 0 || length > maxLength) {
+                return null;
+            }
+            byte[] batch = new byte[length];
+            in.readFully(batch);
+            crc.reset();
+            crc.update(batch, 0, length);
+            return crc.getValue() == checksum ? batch : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static int applyBatch(byte[] batch, List<Record> records) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(batch));
+        int ops = 0;
+        while (in.available() > 0) {
+            byte op = in.readByte();
+            if (op == OP_ADD) {
+                records.add(readRecord(in));
+            } else if (op == OP_REMOVE) {
+                int position = in.readInt();
+                if (position < 0 || position >= records.size()) {
+                    throw new IOException("Invalid item log removal " + position);
+                }
+                records.remove(position);
+            } else {
+                throw new IOException("Unknown item log operation " + op);
+            }
+            ops++;
+        }
+        return ops;
+    }
+
+    private static byte[] frame(byte[] batch) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(batch, 0, batch.length);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.length + 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(batch.length);
+        out.writeInt((int) crc.getValue());
+        out.write(batch);
+        return bytes.toByteArray();
+    }
+
+    private static void writeAdd(DataOutputStream out, Record record) throws IOException {
+        out.writeByte(OP_ADD);
+        out.writeInt(record.itemType);
+        out.writeLong(record.profileSerial);
+        if (record.component != null) {
+            out.writeByte(INTENT_COMPONENT);
+            String packageName = record.component.getPackageName();
+            String className = record.component.getClassName();
+            writeString(out, packageName);
+            // Most classes are in their package, which the short form leaves out
+            boolean isShortForm = className.startsWith(packageName + ".");
+            out.writeBoolean(isShortForm);
+            writeString(out, isShortForm ? className.substring(packageName.length() + 1)
+                    : className);
+        } else {
+            out.writeByte(INTENT_URI);
+            writeString(out, record.intentUri);
+        }
+    }
+
+    private static Record readRecord(DataInputStream in) throws IOException {
+        int itemType = in.readInt();
+        long profileSerial = in.readLong();
+        byte intentKind = in.readByte();
+        if (intentKind == INTENT_COMPONENT) {
+            String packageName = readString(in);
+            boolean isShortForm = in.readBoolean();
+            String className = readString(in);
+            if (isShortForm) {
+                className = packageName + "." + className;
+            }
+            return new Record(itemType, profileSerial,
+                    new ComponentName(packageName, className), null);
+        } else if (intentKind == INTENT_URI) {
+            return new Record(itemType, profileSerial, null, readString(in));
+        }
+        throw new IOException("Unknown intent encoding " + intentKind);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A persisted item: its type, the serial number of its profile, and its intent, either the
+     * component of a launcher intent or the uri of any other intent.
+     */
+    public static final class Record {
+
+        public final int itemType;
+        public final long profileSerial;
+        public final ComponentName component;
+        public final String intentUri;
+
+        public Record(int itemType, long profileSerial, ComponentName component,
+                String intentUri) {
+            if ((component == null) == (intentUri == null)) {
+                throw new IllegalArgumentException("Exactly one of component or uri expected");
+            }
+            this.itemType = itemType;
+            this.profileSerial = profileSerial;
+            this.component = component;
+            this.intentUri = intentUri;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Record)) {
+                return false;
+            }
+            Record other = (Record) o;
+            return itemType == other.itemType && profileSerial == other.profileSerial
+                    && Objects.equals(component, other.component)
+                    && Objects.equals(intentUri, other.intentUri);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(itemType, profileSerial, component, intentUri);
+        }
+    }
+}
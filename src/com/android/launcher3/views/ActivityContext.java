@@ -26,6 +26,7 @@ import androidx.annotation.Nullable;
 
 import com.android.launcher3.DeviceProfile;
 import com.android.launcher3.dot.DotInfo;
+import com.android.launcher3.dot.DotViewIndex;
 import com.android.launcher3.dragndrop.DragController;
 import com.android.launcher3.folder.FolderIcon;
 import com.android.launcher3.logger.LauncherAtom;
@@ -47,6 +48,15 @@ public interface ActivityContext {
         return null;
     }
 
+    /**
+     * Returns the index of views showing notification dots, or null if this context updates dots
+     * some other way.
+     */
+    @Nullable
+    default DotViewIndex getDotViewIndex() {
+        return null;
+    }
+
     /**
      * For items with tree hierarchy, notifies the activity to invalidate the parent when a root
      * is invalidated
@@ -0,0 +1,167 @@
+/*
+ * Generated from the res/xml/device_profiles.xml next to this source directory, by
+ * GenerateDeviceProfilesTable in build.gradle. Do not edit, run
+ * ./gradlew updateDeviceProfilesTables instead.
+ */
+
+package com.android.launcher3;
+
+final class DeviceProfilesTable {
+
+    /** Attributes of each grid option, as pairs of styleable index and value. */
+    static final Object[][] GRID_OPTIONS = {
+            {
+                    R.styleable.GridDisplayOption_name, "3_by_3",
+                    R.styleable.GridDisplayOption_numRows, 3,
+                    R.styleable.GridDisplayOption_numColumns, 3,
+                    R.styleable.GridDisplayOption_numFolderRows, 2,
+                    R.styleable.GridDisplayOption_numFolderColumns, 3,
+                    R.styleable.GridDisplayOption_numHotseatIcons, 3,
+                    R.styleable.GridDisplayOption_dbFile, "launcher_3_by_3.db",
+                    R.styleable.GridDisplayOption_defaultLayoutId, R.xml.default_workspace_3x3,
+                    R.styleable.GridDisplayOption_deviceCategory, 5,
+            },
+            {
+                    R.styleable.GridDisplayOption_name, "4_by_4",
+                    R.styleable.GridDisplayOption_numRows, 4,
+                    R.styleable.GridDisplayOption_numColumns, 4,
+                    R.styleable.GridDisplayOption_numFolderRows, 3,
+                    R.styleable.GridDisplayOption_numFolderColumns, 4,
+                    R.styleable.GridDisplayOption_numHotseatIcons, 4,
+                    R.styleable.GridDisplayOption_dbFile, "launcher_4_by_4.db",
+                    R.styleable.GridDisplayOption_defaultLayoutId, R.xml.default_workspace_4x4,
+                    R.styleable.GridDisplayOption_deviceCategory, 5,
+            },
+            {
+                    R.styleable.GridDisplayOption_name, "5_by_5",
+                    R.styleable.GridDisplayOption_numRows, 5,
+                    R.styleable.GridDisplayOption_numColumns, 5,
+                    R.styleable.GridDisplayOption_numFolderRows, 4,
+                    R.styleable.GridDisplayOption_numFolderColumns, 4,
+                    R.styleable.GridDisplayOption_numHotseatIcons, 5,
+                    R.styleable.GridDisplayOption_dbFile, "launcher.db",
+                    R.styleable.GridDisplayOption_defaultLayoutId, R.xml.default_workspace_5x5,
+                    R.styleable.GridDisplayOption_deviceCategory, 5,
+            },
+            {
+                    R.styleable.GridDisplayOption_name, "6_by_5",
+                    R.styleable.GridDisplayOption_numRows, 5,
+                    R.styleable.GridDisplayOption_numColumns, 6,
+                    R.styleable.GridDisplayOption_numFolderRows, 3,
+                    R.styleable.GridDisplayOption_numFolderColumns, 3,
+                    R.styleable.GridDisplayOption_numHotseatIcons, 6,
+                    R.styleable.GridDisplayOption_numAllAppsColumns, 6,
+                    R.styleable.GridDisplayOption_dbFile, "launcher_6_by_5.db",
+                    R.styleable.GridDisplayOption_defaultLayoutId, R.xml.default_workspace_6x5,
+                    R.styleable.GridDisplayOption_deviceCategory, 2,
+            },
+    };
+
+    /** Attributes of the display options of each grid option. */
+    static final Object[][][] DISPLAY_OPTIONS = {
+            {
+                    {
+                            R.styleable.ProfileDisplayOption_name, "Super Short Stubby",
+                            R.styleable.ProfileDisplayOption_minWidthDps, 255.0f,
+                            R.styleable.ProfileDisplayOption_minHeightDps, 300.0f,
+                            R.styleable.ProfileDisplayOption_iconImageSize, 48.0f,
+                            R.styleable.ProfileDisplayOption_iconTextSize, 13.0f,
+                            R.styleable.ProfileDisplayOption_canBeDefault, true,
+                    },
+                    {
+                            R.styleable.ProfileDisplayOption_name, "Shorter Stubby",
+                            R.styleable.ProfileDisplayOption_minWidthDps, 255.0f,
+                            R.styleable.ProfileDisplayOption_minHeightDps, 400.0f,
+                            R.styleable.ProfileDisplayOption_iconImageSize, 48.0f,
+                            R.styleable.ProfileDisplayOption_iconTextSize, 13.0f,
+                            R.styleable.ProfileDisplayOption_canBeDefault, true,
+                    },
+            },
+            {
+                    {
+                            R.styleable.ProfileDisplayOption_name, "Short Stubby",
+                            R.styleable.ProfileDisplayOption_minWidthDps, 275.0f,
+                            R.styleable.ProfileDisplayOption_minHeightDps, 420.0f,
+                            R.styleable.ProfileDisplayOption_iconImageSize, 48.0f,
+                            R.styleable.ProfileDisplayOption_iconTextSize, 13.0f,
+                            R.styleable.ProfileDisplayOption_canBeDefault, true,
+                    },
+                    {
+                            R.styleable.ProfileDisplayOption_name, "Stubby",
+                            R.styleable.ProfileDisplayOption_minWidthDps, 255.0f,
+                            R.styleable.ProfileDisplayOption_minHeightDps, 450.0f,
+                            R.styleable.ProfileDisplayOption_iconImageSize, 48.0f,
+                            R.styleable.ProfileDisplayOption_iconTextSize, 13.0f,
+                            R.styleable.ProfileDisplayOption_canBeDefault, true,
+                    },
+                    {
+                            R.styleable.ProfileDisplayOption_name, "Nexus S",
+                            R.styleable.ProfileDisplayOption_minWidthDps, 296.0f,
+                            R.styleable.ProfileDisplayOption_minHeightDps, 491.33f,
+                            R.styleable.ProfileDisplayOption_iconImageSize, 48.0f,
+                            R.styleable.ProfileDisplayOption_iconTextSize, 13.0f,
+                            R.styleable.ProfileDisplayOption_canBeDefault, true,
+                    },
+                    {
+                            R.styleable.ProfileDisplayOption_name, "Nexus 4",
+                            R.styleable.ProfileDisplayOption_minWidthDps, 359.0f,
+                            R.styleable.ProfileDisplayOption_minHeightDps, 567.0f,
+                            R.styleable.ProfileDisplayOption_iconImageSize, 54.0f,
+                            R.styleable.ProfileDisplayOption_iconTextSize, 13.0f,
+                            R.styleable.ProfileDisplayOption_canBeDefault, true,
+                    },
+                    {
+                            R.styleable.ProfileDisplayOption_name, "Nexus 5",
+                            R.styleable.ProfileDisplayOption_minWidthDps, 335.0f,
+                            R.styleable.ProfileDisplayOption_minHeightDps, 567.0f,
+                            R.styleable.ProfileDisplayOption_iconImageSize, 54.0f,
+                            R.styleable.ProfileDisplayOption_iconTextSize, 13.0f,
+                            R.styleable.ProfileDisplayOption_canBeDefault, true,
+                    },
+            },
+            {
+                    {
+                            R.styleable.ProfileDisplayOption_name, "Large Phone",
+                            R.styleable.ProfileDisplayOption_minWidthDps, 406.0f,
+                            R.styleable.ProfileDisplayOption_minHeightDps, 694.0f,
+                            R.styleable.ProfileDisplayOption_iconImageSize, 56.0f,
+                            R.styleable.ProfileDisplayOption_iconTextSize, 14.4f,
+                            R.styleable.ProfileDisplayOption_canBeDefault, true,
+                    },
+                    {
+                            R.styleable.ProfileDisplayOption_name, "Large Phone Split Display",
+                            R.styleable.ProfileDisplayOption_minWidthDps, 406.0f,
+                            R.styleable.ProfileDisplayOption_minHeightDps, 694.0f,
+                            R.styleable.ProfileDisplayOption_iconImageSize, 56.0f,
+                            R.styleable.ProfileDisplayOption_iconTextSize, 14.4f,
+                            R.styleable.ProfileDisplayOption_canBeDefault, true,
+                    },
+                    {
+                            R.styleable.ProfileDisplayOption_name, "Shorter Stubby",
+                            R.styleable.ProfileDisplayOption_minWidthDps, 255.0f,
+                            R.styleable.ProfileDisplayOption_minHeightDps, 400.0f,
+                            R.styleable.ProfileDisplayOption_iconImageSize, 48.0f,
+                            R.styleable.ProfileDisplayOption_iconTextSize, 13.0f,
+                            R.styleable.ProfileDisplayOption_canBeDefault, true,
+                    },
+            },
+            {
+                    {
+                            R.styleable.ProfileDisplayOption_name, "Tablet",
+                            R.styleable.ProfileDisplayOption_minWidthDps, 900.0f,
+                            R.styleable.ProfileDisplayOption_minHeightDps, 820.0f,
+                            R.styleable.ProfileDisplayOption_minCellHeightDps, 104.0f,
+                            R.styleable.ProfileDisplayOption_minCellWidthDps, 80.0f,
+                            R.styleable.ProfileDisplayOption_iconImageSize, 60.0f,
+                            R.styleable.ProfileDisplayOption_iconTextSize, 14.0f,
+                            R.styleable.ProfileDisplayOption_borderSpaceDps, 16.0f,
+                            R.styleable.ProfileDisplayOption_allAppsIconSize, 60.0f,
+                            R.styleable.ProfileDisplayOption_allAppsIconTextSize, 14.0f,
+                            R.styleable.ProfileDisplayOption_allAppsCellSpacingDps, 16.0f,
+                            R.styleable.ProfileDisplayOption_canBeDefault, true,
+                    },
+            },
+    };
+
+    private DeviceProfilesTable() { }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.InvariantDeviceProfile.DisplayOption;
+import com.android.launcher3.InvariantDeviceProfile.GridOption;
+import com.android.launcher3.util.DisplayController;
+import com.android.launcher3.util.DisplayController.Info;
+import com.android.launcher3.util.WindowBounds;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import app.lawnchair.DeviceProfileOverrides;
+
+/**
+ * Tests for the loading of grid options and the reuse of built device profiles across grid
+ * re-inits in {@link InvariantDeviceProfile}.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class InvariantDeviceProfileTest {
+
+    private Context mContext;
+    private InvariantDeviceProfile mIdp;
+
+    @Before
+    public void setUp() {
+        mContext = getApplicationContext();
+        // Not the singleton, so that no listener is notified by the re-inits
+        mIdp = new InvariantDeviceProfile(mContext,
+                DeviceProfileOverrides.INSTANCE.get(mContext).getGridInfo());
+    }
+
+    @Test
+    public void reinitGrid_sameInputs_reusesGridOptionAndProfiles() throws Exception {
+        GridOption grid = mIdp.closestProfile;
+        List<DeviceProfile> profiles = new ArrayList<>(mIdp.supportedProfiles);
+
+        reinitGrid();
+        reinitGrid();
+
+        // The grid option is only parsed once, and no profile is built again
+        assertSame(grid, mIdp.closestProfile);
+        assertEquals(profiles.size(), mIdp.supportedProfiles.size());
+        for (int i = 0; i < profiles.size(); i++) {
+            assertSame(profiles.get(i), mIdp.supportedProfiles.get(i));
+        }
+    }
+
+    @Test
+    public void reinitGrid_cachedProfilesMatchNewProfiles() throws Exception {
+        reinitGrid();
+
+        Info info = DisplayController.INSTANCE.get(mContext).getInfo();
+        List<DeviceProfile> profiles = mIdp.supportedProfiles;
+        int i = 0;
+        for (WindowBounds bounds : info.supportedBounds) {
+            DeviceProfile expected = new DeviceProfile.Builder(mContext, mIdp, info)
+                    .setUseTwoPanels(mIdp.deviceType == InvariantDeviceProfile.TYPE_MULTI_DISPLAY)
+                    .setWindowBounds(bounds)
+                    .build();
+            assertEquals(dump(expected), dump(profiles.get(i++)));
+        }
+        assertEquals(profiles.size(), i);
+    }
+
+    @Test
+    public void loadDisplayOptions_matchesParsedXml() throws Exception {
+        int[] deviceTypes = {InvariantDeviceProfile.TYPE_PHONE,
+                InvariantDeviceProfile.TYPE_MULTI_DISPLAY, InvariantDeviceProfile.TYPE_TABLET};
+        for (int deviceType : deviceTypes) {
+            List<DisplayOption> expected =
+                    InvariantDeviceProfile.parseDisplayOptions(mContext, deviceType);
+            List<DisplayOption> actual = InvariantDeviceProfile.loadDisplayOptions(deviceType);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertFieldsEqual("deviceType " + deviceType + ", option " + i,
+                        expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    /**
+     * Compares all the fields of two grid or display options, including private ones.
+     */
+    private static void assertFieldsEqual(String message, Object expected, Object actual)
+            throws IllegalAccessException {
+        for (Field field : expected.getClass().getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            field.setAccessible(true);
+            Object expectedValue = field.get(expected);
+            Object actualValue = field.get(actual);
+            String fieldMessage = message + ", " + field.getName();
+            if (expectedValue instanceof GridOption) {
+                assertFieldsEqual(fieldMessage, expectedValue, actualValue);
+            } else if (expectedValue instanceof SparseArray) {
+                // Extra attributes of grid options, only compare the attributes themselves
+                SparseArray<?> expectedArray = (SparseArray<?>) expectedValue;
+                SparseArray<?> actualArray = (SparseArray<?>) actualValue;
+                assertEquals(fieldMessage, expectedArray.size(), actualArray.size());
+                for (int i = 0; i < expectedArray.size(); i++) {
+                    assertEquals(fieldMessage, expectedArray.keyAt(i), actualArray.keyAt(i));
+                }
+            } else {
+                assertTrue(fieldMessage + " expected " + toString(expectedValue)
+                                + " but was " + toString(actualValue),
+                        Objects.deepEquals(expectedValue, actualValue));
+            }
+        }
+    }
+
+    private static String toString(Object value) {
+        return value instanceof Object[] ? Arrays.deepToString((Object[]) value)
+                : value instanceof float[] ? Arrays.toString((float[]) value)
+                : String.valueOf(value);
+    }
+
+    private void reinitGrid() throws Exception {
+        // Grid re-inits are posted to the main thread
+        MAIN_EXECUTOR.submit(() -> mIdp.onPreferencesChanged(mContext)).get();
+        MAIN_EXECUTOR.submit(() -> { }).get();
+    }
+
+    private static String dump(DeviceProfile dp) {
+        StringWriter out = new StringWriter();
+        dp.dump("", new PrintWriter(out));
+        return out.toString();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.dot;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Process;
+import android.view.View;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.PackageUserKey;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public final class DotViewIndexTest {
+
+    private static final String PACKAGE_1 = "com.android.test.package1";
+    private static final String PACKAGE_2 = "com.android.test.package2";
+
+    private Context mContext;
+    private DotViewIndex mIndex;
+
+    @Before
+    public void setup() {
+        mContext = getInstrumentation().getTargetContext();
+        mIndex = new DotViewIndex();
+    }
+
+    @Test
+    public void forEachView_onlyVisitsViewsOfUpdatedPackages() {
+        View view1 = new View(mContext);
+        View view2 = new View(mContext);
+        mIndex.register(view1, newApp(PACKAGE_1));
+        mIndex.register(view2, newApp(PACKAGE_2));
+
+        assertThat(collect(PACKAGE_1)).containsExactly(view1);
+        assertThat(collect(PACKAGE_2)).containsExactly(view2);
+    }
+
+    @Test
+    public void forEachView_folderRegisteredForAllContentsAndVisitedOnce() {
+        FolderInfo folder = new FolderInfo();
+        folder.contents.add(newApp(PACKAGE_1));
+        folder.contents.add(newApp(PACKAGE_2));
+        View folderView = new View(mContext);
+        mIndex.register(folderView, folder);
+
+        List<View> visited = new ArrayList<>();
+        mIndex.forEachView(Arrays.asList(key(PACKAGE_1), key(PACKAGE_2)), visited::add);
+        assertThat(visited).containsExactly(folderView);
+    }
+
+    @Test
+    public void register_rebindReplacesPreviousKeys() {
+        View view = new View(mContext);
+        mIndex.register(view, newApp(PACKAGE_1));
+        mIndex.register(view, newApp(PACKAGE_2));
+
+        assertThat(collect(PACKAGE_1)).isEmpty();
+        assertThat(collect(PACKAGE_2)).containsExactly(view);
+    }
+
+    @Test
+    public void unregister_removesView() {
+        View view = new View(mContext);
+        mIndex.register(view, newApp(PACKAGE_1));
+        mIndex.unregister(view);
+
+        assertThat(collect(PACKAGE_1)).isEmpty();
+    }
+
+    private List<View> collect(String packageName) {
+        List<View> visited = new ArrayList<>();
+        mIndex.forEachView(Collections.singleton(key(packageName)), visited::add);
+        return visited;
+    }
+
+    private static PackageUserKey key(String packageName) {
+        return new PackageUserKey(packageName, Process.myUserHandle());
+    }
+
+    private static WorkspaceItemInfo newApp(String packageName) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.itemType = Favorites.ITEM_TYPE_APPLICATION;
+        info.user = Process.myUserHandle();
+        info.intent = new Intent(Intent.ACTION_MAIN)
+                .setComponent(new ComponentName(packageName, packageName + ".Activity"));
+        return info;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.folder;
+
+import static android.view.View.MeasureSpec.EXACTLY;
+import static android.view.View.MeasureSpec.makeMeasureSpec;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.RenderNode;
+import android.os.Build;
+import android.view.ContextThemeWrapper;
+import android.widget.FrameLayout;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SdkSuppress;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.DeviceProfile;
+import com.android.launcher3.LauncherSettings;
+import com.android.launcher3.R;
+import com.android.launcher3.icons.BitmapInfo;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.ActivityContextWrapper;
+import com.android.launcher3.util.Themes;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for the cached preview of {@link FolderIcon}, counting how often it is rendered.
+ * Drawn on a {@link RenderNode}, as the cache is only used by hardware accelerated canvases.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.Q)
+public class FolderIconPreviewCacheTest {
+
+    private FolderIcon mIcon;
+    private PreviewItemManager mPreviewItemManager;
+    private RenderNode mRenderNode;
+
+    @Before
+    public void setUp() throws Exception {
+        MAIN_EXECUTOR.submit(() -> {
+            Context app = getApplicationContext();
+            ActivityContextWrapper activity = new ActivityContextWrapper(app);
+            Context context = new ContextThemeWrapper(activity, Themes.getActivityThemeRes(app));
+            DeviceProfile dp = activity.getDeviceProfile();
+
+            FolderInfo folder = new FolderInfo();
+            folder.title = "Folder";
+            for (int i = 0; i < 3; i++) {
+                folder.add(createApp(i, dp.iconSizePx), false);
+            }
+            mIcon = FolderIcon.inflateIcon(R.layout.folder_icon, activity,
+                    new FrameLayout(context), folder);
+            mIcon.measure(makeMeasureSpec(dp.cellWidthPx, EXACTLY),
+                    makeMeasureSpec(dp.cellHeightPx, EXACTLY));
+            mIcon.layout(0, 0, dp.cellWidthPx, dp.cellHeightPx);
+            mPreviewItemManager = mIcon.getPreviewItemManager();
+            mRenderNode = new RenderNode("folderIcon");
+            mRenderNode.setPosition(0, 0, dp.cellWidthPx, dp.cellHeightPx);
+        }).get();
+    }
+
+    @Test
+    public void redraws_renderPreviewOnce() throws Exception {
+        MAIN_EXECUTOR.submit(() -> {
+            for (int i = 0; i < 5; i++) {
+                draw();
+            }
+            assertEquals(1, mPreviewItemManager.getCachedPreviewRenderCount());
+        }).get();
+    }
+
+    @Test
+    public void selfInvalidatingDrawable_isDrawnLive() throws Exception {
+        MAIN_EXECUTOR.submit(() -> {
+            draw();
+            // Like an animated icon, which invalidates itself on every frame
+            for (int i = 0; i < 10; i++) {
+                mPreviewItemManager.getPreviewItemDrawable(0).invalidateSelf();
+                draw();
+            }
+            assertEquals(1, mPreviewItemManager.getCachedPreviewRenderCount());
+        }).get();
+    }
+
+    @Test
+    public void rebuiltItems_areCachedAgain() throws Exception {
+        MAIN_EXECUTOR.submit(() -> {
+            draw();
+            mPreviewItemManager.getPreviewItemDrawable(0).invalidateSelf();
+            draw();
+
+            mPreviewItemManager.updatePreviewItems(false);
+            draw();
+            draw();
+            assertEquals(2, mPreviewItemManager.getCachedPreviewRenderCount());
+        }).get();
+    }
+
+    private void draw() {
+        mIcon.draw(mRenderNode.beginRecording());
+        mRenderNode.endRecording();
+    }
+
+    private static WorkspaceItemInfo createApp(int rank, int iconSize) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.id = rank + 1;
+        info.rank = rank;
+        info.itemType = LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+        info.title = "App " + rank;
+        info.intent = new Intent(Intent.ACTION_MAIN).setPackage("com.test.folder" + rank);
+        Bitmap icon = Bitmap.createBitmap(iconSize, iconSize, Bitmap.Config.ARGB_8888);
+        icon.eraseColor(Color.RED);
+        info.bitmap = BitmapInfo.of(icon, Color.RED);
+        return info;
+    }
+}
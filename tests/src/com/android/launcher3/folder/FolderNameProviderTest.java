@@ -28,6 +28,7 @@ import android.os.UserHandle;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
 
+import com.android.launcher3.model.AllAppsList;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.util.Executors;
@@ -81,4 +82,23 @@ public final class FolderNameProviderTest {
         assertTrue(nameInfos.hasSuggestions());
         assertTrue(nameInfos.hasPrimary());
     }
+
+    @Test
+    public void getSuggestedFolderName_samePackageUsesAppTitle() throws Exception {
+        ArrayList<WorkspaceItemInfo> list = new ArrayList<>();
+        list.add(mItem1);
+        list.add(mItem2);
+        AllAppsList appsList = new AllAppsList(null, null);
+        appsList.data.add(new AppInfo(
+                new ComponentName("a.b.c", "a.b.c/a.b.c.e"),
+                "app",
+                UserHandle.of(10),
+                new Intent()));
+        FolderNameInfos nameInfos = new FolderNameInfos();
+        Executors.MODEL_EXECUTOR.submit(() ->
+                FolderNameProvider.newInstance(mContext, appsList)
+                        .getSuggestedFolderName(mContext, list, nameInfos)).get();
+        assertEquals("app", nameInfos.getLabels()[0]);
+        assertEquals("Work", nameInfos.getLabels()[1]);
+    }
 }
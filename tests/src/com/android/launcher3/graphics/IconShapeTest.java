@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.graphics;
+
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.graphics.IconShape.AdaptiveIconShape;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.function.Consumer;
+
+import app.lawnchair.icons.shape.IconShapeCache;
+
+/**
+ * Compares the shapes drawn by {@link AdaptiveIconShape} from its cached mask with the same
+ * shapes drawn from their path.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IconShapeTest {
+
+    private static final int SIZE = 128;
+    private static final float OFFSET = 8;
+    private static final float RADIUS = 48;
+
+    // Anti-aliased edges can be rasterized slightly differently in the mask
+    private static final int MAX_CHANNEL_DIFFERENCE = 8;
+
+    private final app.lawnchair.icons.shape.IconShape mIconShape =
+            app.lawnchair.icons.shape.IconShape.Squircle.INSTANCE;
+    private final AdaptiveIconShape mShape = new AdaptiveIconShape(mIconShape);
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    @Before
+    public void setUp() {
+        IconShapeCache.clear();
+        mPaint.setColor(Color.RED);
+    }
+
+    @Test
+    public void mask_matchesPath() {
+        Bitmap fromShape = draw(c -> mShape.drawShape(c, OFFSET, OFFSET, RADIUS, mPaint));
+
+        assertTrue(drawMask(canvas -> { }).sameAs(fromShape));
+        assertSimilar(drawPath(RADIUS, canvas -> { }), fromShape);
+    }
+
+    @Test
+    public void mask_onTranslatedCanvas_matchesPath() {
+        Consumer<Canvas> transform = canvas -> canvas.translate(3, 5);
+        Bitmap fromShape = draw(canvas -> {
+            transform.accept(canvas);
+            mShape.drawShape(canvas, OFFSET, OFFSET, RADIUS, mPaint);
+        });
+
+        assertTrue(drawMask(transform).sameAs(fromShape));
+        assertSimilar(drawPath(RADIUS, transform), fromShape);
+    }
+
+    @Test
+    public void scaledCanvas_drawsPath() {
+        Consumer<Canvas> transform = canvas -> canvas.scale(1.25f, 1.25f);
+        Bitmap fromShape = draw(canvas -> {
+            transform.accept(canvas);
+            mShape.drawShape(canvas, OFFSET, OFFSET, RADIUS, mPaint);
+        });
+
+        assertTrue(drawPath(RADIUS, transform).sameAs(fromShape));
+    }
+
+    @Test
+    public void rotatedCanvas_drawsPath() {
+        Consumer<Canvas> transform = canvas -> canvas.rotate(30, SIZE / 2f, SIZE / 2f);
+        Bitmap fromShape = draw(canvas -> {
+            transform.accept(canvas);
+            mShape.drawShape(canvas, OFFSET, OFFSET, RADIUS, mPaint);
+        });
+
+        assertTrue(drawPath(RADIUS, transform).sameAs(fromShape));
+    }
+
+    @Test
+    public void animatedRadius_drawsPath() {
+        float radius = RADIUS - 0.5f;
+        Bitmap fromShape = draw(c -> mShape.drawShape(c, OFFSET, OFFSET, radius, mPaint));
+
+        assertTrue(drawPath(radius, canvas -> { }).sameAs(fromShape));
+    }
+
+    private Bitmap drawMask(Consumer<Canvas> transform) {
+        Bitmap mask = IconShapeCache.getMask(mIconShape, RADIUS);
+        return draw(canvas -> {
+            transform.accept(canvas);
+            canvas.drawBitmap(mask, OFFSET, OFFSET, mPaint);
+        });
+    }
+
+    private Bitmap drawPath(float radius, Consumer<Canvas> transform) {
+        Path path = new Path();
+        mShape.addToPath(path, OFFSET, OFFSET, radius);
+        return draw(canvas -> {
+            transform.accept(canvas);
+            canvas.drawPath(path, mPaint);
+        });
+    }
+
+    private static Bitmap draw(Consumer<Canvas> drawing) {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        drawing.accept(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    private static void assertSimilar(Bitmap expected, Bitmap actual) {
+        int[] expectedPixels = new int[SIZE * SIZE];
+        int[] actualPixels = new int[SIZE * SIZE];
+        expected.getPixels(expectedPixels, 0, SIZE, 0, 0, SIZE, SIZE);
+        actual.getPixels(actualPixels, 0, SIZE, 0, 0, SIZE, SIZE);
+        for (int i = 0; i < expectedPixels.length; i++) {
+            int difference = Math.max(
+                    Math.abs(Color.alpha(expectedPixels[i]) - Color.alpha(actualPixels[i])),
+                    Math.abs(Color.red(expectedPixels[i]) - Color.red(actualPixels[i])));
+            assertTrue("Pixel " + (i % SIZE) + "," + (i / SIZE) + " differs by " + difference,
+                    difference <= MAX_CHANNEL_DIFFERENCE);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.graphics;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.ColorSpace;
+import android.graphics.HardwareRenderer;
+import android.graphics.PixelFormat;
+import android.graphics.RenderNode;
+import android.hardware.HardwareBuffer;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SdkSuppress;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.LauncherSettings;
+import com.android.launcher3.R;
+import com.android.launcher3.icons.BitmapInfo;
+import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.Themes;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for the split of {@link LauncherPreviewRenderer} into resolving records off the UI thread
+ * and binding them, and for its software bitmap rendering against the hardware rendered preview.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LauncherPreviewRendererTest {
+
+    private static final int MAX_CHANNEL_DIFFERENCE = 16;
+    private static final float MAX_DIFFERENT_PIXELS_RATIO = 0.02f;
+
+    private Context mContext;
+    private InvariantDeviceProfile mIdp;
+    private BgDataModel mDataModel;
+    private int mNextId = 1;
+
+    @Before
+    public void setUp() {
+        Context context = getApplicationContext();
+        mContext = new ContextThemeWrapper(context, Themes.getActivityThemeRes(context));
+        mIdp = InvariantDeviceProfile.INSTANCE.get(mContext);
+
+        mDataModel = new BgDataModel();
+        addApp(CONTAINER_DESKTOP, 0, 0, 1, Color.RED);
+        addApp(CONTAINER_DESKTOP, 0, 1, 1, Color.GREEN);
+        addApp(CONTAINER_HOTSEAT, 0, 0, 0, Color.BLUE);
+        // Not on a previewed screen
+        addApp(CONTAINER_DESKTOP, 3, 0, 1, Color.YELLOW);
+
+        FolderInfo folder = new FolderInfo();
+        setPosition(folder, CONTAINER_DESKTOP, 0, 2, 1);
+        mDataModel.addItem(mContext, folder, false);
+        folder.add(createApp(folder.id, 0, 0, 0, Color.CYAN), false);
+        folder.add(createApp(folder.id, 0, 1, 0, Color.MAGENTA), false);
+    }
+
+    @Test
+    public void resolve_onlyKeepsPreviewedItems() {
+        PreviewRenderRecords records =
+                PreviewRenderRecords.resolve(mContext, mIdp, mDataModel, null);
+
+        assertEquals(4, records.workspaceItems.size());
+        for (ItemInfo info : records.workspaceItems) {
+            assertTrue(info.container == CONTAINER_HOTSEAT || info.screenId == 0);
+        }
+        assertTrue(records.widgets.isEmpty());
+        assertTrue(records.predictedItems.isEmpty());
+    }
+
+    /**
+     * Compares the software drawn bitmap with the preview as the surface shows it: the view
+     * populated from the model and drawn by the hardware renderer.
+     */
+    @Test
+    @SdkSuppress(minSdkVersion = Build.VERSION_CODES.Q)
+    public void renderedBitmap_matchesHardwareRenderedView() throws Exception {
+        Bitmap viewBitmap = MAIN_EXECUTOR.submit(() -> {
+            LauncherPreviewRenderer renderer = createRenderer();
+            Bitmap bitmap = drawWithHardwareRenderer(renderer.getRenderedView(mDataModel, null));
+            renderer.destroy();
+            return bitmap;
+        }).get();
+        PreviewRenderRecords records =
+                PreviewRenderRecords.resolve(mContext, mIdp, mDataModel, null);
+        Bitmap renderedBitmap = MAIN_EXECUTOR.submit(() -> {
+            LauncherPreviewRenderer renderer = createRenderer();
+            Bitmap bitmap = renderer.getRenderedBitmap(records);
+            renderer.destroy();
+            return bitmap;
+        }).get();
+
+        assertEquals(viewBitmap.getWidth(), renderedBitmap.getWidth());
+        assertEquals(viewBitmap.getHeight(), renderedBitmap.getHeight());
+        // Make sure that the items were actually drawn
+        assertFalse(renderedBitmap.sameAs(Bitmap.createBitmap(renderedBitmap.getWidth(),
+                renderedBitmap.getHeight(), Bitmap.Config.ARGB_8888)));
+        // The rasterizers only differ on antialiased edges, like the text of the titles
+        int width = renderedBitmap.getWidth();
+        int height = renderedBitmap.getHeight();
+        int[] expected = new int[width * height];
+        int[] actual = new int[width * height];
+        viewBitmap.getPixels(expected, 0, width, 0, 0, width, height);
+        renderedBitmap.getPixels(actual, 0, width, 0, 0, width, height);
+        int differentPixels = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (channelDifference(expected[i], actual[i]) > MAX_CHANNEL_DIFFERENCE) {
+                differentPixels++;
+            }
+        }
+        assertTrue(differentPixels + " different pixels",
+                differentPixels <= expected.length * MAX_DIFFERENT_PIXELS_RATIO);
+    }
+
+    private LauncherPreviewRenderer createRenderer() {
+        // Without insets and with a static smartspace, so that renders are identical
+        LauncherPreviewRenderer renderer =
+                new LauncherPreviewRenderer(mContext, mIdp, null, true /* dummyInsets */);
+        renderer.setWorkspaceSearchContainer(R.layout.smartspace_widget_placeholder);
+        return renderer;
+    }
+
+    /**
+     * Draws {@param view} like a surface hosting it, with the hardware renderer.
+     */
+    @TargetApi(Build.VERSION_CODES.Q)
+    private static Bitmap drawWithHardwareRenderer(View view) {
+        int width = view.getMeasuredWidth();
+        int height = view.getMeasuredHeight();
+        RenderNode node = new RenderNode("preview");
+        node.setPosition(0, 0, width, height);
+        view.draw(node.beginRecording());
+        node.endRecording();
+
+        try (ImageReader reader = ImageReader.newInstance(width, height, PixelFormat.RGBA_8888, 1,
+                HardwareBuffer.USAGE_GPU_SAMPLED_IMAGE | HardwareBuffer.USAGE_GPU_COLOR_OUTPUT)) {
+            HardwareRenderer renderer = new HardwareRenderer();
+            try {
+                renderer.setSurface(reader.getSurface());
+                renderer.setContentRoot(node);
+                renderer.createRenderRequest().setWaitForPresent(true).syncAndDraw();
+                try (Image image = reader.acquireNextImage();
+                        HardwareBuffer buffer = image.getHardwareBuffer()) {
+                    return Bitmap.wrapHardwareBuffer(buffer, ColorSpace.get(ColorSpace.Named.SRGB))
+                            .copy(Bitmap.Config.ARGB_8888, false);
+                }
+            } finally {
+                renderer.destroy();
+            }
+        }
+    }
+
+    private static int channelDifference(int color1, int color2) {
+        return Math.max(
+                Math.max(Math.abs(Color.alpha(color1) - Color.alpha(color2)),
+                        Math.abs(Color.red(color1) - Color.red(color2))),
+                Math.max(Math.abs(Color.green(color1) - Color.green(color2)),
+                        Math.abs(Color.blue(color1) - Color.blue(color2))));
+    }
+
+    private void addApp(int container, int screenId, int cellX, int cellY, int color) {
+        mDataModel.addItem(mContext, createApp(container, screenId, cellX, cellY, color), false);
+    }
+
+    private WorkspaceItemInfo createApp(
+            int container, int screenId, int cellX, int cellY, int color) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        setPosition(info, container, screenId, cellX, cellY);
+        info.itemType = LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+        info.title = "App " + info.id;
+        info.intent = new Intent(Intent.ACTION_MAIN).setPackage("com.test.preview" + info.id);
+        Bitmap icon = Bitmap.createBitmap(mIdp.iconBitmapSize, mIdp.iconBitmapSize,
+                Bitmap.Config.ARGB_8888);
+        icon.eraseColor(color);
+        info.bitmap = BitmapInfo.of(icon, color);
+        return info;
+    }
+
+    private void setPosition(ItemInfo info, int container, int screenId, int cellX, int cellY) {
+        info.id = mNextId++;
+        info.container = container;
+        info.screenId = screenId;
+        info.cellX = cellX;
+        info.cellY = cellY;
+        info.spanX = info.spanY = 1;
+    }
+}
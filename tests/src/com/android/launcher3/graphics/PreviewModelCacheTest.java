@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.graphics;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.launcher3.LauncherSettings.Favorites.PREVIEW_CONTENT_URI;
+import static com.android.launcher3.LauncherSettings.Favorites.PREVIEW_TABLE_NAME;
+import static com.android.launcher3.provider.LauncherDbUtils.dropTable;
+import static com.android.launcher3.util.LauncherModelHelper.APP_ICON;
+import static com.android.launcher3.util.LauncherModelHelper.DESKTOP;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.spy;
+
+import android.content.ComponentName;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.LauncherSettings;
+import com.android.launcher3.graphics.PreviewModelCache.PreviewModel;
+import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.model.AllAppsList;
+import com.android.launcher3.model.BaseModelUpdateTask;
+import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.LauncherModelHelper;
+import com.android.launcher3.util.LauncherModelHelper.TestLauncherProvider;
+import com.android.launcher3.util.ReflectionHelpers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.Invocation;
+
+import java.util.Collections;
+import java.util.List;
+
+import app.lawnchair.DeviceProfileOverrides;
+
+/**
+ * Tests for {@link PreviewModelCache}, counting the preview table queries made to the launcher
+ * provider and the icons loaded from the icon cache by repeated previews.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PreviewModelCacheTest {
+
+    private static final int ITEM_COUNT = 5;
+
+    private CountingProvider mProvider;
+    private LauncherModelHelper mModelHelper;
+    private IconCache mIconCache;
+    private LauncherAppState mApp;
+
+    private InvariantDeviceProfile mGrid1;
+    private InvariantDeviceProfile mGrid2;
+    private PreviewModelCache mCache;
+
+    @Before
+    public void setUp() {
+        mProvider = new CountingProvider();
+        mModelHelper = new LauncherModelHelper(mProvider);
+        setLiveModelLoaded(true);
+
+        // Stands for the migration of the workspace into the preview table, as the previewed
+        // grids don't exist on the device
+        SQLiteDatabase db = mProvider.getDb();
+        dropTable(db, PREVIEW_TABLE_NAME);
+        LauncherSettings.Favorites.addTableToDb(db, mModelHelper.defaultProfileId, false,
+                PREVIEW_TABLE_NAME);
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            addPreviewItem(i + 1, i);
+        }
+
+        // The preview is loaded with the real loader task, through a spy of the icon cache
+        LauncherAppState app = LauncherAppState.getInstance(mModelHelper.sandboxContext);
+        mIconCache = spy(app.getIconCache());
+        mApp = spy(app);
+        doReturn(mIconCache).when(mApp).getIconCache();
+
+        mGrid1 = createGrid(4, 4);
+        mGrid2 = createGrid(6, 6);
+        mCache = new PreviewModelCache(idp -> PreviewModelCache.loadPreviewModel(mApp),
+                () -> mModelHelper.getModel().getWorkspaceVersion());
+    }
+
+    @After
+    public void tearDown() {
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void repeatedPreviews_queryAndLoadIconsOnce() {
+        PreviewModel model = mCache.getPreviewModel(mGrid1);
+        int iconLoads = countIconLoads();
+
+        assertEquals(ITEM_COUNT, model.dataModel.workspaceItems.size());
+        assertEquals(1, mProvider.previewQueries);
+        assertTrue(iconLoads >= ITEM_COUNT);
+
+        assertSame(model, mCache.getPreviewModel(mGrid1));
+        assertSame(model, mCache.getPreviewModel(mGrid1));
+        assertEquals(1, mProvider.previewQueries);
+        assertEquals(iconLoads, countIconLoads());
+    }
+
+    @Test
+    public void togglingGrids_rendersFromMemory() {
+        PreviewModel model1 = mCache.getPreviewModel(mGrid1);
+        int iconLoads = countIconLoads();
+        PreviewModel model2 = mCache.getPreviewModel(mGrid2);
+        assertNotSame(model1, model2);
+        for (int i = 0; i < 3; i++) {
+            assertSame(model1, mCache.getPreviewModel(mGrid1));
+            assertSame(model2, mCache.getPreviewModel(mGrid2));
+        }
+
+        // Both grids are loaded from the same preview table
+        assertEquals(2, mProvider.previewQueries);
+        assertEquals(2 * iconLoads, countIconLoads());
+    }
+
+    @Test
+    public void addedLiveItem_reloadsPreview() throws Exception {
+        PreviewModel model = mCache.getPreviewModel(mGrid1);
+        mCache.getPreviewModel(mGrid2);
+
+        mModelHelper.executeTaskForTest(new BaseModelUpdateTask() {
+            @Override
+            public void execute(LauncherAppState app, BgDataModel dataModel,
+                    AllAppsList apps) {
+                dataModel.addItem(app.getContext(), newLiveItem(), false);
+            }
+        });
+        assertNotSame(model, mCache.getPreviewModel(mGrid1));
+        mCache.getPreviewModel(mGrid1);
+
+        // Only the previewed grid is loaded again
+        assertEquals(3, mProvider.previewQueries);
+    }
+
+    @Test
+    public void updatedLiveItem_reloadsPreview() throws Exception {
+        PreviewModel model = mCache.getPreviewModel(mGrid1);
+        int iconLoads = countIconLoads();
+
+        // A new title or icon, like after an icon cache update
+        mModelHelper.executeTaskForTest(new BaseModelUpdateTask() {
+            @Override
+            public void execute(LauncherAppState app, BgDataModel dataModel,
+                    AllAppsList apps) {
+                bindUpdatedWorkspaceItems(Collections.singletonList(newLiveItem()));
+            }
+        });
+
+        assertNotSame(model, mCache.getPreviewModel(mGrid1));
+        assertEquals(2, mProvider.previewQueries);
+        assertEquals(2 * iconLoads, countIconLoads());
+    }
+
+    @Test
+    public void clear_reloadsPreview() {
+        PreviewModel model = mCache.getPreviewModel(mGrid1);
+
+        mCache.clear();
+
+        assertNotSame(model, mCache.getPreviewModel(mGrid1));
+        assertEquals(2, mProvider.previewQueries);
+    }
+
+    @Test
+    public void liveModelNotLoaded_isNotCached() {
+        setLiveModelLoaded(false);
+        PreviewModel model = mCache.getPreviewModel(mGrid1);
+        int iconLoads = countIconLoads();
+
+        assertNotSame(model, mCache.getPreviewModel(mGrid1));
+        assertEquals(2, mProvider.previewQueries);
+        assertEquals(2 * iconLoads, countIconLoads());
+    }
+
+    private void setLiveModelLoaded(boolean loaded) {
+        ReflectionHelpers.setField(mModelHelper.getModel(), "mModelLoaded", loaded);
+    }
+
+    private void addPreviewItem(int id, int cellX) {
+        ContentValues values = new ContentValues();
+        values.put(LauncherSettings.Favorites._ID, id);
+        values.put(LauncherSettings.Favorites.CONTAINER, DESKTOP);
+        values.put(LauncherSettings.Favorites.SCREEN, 0);
+        values.put(LauncherSettings.Favorites.CELLX, cellX);
+        values.put(LauncherSettings.Favorites.CELLY, 0);
+        values.put(LauncherSettings.Favorites.SPANX, 1);
+        values.put(LauncherSettings.Favorites.SPANY, 1);
+        values.put(LauncherSettings.Favorites.PROFILE_ID, mModelHelper.defaultProfileId);
+        values.put(LauncherSettings.Favorites.ITEM_TYPE, APP_ICON);
+        values.put(LauncherSettings.Favorites.INTENT, AppInfo.makeLaunchIntent(
+                new ComponentName(TEST_PACKAGE, TEST_ACTIVITY)).toUri(0));
+        mModelHelper.sandboxContext.getContentResolver().insert(PREVIEW_CONTENT_URI, values);
+    }
+
+    private static WorkspaceItemInfo newLiveItem() {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.id = 100;
+        info.container = DESKTOP;
+        info.intent = AppInfo.makeLaunchIntent(new ComponentName(TEST_PACKAGE, TEST_ACTIVITY));
+        return info;
+    }
+
+    /**
+     * Returns the number of icons requested from the icon cache so far.
+     */
+    private int countIconLoads() {
+        int count = 0;
+        for (Invocation invocation : mockingDetails(mIconCache).getInvocations()) {
+            String name = invocation.getMethod().getName();
+            if (name.equals("getTitlesAndIconsInBulk")) {
+                count += ((List<?>) invocation.getArgument(0)).size();
+            } else if (name.equals("getTitleAndIcon") || name.equals("getTitleAndIconForApp")
+                    || name.equals("getShortcutIcon")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static InvariantDeviceProfile createGrid(int numColumns, int numRows) {
+        Context context = getApplicationContext();
+        InvariantDeviceProfile idp = new InvariantDeviceProfile(context,
+                DeviceProfileOverrides.INSTANCE.get(context).getGridInfo());
+        idp.numColumns = numColumns;
+        idp.numRows = numRows;
+        idp.dbFile = "launcher_" + numColumns + "_by_" + numRows + ".db";
+        return idp;
+    }
+
+    /**
+     * Counts the queries of the preview table.
+     */
+    private static class CountingProvider extends TestLauncherProvider {
+
+        volatile int previewQueries;
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection,
+                String[] selectionArgs, String sortOrder) {
+            if (PREVIEW_TABLE_NAME.equals(uri.getPathSegments().get(0))) {
+                previewQueries++;
+            }
+            return super.query(uri, projection, selection, selectionArgs, sortOrder);
+        }
+    }
+}
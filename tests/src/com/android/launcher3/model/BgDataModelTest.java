@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Process;
+import android.os.UserHandle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the item indices and snapshots of {@link BgDataModel}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class BgDataModelTest {
+
+    private LauncherModelHelper mModelHelper;
+    private Context mContext;
+    private BgDataModel mModel;
+    private ModelWriter mWriter;
+    private UserHandle mUser;
+
+    @Before
+    public void setup() {
+        mModelHelper = new LauncherModelHelper();
+        mContext = mModelHelper.sandboxContext;
+        mModel = mModelHelper.getBgDataModel();
+        mWriter = mModelHelper.getModel().getWriter(false, false, null);
+        mUser = Process.myUserHandle();
+    }
+
+    @After
+    public void tearDown() {
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void forAllWorkspaceItemInfos_byPackage_tracksAddAndRemove() {
+        WorkspaceItemInfo a1 = newItem(1, "a", 0);
+        WorkspaceItemInfo a2 = newItem(2, "a", 1);
+        WorkspaceItemInfo b = newItem(3, "b", 1);
+        mModel.addItem(mContext, a1, false);
+        mModel.addItem(mContext, b, false);
+        assertEquals(Collections.singletonList(a1), getItems("a"));
+
+        mModel.addItem(mContext, a2, false);
+        assertEquals(2, getItems("a").size());
+        assertTrue(getItems("a").contains(a2));
+
+        mModel.removeItem(mContext, a1);
+        assertEquals(Collections.singletonList(a2), getItems("a"));
+        assertEquals(Collections.singletonList(b), getItems("b"));
+        assertTrue(getItems("c").isEmpty());
+    }
+
+    @Test
+    public void forAllWorkspaceItemInfos_byPackage_tracksModifiedItems() throws Exception {
+        WorkspaceItemInfo item = newItem(1, "a", 0);
+        mModel.addItem(mContext, item, false);
+        assertEquals(Collections.singletonList(item), getItems("a"));
+
+        // Like a restored item, whose intent is replaced in place before it is written
+        item.intent = newIntent("b");
+        mWriter.modifyItemInDatabase(item, CONTAINER_DESKTOP, 0, 1, 0, 1, 1);
+        waitForModelWrites();
+
+        assertTrue(getItems("a").isEmpty());
+        assertEquals(Collections.singletonList(item), getItems("b"));
+    }
+
+    @Test
+    public void collectWorkspaceScreens_tracksMovedItems() throws Exception {
+        WorkspaceItemInfo item = newItem(1, "a", 3);
+        mModel.addItem(mContext, item, false);
+        assertTrue(mModel.collectWorkspaceScreens().contains(3));
+
+        mWriter.moveItemInDatabase(item, CONTAINER_DESKTOP, 5, 0, 0);
+        waitForModelWrites();
+
+        assertTrue(mModel.collectWorkspaceScreens().contains(5));
+        assertFalse(mModel.collectWorkspaceScreens().contains(3));
+    }
+
+    @Test
+    public void getSnapshot_reusedUntilModelChanges() {
+        WorkspaceItemInfo item = newItem(1, "a", 0);
+        mModel.addItem(mContext, item, false);
+        BgDataModel.Snapshot snapshot = mModel.getSnapshot();
+        assertSame(snapshot, mModel.getSnapshot());
+        assertEquals(Collections.singletonList(item), snapshot.workspaceItems);
+
+        mModel.removeItem(mContext, item);
+        BgDataModel.Snapshot newSnapshot = mModel.getSnapshot();
+        assertNotSame(snapshot, newSnapshot);
+        assertTrue(newSnapshot.version > snapshot.version);
+        assertTrue(newSnapshot.workspaceItems.isEmpty());
+        // Older snapshots are not affected by later changes
+        assertEquals(Collections.singletonList(item), snapshot.workspaceItems);
+    }
+
+    private List<WorkspaceItemInfo> getItems(String packageName) {
+        List<WorkspaceItemInfo> items = new ArrayList<>();
+        synchronized (mModel) {
+            mModel.forAllWorkspaceItemInfos(mUser, packageName, items::add);
+        }
+        return items;
+    }
+
+    /**
+     * Waits for the model updates which {@link ModelWriter} posts after writing the database.
+     */
+    private static void waitForModelWrites() throws Exception {
+        MODEL_EXECUTOR.submit(() -> { }).get();
+    }
+
+    private WorkspaceItemInfo newItem(int id, String packageName, int screenId) {
+        WorkspaceItemInfo item = new WorkspaceItemInfo();
+        item.id = id;
+        item.itemType = ITEM_TYPE_APPLICATION;
+        item.container = CONTAINER_DESKTOP;
+        item.screenId = screenId;
+        item.user = mUser;
+        item.intent = newIntent(packageName);
+        return item;
+    }
+
+    private static Intent newIntent(String packageName) {
+        return new Intent().setComponent(new ComponentName(packageName, packageName + ".A"));
+    }
+}
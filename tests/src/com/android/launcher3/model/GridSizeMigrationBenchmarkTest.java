@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.provider.LauncherDbUtils.dropTable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.graphics.Point;
+import android.os.Bundle;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.LauncherSettings;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Measures {@link GridSizeMigrationTaskV2} on a large synthetic layout, migrated between 4x5,
+ * 5x5 and 6x6 grids. Reports the wall time and the number of SQL statements of each migration,
+ * logged and sent as instrumentation status, so that they can be collected from
+ * {@code am instrument -r}.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class GridSizeMigrationBenchmarkTest {
+
+    private static final String TAG = "GridMigrationBenchmark";
+
+    private static final int SCREEN_COUNT = 20;
+    // 25 items per screen, where the apps and folders fit in the smallest grid
+    private static final int APPS_PER_SCREEN = 17;
+    private static final int FOLDERS_PER_SCREEN = 2;
+    private static final int FOLDER_SIZE = 3;
+    private static final int ITEM_COUNT =
+            SCREEN_COUNT * (APPS_PER_SCREEN + FOLDERS_PER_SCREEN * (1 + FOLDER_SIZE));
+
+    private static final Point[] GRIDS = {new Point(4, 5), new Point(5, 5), new Point(6, 6)};
+
+    private static final int WARM_UP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+
+    private LauncherModelHelper mModelHelper;
+    private Context mContext;
+    private SQLiteDatabase mDb;
+    private InvariantDeviceProfile mIdp;
+    private long mUserSerial;
+
+    private final HashSet<String> mValidPackages = new HashSet<>();
+
+    @Before
+    public void setUp() {
+        mModelHelper = new LauncherModelHelper();
+        mContext = mModelHelper.sandboxContext;
+        mDb = mModelHelper.provider.getDb();
+        mIdp = InvariantDeviceProfile.INSTANCE.get(mContext);
+        mUserSerial = UserCache.INSTANCE.get(mContext).getSerialNumberForUser(
+                Process.myUserHandle());
+    }
+
+    @After
+    public void tearDown() {
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void benchmarkMigration() {
+        assertEquals(500, ITEM_COUNT);
+        Bundle results = new Bundle();
+        for (Point src : GRIDS) {
+            for (Point dest : GRIDS) {
+                if (src.equals(dest)) {
+                    continue;
+                }
+                List<Long> times = new ArrayList<>();
+                int statements = 0;
+                for (int i = 0; i < WARM_UP_RUNS + MEASURED_RUNS; i++) {
+                    prepareTables(src);
+                    long start = System.nanoTime();
+                    statements = migrate(dest);
+                    if (i >= WARM_UP_RUNS) {
+                        times.add(System.nanoTime() - start);
+                    }
+                    // Make sure the whole layout was actually migrated
+                    assertEquals(ITEM_COUNT, DatabaseUtils.queryNumEntries(
+                            mDb, LauncherSettings.Favorites.TABLE_NAME));
+                }
+
+                String label = src.x + "x" + src.y + "_to_" + dest.x + "x" + dest.y;
+                double time = median(times) / 1e6;
+                Log.i(TAG, String.format("%-20s %8.2f ms %6d statements",
+                        label, time, statements));
+                results.putDouble(label + "_ms", time);
+                results.putInt(label + "_statements", statements);
+            }
+        }
+        getInstrumentation().sendStatus(0, results);
+    }
+
+    /**
+     * Runs the migration from the temporary table into the empty favorites table.
+     * @return the number of SQL statements run
+     */
+    private int migrate(Point dest) {
+        GridSizeMigrationTaskV2.ItemVerifier verifier =
+                new GridSizeMigrationTaskV2.ItemVerifier(mValidPackages);
+        GridSizeMigrationTaskV2.DbReader srcReader = new GridSizeMigrationTaskV2.DbReader(mDb,
+                LauncherSettings.Favorites.TMP_TABLE, mContext, verifier);
+        GridSizeMigrationTaskV2.DbReader destReader = new GridSizeMigrationTaskV2.DbReader(mDb,
+                LauncherSettings.Favorites.TABLE_NAME, mContext, verifier);
+        GridSizeMigrationTaskV2 task = new GridSizeMigrationTaskV2(mContext, mDb, srcReader,
+                destReader, mIdp.numDatabaseHotseatIcons, dest);
+        assertTrue(task.migrate(mIdp));
+        return task.getStatementCount();
+    }
+
+    /**
+     * Fills the temporary table with {@link #SCREEN_COUNT} screens laid out for {@param grid},
+     * and empties the favorites table.
+     */
+    private void prepareTables(Point grid) {
+        mDb.delete(LauncherSettings.Favorites.TABLE_NAME, null, null);
+        dropTable(mDb, LauncherSettings.Favorites.TMP_TABLE);
+        LauncherSettings.Favorites.addTableToDb(mDb, mUserSerial, false,
+                LauncherSettings.Favorites.TMP_TABLE);
+        mValidPackages.clear();
+
+        mDb.beginTransaction();
+        try {
+            int id = 0;
+            for (int screen = 0; screen < SCREEN_COUNT; screen++) {
+                int cell = 0;
+                for (int i = 0; i < APPS_PER_SCREEN; i++, cell++) {
+                    insertApp(++id, CONTAINER_DESKTOP, screen, grid, cell);
+                }
+                for (int i = 0; i < FOLDERS_PER_SCREEN; i++, cell++) {
+                    int folderId = ++id;
+                    ContentValues values = createValues(folderId, CONTAINER_DESKTOP, screen,
+                            grid, cell);
+                    values.put(LauncherSettings.Favorites.ITEM_TYPE,
+                            LauncherSettings.Favorites.ITEM_TYPE_FOLDER);
+                    mDb.insert(LauncherSettings.Favorites.TMP_TABLE, null, values);
+                    for (int j = 0; j < FOLDER_SIZE; j++) {
+                        insertApp(++id, folderId, 0, grid, j);
+                    }
+                }
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    private void insertApp(int id, int container, int screen, Point grid, int cell) {
+        String packageName = "com.android.launcher3.migration" + id;
+        mValidPackages.add(packageName);
+        ContentValues values = createValues(id, container, screen, grid, cell);
+        values.put(LauncherSettings.Favorites.ITEM_TYPE,
+                LauncherSettings.Favorites.ITEM_TYPE_APPLICATION);
+        values.put(LauncherSettings.Favorites.INTENT,
+                new Intent(Intent.ACTION_MAIN).setPackage(packageName).toUri(0));
+        mDb.insert(LauncherSettings.Favorites.TMP_TABLE, null, values);
+    }
+
+    private ContentValues createValues(int id, int container, int screen, Point grid, int cell) {
+        ContentValues values = new ContentValues();
+        values.put(LauncherSettings.Favorites._ID, id);
+        values.put(LauncherSettings.Favorites.CONTAINER, container);
+        values.put(LauncherSettings.Favorites.SCREEN, screen);
+        values.put(LauncherSettings.Favorites.CELLX, cell % grid.x);
+        values.put(LauncherSettings.Favorites.CELLY, cell / grid.x);
+        values.put(LauncherSettings.Favorites.SPANX, 1);
+        values.put(LauncherSettings.Favorites.SPANY, 1);
+        values.put(LauncherSettings.Favorites.PROFILE_ID, mUserSerial);
+        return values;
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+}
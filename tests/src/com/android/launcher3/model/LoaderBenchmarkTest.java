@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.content.pm.PackageInstaller;
+import android.content.pm.PackageInstaller.SessionParams;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.TimingLogger;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import com.android.launcher3.BubbleTextView;
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.LauncherModel;
+import com.android.launcher3.LauncherSettings;
+import com.android.launcher3.R;
+import com.android.launcher3.allapps.AllAppsStore;
+import com.android.launcher3.folder.FolderIcon;
+import com.android.launcher3.icons.BitmapInfo;
+import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.model.BgDataModel.Callbacks;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.LauncherAppWidgetInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.ActivityContextWrapper;
+import com.android.launcher3.util.GridOccupancy;
+import com.android.launcher3.util.LauncherLayoutBuilder;
+import com.android.launcher3.util.LauncherModelHelper;
+import com.android.launcher3.util.ReflectionHelpers;
+import com.android.launcher3.util.Themes;
+import com.android.launcher3.widget.PendingAppWidgetHostView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures {@link LoaderTask} on a large synthetic layout, reporting the wall time and the
+ * allocations of each loader phase. Results are logged and sent as instrumentation status, so
+ * that they can be collected from {@code am instrument -r}.
+ *
+ * The loader binds to callbacks which create the views of the workspace items like the
+ * launcher does, without adding them to a workspace. The main thread time of each bind is
+ * reported separately, as the loader phases only post them.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class LoaderBenchmarkTest {
+
+    private static final String TAG = "LoaderBenchmark";
+
+    // Matches the grid set up by LauncherModelHelper#setupDefaultLayoutProvider
+    private static final int GRID_SIZE = 4;
+    private static final int SCREEN_COUNT = 10;
+    private static final int WIDGET_COUNT = 30;
+    private static final int FOLDER_COUNT = 50;
+    private static final int FOLDER_SIZE = 8;
+    private static final int ALL_APPS_COUNT = 1000;
+
+    private static final int WARM_UP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+
+    private static final String PENDING_WIDGET_PACKAGE = "com.test.pending";
+
+    private LauncherModelHelper mModelHelper;
+    private PackageInstaller mPackageInstaller;
+    private int mSessionId;
+    private final PhaseRecorder mRecorder = new PhaseRecorder();
+
+    @Before
+    public void setUp() throws Exception {
+        mModelHelper = new LauncherModelHelper();
+
+        // Add a placeholder session so that the widgets are kept as pending widgets
+        SessionParams params = new SessionParams(SessionParams.MODE_FULL_INSTALL);
+        params.setAppPackageName(PENDING_WIDGET_PACKAGE);
+        params.setAppIcon(BitmapInfo.LOW_RES_ICON);
+        mPackageInstaller = mModelHelper.sandboxContext.getPackageManager().getPackageInstaller();
+        mSessionId = mPackageInstaller.createSession(params);
+
+        stubAllApps();
+        mModelHelper.setupDefaultLayoutProvider(createLayout());
+    }
+
+    @After
+    public void tearDown() {
+        mPackageInstaller.abandonSession(mSessionId);
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void benchmarkLoadAndBind() throws Exception {
+        // The first load also imports the layout into the db
+        mModelHelper.loadModelSync();
+        InflatingCallbacks callbacks = MAIN_EXECUTOR.submit(InflatingCallbacks::new).get();
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            runLoader(callbacks);
+        }
+
+        mRecorder.reset();
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            mRecorder.startRun();
+            runLoader(callbacks);
+            mRecorder.endRun();
+        }
+
+        // Make sure the whole layout was actually loaded and bound
+        BgDataModel dataModel = mModelHelper.getBgDataModel();
+        assertEquals(FOLDER_COUNT, dataModel.folders.size());
+        assertEquals(WIDGET_COUNT, dataModel.appWidgets.size());
+        assertTrue(mModelHelper.getAllAppsList().data.size() >= ALL_APPS_COUNT);
+        assertEquals(dataModel.workspaceItems.size() + WIDGET_COUNT, callbacks.mBoundItems);
+        assertTrue(callbacks.mAppsStore.getApps().length >= ALL_APPS_COUNT);
+
+        mRecorder.report();
+    }
+
+    /**
+     * Runs a loader task reporting its phases to {@link #mRecorder}, like
+     * {@link LauncherModel#forceReload()} would, and waits for it to be bound.
+     */
+    private void runLoader(Callbacks callbacks) throws Exception {
+        LauncherModel model = mModelHelper.getModel();
+        LauncherAppState app = LauncherAppState.getInstance(mModelHelper.sandboxContext);
+        BgDataModel dataModel = mModelHelper.getBgDataModel();
+        AllAppsList allAppsList = mModelHelper.getAllAppsList();
+        LoaderTask task = new LoaderTask(app, allAppsList, dataModel,
+                ReflectionHelpers.getField(model, "mModelDelegate"),
+                new LoaderResults(app, dataModel, allAppsList, new Callbacks[] { callbacks })) {
+            @Override
+            protected void logASplit(TimingLogger logger, String label) {
+                super.logASplit(logger, label);
+                mRecorder.accept(label);
+            }
+        };
+        // The model only lets its current loader task run
+        ReflectionHelpers.setField(model, "mLoaderTask", task);
+        callbacks.mBoundItems = 0;
+        MODEL_EXECUTOR.submit(task).get();
+        // The loader posts its binds to the main thread
+        MAIN_EXECUTOR.submit(() -> { }).get();
+    }
+
+    /**
+     * Fills {@link #SCREEN_COUNT} screens with widgets, folders and apps, and the hotseat.
+     */
+    private static LauncherLayoutBuilder createLayout() {
+        LauncherLayoutBuilder builder = new LauncherLayoutBuilder();
+        int[] cell = new int[2];
+        int widgetIndex = 0;
+        int folderIndex = 0;
+        for (int screen = 0; screen < SCREEN_COUNT; screen++) {
+            GridOccupancy occupancy = new GridOccupancy(GRID_SIZE, GRID_SIZE);
+            int widgetEnd = WIDGET_COUNT * (screen + 1) / SCREEN_COUNT;
+            for (; widgetIndex < widgetEnd && occupancy.findVacantCell(cell, 2, 1);
+                    widgetIndex++) {
+                occupancy.markCells(cell[0], cell[1], 2, 1, true);
+                builder.atWorkspace(cell[0], cell[1], screen).putWidget(
+                        PENDING_WIDGET_PACKAGE, "PlaceholderWidget" + widgetIndex, 2, 1);
+            }
+            int folderEnd = FOLDER_COUNT * (screen + 1) / SCREEN_COUNT;
+            for (; folderIndex < folderEnd && occupancy.findVacantCell(cell, 1, 1);
+                    folderIndex++) {
+                occupancy.markCells(cell[0], cell[1], 1, 1, true);
+                LauncherLayoutBuilder.FolderBuilder folder = builder
+                        .atWorkspace(cell[0], cell[1], screen)
+                        .putFolder("Folder " + folderIndex);
+                for (int i = 0; i < FOLDER_SIZE; i++) {
+                    folder.addApp(TEST_PACKAGE, TEST_ACTIVITY);
+                }
+            }
+            while (occupancy.findVacantCell(cell, 1, 1)) {
+                occupancy.markCells(cell[0], cell[1], 1, 1, true);
+                builder.atWorkspace(cell[0], cell[1], screen).putApp(TEST_PACKAGE, TEST_ACTIVITY);
+            }
+        }
+        assertEquals(WIDGET_COUNT, widgetIndex);
+        assertEquals(FOLDER_COUNT, folderIndex);
+
+        for (int rank = 0; rank < GRID_SIZE; rank++) {
+            builder.atHotseat(rank).putApp(TEST_PACKAGE, TEST_ACTIVITY);
+        }
+        return builder;
+    }
+
+    /**
+     * Makes all apps return {@link #ALL_APPS_COUNT} activities, split across the profiles of the
+     * device. The activities are copies of a real one with distinct component names, so that
+     * icons and package info still resolve.
+     */
+    private void stubAllApps() {
+        LauncherApps launcherApps = mModelHelper.sandboxContext.spyService(LauncherApps.class);
+        List<LauncherActivityInfo> realApps =
+                launcherApps.getActivityList(null, Process.myUserHandle());
+        assertFalse(realApps.isEmpty());
+        LauncherActivityInfo template = realApps.get(0);
+        String packageName = template.getComponentName().getPackageName();
+
+        List<UserHandle> users = UserCache.INSTANCE.get(mModelHelper.sandboxContext)
+                .getUserProfiles();
+        int start = 0;
+        for (int u = 0; u < users.size(); u++) {
+            UserHandle user = users.get(u);
+            int end = ALL_APPS_COUNT * (u + 1) / users.size();
+            List<LauncherActivityInfo> apps = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                LauncherActivityInfo app = mock(LauncherActivityInfo.class, delegatesTo(template));
+                doReturn(new ComponentName(packageName, packageName + ".Activity" + i))
+                        .when(app).getComponentName();
+                doReturn("App " + i).when(app).getLabel();
+                doReturn(user).when(app).getUser();
+                apps.add(app);
+            }
+            doReturn(apps).when(launcherApps).getActivityList(null, user);
+            start = end;
+        }
+    }
+
+    /**
+     * Creates the views of the bound items, like the launcher does when it binds them.
+     */
+    private class InflatingCallbacks implements Callbacks {
+
+        private final ActivityContextWrapper mActivity;
+        private final ViewGroup mParent;
+        private final IconCache mIconCache =
+                LauncherAppState.getInstance(mModelHelper.sandboxContext).getIconCache();
+        private final AllAppsStore mAppsStore = new AllAppsStore();
+        private int mBoundItems;
+
+        InflatingCallbacks() {
+            Context context = getApplicationContext();
+            mActivity = new ActivityContextWrapper(context);
+            mActivity.setTheme(Themes.getActivityThemeRes(context));
+            mParent = new FrameLayout(mActivity);
+        }
+
+        @Override
+        public void bindItems(List<ItemInfo> items, boolean forceAnimateIcons) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (ItemInfo item : items) {
+                switch (item.itemType) {
+                    case LauncherSettings.Favorites.ITEM_TYPE_FOLDER:
+                        FolderIcon.inflateFolderAndIcon(R.layout.folder_icon, mActivity, mParent,
+                                (FolderInfo) item);
+                        break;
+                    case LauncherSettings.Favorites.ITEM_TYPE_APPWIDGET:
+                        // The widgets of the layout are all pending
+                        new PendingAppWidgetHostView(mActivity, (LauncherAppWidgetInfo) item,
+                                mIconCache, false);
+                        break;
+                    default:
+                        BubbleTextView icon = (BubbleTextView) LayoutInflater.from(mActivity)
+                                .inflate(R.layout.app_icon, mParent, false);
+                        icon.applyFromWorkspaceItem((WorkspaceItemInfo) item);
+                        break;
+                }
+            }
+            mBoundItems += items.size();
+            mRecorder.recordBind("bindItems", SystemClock.elapsedRealtimeNanos() - start);
+        }
+
+        @Override
+        public void bindAllApplications(AppInfo[] apps, int flags) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            mAppsStore.setApps(apps, flags);
+            mRecorder.recordBind("bindAllApplications",
+                    SystemClock.elapsedRealtimeNanos() - start);
+        }
+    }
+
+    /**
+     * Records the wall time and allocated bytes between consecutive loader splits, and the main
+     * thread time of the binds.
+     */
+    private static class PhaseRecorder {
+
+        private final Map<String, List<Long>> mTimes = new LinkedHashMap<>();
+        private final Map<String, List<Long>> mAllocations = new LinkedHashMap<>();
+        private final Map<String, List<Long>> mBindTimes = new LinkedHashMap<>();
+        private final Map<String, Long> mRunBindTimes = new LinkedHashMap<>();
+
+        private long mLastTime;
+        private long mLastAllocated;
+
+        synchronized void reset() {
+            mTimes.clear();
+            mAllocations.clear();
+            mBindTimes.clear();
+        }
+
+        synchronized void startRun() {
+            mLastTime = System.nanoTime();
+            mLastAllocated = getAllocatedBytes();
+            mRunBindTimes.clear();
+        }
+
+        synchronized void endRun() {
+            mRunBindTimes.forEach((label, time) ->
+                    mBindTimes.computeIfAbsent(label, l -> new ArrayList<>()).add(time));
+        }
+
+        synchronized void recordBind(String label, long time) {
+            mRunBindTimes.merge(label, time, Long::sum);
+        }
+
+        synchronized void accept(String label) {
+            long time = System.nanoTime();
+            long allocated = getAllocatedBytes();
+            mTimes.computeIfAbsent(label, l -> new ArrayList<>()).add(time - mLastTime);
+            mAllocations.computeIfAbsent(label, l -> new ArrayList<>())
+                    .add(allocated - mLastAllocated);
+            mLastTime = time;
+            mLastAllocated = allocated;
+        }
+
+        synchronized void report() {
+            Bundle results = new Bundle();
+            long totalTime = 0;
+            long totalAllocated = 0;
+            for (String label : mTimes.keySet()) {
+                long time = median(mTimes.get(label));
+                long allocated = median(mAllocations.get(label));
+                totalTime += time;
+                totalAllocated += allocated;
+                Log.i(TAG, String.format("%-40s %8.2f ms %10d KB",
+                        label, time / 1e6, allocated / 1024));
+                String key = label.replace(' ', '_');
+                results.putDouble(key + "_ms", time / 1e6);
+                results.putLong(key + "_kb", allocated / 1024);
+            }
+            Log.i(TAG, String.format("%-40s %8.2f ms %10d KB",
+                    "total", totalTime / 1e6, totalAllocated / 1024));
+            results.putDouble("total_ms", totalTime / 1e6);
+            results.putLong("total_kb", totalAllocated / 1024);
+            for (String label : mBindTimes.keySet()) {
+                long time = median(mBindTimes.get(label));
+                Log.i(TAG, String.format("%-40s %8.2f ms", "main thread " + label, time / 1e6));
+                results.putDouble("main_" + label + "_ms", time / 1e6);
+            }
+            getInstrumentation().sendStatus(0, results);
+        }
+
+        private static long median(List<Long> values) {
+            List<Long> sorted = new ArrayList<>(values);
+            Collections.sort(sorted);
+            return sorted.get(sorted.size() / 2);
+        }
+
+        /**
+         * Bytes allocated by all threads of the process since it started.
+         */
+        private static long getAllocatedBytes() {
+            String value = Debug.getRuntimeStat("art.gc.bytes-allocated");
+            return value == null ? 0 : Long.parseLong(value);
+        }
+    }
+}
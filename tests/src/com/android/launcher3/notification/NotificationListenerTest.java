@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.notification;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import android.app.Notification;
+import android.os.Process;
+import android.service.notification.StatusBarNotification;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Tests for the notification groups tracked by {@link NotificationListener}.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class NotificationListenerTest {
+
+    private static final String PACKAGE = "com.example.notifications";
+
+    private TestNotificationListener mListener;
+
+    @Before
+    public void setUp() {
+        mListener = new TestNotificationListener();
+    }
+
+    @Test
+    public void repostedWithNewGroup_movesToNewGroup() throws Exception {
+        StatusBarNotification summary1 = post(1, "group1", true);
+        StatusBarNotification child = post(2, "group1", false);
+        StatusBarNotification summary2 = post(3, "group2", true);
+        assertEquals(summary1.getKey(),
+                onWorker(() -> mListener.getNotificationGroup(summary1.getGroupKey())
+                        .getGroupSummaryKey()));
+
+        // The same notification, posted again in another group
+        StatusBarNotification movedChild = post(2, "group2", false);
+        assertEquals(child.getKey(), movedChild.getKey());
+
+        assertEquals(movedChild.getGroupKey(), onWorker(() -> mListener.getGroupKey(
+                child.getKey())));
+        assertNull(onWorker(() -> mListener.getNotificationGroup(child.getGroupKey())));
+        NotificationGroup group = onWorker(
+                () -> mListener.getNotificationGroup(movedChild.getGroupKey()));
+        assertFalse(group.isEmpty());
+        // Dismissing the child cancels the summary of its new group
+        assertEquals(summary2.getKey(), group.getGroupSummaryKey());
+    }
+
+    @Test
+    public void removedChild_removesGroup() throws Exception {
+        post(1, "group1", true);
+        StatusBarNotification child = post(2, "group1", false);
+
+        mListener.onNotificationRemoved(child);
+
+        assertNull(onWorker(() -> mListener.getGroupKey(child.getKey())));
+        assertNull(onWorker(() -> mListener.getNotificationGroup(child.getGroupKey())));
+    }
+
+    private StatusBarNotification post(int id, String group, boolean isSummary) {
+        Notification notification = new Notification.Builder(getApplicationContext(), "channel")
+                .setGroup(group)
+                .setGroupSummary(isSummary)
+                .build();
+        StatusBarNotification sbn = new StatusBarNotification(PACKAGE, PACKAGE, id, null,
+                Process.myUid(), Process.myPid(), notification, Process.myUserHandle(), null,
+                System.currentTimeMillis());
+        mListener.onNotificationPosted(sbn);
+        return sbn;
+    }
+
+    /**
+     * Runs {@param callable} on the worker thread, after the messages already sent to it.
+     */
+    private static <T> T onWorker(Callable<T> callable) throws Exception {
+        return MODEL_EXECUTOR.submit(callable).get();
+    }
+
+    /**
+     * A listener which isn't bound by the system, with a ranking hiding every notification.
+     */
+    private static class TestNotificationListener extends NotificationListener {
+
+        private final RankingMap mRankingMap = mock(RankingMap.class);
+
+        TestNotificationListener() {
+            attachBaseContext(getApplicationContext());
+            onCreate();
+        }
+
+        @Override
+        public RankingMap getCurrentRanking() {
+            return mRankingMap;
+        }
+    }
+}
@@ -118,13 +118,21 @@ public class LauncherModelHelper {
     private AllAppsList mAllAppsList;
 
     public LauncherModelHelper() {
+        this(new TestLauncherProvider());
+    }
+
+    /**
+     * @param provider the provider of the launcher database, which can be a subclass of
+     *                 {@link TestLauncherProvider} observing its calls
+     */
+    public LauncherModelHelper(TestLauncherProvider provider) {
         Context context = getApplicationContext();
         // System settings cache content provider. Ensure that they are statically initialized
         Settings.Secure.getString(context.getContentResolver(), "test");
         Settings.System.getString(context.getContentResolver(), "test");
         Settings.Global.getString(context.getContentResolver(), "test");
 
-        provider = new TestLauncherProvider();
+        this.provider = provider;
         sandboxContext = new SanboxModelContext();
         defaultProfileId = UserCache.INSTANCE.get(sandboxContext)
                 .getSerialNumberForUser(Process.myUserHandle());
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Process;
+import android.os.UserHandle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.pm.UserCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link PersistedItemArray}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PersistedItemArrayTest {
+
+    private static final String FILE_NAME = "persisted_item_array_test";
+
+    private Context mContext;
+    private PersistedItemArray<ItemInfo> mArray;
+
+    @Before
+    public void setUp() {
+        mContext = getApplicationContext();
+        mArray = new PersistedItemArray<>(FILE_NAME);
+        mArray.delete(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        mArray.delete(mContext);
+    }
+
+    @Test
+    public void writeAndRead_keepsIntents() {
+        List<ItemInfo> items = new ArrayList<>();
+        items.add(newItem(ITEM_TYPE_APPLICATION,
+                AppInfo.makeLaunchIntent(new ComponentName("com.example", "com.example.Main"))));
+        items.add(newItem(ITEM_TYPE_DEEP_SHORTCUT, new Intent(Intent.ACTION_MAIN)
+                .addCategory("com.android.launcher3.DEEP_SHORTCUT")
+                .setComponent(new ComponentName("com.example", "com.example.Main"))
+                .setPackage("com.example")
+                .putExtra("shortcut_id", "compose")));
+        mArray.write(mContext, items);
+
+        List<ItemInfo> read = new PersistedItemArray<ItemInfo>(FILE_NAME)
+                .read(mContext, this::createInfo);
+
+        assertEquals(items.size(), read.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(items.get(i).itemType, read.get(i).itemType);
+            assertEquals(items.get(i).user, read.get(i).user);
+            assertEquals(items.get(i).getIntent().toUri(0), read.get(i).getIntent().toUri(0));
+        }
+    }
+
+    @Test
+    public void read_migratesLegacyXml() throws IOException {
+        Intent intent = AppInfo.makeLaunchIntent(new ComponentName("com.example", ".Main"));
+        long serial = UserCache.INSTANCE.get(mContext)
+                .getSerialNumberForUser(Process.myUserHandle());
+        String xml = "<?xml version='1.0' encoding='utf-8' standalone='yes' ?><items>"
+                + "<entry itemType=\"" + ITEM_TYPE_APPLICATION + "\" profileId=\"" + serial
+                + "\" intent=\"" + intent.toUri(0).replace("&", "&amp;") + "\" />"
+                + "</items>";
+        try (FileOutputStream out = new FileOutputStream(
+                mContext.getFileStreamPath(FILE_NAME + ".xml"))) {
+            out.write(xml.getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<ItemInfo> read = mArray.read(mContext, this::createInfo);
+
+        assertEquals(1, read.size());
+        assertEquals(intent.toUri(0), read.get(0).getIntent().toUri(0));
+        assertFalse(mContext.getFileStreamPath(FILE_NAME + ".xml").exists());
+        assertTrue(mContext.getFileStreamPath(FILE_NAME + ".bin").exists());
+        assertEquals(1, new PersistedItemArray<ItemInfo>(FILE_NAME)
+                .read(mContext, this::createInfo).size());
+    }
+
+    @Test
+    public void read_unreadableFile_returnsEmpty() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(
+                mContext.getFileStreamPath(FILE_NAME + ".bin"))) {
+            out.write("not a log".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertTrue(mArray.read(mContext, this::createInfo).isEmpty());
+
+        // The next write replaces the file
+        List<ItemInfo> items = new ArrayList<>();
+        items.add(newItem(ITEM_TYPE_APPLICATION,
+                AppInfo.makeLaunchIntent(new ComponentName("com.example", ".Main"))));
+        mArray.write(mContext, items);
+        assertEquals(1, new PersistedItemArray<ItemInfo>(FILE_NAME)
+                .read(mContext, this::createInfo).size());
+    }
+
+    private static ItemInfo newItem(int itemType, Intent intent) {
+        WorkspaceItemInfo item = new WorkspaceItemInfo();
+        item.itemType = itemType;
+        item.user = Process.myUserHandle();
+        item.intent = intent;
+        return item;
+    }
+
+    private ItemInfo createInfo(int itemType, UserHandle user, Intent intent) {
+        WorkspaceItemInfo item = new WorkspaceItemInfo();
+        item.itemType = itemType;
+        item.user = user;
+        item.intent = intent;
+        return item;
+    }
+}